@@ -0,0 +1,167 @@
+package com.mdp.cw4.runningtracker;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * <h1>Goals Test</h1>
+ * Checks, in an in-memory database, that the days and streaks kept up to date by Goals as sessions
+ * are stored and deleted in any order are the same as those built from scratch, and that the
+ * progress of each goal is worked out from them
+ */
+@RunWith(AndroidJUnit4.class)
+public class GoalsTest {
+
+    private static final int NUMBER_OF_DAYS = 120;
+    private static final int NUMBER_OF_OPERATIONS = 600;
+
+    private WorkoutSessionDatabase helper;
+    private SQLiteDatabase database;
+
+    @Before
+    public void setUp(){
+        helper = new WorkoutSessionDatabase(InstrumentationRegistry.getTargetContext(), null, null,
+                WorkoutSessionContentProvider.VERSION_NUMBER);
+        database = helper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown(){
+        helper.close();
+    }
+
+    @Test
+    public void incrementalChanges_matchRebuild() throws Exception {
+        Random random = new Random(11);
+        List<Long> sessionIds = new ArrayList<>();
+        int firstDay = TrainingLoadCalculator.getDay(2017, Calendar.JANUARY, 1);
+
+        for(int i = 0; i < NUMBER_OF_OPERATIONS; i++){
+            if(sessionIds.isEmpty() || random.nextInt(3) != 0){
+                sessionIds.add(storeSession(firstDay + random.nextInt(NUMBER_OF_DAYS), 1000 + random.nextInt(9000)));
+            }else{
+                deleteSession(sessionIds.remove(random.nextInt(sessionIds.size())));
+            }
+        }
+
+        String days = dump(WorkoutSessionContentProvider.ACTIVITY_DAYS_TABLE_NAME,
+                WorkoutSessionContentProvider.Contract.TRAINING_DAY);
+        String streaks = dump(WorkoutSessionContentProvider.STREAKS_TABLE_NAME,
+                WorkoutSessionContentProvider.Contract.STREAK_FIRST_DAY);
+
+        Goals.rebuild(database);
+
+        assertEquals(dump(WorkoutSessionContentProvider.ACTIVITY_DAYS_TABLE_NAME,
+                WorkoutSessionContentProvider.Contract.TRAINING_DAY), days);
+        assertEquals(dump(WorkoutSessionContentProvider.STREAKS_TABLE_NAME,
+                WorkoutSessionContentProvider.Contract.STREAK_FIRST_DAY), streaks);
+    }
+
+    @Test
+    public void progress_ofWeeklyDistanceAndStreak() throws Exception {
+        int monday = TrainingLoadCalculator.getDay(2017, Calendar.OCTOBER, 30);
+        storeSession(monday - 2, 5000);
+        storeSession(monday - 1, 3000);
+        storeSession(monday, 4000);
+        storeSession(monday, 2500);
+        long lastSession = storeSession(monday + 1, 6000);
+
+        addGoal(GoalType.WEEKLY_DISTANCE, 10000);
+        addGoal(GoalType.DAILY_STREAK, 3);
+
+        Cursor cursor = Goals.getGoalsCursor(database, monday + 2);
+        try {
+            assertTrue(cursor.moveToNext());
+            assertEquals(12500, getLong(cursor, WorkoutSessionContentProvider.Contract.GOAL_PROGRESS));
+            assertEquals(monday, getLong(cursor, WorkoutSessionContentProvider.Contract.GOAL_PERIOD_START));
+            assertEquals(1, getLong(cursor, WorkoutSessionContentProvider.Contract.GOAL_ACHIEVED));
+
+            assertTrue(cursor.moveToNext());
+            assertEquals(4, getLong(cursor, WorkoutSessionContentProvider.Contract.GOAL_PROGRESS));
+            assertEquals(monday - 2, getLong(cursor, WorkoutSessionContentProvider.Contract.GOAL_PERIOD_START));
+            assertEquals(4, getLong(cursor, WorkoutSessionContentProvider.Contract.GOAL_LONGEST_STREAK));
+        }finally{
+            cursor.close();
+        }
+
+        // Deleting the last day of the streak shortens it, and it is over two days later
+        deleteSession(lastSession);
+        cursor = Goals.getGoalsCursor(database, monday + 2);
+        try {
+            assertTrue(cursor.moveToNext());
+            assertEquals(6500, getLong(cursor, WorkoutSessionContentProvider.Contract.GOAL_PROGRESS));
+            assertEquals(0, getLong(cursor, WorkoutSessionContentProvider.Contract.GOAL_ACHIEVED));
+
+            assertTrue(cursor.moveToNext());
+            assertEquals(0, getLong(cursor, WorkoutSessionContentProvider.Contract.GOAL_PROGRESS));
+            assertEquals(3, getLong(cursor, WorkoutSessionContentProvider.Contract.GOAL_LONGEST_STREAK));
+        }finally{
+            cursor.close();
+        }
+    }
+
+    private long storeSession(int day, long distance){
+        Calendar calendar = TrainingLoadCalculator.getCalendar(day);
+        ContentValues values = new ContentValues();
+        values.put(WorkoutSessionContentProvider.Contract.DATE, calendar.get(Calendar.DATE));
+        values.put(WorkoutSessionContentProvider.Contract.MONTH, calendar.get(Calendar.MONTH));
+        values.put(WorkoutSessionContentProvider.Contract.YEAR, calendar.get(Calendar.YEAR));
+        values.put(WorkoutSessionContentProvider.Contract.DISTANCE, distance);
+        values.put(WorkoutSessionContentProvider.Contract.DURATION, distance * 300);
+
+        long id = database.insert(WorkoutSessionContentProvider.SESSION_TABLE_NAME, null, values);
+        Goals.addSession(database, values);
+        return id;
+    }
+
+    private void deleteSession(long sessionId){
+        String[] selectionArgs = { String.valueOf(sessionId) };
+        Goals.removeSessions(database, "_id = ?", selectionArgs);
+        database.delete(WorkoutSessionContentProvider.SESSION_TABLE_NAME, "_id = ?", selectionArgs);
+    }
+
+    private void addGoal(GoalType goalType, long target){
+        ContentValues values = new ContentValues();
+        values.put(WorkoutSessionContentProvider.Contract.GOAL_TYPE, goalType.getGoalTypeID());
+        values.put(WorkoutSessionContentProvider.Contract.GOAL_TARGET, target);
+        database.insert(WorkoutSessionContentProvider.GOALS_TABLE_NAME, null, values);
+    }
+
+    private long getLong(Cursor cursor, String column){
+        return cursor.getLong(cursor.getColumnIndexOrThrow(column));
+    }
+
+    /**
+     * @return  Every row of a table, in order
+     */
+    private String dump(String table, String orderBy){
+        StringBuilder rows = new StringBuilder();
+        Cursor cursor = database.query(table, null, null, null, null, null, orderBy);
+        try {
+            while(cursor.moveToNext()){
+                for(int column = 0; column < cursor.getColumnCount(); column++){
+                    rows.append(cursor.getString(column)).append(',');
+                }
+                rows.append('\n');
+            }
+        }finally{
+            cursor.close();
+        }
+        return rows.toString();
+    }
+}
@@ -0,0 +1,421 @@
+package com.mdp.cw4.runningtracker;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.RenamingDelegatingContext;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * <h1>Provider Scale Benchmark</h1>
+ * Times every URI of WorkoutSessionContentProvider against synthetic histories of increasing size.
+ * <p>
+ * The provider runs against its own copy of the database, prefixed with "scale.", so the sessions
+ * recorded on the device are left untouched. Queries call the provider directly, so the times are
+ * those of the provider and SQLite without the binder. Each query is run a few times after warming
+ * up and the median is reported, along with the number of rows read.
+ * <p>
+ * By default only the smaller histories are measured. Larger ones can be requested with an
+ * instrumentation argument, for example
+ * "-e providerScaleSizes 1000,10000,100000,1000000". The results are logged and written as JSON to
+ * provider-scale.json in the app's external files directory
+ * <p>
+ * The routes of histories of up to MAXIMUM_SPATIAL_SESSIONS sessions are also indexed, as
+ * SessionProcessingService would, so that the sessions in viewport and nearby URIs are measured
+ * too. A history of 100000 sessions takes far longer to index, so is only measured when requested,
+ * with "-e providerScaleSizes 1000,10000,100000"
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProviderScaleBenchmark {
+
+    private static final String TAG = "ProviderScaleBenchmark";
+    private static final String SIZES_ARGUMENT = "providerScaleSizes";
+    private static final String DEFAULT_SIZES = "1000,10000";
+    private static final String RESULTS_FILE = "provider-scale.json";
+
+    private static final int LAST_YEAR = 2017;
+    private static final int NUMBER_OF_YEARS = 5;
+
+    // Limits the total size of the stored routes for the largest histories
+    private static final int ROUTE_POINTS_BUDGET = 5000000;
+    private static final int MAXIMUM_ROUTE_POINTS = 1500;
+
+    private static final int WARMUP_RUNS = 2;
+    private static final int MEASURED_RUNS = 5;
+    private static final int PAGE_SIZE = 30;
+
+    // Indexing every route of the largest histories would take far too long
+    private static final int MAXIMUM_SPATIAL_SESSIONS = 100000;
+    private static final int SESSIONS_PER_INDEX_BATCH = 1000;
+
+    // Around the home locations of SyntheticWorkoutHistory
+    private static final double VIEWPORT_LATITUDE = 52.95;
+    private static final double VIEWPORT_LONGITUDE = -1.18;
+    private static final double VIEWPORT_HALF_HEIGHT = 0.01;
+    private static final double VIEWPORT_HALF_WIDTH = 0.015;
+    private static final double NEARBY_RADIUS_METRES = 200;
+
+    @Test
+    public void measureProviderQueries() throws Exception {
+        Context context = new RenamingDelegatingContext(InstrumentationRegistry.getTargetContext(), "scale.");
+        JSONArray results = new JSONArray();
+
+        for(int numberOfSessions : getSizes()){
+            context.deleteDatabase(WorkoutSessionContentProvider.WORKOUT_SESSION_DATABASE_NAME);
+            populate(context, numberOfSessions);
+
+            WorkoutSessionContentProvider provider = new WorkoutSessionContentProvider();
+            provider.attachInfo(context, null);
+
+            for(Query query : createQueries(numberOfSessions)){
+                JSONObject result = measure(provider, query);
+                result.put("sessions", numberOfSessions);
+                results.put(result);
+                Log.i(TAG, result.toString());
+            }
+        }
+
+        context.deleteDatabase(WorkoutSessionContentProvider.WORKOUT_SESSION_DATABASE_NAME);
+        writeResults(results);
+    }
+
+    private List<Integer> getSizes(){
+        Bundle arguments = InstrumentationRegistry.getArguments();
+        String sizes = arguments.getString(SIZES_ARGUMENT, DEFAULT_SIZES);
+
+        List<Integer> numbersOfSessions = new ArrayList<>();
+        for(String size : sizes.split(",")){
+            numbersOfSessions.add(Integer.parseInt(size.trim()));
+        }
+        return numbersOfSessions;
+    }
+
+    private void populate(Context context, int numberOfSessions){
+        int routePoints = Math.min(MAXIMUM_ROUTE_POINTS, ROUTE_POINTS_BUDGET / numberOfSessions);
+        WorkoutSessionDatabase helper = new WorkoutSessionDatabase(context,
+                WorkoutSessionContentProvider.WORKOUT_SESSION_DATABASE_NAME, null,
+                WorkoutSessionContentProvider.VERSION_NUMBER);
+
+        long start = SystemClock.elapsedRealtime();
+        SQLiteDatabase database = helper.getWritableDatabase();
+        new SyntheticWorkoutHistory(42, LAST_YEAR, NUMBER_OF_YEARS, routePoints)
+                .writeTo(database, numberOfSessions);
+        // The sessions are written straight into the table, so the training load is built from them
+        TrainingLoad.rebuild(database);
+        if(numberOfSessions <= MAXIMUM_SPATIAL_SESSIONS){
+            indexRoutes(database);
+        }
+        helper.close();
+
+        Log.i(TAG, "Generated " + numberOfSessions + " sessions with up to " + routePoints
+                + " route points in " + (SystemClock.elapsedRealtime() - start) + " ms");
+    }
+
+    /**
+     * Stores the bounds and outline of every session's route, as SessionProcessingService does
+     * once a session is stored. The sessions are read in batches by id, so no cursor is left open
+     * while writing
+     */
+    private void indexRoutes(SQLiteDatabase database){
+        long start = SystemClock.elapsedRealtime();
+        String[] columns = { WorkoutSessionContentProvider.Contract._ID,
+                WorkoutSessionContentProvider.Contract.LATITUDE, WorkoutSessionContentProvider.Contract.LONGITUDE };
+        long lastSessionId = 0;
+        boolean finished = false;
+
+        while(!finished){
+            List<ContentValues> bounds = new ArrayList<>();
+            List<ContentValues> outlines = new ArrayList<>();
+            Cursor cursor = database.query(WorkoutSessionContentProvider.SESSION_TABLE_NAME, columns,
+                    WorkoutSessionContentProvider.Contract._ID + " > ?",
+                    new String[] { String.valueOf(lastSessionId) }, null, null,
+                    WorkoutSessionContentProvider.Contract._ID + " ASC", String.valueOf(SESSIONS_PER_INDEX_BATCH));
+            try {
+                finished = cursor.getCount() < SESSIONS_PER_INDEX_BATCH;
+                while(cursor.moveToNext()){
+                    lastSessionId = cursor.getLong(0);
+                    addRouteIndexValues(lastSessionId, CoordinateScanner.decode(cursor.getString(1)),
+                            CoordinateScanner.decode(cursor.getString(2)), bounds, outlines);
+                }
+            }finally{
+                cursor.close();
+            }
+
+            database.beginTransaction();
+            try {
+                for(ContentValues values : bounds){
+                    assertTrue(Segments.storeBounds(database, values));
+                }
+                for(ContentValues values : outlines){
+                    assertTrue(SpatialIndex.store(database, values));
+                }
+                database.setTransactionSuccessful();
+            }finally{
+                database.endTransaction();
+            }
+        }
+
+        Log.i(TAG, "Indexed routes up to session " + lastSessionId + " in "
+                + (SystemClock.elapsedRealtime() - start) + " ms");
+    }
+
+    private void addRouteIndexValues(long sessionId, double[] latitudes, double[] longitudes,
+                                     List<ContentValues> bounds, List<ContentValues> outlines){
+        RouteBounds routeBounds = RouteBounds.of(latitudes, longitudes);
+        if(routeBounds == null){
+            return;
+        }
+
+        ContentValues boundsValues = new ContentValues();
+        boundsValues.put(WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID, sessionId);
+        boundsValues.put(WorkoutSessionContentProvider.Contract.BOUNDS_MINIMUM_LATITUDE, routeBounds.getMinimumLatitude());
+        boundsValues.put(WorkoutSessionContentProvider.Contract.BOUNDS_MAXIMUM_LATITUDE, routeBounds.getMaximumLatitude());
+        boundsValues.put(WorkoutSessionContentProvider.Contract.BOUNDS_MINIMUM_LONGITUDE, routeBounds.getMinimumLongitude());
+        boundsValues.put(WorkoutSessionContentProvider.Contract.BOUNDS_MAXIMUM_LONGITUDE, routeBounds.getMaximumLongitude());
+        bounds.add(boundsValues);
+
+        int[] outline = RouteGrid.getOutline(latitudes, longitudes);
+        List<Double> outlineLatitudes = new ArrayList<>(outline.length);
+        List<Double> outlineLongitudes = new ArrayList<>(outline.length);
+        for(int index : outline){
+            outlineLatitudes.add(latitudes[index]);
+            outlineLongitudes.add(longitudes[index]);
+        }
+        ContentValues outlineValues = new ContentValues();
+        outlineValues.put(WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID, sessionId);
+        outlineValues.put(WorkoutSessionContentProvider.Contract.LATITUDE, CoordinateScanner.encode(outlineLatitudes));
+        outlineValues.put(WorkoutSessionContentProvider.Contract.LONGITUDE, CoordinateScanner.encode(outlineLongitudes));
+        outlines.add(outlineValues);
+    }
+
+    /**
+     * The queries made by the history, statistics, yearly summary and map screens
+     */
+    private List<Query> createQueries(int numberOfSessions){
+        String year = String.valueOf(LAST_YEAR);
+        String[] yearOnly = { year };
+        String[] yearAndAllTypes = { year, "0", "1", "2" };
+        String[] yearAndOneType = { year, "0" };
+        String allTypes = " AND (" + WorkoutSessionContentProvider.Contract.WORKOUT_TYPE + " = ? OR "
+                + WorkoutSessionContentProvider.Contract.WORKOUT_TYPE + " = ? OR "
+                + WorkoutSessionContentProvider.Contract.WORKOUT_TYPE + " = ? )";
+        String dateOrder = WorkoutSessionContentProvider.Contract.YEAR + " DESC, "
+                + WorkoutSessionContentProvider.Contract.MONTH + " DESC, "
+                + WorkoutSessionContentProvider.Contract.DATE + " DESC, "
+                + WorkoutSessionContentProvider.Contract.HOUR + " DESC, "
+                + WorkoutSessionContentProvider.Contract.MINUTE + " DESC";
+
+        String[] dayColumns = {
+                WorkoutSessionContentProvider.Contract._ID,
+                WorkoutSessionContentProvider.Contract.DATE,
+                WorkoutSessionContentProvider.Contract.MONTH,
+                WorkoutSessionContentProvider.Contract.YEAR,
+                WorkoutSessionContentProvider.Contract.DISTANCE,
+                WorkoutSessionContentProvider.Contract.DURATION
+        };
+
+        int lastDay = TrainingLoadCalculator.getDay(LAST_YEAR, Calendar.DECEMBER, 31);
+        int firstDay = TrainingLoadCalculator.getDay(LAST_YEAR - NUMBER_OF_YEARS + 1, Calendar.JANUARY, 1);
+
+        Uri firstPage = pageUri(0);
+        Uri middlePage = pageUri(numberOfSessions / 2);
+
+        List<Query> queries = new ArrayList<>(Arrays.asList(
+                new Query("historyByDateFirstPage", firstPage, WorkoutSessionSummary.COLUMNS,
+                        null, null, dateOrder),
+                new Query("historyByDateMiddlePage", middlePage, WorkoutSessionSummary.COLUMNS,
+                        null, null, dateOrder),
+                new Query("historyByDistanceFirstPage", firstPage, WorkoutSessionSummary.COLUMNS,
+                        null, null, WorkoutSessionContentProvider.Contract.DISTANCE + " DESC"),
+                new Query("historyByDurationFirstPage", firstPage, WorkoutSessionSummary.COLUMNS,
+                        null, null, WorkoutSessionContentProvider.Contract.DURATION + " DESC"),
+                new Query("historyForYear", WorkoutSessionContentProvider.Contract.SESSION_URI,
+                        WorkoutSessionSummary.COLUMNS,
+                        WorkoutSessionContentProvider.Contract.YEAR + " = ? ", yearOnly, dateOrder),
+                new Query("daySummary", WorkoutSessionContentProvider.Contract.SESSION_URI, dayColumns,
+                        WorkoutSessionContentProvider.Contract.DATE + " = ? AND "
+                                + WorkoutSessionContentProvider.Contract.MONTH + " = ? AND "
+                                + WorkoutSessionContentProvider.Contract.YEAR + " = ? " + allTypes,
+                        new String[] { "15", "5", year, "0", "1", "2" }, null),
+                new Query("monthSummary", WorkoutSessionContentProvider.Contract.SESSION_URI, dayColumns,
+                        WorkoutSessionContentProvider.Contract.MONTH + " = ? AND "
+                                + WorkoutSessionContentProvider.Contract.YEAR + " = ? " + allTypes,
+                        new String[] { "5", year, "0", "1", "2" }, null),
+                new Query("monthlySummaryDistance",
+                        WorkoutSessionContentProvider.Contract.MONTHLY_SUMMARY_DISTANCE_URI, null, null,
+                        yearAndOneType, null),
+                new Query("monthlySummaryDuration",
+                        WorkoutSessionContentProvider.Contract.MONTHLY_SUMMARY_DURATION_URI, null, null,
+                        yearAndAllTypes, null),
+                new Query("maxTotalDistanceForYear",
+                        WorkoutSessionContentProvider.Contract.MAX_TOTAL_DISTANCE_FOR_YEAR_URI, null, null,
+                        yearAndAllTypes, null),
+                new Query("maxTotalDurationForYear",
+                        WorkoutSessionContentProvider.Contract.MAX_TOTAL_DURATION_FOR_YEAR_URI, null, null,
+                        yearOnly, null),
+                new Query("startYear", WorkoutSessionContentProvider.Contract.START_YEAR_URI, null, null,
+                        null, null),
+                new Query("trainingLoadForYear", trainingLoadUri(lastDay - 364, lastDay), null, null,
+                        null, null),
+                new Query("trainingLoadForHistory", trainingLoadUri(firstDay, lastDay), null, null,
+                        null, null)
+        ));
+
+        if(numberOfSessions <= MAXIMUM_SPATIAL_SESSIONS){
+            queries.add(new Query("sessionsInViewport", viewportUri(), null, null, null, null));
+            queries.add(new Query("sessionsNearby", nearbyUri(0), null, null, null, null));
+            queries.add(new Query("sessionsNearbyFirstPage", nearbyUri(PAGE_SIZE), null, null, null, null));
+        }
+        return queries;
+    }
+
+    private Uri pageUri(int offset){
+        return WorkoutSessionContentProvider.Contract.SESSION_URI.buildUpon()
+                .appendQueryParameter(WorkoutSessionContentProvider.Contract.QUERY_PARAMETER_LIMIT,
+                        String.valueOf(PAGE_SIZE))
+                .appendQueryParameter(WorkoutSessionContentProvider.Contract.QUERY_PARAMETER_OFFSET,
+                        String.valueOf(offset))
+                .build();
+    }
+
+    private Uri trainingLoadUri(int firstDay, int lastDay){
+        return WorkoutSessionContentProvider.Contract.TRAINING_LOAD_URI.buildUpon()
+                .appendQueryParameter(WorkoutSessionContentProvider.Contract.QUERY_PARAMETER_FIRST_DAY,
+                        String.valueOf(firstDay))
+                .appendQueryParameter(WorkoutSessionContentProvider.Contract.QUERY_PARAMETER_LAST_DAY,
+                        String.valueOf(lastDay))
+                .build();
+    }
+
+    private Uri viewportUri(){
+        return WorkoutSessionContentProvider.Contract.SESSIONS_IN_VIEWPORT_URI.buildUpon()
+                .appendQueryParameter(WorkoutSessionContentProvider.Contract.QUERY_PARAMETER_MINIMUM_LATITUDE,
+                        String.valueOf(VIEWPORT_LATITUDE - VIEWPORT_HALF_HEIGHT))
+                .appendQueryParameter(WorkoutSessionContentProvider.Contract.QUERY_PARAMETER_MAXIMUM_LATITUDE,
+                        String.valueOf(VIEWPORT_LATITUDE + VIEWPORT_HALF_HEIGHT))
+                .appendQueryParameter(WorkoutSessionContentProvider.Contract.QUERY_PARAMETER_MINIMUM_LONGITUDE,
+                        String.valueOf(VIEWPORT_LONGITUDE - VIEWPORT_HALF_WIDTH))
+                .appendQueryParameter(WorkoutSessionContentProvider.Contract.QUERY_PARAMETER_MAXIMUM_LONGITUDE,
+                        String.valueOf(VIEWPORT_LONGITUDE + VIEWPORT_HALF_WIDTH))
+                .build();
+    }
+
+    /**
+     * @param limit     Largest number of sessions, or 0 for every session
+     */
+    private Uri nearbyUri(int limit){
+        Uri.Builder builder = WorkoutSessionContentProvider.Contract.SESSIONS_NEARBY_URI.buildUpon()
+                .appendQueryParameter(WorkoutSessionContentProvider.Contract.QUERY_PARAMETER_LATITUDE,
+                        String.valueOf(VIEWPORT_LATITUDE))
+                .appendQueryParameter(WorkoutSessionContentProvider.Contract.QUERY_PARAMETER_LONGITUDE,
+                        String.valueOf(VIEWPORT_LONGITUDE))
+                .appendQueryParameter(WorkoutSessionContentProvider.Contract.QUERY_PARAMETER_RADIUS,
+                        String.valueOf(NEARBY_RADIUS_METRES));
+        if(limit > 0){
+            builder.appendQueryParameter(WorkoutSessionContentProvider.Contract.QUERY_PARAMETER_LIMIT,
+                    String.valueOf(limit));
+        }
+        return builder.build();
+    }
+
+    private JSONObject measure(WorkoutSessionContentProvider provider, Query query) throws JSONException {
+        long[] durationsNanoseconds = new long[MEASURED_RUNS];
+        int rows = 0;
+
+        for(int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++){
+            long start = System.nanoTime();
+            rows = readAll(provider.query(query.uri, query.projection, query.selection,
+                    query.selectionArgs, query.sortOrder));
+            long duration = System.nanoTime() - start;
+
+            if(run >= WARMUP_RUNS){
+                durationsNanoseconds[run - WARMUP_RUNS] = duration;
+            }
+        }
+
+        Arrays.sort(durationsNanoseconds);
+
+        JSONObject result = new JSONObject();
+        result.put("query", query.name);
+        result.put("rows", rows);
+        result.put("medianMilliseconds", durationsNanoseconds[MEASURED_RUNS / 2] / 1e6);
+        result.put("minimumMilliseconds", durationsNanoseconds[0] / 1e6);
+        return result;
+    }
+
+    /**
+     * Reads every column of every row, as the cursor only runs the query once it is first moved
+     * @return  Number of rows read
+     */
+    private int readAll(Cursor cursor){
+        assertNotNull(cursor);
+
+        int rows = 0;
+        try {
+            while(cursor.moveToNext()){
+                for(int column = 0; column < cursor.getColumnCount(); column++){
+                    cursor.getString(column);
+                }
+                rows++;
+            }
+        }finally{
+            cursor.close();
+        }
+        return rows;
+    }
+
+    private void writeResults(JSONArray results) throws IOException, JSONException {
+        File directory = InstrumentationRegistry.getTargetContext().getExternalFilesDir(null);
+        if(directory == null){
+            return;
+        }
+
+        FileWriter writer = new FileWriter(new File(directory, RESULTS_FILE));
+        try {
+            writer.write(results.toString(2));
+        }finally{
+            writer.close();
+        }
+    }
+
+    private static class Query {
+        final String name;
+        final Uri uri;
+        final String[] projection;
+        final String selection;
+        final String[] selectionArgs;
+        final String sortOrder;
+
+        Query(String name, Uri uri, String[] projection, String selection, String[] selectionArgs,
+              String sortOrder){
+            this.name = name;
+            this.uri = uri;
+            this.projection = projection;
+            this.selection = selection;
+            this.selectionArgs = selectionArgs;
+            this.sortOrder = sortOrder;
+        }
+    }
+}
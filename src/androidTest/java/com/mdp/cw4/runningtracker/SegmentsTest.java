@@ -0,0 +1,165 @@
+package com.mdp.cw4.runningtracker;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * <h1>Segments Test</h1>
+ * Checks, in an in-memory database, that Segments only offers the sessions whose route passes
+ * within the corridor of both gates of a segment, and that its leaderboard follows efforts as
+ * they are stored and removed
+ */
+@RunWith(AndroidJUnit4.class)
+public class SegmentsTest {
+
+    private static final double START_LATITUDE = 52.9387;
+    private static final double LONGITUDE = -1.1955;
+
+    private WorkoutSessionDatabase helper;
+    private SQLiteDatabase database;
+
+    @Before
+    public void setUp(){
+        helper = new WorkoutSessionDatabase(InstrumentationRegistry.getTargetContext(), null, null,
+                WorkoutSessionContentProvider.VERSION_NUMBER);
+        database = helper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown(){
+        helper.close();
+    }
+
+    @Test
+    public void candidates_holdBothGates() throws Exception {
+        // 500 m due north with a 20 m corridor
+        long segmentId = addSegment(0, 500, 20);
+
+        long covering = storeSession(-100, 800, 0);
+        long shortOfEnd = storeSession(-100, 450, 0);
+        long withinCorridor = storeSession(-100, 800, 15);
+        storeSession(-100, 800, 60);
+
+        assertEquals(listOf(covering, withinCorridor), getCandidates(segmentId));
+        assertNull(Segments.getCandidatesCursor(database, segmentId + 1));
+        assertFalse(getCandidates(segmentId).contains(shortOfEnd));
+    }
+
+    @Test
+    public void leaderboard_fastestFirst() throws Exception {
+        long segmentId = addSegment(0, 500, 20);
+        long slow = storeSession(-100, 800, 0);
+        long fast = storeSession(-100, 800, 0);
+        long removed = storeSession(-100, 800, 0);
+
+        storeEffort(segmentId, slow, 150000);
+        storeEffort(segmentId, fast, 120000);
+        storeEffort(segmentId, removed, 90000);
+        // A later effort of the same session replaces the earlier one
+        storeEffort(segmentId, slow, 140000);
+
+        Segments.remove(database, removed);
+        database.delete(WorkoutSessionContentProvider.SESSION_TABLE_NAME, "_id = ?",
+                new String[] { String.valueOf(removed) });
+
+        Cursor cursor = Segments.getLeaderboardCursor(database, new String[] { String.valueOf(segmentId) }, null);
+        assertEquals(2, cursor.getCount());
+        cursor.moveToNext();
+        assertEquals(fast, cursor.getLong(0));
+        assertEquals(120000, cursor.getLong(2));
+        cursor.moveToNext();
+        assertEquals(slow, cursor.getLong(0));
+        assertEquals(140000, cursor.getLong(2));
+        cursor.close();
+
+        assertEquals(1, Segments.removeSegment(database, segmentId));
+        cursor = Segments.getLeaderboardCursor(database, new String[] { String.valueOf(segmentId) }, null);
+        assertEquals(0, cursor.getCount());
+        cursor.close();
+    }
+
+    private long addSegment(double fromMetres, double toMetres, double corridorMetres){
+        ContentValues values = new ContentValues();
+        values.put(WorkoutSessionContentProvider.Contract.SEGMENT_NAME, "Segment");
+        values.put(WorkoutSessionContentProvider.Contract.LATITUDE, north(fromMetres) + ";" + north(toMetres) + ";");
+        values.put(WorkoutSessionContentProvider.Contract.LONGITUDE, LONGITUDE + ";" + LONGITUDE + ";");
+        values.put(WorkoutSessionContentProvider.Contract.SEGMENT_CORRIDOR, corridorMetres);
+        long segmentId = Segments.addSegment(database, values);
+        assertNotEquals(-1, segmentId);
+        return segmentId;
+    }
+
+    /**
+     * Stores a session running due north, along with the bounds and outline of its route
+     */
+    private long storeSession(double fromMetres, double toMetres, double eastMetres){
+        ContentValues values = new ContentValues();
+        values.put(WorkoutSessionContentProvider.Contract.YEAR, 2017);
+        values.put(WorkoutSessionContentProvider.Contract.MONTH, 10);
+        values.put(WorkoutSessionContentProvider.Contract.DATE, 30);
+        values.put(WorkoutSessionContentProvider.Contract.WORKOUT_TYPE, WorkoutType.RUNNING.getworkoutTypeID());
+        long sessionId = database.insert(WorkoutSessionContentProvider.SESSION_TABLE_NAME, null, values);
+
+        double longitude = LONGITUDE
+                + eastMetres / (RouteDistance.METRES_PER_DEGREE * Math.cos(Math.toRadians(START_LATITUDE)));
+        ContentValues boundsValues = new ContentValues();
+        boundsValues.put(WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID, sessionId);
+        boundsValues.put(WorkoutSessionContentProvider.Contract.BOUNDS_MINIMUM_LATITUDE, north(fromMetres));
+        boundsValues.put(WorkoutSessionContentProvider.Contract.BOUNDS_MAXIMUM_LATITUDE, north(toMetres));
+        boundsValues.put(WorkoutSessionContentProvider.Contract.BOUNDS_MINIMUM_LONGITUDE, longitude);
+        boundsValues.put(WorkoutSessionContentProvider.Contract.BOUNDS_MAXIMUM_LONGITUDE, longitude);
+        assertTrue(Segments.storeBounds(database, boundsValues));
+
+        ContentValues outlineValues = new ContentValues();
+        outlineValues.put(WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID, sessionId);
+        outlineValues.put(WorkoutSessionContentProvider.Contract.LATITUDE, north(fromMetres) + ";" + north(toMetres) + ";");
+        outlineValues.put(WorkoutSessionContentProvider.Contract.LONGITUDE, longitude + ";" + longitude + ";");
+        assertTrue(SpatialIndex.store(database, outlineValues));
+        return sessionId;
+    }
+
+    private void storeEffort(long segmentId, long sessionId, long durationMilliseconds){
+        ContentValues values = new ContentValues();
+        values.put(WorkoutSessionContentProvider.Contract.SEGMENT_ID, segmentId);
+        values.put(WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID, sessionId);
+        values.put(WorkoutSessionContentProvider.Contract.RECORD_START, 0);
+        values.put(WorkoutSessionContentProvider.Contract.DURATION, durationMilliseconds);
+        values.put(WorkoutSessionContentProvider.Contract.RECORD_SPEED, 500000.0 / durationMilliseconds);
+        assertTrue(Segments.storeEffort(database, values));
+    }
+
+    private List<Long> getCandidates(long segmentId){
+        List<Long> sessionIds = new ArrayList<>();
+        Cursor cursor = Segments.getCandidatesCursor(database, segmentId);
+        while(cursor.moveToNext()){
+            sessionIds.add(cursor.getLong(0));
+        }
+        cursor.close();
+        return sessionIds;
+    }
+
+    private static List<Long> listOf(long... sessionIds){
+        List<Long> list = new ArrayList<>();
+        for(long sessionId : sessionIds){
+            list.add(sessionId);
+        }
+        return list;
+    }
+
+    private static double north(double metres){
+        return START_LATITUDE + metres / RouteDistance.METRES_PER_DEGREE;
+    }
+}
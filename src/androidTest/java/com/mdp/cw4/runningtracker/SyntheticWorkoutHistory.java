@@ -0,0 +1,179 @@
+package com.mdp.cw4.runningtracker;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.Calendar;
+import java.util.Random;
+
+/**
+ * <h1>Synthetic Workout History</h1>
+ * Generates a reproducible history of workout sessions and writes it straight into the session
+ * table, using the same columns and formats as WorkoutSessionService, so that the content provider
+ * can be measured against large amounts of realistic data.
+ * <p>
+ * Sessions are spread evenly over the requested number of years, mostly in the morning or evening,
+ * and are split between running, walking and cycling with durations and speeds typical of each.
+ * Every session has a GPS track starting from one of a handful of home locations, recorded at one
+ * fix every few seconds. As full tracks for a million sessions would not fit on a device, the
+ * number of points per track can be capped; the track then covers the same ground with fewer fixes.
+ * The same seed and arguments always produce exactly the same rows
+ */
+public class SyntheticWorkoutHistory {
+
+    private static final int SECONDS_PER_FIX = 5;
+    private static final int SESSIONS_PER_TRANSACTION = 10000;
+
+    // Likelihood of each workout type, in the order of WorkoutType
+    private static final double[] WORKOUT_TYPE_PROBABILITIES = { 0.5, 0.3, 0.2 };
+
+    // Typical speed in metres per second and duration in minutes of each workout type
+    private static final double[] MEAN_SPEEDS = { 3.0, 1.4, 6.5 };
+    private static final double[] MEAN_DURATIONS = { 35, 45, 75 };
+
+    private static final double[][] HOME_LOCATIONS = {
+            { 52.9387, -1.1955 }, { 52.9536, -1.1505 }, { 52.9225, -1.2043 }, { 52.9702, -1.1689 } };
+
+    private final long seed;
+    private final int lastYear;
+    private final int numberOfYears;
+    private final int maximumRoutePoints;
+
+    /**
+     * @param seed                  Seed for the generator
+     * @param lastYear              The most recent year to create sessions in
+     * @param numberOfYears         Number of years, up to and including the last year, to spread
+     *                              the sessions over
+     * @param maximumRoutePoints    Maximum number of points recorded for each session's route
+     */
+    public SyntheticWorkoutHistory(long seed, int lastYear, int numberOfYears, int maximumRoutePoints){
+        this.seed = seed;
+        this.lastYear = lastYear;
+        this.numberOfYears = numberOfYears;
+        this.maximumRoutePoints = Math.max(2, maximumRoutePoints);
+    }
+
+    /**
+     * Inserts the sessions in chronological order, committing in batches so that the journal does
+     * not grow without bound for very large histories
+     * @param database              Database created by WorkoutSessionDatabase
+     * @param numberOfSessions      Number of sessions to insert
+     */
+    public void writeTo(SQLiteDatabase database, int numberOfSessions){
+        Random random = new Random(seed);
+
+        SQLiteStatement insert = database.compileStatement("INSERT INTO "
+                + WorkoutSessionContentProvider.SESSION_TABLE_NAME + " ("
+                + WorkoutSessionContentProvider.Contract.DATE + ", "
+                + WorkoutSessionContentProvider.Contract.MONTH + ", "
+                + WorkoutSessionContentProvider.Contract.YEAR + ", "
+                + WorkoutSessionContentProvider.Contract.HOUR + ", "
+                + WorkoutSessionContentProvider.Contract.MINUTE + ", "
+                + WorkoutSessionContentProvider.Contract.DURATION + ", "
+                + WorkoutSessionContentProvider.Contract.DISTANCE + ", "
+                + WorkoutSessionContentProvider.Contract.WORKOUT_TYPE + ", "
+                + WorkoutSessionContentProvider.Contract.LATITUDE + ", "
+                + WorkoutSessionContentProvider.Contract.LONGITUDE
+                + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(lastYear - numberOfYears + 1, Calendar.JANUARY, 1);
+        long firstDayMilliseconds = calendar.getTimeInMillis();
+        calendar.set(lastYear + 1, Calendar.JANUARY, 1);
+        long millisecondsPerSession = (calendar.getTimeInMillis() - firstDayMilliseconds)
+                / Math.max(1, numberOfSessions);
+
+        database.beginTransaction();
+        try {
+            for(int i = 0; i < numberOfSessions; i++){
+                calendar.setTimeInMillis(firstDayMilliseconds + i * millisecondsPerSession);
+                writeSession(insert, random, calendar);
+
+                if((i + 1) % SESSIONS_PER_TRANSACTION == 0){
+                    database.setTransactionSuccessful();
+                    database.endTransaction();
+                    database.beginTransaction();
+                }
+            }
+            database.setTransactionSuccessful();
+        }finally{
+            database.endTransaction();
+            insert.close();
+        }
+    }
+
+    private void writeSession(SQLiteStatement insert, Random random, Calendar day){
+        int workoutType = pickWorkoutType(random);
+
+        // Most sessions start either before or after work
+        int hour;
+        if(random.nextDouble() < 0.45){
+            hour = 6 + random.nextInt(3);
+        }else if(random.nextDouble() < 0.8){
+            hour = 17 + random.nextInt(3);
+        }else{
+            hour = 9 + random.nextInt(8);
+        }
+        int minute = random.nextInt(60);
+
+        // Durations are skewed towards longer sessions, speeds vary a little around the mean
+        double durationMinutes = MEAN_DURATIONS[workoutType] * Math.exp(random.nextGaussian() * 0.35);
+        long durationMilliseconds = Math.max(60000, Math.round(durationMinutes * 60000));
+        double speed = Math.max(0.5, MEAN_SPEEDS[workoutType] * (1 + random.nextGaussian() * 0.12));
+        int distanceMetres = (int) Math.round(speed * durationMilliseconds / 1000);
+
+        int numberOfFixes = (int) Math.min(maximumRoutePoints,
+                Math.max(2, durationMilliseconds / 1000 / SECONDS_PER_FIX));
+        double[] home = HOME_LOCATIONS[random.nextInt(HOME_LOCATIONS.length)];
+        StringBuilder latitudes = new StringBuilder(numberOfFixes * 18);
+        StringBuilder longitudes = new StringBuilder(numberOfFixes * 18);
+        appendRoute(random, home[0], home[1], distanceMetres, numberOfFixes, latitudes, longitudes);
+
+        insert.clearBindings();
+        insert.bindLong(1, day.get(Calendar.DAY_OF_MONTH));
+        insert.bindLong(2, day.get(Calendar.MONTH));
+        insert.bindLong(3, day.get(Calendar.YEAR));
+        insert.bindLong(4, hour);
+        insert.bindLong(5, minute);
+        insert.bindLong(6, durationMilliseconds);
+        insert.bindLong(7, distanceMetres);
+        insert.bindLong(8, workoutType);
+        insert.bindString(9, latitudes.toString());
+        insert.bindString(10, longitudes.toString());
+        insert.executeInsert();
+    }
+
+    private int pickWorkoutType(Random random){
+        double value = random.nextDouble();
+        for(int workoutType = 0; workoutType < WORKOUT_TYPE_PROBABILITIES.length - 1; workoutType++){
+            value -= WORKOUT_TYPE_PROBABILITIES[workoutType];
+            if(value < 0){
+                return workoutType;
+            }
+        }
+        return WORKOUT_TYPE_PROBABILITIES.length - 1;
+    }
+
+    /**
+     * Appends a loop like route of roughly the given length in the format stored by the provider.
+     * The heading wanders slowly and gradually turns back towards the start
+     */
+    private void appendRoute(Random random, double latitude, double longitude, int distanceMetres,
+                             int numberOfFixes, StringBuilder latitudes, StringBuilder longitudes){
+        double stepMetres = (double) distanceMetres / (numberOfFixes - 1);
+        double heading = random.nextDouble() * 2 * Math.PI;
+        double turnPerFix = 2 * Math.PI / numberOfFixes;
+        double metresPerDegreeLongitude = RouteDistance.METRES_PER_DEGREE
+                * Math.cos(Math.toRadians(latitude));
+
+        for(int i = 0; i < numberOfFixes; i++){
+            latitudes.append(latitude).append(';');
+            longitudes.append(longitude).append(';');
+
+            heading += turnPerFix + random.nextGaussian() * 0.1;
+            latitude += Math.cos(heading) * stepMetres / RouteDistance.METRES_PER_DEGREE;
+            longitude += Math.sin(heading) * stepMetres / metresPerDegreeLongitude;
+        }
+    }
+}
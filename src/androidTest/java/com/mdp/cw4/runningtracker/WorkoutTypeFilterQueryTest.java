@@ -0,0 +1,151 @@
+package com.mdp.cw4.runningtracker;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * <h1>Workout Type Filter Query Test</h1>
+ * Checks, against a synthetic history in an in-memory database, that the selection built by
+ * WorkoutTypeFilter returns the same sessions as the chain of ORs with one selection argument per
+ * workout type which it replaced, for every combination of workout types, and that SQLite answers
+ * it with the workout type index
+ */
+@RunWith(AndroidJUnit4.class)
+public class WorkoutTypeFilterQueryTest {
+
+    private static final int NUMBER_OF_SESSIONS = 2000;
+    private static final String YEAR = "2017";
+
+    private WorkoutSessionDatabase helper;
+    private SQLiteDatabase database;
+
+    @Before
+    public void setUp(){
+        helper = new WorkoutSessionDatabase(InstrumentationRegistry.getTargetContext(), null, null,
+                WorkoutSessionContentProvider.VERSION_NUMBER);
+        database = helper.getWritableDatabase();
+        new SyntheticWorkoutHistory(7, 2017, 3, 20).writeTo(database, NUMBER_OF_SESSIONS);
+        database.execSQL("ANALYZE");
+    }
+
+    @After
+    public void tearDown(){
+        helper.close();
+    }
+
+    @Test
+    public void selection_matchesBoundWorkoutTypesForEveryMask() throws Exception {
+        for(int mask = WorkoutTypeFilter.NONE + 1; mask <= WorkoutTypeFilter.ALL; mask++){
+            List<String> selectionArgs = new ArrayList<>();
+            StringBuilder legacySelection = new StringBuilder("(");
+            for(WorkoutType workoutType : WorkoutType.values()){
+                if((mask & WorkoutTypeFilter.getMask(workoutType)) != 0){
+                    if(!selectionArgs.isEmpty()){
+                        legacySelection.append(" OR ");
+                    }
+                    legacySelection.append(WorkoutSessionContentProvider.Contract.WORKOUT_TYPE).append(" = ?");
+                    selectionArgs.add(String.valueOf(workoutType.getworkoutTypeID()));
+                }
+            }
+            legacySelection.append(")");
+
+            List<Long> expected = queryIds(legacySelection.toString(),
+                    selectionArgs.toArray(new String[selectionArgs.size()]));
+            List<Long> actual = queryIds(WorkoutTypeFilter.getSelection(mask), null);
+
+            assertFalse("No sessions for mask " + mask, expected.isEmpty());
+            assertEquals("Sessions for mask " + mask, expected, actual);
+        }
+
+        assertTrue(queryIds(WorkoutTypeFilter.getSelection(WorkoutTypeFilter.NONE), null).isEmpty());
+    }
+
+    @Test
+    public void aggregate_matchesBoundWorkoutTypesForEveryMask() throws Exception {
+        for(int mask = WorkoutTypeFilter.NONE; mask <= WorkoutTypeFilter.ALL; mask++){
+            long expectedDistance = 0;
+            Cursor sessions = database.rawQuery("SELECT " + WorkoutSessionContentProvider.Contract.DISTANCE
+                    + ", " + WorkoutSessionContentProvider.Contract.WORKOUT_TYPE + " FROM "
+                    + WorkoutSessionContentProvider.SESSION_TABLE_NAME + " WHERE "
+                    + WorkoutSessionContentProvider.Contract.YEAR + " = ?", new String[] { YEAR });
+            try {
+                while(sessions.moveToNext()){
+                    if(WorkoutTypeFilter.includes(mask, sessions.getInt(1))){
+                        expectedDistance += sessions.getLong(0);
+                    }
+                }
+            }finally{
+                sessions.close();
+            }
+
+            Cursor aggregate = database.rawQuery(SessionQueries.parseAggregateQuery(false, false, mask),
+                    new String[] { YEAR });
+            try {
+                assertTrue(aggregate.moveToFirst());
+                assertEquals("Total distance for mask " + mask, expectedDistance, aggregate.getLong(
+                        aggregate.getColumnIndexOrThrow(WorkoutSessionContentProvider.Contract.AGGREGATE_TOTAL_DISTANCE)));
+            }finally{
+                aggregate.close();
+            }
+        }
+    }
+
+    @Test
+    public void selection_usesWorkoutTypeIndexForEveryMask() throws Exception {
+        for(int mask = WorkoutTypeFilter.NONE + 1; mask <= WorkoutTypeFilter.ALL; mask++){
+            String plan = explain("SELECT _id FROM " + WorkoutSessionContentProvider.SESSION_TABLE_NAME
+                    + " WHERE " + WorkoutTypeFilter.getSelection(mask));
+            assertTrue("Plan for mask " + mask + ": " + plan,
+                    plan.contains(WorkoutSessionDatabase.WORKOUT_TYPE_INDEX_NAME));
+
+            String summaryPlan = explain(SessionQueries.parseQueryMaxTotalByMonthWithSessionType(
+                    WorkoutSessionContentProvider.Contract.DISTANCE, mask).replace("?", YEAR));
+            assertTrue("Summary plan for mask " + mask + ": " + summaryPlan,
+                    summaryPlan.contains(WorkoutSessionDatabase.WORKOUT_TYPE_INDEX_NAME));
+        }
+    }
+
+    private List<Long> queryIds(String selection, String[] selectionArgs){
+        List<Long> ids = new ArrayList<>();
+        Cursor cursor = database.query(WorkoutSessionContentProvider.SESSION_TABLE_NAME,
+                new String[] { WorkoutSessionContentProvider.Contract._ID }, selection, selectionArgs,
+                null, null, WorkoutSessionContentProvider.Contract._ID);
+        try {
+            while(cursor.moveToNext()){
+                ids.add(cursor.getLong(0));
+            }
+        }finally{
+            cursor.close();
+        }
+        return ids;
+    }
+
+    /**
+     * @return  Details of each step of the query plan, joined together
+     */
+    private String explain(String query){
+        StringBuilder plan = new StringBuilder();
+        Cursor cursor = database.rawQuery("EXPLAIN QUERY PLAN " + query, null);
+        try {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while(cursor.moveToNext()){
+                plan.append(cursor.getString(detail)).append("; ");
+            }
+        }finally{
+            cursor.close();
+        }
+        return plan.toString();
+    }
+}
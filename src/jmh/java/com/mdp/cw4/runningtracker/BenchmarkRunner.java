@@ -0,0 +1,42 @@
+package com.mdp.cw4.runningtracker;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * <h1>Benchmark Runner</h1>
+ * Runs the benchmarks and writes the results as JSON, by default to
+ * build/reports/jmh/results.json, so that the results of two builds can be diffed or compared with
+ * a JMH visualiser. Any of the usual JMH command line options can be passed, for example a regular
+ * expression to select benchmarks, "-p numberOfPoints=1000" to restrict a parameter, or
+ * "-rff other.json" to write the results elsewhere
+ */
+public class BenchmarkRunner {
+
+    private static final String DEFAULT_RESULTS_FILE = "build/reports/jmh/results.json";
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+
+        String resultsFile = commandLineOptions.getResult().orElse(DEFAULT_RESULTS_FILE);
+        File resultsDirectory = new File(resultsFile).getAbsoluteFile().getParentFile();
+        if(resultsDirectory != null && !resultsDirectory.exists() && !resultsDirectory.mkdirs()){
+            throw new RunnerException("Unable to create " + resultsDirectory);
+        }
+
+        Options options = new OptionsBuilder()
+                .parent(commandLineOptions)
+                .resultFormat(commandLineOptions.getResultFormat().orElse(ResultFormatType.JSON))
+                .result(resultsFile)
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,69 @@
+package com.mdp.cw4.runningtracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>Coordinate Benchmark</h1>
+ * Measures encoding a recorded route into the semicolon separated format stored in the database,
+ * and decoding it again both with CoordinateScanner and by splitting the string and parsing each
+ * part, as ViewWorkoutSession used to
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CoordinateBenchmark {
+
+    @Param({ "1000", "10000", "100000", "1000000" })
+    public int numberOfPoints;
+
+    private List<Double> recordedLatitudes;
+    private String encodedLatitudes;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        double[] latitudes = SyntheticRoutes.generate(numberOfPoints, 42)[0];
+        recordedLatitudes = new ArrayList<>(numberOfPoints);
+        for(double latitude : latitudes){
+            recordedLatitudes.add(latitude);
+        }
+        encodedLatitudes = CoordinateScanner.encode(recordedLatitudes);
+    }
+
+    @Benchmark
+    public String encode(){
+        return CoordinateScanner.encode(recordedLatitudes);
+    }
+
+    @Benchmark
+    public double[] decode(){
+        return CoordinateScanner.decode(encodedLatitudes);
+    }
+
+    @Benchmark
+    public double[] splitAndParse(){
+        String[] parts = encodedLatitudes.split(";");
+        double[] coordinates = new double[parts.length];
+        for(int i = 0; i < parts.length; i++){
+            coordinates[i] = Double.parseDouble(parts[i]);
+        }
+        return coordinates;
+    }
+}
@@ -0,0 +1,53 @@
+package com.mdp.cw4.runningtracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>Route Distance Benchmark</h1>
+ * Measures accumulating the distance along synthetic routes, both rounded per step as recorded by
+ * WorkoutSessionService and as the cumulative distances used to position points along a route
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RouteDistanceBenchmark {
+
+    @Param({ "1000", "10000", "100000", "1000000" })
+    public int numberOfPoints;
+
+    private double[] latitudes;
+    private double[] longitudes;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        double[][] route = SyntheticRoutes.generate(numberOfPoints, 42);
+        latitudes = route[0];
+        longitudes = route[1];
+    }
+
+    @Benchmark
+    public int accumulate(){
+        return RouteDistance.accumulate(latitudes, longitudes);
+    }
+
+    @Benchmark
+    public double[] cumulativeDistances(){
+        return RouteDistance.cumulativeDistances(latitudes, longitudes);
+    }
+}
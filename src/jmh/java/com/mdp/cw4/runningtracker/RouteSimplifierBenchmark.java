@@ -0,0 +1,77 @@
+package com.mdp.cw4.runningtracker;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>Route Simplifier Benchmark</h1>
+ * Measures how long it takes to prepare the levels of detail for a route, and reports how many
+ * vertices remain at typical zoom levels compared with the full route
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RouteSimplifierBenchmark {
+
+    @Param({ "10000", "100000", "1000000" })
+    public int numberOfPoints;
+
+    private double[] latitudes;
+    private double[] longitudes;
+    private double[] significance;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        double[][] route = SyntheticRoutes.generate(numberOfPoints, 42);
+        latitudes = route[0];
+        longitudes = route[1];
+        significance = RouteSimplifier.calculateSignificance(latitudes, longitudes);
+    }
+
+    @Benchmark
+    public double[] calculateSignificance(){
+        return RouteSimplifier.calculateSignificance(latitudes, longitudes);
+    }
+
+    @Benchmark
+    public int[] simplifyForSingleTolerance(){
+        return RouteSimplifier.simplify(significance, 5.0);
+    }
+
+    /**
+     * Reports the number of vertices kept at different tolerances as secondary results. The
+     * tolerances roughly correspond to one pixel at zoom levels 12, 15 and 18
+     */
+    @Benchmark
+    public void vertexReduction(VertexCounts vertexCounts){
+        vertexCounts.total = significance.length;
+        vertexCounts.zoom12 = RouteSimplifier.countPoints(significance, 23.0);
+        vertexCounts.zoom15 = RouteSimplifier.countPoints(significance, 2.9);
+        vertexCounts.zoom18 = RouteSimplifier.countPoints(significance, 0.36);
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class VertexCounts {
+        public long total;
+        public long zoom12;
+        public long zoom15;
+        public long zoom18;
+    }
+}
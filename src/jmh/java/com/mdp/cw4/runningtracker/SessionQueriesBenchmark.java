@@ -0,0 +1,48 @@
+package com.mdp.cw4.runningtracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>Session Queries Benchmark</h1>
+ * Measures building the SQL for the provider's summary URIs, which happens on every query. The
+ * workout type mask is that of the types selected in the Statistics filter, with -1 for no filter
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SessionQueriesBenchmark {
+
+    @Param({ "-1", "1", "7" })
+    public int workoutTypeMask;
+
+    @Benchmark
+    public String maxTotalByMonth(){
+        return SessionQueries.parseQueryMaxTotalByMonthWithSessionType(
+                WorkoutSessionContentProvider.Contract.DISTANCE, workoutTypeMask);
+    }
+
+    @Benchmark
+    public String maxTotalForYear(){
+        return SessionQueries.parseQueryMaxTotalForYearWithSessionType(
+                WorkoutSessionContentProvider.Contract.DURATION, workoutTypeMask);
+    }
+
+    @Benchmark
+    public String sessionWhereClause(){
+        return SessionQueries.parseSessionWhereClause(workoutTypeMask);
+    }
+}
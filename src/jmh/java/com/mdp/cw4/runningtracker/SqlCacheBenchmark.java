@@ -0,0 +1,76 @@
+package com.mdp.cw4.runningtracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>SQL Cache Benchmark</h1>
+ * Measures getting the SQL for one refresh of the statistics screen, which queries the monthly
+ * totals, the maximum monthly total and the day and month aggregates, either by building it each
+ * time or through SqlCache as the provider does. The workout type mask is that of the types
+ * selected in the Statistics filter
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SqlCacheBenchmark {
+
+    @Param({ "1", "7" })
+    public int workoutTypeMask;
+
+    private final SqlCache cache = new SqlCache(WorkoutSessionDatabase.STATEMENT_CACHE_SIZE);
+
+    @Benchmark
+    public void refreshBuildingQueries(Blackhole blackhole){
+        blackhole.consume(SessionQueries.parseQueryMaxTotalByMonthWithSessionType(
+                WorkoutSessionContentProvider.Contract.DISTANCE, workoutTypeMask));
+        blackhole.consume(SessionQueries.parseQueryMaxTotalForYearWithSessionType(
+                WorkoutSessionContentProvider.Contract.DISTANCE, workoutTypeMask));
+        blackhole.consume(SessionQueries.parseAggregateQuery(true, false, workoutTypeMask));
+        blackhole.consume(SessionQueries.parseAggregateQuery(true, true, workoutTypeMask));
+    }
+
+    @Benchmark
+    public void refreshThroughCache(Blackhole blackhole){
+        blackhole.consume(getCached(3, 0));
+        blackhole.consume(getCached(6, 0));
+        blackhole.consume(getCached(10, 1));
+        blackhole.consume(getCached(10, 3));
+    }
+
+    private String getCached(int uriCode, int flags){
+        long key = SqlCache.getKey(uriCode, workoutTypeMask, flags);
+        String sql = cache.get(key);
+        if(sql == null){
+            switch (uriCode) {
+                case 3:
+                    sql = SessionQueries.parseQueryMaxTotalByMonthWithSessionType(
+                            WorkoutSessionContentProvider.Contract.DISTANCE, workoutTypeMask);
+                    break;
+                case 6:
+                    sql = SessionQueries.parseQueryMaxTotalForYearWithSessionType(
+                            WorkoutSessionContentProvider.Contract.DISTANCE, workoutTypeMask);
+                    break;
+                default:
+                    sql = SessionQueries.parseAggregateQuery((flags & 1) != 0, (flags & 2) != 0,
+                            workoutTypeMask);
+            }
+            cache.put(key, sql);
+        }
+        return sql;
+    }
+}
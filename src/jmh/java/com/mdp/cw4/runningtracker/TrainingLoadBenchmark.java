@@ -0,0 +1,103 @@
+package com.mdp.cw4.runningtracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>Training Load Benchmark</h1>
+ * Measures the work done on the training load over ten years of daily data. Calculating every
+ * day from the sessions is what showing the curves would cost without the training load table,
+ * while the other benchmarks are the recalculation TrainingLoad makes after a session is stored
+ * today, or one from a year ago is deleted
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TrainingLoadBenchmark {
+
+    private static final int NUMBER_OF_DAYS = 3650;
+    private static final int DAYS_IN_YEAR = 365;
+
+    private int[] sessionDays;
+    private long[] sessionDurations;
+
+    private double[] loads;
+    private double[] fatigues;
+    private double[] fitnesses;
+
+    @Setup
+    public void setUp(){
+        // Around one session on most days, sometimes two
+        Random random = new Random(42);
+        int numberOfSessions = NUMBER_OF_DAYS * 6 / 5;
+        sessionDays = new int[numberOfSessions];
+        sessionDurations = new long[numberOfSessions];
+        for(int i = 0; i < numberOfSessions; i++){
+            sessionDays[i] = random.nextInt(NUMBER_OF_DAYS);
+            sessionDurations[i] = (20 + random.nextInt(90)) * 60000L;
+        }
+
+        loads = new double[NUMBER_OF_DAYS];
+        fatigues = new double[NUMBER_OF_DAYS];
+        fitnesses = new double[NUMBER_OF_DAYS];
+        for(int i = 0; i < numberOfSessions; i++){
+            loads[sessionDays[i]] += TrainingLoadCalculator.getSessionLoad(sessionDurations[i]);
+        }
+        TrainingLoadCalculator.calculate(loads, fatigues, fitnesses, NUMBER_OF_DAYS, 0, 0);
+    }
+
+    @Benchmark
+    public void calculateFromSessions(Blackhole blackhole){
+        double[] dailyLoads = new double[NUMBER_OF_DAYS];
+        for(int i = 0; i < sessionDays.length; i++){
+            dailyLoads[sessionDays[i]] += TrainingLoadCalculator.getSessionLoad(sessionDurations[i]);
+        }
+
+        double[] dailyFatigues = new double[NUMBER_OF_DAYS];
+        double[] dailyFitnesses = new double[NUMBER_OF_DAYS];
+        TrainingLoadCalculator.calculate(dailyLoads, dailyFatigues, dailyFitnesses, NUMBER_OF_DAYS, 0, 0);
+        blackhole.consume(dailyFatigues);
+        blackhole.consume(dailyFitnesses);
+    }
+
+    @Benchmark
+    public void recalculateFromToday(Blackhole blackhole){
+        blackhole.consume(recalculateFrom(NUMBER_OF_DAYS - 1));
+    }
+
+    @Benchmark
+    public void recalculateFromYearAgo(Blackhole blackhole){
+        blackhole.consume(recalculateFrom(NUMBER_OF_DAYS - DAYS_IN_YEAR));
+    }
+
+    /**
+     * Works out the days from the changed day onwards, reading and writing the same number of
+     * values as TrainingLoad does through the table
+     */
+    private double[] recalculateFrom(int changedDay){
+        int numberOfDays = NUMBER_OF_DAYS - changedDay;
+        double[] changedLoads = new double[numberOfDays];
+        System.arraycopy(loads, changedDay, changedLoads, 0, numberOfDays);
+
+        double[] changedFatigues = new double[numberOfDays];
+        double[] changedFitnesses = new double[numberOfDays];
+        TrainingLoadCalculator.calculate(changedLoads, changedFatigues, changedFitnesses, numberOfDays,
+                fatigues[changedDay - 1], fitnesses[changedDay - 1]);
+        return changedFatigues;
+    }
+}
@@ -0,0 +1,115 @@
+package com.mdp.cw4.runningtracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>Value Formatter Benchmark</h1>
+ * Compares formatting a row of session values using String.format, as ValueFormatter used to, with
+ * the current String returning methods and with appending into a reused StringBuilder. Run with
+ * the gc profiler (-prof gc) to see the allocation rate of each. The setup checks that all three
+ * produce the same text for every value used
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ValueFormatterBenchmark {
+
+    private static final int NUMBER_OF_VALUES = 1024;
+
+    private final long[] durations = new long[NUMBER_OF_VALUES];
+    private final int[] distances = new int[NUMBER_OF_VALUES];
+    private final double[] speeds = new double[NUMBER_OF_VALUES];
+    private final StringBuilder builder = new StringBuilder(32);
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        Random random = new Random(42);
+        for(int i = 0; i < NUMBER_OF_VALUES; i++){
+            durations[i] = random.nextInt(4 * 3600000);
+            distances[i] = random.nextInt(50000);
+            speeds[i] = random.nextDouble() * 10;
+
+            builder.setLength(0);
+            ValueFormatter.appendDuration(builder, durations[i]);
+            ValueFormatter.appendDistance(builder, distances[i]);
+            ValueFormatter.appendAverageSpeed(builder, speeds[i]);
+            String expected = formatDurationWithStringFormat(durations[i])
+                    + formatDistanceWithStringFormat(distances[i])
+                    + formatAverageSpeedWithStringFormat(speeds[i]);
+            String formatted = ValueFormatter.formatDuration(durations[i])
+                    + ValueFormatter.formatDistance(distances[i])
+                    + ValueFormatter.formatAverageSpeed(speeds[i]);
+
+            if(!expected.contentEquals(builder) || !expected.equals(formatted)){
+                throw new IllegalStateException("Formatted values differ: " + expected + " "
+                        + builder + " " + formatted);
+            }
+        }
+    }
+
+    @Benchmark
+    public void stringFormat(Blackhole blackhole){
+        int i = nextIndex();
+        blackhole.consume(formatDurationWithStringFormat(durations[i]));
+        blackhole.consume(formatDistanceWithStringFormat(distances[i]));
+        blackhole.consume(formatAverageSpeedWithStringFormat(speeds[i]));
+    }
+
+    @Benchmark
+    public void formatToString(Blackhole blackhole){
+        int i = nextIndex();
+        blackhole.consume(ValueFormatter.formatDuration(durations[i]));
+        blackhole.consume(ValueFormatter.formatDistance(distances[i]));
+        blackhole.consume(ValueFormatter.formatAverageSpeed(speeds[i]));
+    }
+
+    @Benchmark
+    public StringBuilder appendToReusedBuilder(){
+        int i = nextIndex();
+        builder.setLength(0);
+        ValueFormatter.appendDuration(builder, durations[i]);
+        ValueFormatter.appendDistance(builder, distances[i]);
+        return ValueFormatter.appendAverageSpeed(builder, speeds[i]);
+    }
+
+    private int nextIndex(){
+        index = (index + 1) & (NUMBER_OF_VALUES - 1);
+        return index;
+    }
+
+    private static String formatDistanceWithStringFormat(int distanceMetres){
+        return String.format(Locale.ENGLISH, "%.2f", distanceMetres / 1000f) + " km";
+    }
+
+    private static String formatAverageSpeedWithStringFormat(double metresPerSecond){
+        return String.format(Locale.ENGLISH, "%.2f", metresPerSecond) + " m/s";
+    }
+
+    private static String formatDurationWithStringFormat(long durationMilliseconds){
+        int hours = (int) (durationMilliseconds / 3600000);
+        int minutes = (int) (durationMilliseconds / 60000 % 60);
+        int seconds = (int) (durationMilliseconds / 1000 % 60);
+        return String.format(Locale.ENGLISH, "%02d", hours) + ":"
+                + String.format(Locale.ENGLISH, "%02d", minutes) + ":"
+                + String.format(Locale.ENGLISH, "%02d", seconds);
+    }
+}
@@ -0,0 +1,111 @@
+package com.mdp.cw4.runningtracker;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+
+/**
+ * <h1>Analysed Session</h1>
+ * A stored session loaded for the analyses made when it is saved, such as finding its best efforts
+ * and building its pace sketch, so that its route is read and measured only once for all of them.
+ * Routes can be very long, so sessions should only be loaded away from the UI thread
+ */
+public class AnalysedSession {
+
+    private static final double MILLISECONDS_PER_SECOND = 1000.0;
+
+    private final ContentValues sessionValues;
+    private final WorkoutSessionRoute route;
+    private final double[] cumulativeDistances;
+    private final double[] times;
+
+    private AnalysedSession(ContentValues sessionValues, WorkoutSessionRoute route, double[] cumulativeDistances,
+                            double[] times){
+        this.sessionValues = sessionValues;
+        this.route = route;
+        this.cumulativeDistances = cumulativeDistances;
+        this.times = times;
+    }
+
+    /**
+     * Reads a stored session and measures its route. Sessions recorded before the time of each
+     * point was stored have their points spread evenly over their duration
+     * @param contentResolver   Content resolver used to query the WorkoutSessionContentProvider
+     * @param sessionId         id of the session
+     * @return                  The session, or null if it does not exist or has no usable route
+     */
+    public static AnalysedSession load(ContentResolver contentResolver, long sessionId){
+        String[] columns = new String[]{
+                WorkoutSessionContentProvider.Contract.WORKOUT_TYPE,
+                WorkoutSessionContentProvider.Contract.DURATION,
+                WorkoutSessionContentProvider.Contract.DATE,
+                WorkoutSessionContentProvider.Contract.MONTH,
+                WorkoutSessionContentProvider.Contract.YEAR
+        };
+
+        Uri uri = ContentUris.withAppendedId(WorkoutSessionContentProvider.Contract.SESSION_URI, sessionId);
+        Cursor cursor = contentResolver.query(uri, columns, null, null, null);
+        if(cursor == null){
+            return null;
+        }
+
+        ContentValues sessionValues = null;
+        long durationMilliseconds = 0;
+        if(cursor.moveToNext()){
+            sessionValues = new ContentValues();
+            sessionValues.put(WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID, sessionId);
+            sessionValues.put(WorkoutSessionContentProvider.Contract.WORKOUT_TYPE, cursor.getInt(0));
+            sessionValues.put(WorkoutSessionContentProvider.Contract.DATE, cursor.getInt(2));
+            sessionValues.put(WorkoutSessionContentProvider.Contract.MONTH, cursor.getInt(3));
+            sessionValues.put(WorkoutSessionContentProvider.Contract.YEAR, cursor.getInt(4));
+            durationMilliseconds = cursor.getLong(1);
+        }
+        cursor.close();
+
+        WorkoutSessionRoute route = WorkoutSessionRoute.load(contentResolver, sessionId);
+        if(sessionValues == null || route == null){
+            return null;
+        }
+
+        double[] times = route.getTimes();
+        if(times == null){
+            times = BestEffortCalculator.interpolateTimes(route.getNumberOfPoints(),
+                    durationMilliseconds / MILLISECONDS_PER_SECOND);
+        }
+
+        return new AnalysedSession(sessionValues, route,
+                RouteDistance.cumulativeDistances(route.getLatitudes(), route.getLongitudes()), times);
+    }
+
+    /**
+     * @return  The session's id, workout type and date, under the column names shared by the
+     *          tables holding the results of analyses. This is a copy which can be added to
+     */
+    public ContentValues getSessionValues(){
+        return new ContentValues(sessionValues);
+    }
+
+    public double[] getLatitudes(){
+        return route.getLatitudes();
+    }
+
+    public double[] getLongitudes(){
+        return route.getLongitudes();
+    }
+
+    /**
+     * @return  Distance in metres along the route to each point
+     */
+    public double[] getCumulativeDistances(){
+        return cumulativeDistances;
+    }
+
+    /**
+     * @return  Time in seconds since the start of the session at each point
+     */
+    public double[] getTimes(){
+        return times;
+    }
+}
@@ -0,0 +1,52 @@
+package com.mdp.cw4.runningtracker;
+
+/**
+ * <h1>Best Effort</h1>
+ * Efforts for which a personal record is kept. An effort is either a fixed distance, where the
+ * record is the shortest time taken to cover it, or a fixed time, where the record is the longest
+ * distance covered within it. Either way the record is the effort with the highest average speed
+ */
+public enum BestEffort { ONE_KILOMETRE(0, 1000, 0), FIVE_KILOMETRES(1, 5000, 0),
+    TEN_KILOMETRES(2, 10000, 0), TWENTY_MINUTES(3, 0, 1200);
+
+    private final int effortID;
+    private final double distanceMetres;
+    private final double durationSeconds;
+
+    BestEffort(int effortID, double distanceMetres, double durationSeconds){
+        this.effortID = effortID;
+        this.distanceMetres = distanceMetres;
+        this.durationSeconds = durationSeconds;
+    }
+
+    public int getEffortID(){
+        return effortID;
+    }
+
+    /**
+     * @return  Whether the effort is a fixed distance rather than a fixed time
+     */
+    public boolean isDistance(){
+        return distanceMetres > 0;
+    }
+
+    public double getDistanceMetres(){
+        return distanceMetres;
+    }
+
+    public double getDurationSeconds(){
+        return durationSeconds;
+    }
+
+    /**
+     * @return  The effort with the id, or null if there is none
+     */
+    public static BestEffort getEffort(int effortID){
+        for(BestEffort effort : values()){
+            if(effort.effortID == effortID){
+                return effort;
+            }
+        }
+        return null;
+    }
+}
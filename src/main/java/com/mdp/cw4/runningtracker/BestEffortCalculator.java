@@ -0,0 +1,201 @@
+package com.mdp.cw4.runningtracker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <h1>Best Effort Calculator</h1>
+ * Finds the best effort of a session for each BestEffort, for example its fastest 5 km, from the
+ * distance along the route and the time at each point.
+ * <p>
+ * Between points the route is taken to be covered at a steady speed, so efforts can start and end
+ * part way between two fixes. The best window of a given length always starts or ends at a
+ * point, so each effort takes two sweeps over the route, one with the window ending at each point
+ * and one with it starting at each point. In each sweep the other end of the window only ever
+ * moves forwards, so the whole route is scanned in linear time
+ */
+public class BestEffortCalculator {
+
+    /**
+     * @param cumulativeDistances   Distance in metres along the route to each point, which never
+     *                              decreases
+     * @param times                 Time in seconds since the start of the session at each point,
+     *                              which never decreases and is the same length as the distances
+     * @return                      The best effort for each BestEffort the session was long
+     *                              enough to contain
+     */
+    public static List<Effort> calculate(double[] cumulativeDistances, double[] times){
+        List<Effort> efforts = new ArrayList<>();
+        if(cumulativeDistances.length < 2 || cumulativeDistances.length != times.length){
+            return efforts;
+        }
+
+        for(BestEffort bestEffort : BestEffort.values()){
+            Effort effort;
+            if(bestEffort.isDistance()){
+                // Least time to cover the distance
+                Window window = findBestWindow(cumulativeDistances, times,
+                        bestEffort.getDistanceMetres(), true);
+                effort = window == null ? null : new Effort(bestEffort, window.startY,
+                        window.change, bestEffort.getDistanceMetres());
+            }else{
+                // Most distance covered in the time
+                Window window = findBestWindow(times, cumulativeDistances,
+                        bestEffort.getDurationSeconds(), false);
+                effort = window == null ? null : new Effort(bestEffort, window.startX,
+                        bestEffort.getDurationSeconds(), window.change);
+            }
+
+            if(effort != null){
+                efforts.add(effort);
+            }
+        }
+
+        return efforts;
+    }
+
+    /**
+     * Spreads the points of a route evenly over the duration of the session, for sessions recorded
+     * before the time of each point was stored
+     * @param numberOfPoints    Number of points in the route
+     * @param durationSeconds   Duration of the session
+     * @return                  Time in seconds since the start of the session at each point
+     */
+    public static double[] interpolateTimes(int numberOfPoints, double durationSeconds){
+        double[] times = new double[numberOfPoints];
+        for(int i = 1; i < numberOfPoints; i++){
+            times[i] = durationSeconds * i / (numberOfPoints - 1);
+        }
+        return times;
+    }
+
+    /**
+     * Finds the window covering exactly the given length of x with the smallest or largest change
+     * in y. Both x and y must never decrease
+     * @return  The best window, or null if x does not cover the length or y never changes
+     */
+    private static Window findBestWindow(double[] x, double[] y, double length, boolean minimise){
+        int numberOfPoints = x.length;
+        Window best = null;
+
+        // Windows ending at a point
+        int start = 0;
+        for(int end = 1; end < numberOfPoints; end++){
+            double windowStart = x[end] - length;
+            if(windowStart < x[0]){
+                continue;
+            }
+
+            while(x[start + 1] <= windowStart){
+                start++;
+            }
+
+            double startY = interpolate(x, y, start, windowStart);
+            best = choose(best, windowStart, startY, y[end] - startY, minimise);
+        }
+
+        // Windows starting at a point
+        int end = 1;
+        for(start = 0; start < numberOfPoints - 1; start++){
+            double windowEnd = x[start] + length;
+            end = Math.max(end, start + 1);
+            while(end < numberOfPoints && x[end] < windowEnd){
+                end++;
+            }
+
+            if(end == numberOfPoints){
+                break;
+            }
+
+            double endY = interpolate(x, y, end - 1, windowEnd);
+            best = choose(best, x[start], y[start], endY - y[start], minimise);
+        }
+
+        return best;
+    }
+
+    /**
+     * @return  The value of y at position x along the segment starting at the point
+     */
+    private static double interpolate(double[] x, double[] y, int point, double position){
+        double segmentLength = x[point + 1] - x[point];
+        if(segmentLength <= 0){
+            return y[point];
+        }
+        return y[point] + (position - x[point]) / segmentLength * (y[point + 1] - y[point]);
+    }
+
+    private static Window choose(Window best, double startX, double startY, double change, boolean minimise){
+        // A window over which nothing changes, such as a distance covered in no time, is an
+        // artefact of the recording rather than an effort
+        if(change <= 0){
+            return best;
+        }
+
+        if(best == null || (minimise ? change < best.change : change > best.change)){
+            return new Window(startX, startY, change);
+        }
+        return best;
+    }
+
+    private static class Window {
+        final double startX;
+        final double startY;
+        final double change;
+
+        Window(double startX, double startY, double change){
+            this.startX = startX;
+            this.startY = startY;
+            this.change = change;
+        }
+    }
+
+    /**
+     * <h1>Effort</h1>
+     * The best effort of a session for one BestEffort
+     */
+    public static class Effort {
+        private final BestEffort bestEffort;
+        private final double startSeconds;
+        private final double durationSeconds;
+        private final double distanceMetres;
+
+        public Effort(BestEffort bestEffort, double startSeconds, double durationSeconds,
+                      double distanceMetres){
+            this.bestEffort = bestEffort;
+            this.startSeconds = startSeconds;
+            this.durationSeconds = durationSeconds;
+            this.distanceMetres = distanceMetres;
+        }
+
+        /**
+         * @return  The BestEffort this is the best effort of, or null for an effort which is not
+         *          one, such as an effort over a Segment
+         */
+        public BestEffort getBestEffort(){
+            return bestEffort;
+        }
+
+        /**
+         * @return  Time since the start of the session at which the effort started
+         */
+        public double getStartSeconds(){
+            return startSeconds;
+        }
+
+        public double getDurationSeconds(){
+            return durationSeconds;
+        }
+
+        public double getDistanceMetres(){
+            return distanceMetres;
+        }
+
+        /**
+         * @return  Average speed over the effort in metres per second
+         */
+        public double getSpeed(){
+            return distanceMetres / durationSeconds;
+        }
+    }
+}
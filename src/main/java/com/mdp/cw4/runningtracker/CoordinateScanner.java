@@ -0,0 +1,220 @@
+package com.mdp.cw4.runningtracker;
+
+import java.util.List;
+
+/**
+ * <h1>Coordinate Scanner</h1>
+ * Decodes the semicolon separated coordinates stored for a workout session, for example
+ * "52.9387;52.9388;", directly into an array of doubles, and encodes recorded coordinates into
+ * that format.
+ * <p>
+ * Unlike splitting the string and parsing each part, the scanner works on the characters in place,
+ * so no intermediate Strings are created regardless of the length of the route. Numbers are
+ * assembled from their digits and scaled by an exact power of ten, which gives the same result as
+ * Double.parseDouble whenever the digits fit into 53 bits; anything else falls back to
+ * Double.parseDouble for that coordinate alone
+ */
+public class CoordinateScanner {
+
+    private static final char SEPARATOR = ';';
+
+    // Largest mantissa which can be represented exactly by a double
+    private static final long MAXIMUM_EXACT_MANTISSA = 1L << 53;
+
+    // Powers of ten which can be represented exactly by a double
+    private static final double[] EXACT_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    // Typical number of characters written for a coordinate, e.g. "-1.1955123456789;"
+    private static final int ESTIMATED_CHARACTERS_PER_COORDINATE = 18;
+
+    /**
+     * Converts the list of coordinates i.e. longitudes, to a string separated by a semi-colon
+     * ready for storing in the database
+     * @param coordinates   The coordinates to store
+     */
+    public static String encode(List<Double> coordinates){
+        StringBuilder stringBuilder = new StringBuilder(coordinates.size() * ESTIMATED_CHARACTERS_PER_COORDINATE);
+        for(int i = 0; i < coordinates.size(); i++){
+            stringBuilder.append(coordinates.get(i).doubleValue());
+            stringBuilder.append(SEPARATOR);
+        }
+
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Decodes all the coordinates in the string
+     * @param allCoordinates    Coordinates as stored in the database
+     * @return                  The coordinates, or null if there are none
+     */
+    public static double[] decode(String allCoordinates){
+        if(allCoordinates == null){
+            return null;
+        }
+
+        int numberOfCoordinates = countCoordinates(allCoordinates);
+        if(numberOfCoordinates == 0){
+            return null;
+        }
+
+        double[] coordinates = new double[numberOfCoordinates];
+        int length = allCoordinates.length();
+        int start = 0;
+        int coordinateIndex = 0;
+
+        for(int i = 0; i <= length; i++){
+            if(i == length || allCoordinates.charAt(i) == SEPARATOR){
+                if(i > start){
+                    coordinates[coordinateIndex++] = parseCoordinate(allCoordinates, start, i);
+                }
+                start = i + 1;
+            }
+        }
+
+        return coordinates;
+    }
+
+    /**
+     * Decodes only the first coordinate in the string, without scanning the rest of it
+     * @param allCoordinates    Coordinates as stored in the database
+     * @return                  The first coordinate, or Double.NaN if there are none
+     */
+    public static double decodeFirst(String allCoordinates){
+        if(allCoordinates == null){
+            return Double.NaN;
+        }
+
+        int start = 0;
+        int length = allCoordinates.length();
+        for(int i = 0; i <= length; i++){
+            if(i == length || allCoordinates.charAt(i) == SEPARATOR){
+                if(i > start){
+                    return parseCoordinate(allCoordinates, start, i);
+                }
+                start = i + 1;
+            }
+        }
+
+        return Double.NaN;
+    }
+
+    /**
+     * Counts the number of non empty coordinates in the string
+     */
+    public static int countCoordinates(String allCoordinates){
+        int numberOfCoordinates = 0;
+        int length = allCoordinates.length();
+        boolean inCoordinate = false;
+
+        for(int i = 0; i < length; i++){
+            if(allCoordinates.charAt(i) == SEPARATOR){
+                if(inCoordinate){
+                    numberOfCoordinates++;
+                }
+                inCoordinate = false;
+            }else{
+                inCoordinate = true;
+            }
+        }
+
+        if(inCoordinate){
+            numberOfCoordinates++;
+        }
+
+        return numberOfCoordinates;
+    }
+
+    /**
+     * Parses the number found between start (inclusive) and end (exclusive). The format accepted by
+     * the fast path is that produced by Double.toString, i.e. an optional minus sign, digits, an
+     * optional fraction and an optional exponent
+     */
+    static double parseCoordinate(CharSequence characters, int start, int end){
+        int i = start;
+        boolean negative = false;
+
+        if(characters.charAt(i) == '-'){
+            negative = true;
+            i++;
+        }
+
+        long mantissa = 0;
+        int decimalPlaces = 0;
+        int numberOfDigits = 0;
+        boolean inFraction = false;
+
+        for(; i < end; i++){
+            char character = characters.charAt(i);
+
+            if(character >= '0' && character <= '9'){
+                if(mantissa >= (MAXIMUM_EXACT_MANTISSA - 9) / 10){
+                    return parseSlowly(characters, start, end);
+                }
+                mantissa = mantissa * 10 + (character - '0');
+                numberOfDigits++;
+                if(inFraction){
+                    decimalPlaces++;
+                }
+            }else if(character == '.' && !inFraction){
+                inFraction = true;
+            }else{
+                break;
+            }
+        }
+
+        if(numberOfDigits == 0){
+            return parseSlowly(characters, start, end);
+        }
+
+        int exponent = 0;
+        if(i < end){
+            char character = characters.charAt(i);
+            if(character != 'E' && character != 'e'){
+                return parseSlowly(characters, start, end);
+            }
+            i++;
+
+            boolean negativeExponent = false;
+            if(i < end && characters.charAt(i) == '-'){
+                negativeExponent = true;
+                i++;
+            }
+
+            if(i == end){
+                return parseSlowly(characters, start, end);
+            }
+
+            for(; i < end; i++){
+                character = characters.charAt(i);
+                if(character < '0' || character > '9' || exponent > 1000){
+                    return parseSlowly(characters, start, end);
+                }
+                exponent = exponent * 10 + (character - '0');
+            }
+
+            if(negativeExponent){
+                exponent = -exponent;
+            }
+        }
+
+        // The value is mantissa * 10^(exponent - decimalPlaces). As both the mantissa and power of
+        // ten are exact, a single multiplication or division rounds correctly
+        int scale = exponent - decimalPlaces;
+        double value;
+        if(scale >= 0 && scale < EXACT_POWERS_OF_TEN.length){
+            value = mantissa * EXACT_POWERS_OF_TEN[scale];
+        }else if(scale < 0 && -scale < EXACT_POWERS_OF_TEN.length){
+            value = mantissa / EXACT_POWERS_OF_TEN[-scale];
+        }else{
+            return parseSlowly(characters, start, end);
+        }
+
+        return negative ? -value : value;
+    }
+
+    private static double parseSlowly(CharSequence characters, int start, int end){
+        return Double.parseDouble(characters.subSequence(start, end).toString());
+    }
+}
@@ -0,0 +1,140 @@
+package com.mdp.cw4.runningtracker;
+
+/**
+ * <h1>Ghost Racer</h1>
+ * Compares an ongoing session with a past session on the same route, the ghost, as if the two had
+ * started together. The ghost's distance along its route and the time it reached each point are
+ * copied once into arrays, after which each comparison is a binary search of one of them and an
+ * interpolation between two points, so can be made on every location update without allocating.
+ * <p>
+ * Distances are compared as distances covered rather than positions on the route, so the ghost is
+ * only meaningful on the same route. Times are seconds since the start of the session, not counting
+ * time paused, as recorded by WorkoutSessionService
+ */
+public class GhostRacer {
+
+    private final double[] distances;
+    private final double[] times;
+
+    private GhostRacer(double[] distances, double[] times){
+        this.distances = distances;
+        this.times = times;
+    }
+
+    /**
+     * @param cumulativeDistances   Distance in metres along the ghost's route to each point
+     * @param times                 Time in seconds since the start of the ghost's session at each
+     *                              point, must be the same length as the distances
+     * @return                      The ghost, or null if its route has fewer than two points
+     */
+    public static GhostRacer of(double[] cumulativeDistances, double[] times){
+        int numberOfPoints = Math.min(cumulativeDistances.length, times.length);
+        if(numberOfPoints < 2){
+            return null;
+        }
+
+        // Neither may decrease for the binary searches, which a clock adjusted while recording
+        // could otherwise make the times do
+        double[] ghostDistances = new double[numberOfPoints];
+        double[] ghostTimes = new double[numberOfPoints];
+        ghostDistances[0] = cumulativeDistances[0];
+        ghostTimes[0] = times[0];
+        for(int i = 1; i < numberOfPoints; i++){
+            ghostDistances[i] = Math.max(ghostDistances[i - 1], cumulativeDistances[i]);
+            ghostTimes[i] = Math.max(ghostTimes[i - 1], times[i]);
+        }
+
+        return new GhostRacer(ghostDistances, ghostTimes);
+    }
+
+    /**
+     * @return  The time in seconds at which the ghost first covered the distance, or Double.NaN if
+     *          it never did
+     */
+    public double getTimeAtDistance(double distanceMetres){
+        int last = distances.length - 1;
+        if(distanceMetres > distances[last]){
+            return Double.NaN;
+        }
+        if(distanceMetres <= distances[0]){
+            return times[0];
+        }
+
+        int point = findFirstAtLeast(distances, distanceMetres);
+        return interpolate(distances, times, point - 1, distanceMetres);
+    }
+
+    /**
+     * @return  The distance in metres the ghost had covered at the time, which is its whole distance
+     *          once it has finished
+     */
+    public double getDistanceAtTime(double seconds){
+        int last = times.length - 1;
+        if(seconds >= times[last]){
+            return distances[last];
+        }
+        if(seconds <= times[0]){
+            return distances[0];
+        }
+
+        int point = findFirstAtLeast(times, seconds);
+        return interpolate(times, distances, point - 1, seconds);
+    }
+
+    /**
+     * @param distanceMetres    Distance covered so far in the ongoing session
+     * @param seconds           Time so far in the ongoing session
+     * @return                  How many metres ahead of the ghost the session is, negative if behind
+     */
+    public double getMetresAhead(double distanceMetres, double seconds){
+        return distanceMetres - getDistanceAtTime(seconds);
+    }
+
+    /**
+     * @param distanceMetres    Distance covered so far in the ongoing session
+     * @param seconds           Time so far in the ongoing session
+     * @return                  How many seconds before the ghost the session covered its distance,
+     *                          negative if after, or Double.NaN once past the ghost's whole distance
+     */
+    public double getSecondsAhead(double distanceMetres, double seconds){
+        return getTimeAtDistance(distanceMetres) - seconds;
+    }
+
+    public double getTotalDistance(){
+        return distances[distances.length - 1];
+    }
+
+    public double getDurationSeconds(){
+        return times[times.length - 1];
+    }
+
+    /**
+     * @param values    Values which never decrease
+     * @param value     A value greater than the first and no greater than the last
+     * @return          Index of the first value at least the given value, which is never 0
+     */
+    private static int findFirstAtLeast(double[] values, double value){
+        int low = 1;
+        int high = values.length - 1;
+        while(low < high){
+            int middle = (low + high) >>> 1;
+            if(values[middle] < value){
+                low = middle + 1;
+            }else{
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return  The value of y at position x along the step starting at the point
+     */
+    private static double interpolate(double[] x, double[] y, int point, double position){
+        double stepLength = x[point + 1] - x[point];
+        if(stepLength <= 0){
+            return y[point + 1];
+        }
+        return y[point] + (position - x[point]) / stepLength * (y[point + 1] - y[point]);
+    }
+}
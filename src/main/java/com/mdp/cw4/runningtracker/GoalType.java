@@ -0,0 +1,58 @@
+package com.mdp.cw4.runningtracker;
+
+/**
+ * <h1>Goal Type</h1>
+ * Kinds of goal users can set. These are:
+ * <ul>
+ *     <li>Weekly distance, where the target is the distance in metres to cover each week, starting
+ *     on Monday</li>
+ *     <li>Daily streak, where the target is the number of days in a row with at least one
+ *     session</li>
+ * </ul>
+ * Days are numbered as by TrainingLoadCalculator.getDay
+ */
+public enum GoalType { WEEKLY_DISTANCE(0), DAILY_STREAK(1);
+
+    private static final int DAYS_IN_WEEK = 7;
+    // 1 January 1970 was a Thursday, so the first Monday was day 4
+    private static final int FIRST_MONDAY = 4;
+
+    private final int goalTypeID;
+
+    GoalType(int goalTypeID){
+        this.goalTypeID = goalTypeID;
+    }
+
+    public int getGoalTypeID(){
+        return goalTypeID;
+    }
+
+    /**
+     * @return  The goal type with the id, or null if there is none
+     */
+    public static GoalType getGoalType(int goalTypeID){
+        for(GoalType goalType : values()){
+            if(goalType.goalTypeID == goalTypeID){
+                return goalType;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return  The Monday of the week containing the day
+     */
+    public static int getWeekStart(int day){
+        return day - ((day - FIRST_MONDAY) % DAYS_IN_WEEK + DAYS_IN_WEEK) % DAYS_IN_WEEK;
+    }
+
+    /**
+     * A streak is still going if its last day was today, or yesterday as there is still time to
+     * add to it today
+     * @param lastDay   Last day of the streak
+     * @param today     Today
+     */
+    public static boolean isStreakCurrent(int lastDay, int today){
+        return lastDay >= today - 1;
+    }
+}
@@ -0,0 +1,338 @@
+package com.mdp.cw4.runningtracker;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.ACTIVITY_DAYS_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.GOALS_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.SESSION_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.STREAKS_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.Contract.*;
+
+/**
+ * <h1>Goals</h1>
+ * Keeps what is needed to work out the progress towards each goal, see GoalType, without reading
+ * the sessions themselves. This is:
+ * <ul>
+ *     <li>The number of sessions and the distance covered on each day with a session</li>
+ *     <li>Each streak of days in a row with a session, as its first and last day</li>
+ * </ul>
+ * Storing a session changes one day and at most merges the streaks either side of it, while
+ * deleting the last session of a day at most splits the streak it was part of, so both are looked
+ * up by index whatever the number of sessions. The progress of every goal is then found from at
+ * most a week of days and a single streak.
+ * <p>
+ * The methods work directly on the database and are called by WorkoutSessionContentProvider
+ */
+class Goals {
+
+    static final String[] COLUMNS = { _ID, GOAL_TYPE, GOAL_TARGET, GOAL_PROGRESS, GOAL_PERIOD_START,
+            GOAL_ACHIEVED, GOAL_LONGEST_STREAK };
+
+    private static final String[] SESSION_COLUMNS = { YEAR, MONTH, DATE, DISTANCE };
+
+    /**
+     * Adds a newly stored session to its day, extending or joining streaks if it is the day's
+     * first session
+     * @param values    The values the session was stored with
+     */
+    static void addSession(SQLiteDatabase database, ContentValues values){
+        Integer year = values.getAsInteger(YEAR);
+        Integer month = values.getAsInteger(MONTH);
+        Integer date = values.getAsInteger(DATE);
+        Long distance = values.getAsLong(DISTANCE);
+        if(year == null || month == null || date == null){
+            return;
+        }
+
+        int day = TrainingLoadCalculator.getDay(year, month, date);
+
+        database.beginTransaction();
+        try {
+            if(addToDay(database, day, 1, distance != null ? distance : 0) == 0){
+                addStreakDay(database, day);
+            }
+            database.setTransactionSuccessful();
+        }finally{
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Takes the sessions matching a selection away from their days, ending or splitting streaks on
+     * days left without a session. This must be called before the sessions are deleted
+     */
+    static void removeSessions(SQLiteDatabase database, String selection, String[] selectionArgs){
+        Cursor cursor = database.query(SESSION_TABLE_NAME, SESSION_COLUMNS, selection, selectionArgs,
+                null, null, null);
+
+        database.beginTransaction();
+        try {
+            while(cursor.moveToNext()){
+                int day = TrainingLoadCalculator.getDay(cursor.getInt(0), cursor.getInt(1), cursor.getInt(2));
+                if(addToDay(database, day, -1, -cursor.getLong(3)) == 1){
+                    removeStreakDay(database, day);
+                }
+            }
+            database.setTransactionSuccessful();
+        }finally{
+            database.endTransaction();
+            cursor.close();
+        }
+    }
+
+    /**
+     * Builds the days and streaks from every stored session, replacing anything stored before
+     */
+    static void rebuild(SQLiteDatabase database){
+        Map<Integer, long[]> days = new TreeMap<>();
+        Cursor cursor = database.rawQuery("SELECT " + YEAR + ", " + MONTH + ", " + DATE + ", COUNT(*), SUM("
+                + DISTANCE + ") FROM " + SESSION_TABLE_NAME + " GROUP BY " + YEAR + ", " + MONTH + ", "
+                + DATE, null);
+        try {
+            while(cursor.moveToNext()){
+                days.put(TrainingLoadCalculator.getDay(cursor.getInt(0), cursor.getInt(1), cursor.getInt(2)),
+                        new long[] { cursor.getLong(3), cursor.getLong(4) });
+            }
+        }finally{
+            cursor.close();
+        }
+
+        database.beginTransaction();
+        try {
+            database.delete(ACTIVITY_DAYS_TABLE_NAME, null, null);
+            database.delete(STREAKS_TABLE_NAME, null, null);
+
+            int firstDay = 0;
+            int lastDay = 0;
+            boolean inStreak = false;
+            for(Map.Entry<Integer, long[]> day : days.entrySet()){
+                ContentValues values = new ContentValues();
+                values.put(TRAINING_DAY, day.getKey());
+                values.put(AGGREGATE_COUNT, day.getValue()[0]);
+                values.put(DISTANCE, day.getValue()[1]);
+                database.insert(ACTIVITY_DAYS_TABLE_NAME, null, values);
+
+                if(inStreak && day.getKey() == lastDay + 1){
+                    lastDay = day.getKey();
+                    continue;
+                }
+
+                if(inStreak){
+                    insertStreak(database, firstDay, lastDay);
+                }
+                firstDay = day.getKey();
+                lastDay = day.getKey();
+                inStreak = true;
+            }
+
+            if(inStreak){
+                insertStreak(database, firstDay, lastDay);
+            }
+            database.setTransactionSuccessful();
+        }finally{
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Works out the progress towards every goal
+     * @param today     Today, numbered as by TrainingLoadCalculator.getDay
+     * @return          A row for each goal, oldest first, with the columns in COLUMNS. Progress is
+     *                  the distance in metres covered so far this week for weekly distance goals,
+     *                  and the length of the current streak for daily streak goals
+     */
+    static Cursor getGoalsCursor(SQLiteDatabase database, int today){
+        MatrixCursor goalsCursor = new MatrixCursor(COLUMNS);
+
+        Cursor cursor = database.query(GOALS_TABLE_NAME, new String[] { _ID, GOAL_TYPE, GOAL_TARGET },
+                null, null, null, null, _ID + " ASC");
+        try {
+            while(cursor.moveToNext()){
+                GoalType goalType = GoalType.getGoalType(cursor.getInt(1));
+                if(goalType == null){
+                    continue;
+                }
+
+                long target = cursor.getLong(2);
+                long progress;
+                int periodStart;
+                long longestStreak = 0;
+                switch (goalType){
+                    case WEEKLY_DISTANCE:
+                        periodStart = GoalType.getWeekStart(today);
+                        progress = getDistance(database, periodStart, today);
+                        break;
+                    case DAILY_STREAK:
+                    default:
+                        int[] streak = getLatestStreak(database);
+                        if(streak != null && GoalType.isStreakCurrent(streak[1], today)){
+                            periodStart = streak[0];
+                            progress = streak[1] - streak[0] + 1;
+                        }else{
+                            periodStart = today;
+                            progress = 0;
+                        }
+                        longestStreak = getLongestStreak(database);
+                        break;
+                }
+
+                goalsCursor.addRow(new Object[] { cursor.getLong(0), goalType.getGoalTypeID(), target,
+                        progress, periodStart, progress >= target ? 1 : 0, longestStreak });
+            }
+        }finally{
+            cursor.close();
+        }
+
+        return goalsCursor;
+    }
+
+    /**
+     * Changes the number of sessions and distance of a day, removing the day once it has no
+     * sessions
+     * @return  The number of sessions the day had before
+     */
+    private static long addToDay(SQLiteDatabase database, int day, int sessions, long distance){
+        String[] dayArgs = { String.valueOf(day) };
+        long previousSessions = 0;
+        long previousDistance = 0;
+        Cursor cursor = database.query(ACTIVITY_DAYS_TABLE_NAME, new String[] { AGGREGATE_COUNT, DISTANCE },
+                TRAINING_DAY + " = ?", dayArgs, null, null, null);
+        try {
+            if(cursor.moveToNext()){
+                previousSessions = cursor.getLong(0);
+                previousDistance = cursor.getLong(1);
+            }
+        }finally{
+            cursor.close();
+        }
+
+        if(previousSessions + sessions <= 0){
+            database.delete(ACTIVITY_DAYS_TABLE_NAME, TRAINING_DAY + " = ?", dayArgs);
+            return previousSessions;
+        }
+
+        ContentValues values = new ContentValues();
+        values.put(TRAINING_DAY, day);
+        values.put(AGGREGATE_COUNT, previousSessions + sessions);
+        values.put(DISTANCE, Math.max(0, previousDistance + distance));
+        database.insertWithOnConflict(ACTIVITY_DAYS_TABLE_NAME, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        return previousSessions;
+    }
+
+    /**
+     * Adds a day which now has a session to the streak before or after it, joining them if it
+     * falls between the two
+     */
+    private static void addStreakDay(SQLiteDatabase database, int day){
+        int firstDay = day;
+        int lastDay = day;
+
+        Cursor cursor = database.query(STREAKS_TABLE_NAME, new String[] { STREAK_FIRST_DAY },
+                STREAK_LAST_DAY + " = ?", new String[] { String.valueOf(day - 1) }, null, null, null);
+        try {
+            if(cursor.moveToNext()){
+                firstDay = cursor.getInt(0);
+            }
+        }finally{
+            cursor.close();
+        }
+
+        cursor = database.query(STREAKS_TABLE_NAME, new String[] { STREAK_LAST_DAY },
+                STREAK_FIRST_DAY + " = ?", new String[] { String.valueOf(day + 1) }, null, null, null);
+        try {
+            if(cursor.moveToNext()){
+                lastDay = cursor.getInt(0);
+            }
+        }finally{
+            cursor.close();
+        }
+
+        database.delete(STREAKS_TABLE_NAME, STREAK_FIRST_DAY + " = ? OR " + STREAK_FIRST_DAY + " = ?",
+                new String[] { String.valueOf(firstDay), String.valueOf(day + 1) });
+        insertStreak(database, firstDay, lastDay);
+    }
+
+    /**
+     * Removes a day which no longer has a session from its streak, splitting the streak in two if
+     * the day was in the middle of it
+     */
+    private static void removeStreakDay(SQLiteDatabase database, int day){
+        Cursor cursor = database.query(STREAKS_TABLE_NAME, new String[] { STREAK_FIRST_DAY, STREAK_LAST_DAY },
+                STREAK_FIRST_DAY + " <= ?", new String[] { String.valueOf(day) }, null, null,
+                STREAK_FIRST_DAY + " DESC", "1");
+        int firstDay;
+        int lastDay;
+        try {
+            if(!cursor.moveToNext()){
+                return;
+            }
+            firstDay = cursor.getInt(0);
+            lastDay = cursor.getInt(1);
+        }finally{
+            cursor.close();
+        }
+
+        if(lastDay < day){
+            return;
+        }
+
+        database.delete(STREAKS_TABLE_NAME, STREAK_FIRST_DAY + " = ?", new String[] { String.valueOf(firstDay) });
+        if(firstDay < day){
+            insertStreak(database, firstDay, day - 1);
+        }
+        if(day < lastDay){
+            insertStreak(database, day + 1, lastDay);
+        }
+    }
+
+    private static void insertStreak(SQLiteDatabase database, int firstDay, int lastDay){
+        ContentValues values = new ContentValues();
+        values.put(STREAK_FIRST_DAY, firstDay);
+        values.put(STREAK_LAST_DAY, lastDay);
+        values.put(STREAK_LENGTH, lastDay - firstDay + 1);
+        database.insert(STREAKS_TABLE_NAME, null, values);
+    }
+
+    /**
+     * @return  Distance in metres covered between two days, inclusive
+     */
+    private static long getDistance(SQLiteDatabase database, int firstDay, int lastDay){
+        Cursor cursor = database.rawQuery("SELECT IFNULL(SUM(" + DISTANCE + "), 0) FROM "
+                + ACTIVITY_DAYS_TABLE_NAME + " WHERE " + TRAINING_DAY + " BETWEEN ? AND ?",
+                new String[] { String.valueOf(firstDay), String.valueOf(lastDay) });
+        try {
+            return cursor.moveToNext() ? cursor.getLong(0) : 0;
+        }finally{
+            cursor.close();
+        }
+    }
+
+    /**
+     * @return  The first and last day of the most recent streak, or null if there are none
+     */
+    private static int[] getLatestStreak(SQLiteDatabase database){
+        Cursor cursor = database.query(STREAKS_TABLE_NAME, new String[] { STREAK_FIRST_DAY, STREAK_LAST_DAY },
+                null, null, null, null, STREAK_LAST_DAY + " DESC", "1");
+        try {
+            return cursor.moveToNext() ? new int[] { cursor.getInt(0), cursor.getInt(1) } : null;
+        }finally{
+            cursor.close();
+        }
+    }
+
+    private static long getLongestStreak(SQLiteDatabase database){
+        Cursor cursor = database.rawQuery("SELECT IFNULL(MAX(" + STREAK_LENGTH + "), 0) FROM "
+                + STREAKS_TABLE_NAME, null);
+        try {
+            return cursor.moveToNext() ? cursor.getLong(0) : 0;
+        }finally{
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package com.mdp.cw4.runningtracker;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * <h1>Heatmap Cache</h1>
+ * The heatmap of every route, kept in the application's cache directory. For each tile there is a
+ * file of its counts, see HeatmapTiles, and its picture as a PNG, which is what the map shows. The
+ * simplified route of each session in the heatmap is kept too, so that it can be taken away again
+ * once the session itself has been deleted.
+ * <p>
+ * The manifest lists the sessions in the heatmap and the tiles which have been drawn. Before the
+ * tiles are changed, the sessions being added or removed are written to the manifest as pending,
+ * and they are only cleared once every tile has been written. If the application stops part way
+ * through, the pending sessions are found the next time the manifest is read and, as the tiles
+ * can no longer be trusted, the heatmap is thrown away and built again.
+ * <p>
+ * Changes are made by SessionProcessingService on a single thread. Tiles may be read from any
+ * thread other than the UI thread
+ */
+public class HeatmapCache {
+
+    private static HeatmapCache instance;
+
+    private final File directory;
+    private final Set<Long> sessionIds = new HashSet<>();
+    private final Set<Long> tileKeys = Collections.synchronizedSet(new HashSet<Long>());
+    private boolean manifestLoaded;
+    private volatile long generation;
+
+    private static final String DIRECTORY_NAME = "heatmap";
+    private static final String MANIFEST_NAME = "manifest";
+    private static final String COUNTS_EXTENSION = ".counts";
+    private static final String IMAGE_EXTENSION = ".png";
+    private static final String ROUTE_EXTENSION = ".route";
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    // Increased whenever the layout of the tiles or files changes, which throws the heatmap away
+    private static final int FORMAT_VERSION = 1;
+    private static final String MANIFEST_HEADER = "heatmap";
+    private static final String MANIFEST_SESSION = "s";
+    private static final String MANIFEST_PENDING = "p";
+    private static final String MANIFEST_TILE = "t";
+
+    private HeatmapCache(Context context){
+        directory = new File(context.getCacheDir(), DIRECTORY_NAME);
+    }
+
+    public static synchronized HeatmapCache getInstance(Context context){
+        if(instance == null){
+            instance = new HeatmapCache(context.getApplicationContext());
+        }
+
+        return instance;
+    }
+
+    /**
+     * @return  Number of times the tiles have been changed, so that a map showing them knows when
+     *          to fetch them again
+     */
+    public long getGeneration(){
+        loadManifest();
+        return generation;
+    }
+
+    /**
+     * @return  Whether the tile has been drawn, see HeatmapTiles.getKey
+     */
+    public boolean hasTile(long tileKey){
+        loadManifest();
+        return tileKeys.contains(tileKey);
+    }
+
+    /**
+     * @return  The tile as a PNG, or null if it has not been drawn
+     */
+    public byte[] readImage(long tileKey){
+        return readFile(getFile(tileKey, IMAGE_EXTENSION));
+    }
+
+    /**
+     * @return  The ids of the sessions in the heatmap
+     */
+    synchronized Set<Long> getSessionIds(){
+        loadManifest();
+        return new HashSet<>(sessionIds);
+    }
+
+    /**
+     * @return  The count of each bin of the tile, which are all 0 if it has not been drawn
+     */
+    int[] readCounts(long tileKey){
+        byte[] encoded = readFile(getFile(tileKey, COUNTS_EXTENSION));
+        if(encoded != null){
+            try {
+                return HeatmapTiles.decode(encoded);
+            }catch(IOException e){
+                e.printStackTrace();
+            }
+        }
+        return new int[HeatmapTiles.BINS_PER_SIDE * HeatmapTiles.BINS_PER_SIDE];
+    }
+
+    /**
+     * Replaces the counts and picture of a tile, or deletes them if no sessions are left in it
+     * @param image     The tile as a PNG, or null if no sessions are left in it
+     */
+    void writeTile(long tileKey, int[] counts, byte[] image) throws IOException {
+        if(image == null){
+            getFile(tileKey, COUNTS_EXTENSION).delete();
+            getFile(tileKey, IMAGE_EXTENSION).delete();
+            tileKeys.remove(tileKey);
+            return;
+        }
+
+        writeFile(getFile(tileKey, COUNTS_EXTENSION), HeatmapTiles.encode(counts));
+        writeFile(getFile(tileKey, IMAGE_EXTENSION), image);
+        tileKeys.add(tileKey);
+    }
+
+    /**
+     * Keeps the simplified route of a session, for taking it away from the heatmap later
+     */
+    void writeRoute(long sessionId, double[] latitudes, double[] longitudes) throws IOException {
+        createDirectory();
+        File file = new File(directory, sessionId + ROUTE_EXTENSION);
+        try(DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file)))){
+            outputStream.writeInt(latitudes.length);
+            for(int i = 0; i < latitudes.length; i++){
+                outputStream.writeDouble(latitudes[i]);
+                outputStream.writeDouble(longitudes[i]);
+            }
+        }
+    }
+
+    /**
+     * @return  The latitudes and longitudes of the simplified route of a session, or null if it was
+     *          not kept
+     */
+    double[][] readRoute(long sessionId){
+        File file = new File(directory, sessionId + ROUTE_EXTENSION);
+        if(!file.exists()){
+            return null;
+        }
+
+        try(DataInputStream inputStream = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)))){
+            int numberOfPoints = inputStream.readInt();
+            double[][] route = new double[2][numberOfPoints];
+            for(int i = 0; i < numberOfPoints; i++){
+                route[0][i] = inputStream.readDouble();
+                route[1][i] = inputStream.readDouble();
+            }
+            return route;
+        }catch(IOException e){
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    void deleteRoute(long sessionId){
+        new File(directory, sessionId + ROUTE_EXTENSION).delete();
+    }
+
+    /**
+     * Records in the manifest that sessions are about to be added to or removed from the tiles.
+     * Must be followed by endUpdate once every tile has been written
+     */
+    synchronized void beginUpdate(Collection<Long> changedSessionIds) throws IOException {
+        loadManifest();
+        writeManifest(changedSessionIds);
+    }
+
+    /**
+     * Records in the manifest that the tiles have been changed
+     * @param addedSessionIds       Sessions now in the heatmap
+     * @param removedSessionIds     Sessions no longer in the heatmap
+     */
+    synchronized void endUpdate(Collection<Long> addedSessionIds, Collection<Long> removedSessionIds)
+            throws IOException {
+        sessionIds.addAll(addedSessionIds);
+        sessionIds.removeAll(removedSessionIds);
+        generation++;
+        writeManifest(Collections.<Long>emptySet());
+    }
+
+    /**
+     * Throws the whole heatmap away, for example when an update did not finish
+     */
+    synchronized void clear(){
+        File[] files = directory.listFiles();
+        if(files != null){
+            for(File file : files){
+                file.delete();
+            }
+        }
+        sessionIds.clear();
+        tileKeys.clear();
+        generation++;
+        manifestLoaded = true;
+    }
+
+    /**
+     * Reads the manifest the first time it is needed. A missing or unreadable manifest, one of
+     * another format or one with pending sessions leaves an empty heatmap
+     */
+    private synchronized void loadManifest(){
+        if(manifestLoaded){
+            return;
+        }
+
+        File file = new File(directory, MANIFEST_NAME);
+        boolean valid = false;
+        if(file.exists()){
+            try(BufferedReader reader = new BufferedReader(new FileReader(file))){
+                String[] header = reader.readLine().split(" ");
+                valid = header.length == 3 && MANIFEST_HEADER.equals(header[0])
+                        && Integer.parseInt(header[1]) == FORMAT_VERSION;
+                if(valid){
+                    generation = Long.parseLong(header[2]);
+                }
+
+                String line;
+                while(valid && (line = reader.readLine()) != null){
+                    String[] entry = line.split(" ");
+                    if(MANIFEST_SESSION.equals(entry[0])){
+                        sessionIds.add(Long.parseLong(entry[1]));
+                    }else if(MANIFEST_TILE.equals(entry[0])){
+                        tileKeys.add(Long.parseLong(entry[1]));
+                    }else{
+                        valid = false;
+                    }
+                }
+            }catch(IOException | RuntimeException e){
+                e.printStackTrace();
+                valid = false;
+            }
+        }
+
+        if(!valid){
+            clear();
+        }
+        manifestLoaded = true;
+    }
+
+    /**
+     * Writes the manifest to a temporary file which then replaces it, so it is never left half
+     * written
+     */
+    private void writeManifest(Collection<Long> pendingSessionIds) throws IOException {
+        createDirectory();
+        File temporaryFile = new File(directory, MANIFEST_NAME + TEMPORARY_EXTENSION);
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(temporaryFile))){
+            writer.write(MANIFEST_HEADER + " " + FORMAT_VERSION + " " + generation);
+            writer.newLine();
+            for(long sessionId : sessionIds){
+                writer.write(MANIFEST_SESSION + " " + sessionId);
+                writer.newLine();
+            }
+            for(long sessionId : pendingSessionIds){
+                writer.write(MANIFEST_PENDING + " " + sessionId);
+                writer.newLine();
+            }
+            synchronized (tileKeys){
+                for(long tileKey : tileKeys){
+                    writer.write(MANIFEST_TILE + " " + tileKey);
+                    writer.newLine();
+                }
+            }
+        }
+
+        if(!temporaryFile.renameTo(new File(directory, MANIFEST_NAME))){
+            throw new IOException("Could not replace the heatmap manifest");
+        }
+    }
+
+    private File getFile(long tileKey, String extension){
+        return new File(directory, HeatmapTiles.getZoom(tileKey) + "_" + HeatmapTiles.getX(tileKey) + "_"
+                + HeatmapTiles.getY(tileKey) + extension);
+    }
+
+    private void createDirectory() throws IOException {
+        if(!directory.exists() && !directory.mkdirs() && !directory.exists()){
+            throw new IOException("Could not create " + directory);
+        }
+    }
+
+    /**
+     * Writes to a temporary file which then replaces the file, so a tile being read while it is
+     * drawn is either the old or the new one
+     */
+    private void writeFile(File file, byte[] contents) throws IOException {
+        createDirectory();
+        File temporaryFile = new File(file.getPath() + TEMPORARY_EXTENSION);
+        try(FileOutputStream outputStream = new FileOutputStream(temporaryFile)){
+            outputStream.write(contents);
+        }
+
+        if(!temporaryFile.renameTo(file)){
+            temporaryFile.delete();
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    private static byte[] readFile(File file){
+        if(!file.exists()){
+            return null;
+        }
+
+        byte[] contents = new byte[(int) file.length()];
+        try(DataInputStream inputStream = new DataInputStream(new FileInputStream(file))){
+            inputStream.readFully(contents);
+            return contents;
+        }catch(IOException e){
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
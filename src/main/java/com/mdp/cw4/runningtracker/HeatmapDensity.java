@@ -0,0 +1,150 @@
+package com.mdp.cw4.runningtracker;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <h1>Heatmap Density</h1>
+ * Change in the number of sessions through each bin of each heatmap tile, see HeatmapTiles, made by
+ * a set of routes. Each step of a route is walked across the bins of every zoom level, so the
+ * heat does not depend on how often points were recorded, and a route is only counted once in
+ * each bin however many times it passes through it. Steps which are gaps in the route are left
+ * out, see RouteGrid.isGap.
+ * <p>
+ * Densities of different routes can be added together, so routes can be shared between workers
+ * which each build their own density and then combined. Taking a route away again is the same as
+ * adding it with a weight of -1
+ */
+public class HeatmapDensity {
+
+    private final Map<Long, int[]> tiles = new HashMap<>();
+
+    // Bins passed through by the route being added, reused between zoom levels and routes
+    private long[] bins = new long[256];
+    private int numberOfBins;
+
+    /**
+     * @param latitudes     Latitudes of the route
+     * @param longitudes    Longitudes of the route, must be the same length as the latitudes
+     * @param weight        Amount added to each bin the route passes through, 1 to add a route or
+     *                      -1 to take it away
+     */
+    public void addRoute(double[] latitudes, double[] longitudes, int weight){
+        for(int zoom = HeatmapTiles.MINIMUM_ZOOM; zoom <= HeatmapTiles.MAXIMUM_ZOOM; zoom++){
+            numberOfBins = 0;
+            for(int i = 0; i < latitudes.length; i++){
+                double x = HeatmapTiles.getBinX(longitudes[i], zoom);
+                double y = HeatmapTiles.getBinY(latitudes[i], zoom);
+                if(i == 0 || RouteGrid.isGap(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i])){
+                    addBin((long) Math.floor(x), (long) Math.floor(y));
+                }else{
+                    addStep(HeatmapTiles.getBinX(longitudes[i - 1], zoom),
+                            HeatmapTiles.getBinY(latitudes[i - 1], zoom), x, y);
+                }
+            }
+
+            Arrays.sort(bins, 0, numberOfBins);
+            for(int i = 0; i < numberOfBins; i++){
+                if(i == 0 || bins[i] != bins[i - 1]){
+                    addToTile(zoom, bins[i] >>> 32, bins[i] & 0xffffffffL, weight);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the changes of another density to this one
+     */
+    public void add(HeatmapDensity density){
+        for(Map.Entry<Long, int[]> tile : density.tiles.entrySet()){
+            int[] counts = getOrCreateCounts(tile.getKey());
+            int[] otherCounts = tile.getValue();
+            for(int i = 0; i < counts.length; i++){
+                counts[i] += otherCounts[i];
+            }
+        }
+    }
+
+    /**
+     * @return  Keys of the tiles changed, see HeatmapTiles.getKey
+     */
+    public Set<Long> getTileKeys(){
+        return tiles.keySet();
+    }
+
+    /**
+     * @return  Change in the count of each bin of the tile, row by row, or null if it is unchanged
+     */
+    public int[] getCounts(long tileKey){
+        return tiles.get(tileKey);
+    }
+
+    public boolean isEmpty(){
+        return tiles.isEmpty();
+    }
+
+    /**
+     * Walks a step across the bins, one bin edge at a time, adding each bin it passes through
+     */
+    private void addStep(double startX, double startY, double endX, double endY){
+        long column = (long) Math.floor(startX);
+        long row = (long) Math.floor(startY);
+        long lastColumn = (long) Math.floor(endX);
+        long lastRow = (long) Math.floor(endY);
+        double changeX = endX - startX;
+        double changeY = endY - startY;
+        int stepColumn = changeX > 0 ? 1 : -1;
+        int stepRow = changeY > 0 ? 1 : -1;
+        double nextX = changeX == 0 ? Double.POSITIVE_INFINITY
+                : ((changeX > 0 ? column + 1 : column) - startX) / changeX;
+        double nextY = changeY == 0 ? Double.POSITIVE_INFINITY
+                : ((changeY > 0 ? row + 1 : row) - startY) / changeY;
+        double deltaX = changeX == 0 ? Double.POSITIVE_INFINITY : 1 / Math.abs(changeX);
+        double deltaY = changeY == 0 ? Double.POSITIVE_INFINITY : 1 / Math.abs(changeY);
+
+        addBin(column, row);
+        long numberOfSteps = Math.abs(lastColumn - column) + Math.abs(lastRow - row);
+        for(long step = 0; step < numberOfSteps; step++){
+            // Rounding must not take the walk past the bin of the end of the step
+            if(column != lastColumn && (row == lastRow || nextX < nextY)){
+                column += stepColumn;
+                nextX += deltaX;
+            }else{
+                row += stepRow;
+                nextY += deltaY;
+            }
+            addBin(column, row);
+        }
+    }
+
+    private void addBin(long column, long row){
+        if(numberOfBins == bins.length){
+            bins = Arrays.copyOf(bins, bins.length * 2);
+        }
+        bins[numberOfBins++] = (column << 32) | row;
+    }
+
+    private void addToTile(int zoom, long column, long row, int weight){
+        // The bottom of the world is only reached by the clamped latitude of a pole
+        long lastBin = HeatmapTiles.getBinsAcrossWorld(zoom) - 1;
+        column = Math.max(0, Math.min(lastBin, column));
+        row = Math.max(0, Math.min(lastBin, row));
+
+        long tileKey = HeatmapTiles.getKey(zoom, (int) (column / HeatmapTiles.BINS_PER_SIDE),
+                (int) (row / HeatmapTiles.BINS_PER_SIDE));
+        int bin = (int) (row % HeatmapTiles.BINS_PER_SIDE) * HeatmapTiles.BINS_PER_SIDE
+                + (int) (column % HeatmapTiles.BINS_PER_SIDE);
+        getOrCreateCounts(tileKey)[bin] += weight;
+    }
+
+    private int[] getOrCreateCounts(long tileKey){
+        int[] counts = tiles.get(tileKey);
+        if(counts == null){
+            counts = new int[HeatmapTiles.BINS_PER_SIDE * HeatmapTiles.BINS_PER_SIDE];
+            tiles.put(tileKey, counts);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,260 @@
+package com.mdp.cw4.runningtracker;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <h1>Heatmap Renderer</h1>
+ * Keeps the heatmap of every route in the HeatmapCache up to date. Sessions are added in batches
+ * shared between parallel workers, each of which reads and simplifies its own sessions' routes
+ * into its own HeatmapDensity. The densities are then added together and only the tiles they
+ * change are read, updated and drawn again, also in parallel. Removing a session takes its kept
+ * route away from the tiles in the same way, so no tile is ever drawn from scratch.
+ * <p>
+ * All methods read the database and write to disk, so must not be called on the UI thread
+ */
+public class HeatmapRenderer {
+
+    // Routes are simplified to well under a bin at the finest zoom level before being kept
+    private static final double ROUTE_TOLERANCE_METRES = 2;
+
+    // Sessions added between saving the manifest, which bounds the memory used by the workers
+    private static final int BATCH_SIZE = 200;
+    private static final int MAXIMUM_WORKERS = 4;
+
+    /**
+     * Adds every stored session missing from the heatmap and removes any which have been deleted,
+     * for example by deleting sessions by a selection or when the heatmap has been thrown away
+     */
+    public static void update(Context context){
+        HeatmapCache heatmapCache = HeatmapCache.getInstance(context);
+        Set<Long> includedSessionIds = heatmapCache.getSessionIds();
+
+        List<Long> missingSessionIds = new ArrayList<>();
+        Cursor cursor = context.getContentResolver().query(WorkoutSessionContentProvider.Contract.SESSION_URI,
+                new String[] { WorkoutSessionContentProvider.Contract._ID }, null, null,
+                WorkoutSessionContentProvider.Contract._ID + " ASC");
+        if(cursor == null){
+            return;
+        }
+        while(cursor.moveToNext()){
+            long sessionId = cursor.getLong(0);
+            if(!includedSessionIds.remove(sessionId)){
+                missingSessionIds.add(sessionId);
+            }
+        }
+        cursor.close();
+
+        ExecutorService executor = createExecutor();
+        try {
+            // Whatever is left was included but no longer exists
+            for(long sessionId : includedSessionIds){
+                removeSession(context, executor, sessionId);
+            }
+
+            for(int start = 0; start < missingSessionIds.size(); start += BATCH_SIZE){
+                addSessions(context, executor, missingSessionIds.subList(start,
+                        Math.min(missingSessionIds.size(), start + BATCH_SIZE)));
+            }
+        }finally{
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Adds a newly stored session to the heatmap, unless it is already there
+     */
+    public static void addSession(Context context, long sessionId){
+        if(HeatmapCache.getInstance(context).getSessionIds().contains(sessionId)){
+            return;
+        }
+
+        ExecutorService executor = createExecutor();
+        try {
+            addSessions(context, executor, Collections.singletonList(sessionId));
+        }finally{
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Takes a deleted session away from the heatmap
+     */
+    public static void removeSession(Context context, long sessionId){
+        ExecutorService executor = createExecutor();
+        try {
+            removeSession(context, executor, sessionId);
+        }finally{
+            executor.shutdown();
+        }
+    }
+
+    private static void removeSession(Context context, ExecutorService executor, long sessionId){
+        HeatmapCache heatmapCache = HeatmapCache.getInstance(context);
+        if(!heatmapCache.getSessionIds().contains(sessionId)){
+            return;
+        }
+
+        HeatmapDensity density = new HeatmapDensity();
+        double[][] route = heatmapCache.readRoute(sessionId);
+        if(route != null){
+            density.addRoute(route[0], route[1], -1);
+        }
+
+        List<Long> sessionIds = Collections.singletonList(sessionId);
+        try {
+            heatmapCache.beginUpdate(sessionIds);
+            applyDensity(heatmapCache, executor, density);
+            heatmapCache.endUpdate(Collections.<Long>emptyList(), sessionIds);
+            heatmapCache.deleteRoute(sessionId);
+        }catch(IOException | InterruptedException | ExecutionException e){
+            // The tiles may be part way through the update, so the heatmap is built again from
+            // scratch the next time it is brought up to date rather than a later update recording
+            // it as finished
+            e.printStackTrace();
+            heatmapCache.clear();
+        }
+    }
+
+    /**
+     * Shares the sessions between the workers, each building the density of its share, then
+     * applies their total to the tiles
+     */
+    private static void addSessions(final Context context, ExecutorService executor, final List<Long> sessionIds){
+        final HeatmapCache heatmapCache = HeatmapCache.getInstance(context);
+        int numberOfWorkers = Math.min(sessionIds.size(), getNumberOfWorkers());
+
+        try {
+            heatmapCache.beginUpdate(sessionIds);
+
+            List<Future<HeatmapDensity>> densities = new ArrayList<>();
+            for(int worker = 0; worker < numberOfWorkers; worker++){
+                final int firstIndex = worker;
+                final int step = numberOfWorkers;
+                densities.add(executor.submit(new Callable<HeatmapDensity>() {
+                    @Override
+                    public HeatmapDensity call() throws IOException {
+                        HeatmapDensity density = new HeatmapDensity();
+                        for(int i = firstIndex; i < sessionIds.size(); i += step){
+                            addRoute(context, heatmapCache, density, sessionIds.get(i));
+                        }
+                        return density;
+                    }
+                }));
+            }
+
+            HeatmapDensity totalDensity = new HeatmapDensity();
+            for(Future<HeatmapDensity> density : densities){
+                totalDensity.add(density.get());
+            }
+
+            applyDensity(heatmapCache, executor, totalDensity);
+            heatmapCache.endUpdate(sessionIds, Collections.<Long>emptyList());
+        }catch(IOException | InterruptedException | ExecutionException e){
+            // The tiles may be part way through the update, so the heatmap is built again from
+            // scratch the next time it is brought up to date rather than a later update recording
+            // it as finished
+            e.printStackTrace();
+            heatmapCache.clear();
+        }
+    }
+
+    /**
+     * Reads and simplifies the route of a session, keeps it for removing the session later and
+     * adds it to the density
+     */
+    private static void addRoute(Context context, HeatmapCache heatmapCache, HeatmapDensity density,
+                                 long sessionId) throws IOException {
+        WorkoutSessionRoute route = WorkoutSessionRoute.load(context.getContentResolver(), sessionId);
+        if(route == null){
+            return;
+        }
+
+        double[] latitudes = route.getLatitudes();
+        double[] longitudes = route.getLongitudes();
+        int[] indices = RouteSimplifier.simplify(RouteSimplifier.calculateSignificance(latitudes, longitudes),
+                ROUTE_TOLERANCE_METRES);
+        double[] simplifiedLatitudes = new double[indices.length];
+        double[] simplifiedLongitudes = new double[indices.length];
+        for(int i = 0; i < indices.length; i++){
+            simplifiedLatitudes[i] = latitudes[indices[i]];
+            simplifiedLongitudes[i] = longitudes[indices[i]];
+        }
+
+        heatmapCache.writeRoute(sessionId, simplifiedLatitudes, simplifiedLongitudes);
+        density.addRoute(simplifiedLatitudes, simplifiedLongitudes, 1);
+    }
+
+    /**
+     * Adds the density to the counts of each tile it changes and draws those tiles again, sharing
+     * the tiles between the workers
+     */
+    private static void applyDensity(final HeatmapCache heatmapCache, ExecutorService executor,
+                                     final HeatmapDensity density)
+            throws InterruptedException, ExecutionException {
+        List<Future<Void>> results = new ArrayList<>();
+        for(final long tileKey : density.getTileKeys()){
+            results.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    int[] counts = heatmapCache.readCounts(tileKey);
+                    int[] changes = density.getCounts(tileKey);
+                    boolean empty = true;
+                    for(int i = 0; i < counts.length; i++){
+                        counts[i] = Math.max(0, counts[i] + changes[i]);
+                        empty &= counts[i] == 0;
+                    }
+
+                    heatmapCache.writeTile(tileKey, counts, empty ? null : draw(counts));
+                    return null;
+                }
+            }));
+        }
+
+        for(Future<Void> result : results){
+            result.get();
+        }
+    }
+
+    /**
+     * @param counts    Number of sessions through each bin of a tile
+     * @return          The tile as a PNG
+     */
+    static byte[] draw(int[] counts){
+        int[] pixels = new int[HeatmapTiles.TILE_SIZE * HeatmapTiles.TILE_SIZE];
+        for(int y = 0; y < HeatmapTiles.TILE_SIZE; y++){
+            int rowStart = y / HeatmapTiles.BIN_SIZE * HeatmapTiles.BINS_PER_SIDE;
+            for(int x = 0; x < HeatmapTiles.TILE_SIZE; x++){
+                pixels[y * HeatmapTiles.TILE_SIZE + x] = HeatmapTiles.getColor(counts[rowStart + x / HeatmapTiles.BIN_SIZE]);
+            }
+        }
+
+        Bitmap bitmap = Bitmap.createBitmap(pixels, HeatmapTiles.TILE_SIZE, HeatmapTiles.TILE_SIZE,
+                Bitmap.Config.ARGB_8888);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.PNG, 100, outputStream);
+        bitmap.recycle();
+        return outputStream.toByteArray();
+    }
+
+    private static ExecutorService createExecutor(){
+        return Executors.newFixedThreadPool(getNumberOfWorkers());
+    }
+
+    private static int getNumberOfWorkers(){
+        return Math.max(1, Math.min(MAXIMUM_WORKERS, Runtime.getRuntime().availableProcessors()));
+    }
+}
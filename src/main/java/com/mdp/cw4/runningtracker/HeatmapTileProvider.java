@@ -0,0 +1,42 @@
+package com.mdp.cw4.runningtracker;
+
+import android.content.Context;
+
+import com.google.android.gms.maps.model.Tile;
+import com.google.android.gms.maps.model.TileProvider;
+
+/**
+ * <h1>Heatmap Tile Provider</h1>
+ * Provides the tiles of the heatmap of every route from the HeatmapCache, for showing over a map
+ * with a TileOverlay. Zoom levels without tiles of their own, and tiles no session has passed
+ * through, are left empty. Once HeatmapCache.getGeneration has changed the overlay should be
+ * cleared so that changed tiles are fetched again.
+ * <p>
+ * Tiles are requested on the map's own background threads
+ */
+public class HeatmapTileProvider implements TileProvider {
+
+    private final HeatmapCache heatmapCache;
+
+    public HeatmapTileProvider(Context context){
+        heatmapCache = HeatmapCache.getInstance(context);
+    }
+
+    @Override
+    public Tile getTile(int x, int y, int zoom) {
+        if(zoom < HeatmapTiles.MINIMUM_ZOOM || zoom > HeatmapTiles.MAXIMUM_ZOOM){
+            return NO_TILE;
+        }
+
+        long tileKey = HeatmapTiles.getKey(zoom, x, y);
+        if(!heatmapCache.hasTile(tileKey)){
+            return NO_TILE;
+        }
+
+        byte[] image = heatmapCache.readImage(tileKey);
+        if(image == null){
+            return NO_TILE;
+        }
+        return new Tile(HeatmapTiles.TILE_SIZE, HeatmapTiles.TILE_SIZE, image);
+    }
+}
@@ -0,0 +1,144 @@
+package com.mdp.cw4.runningtracker;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * <h1>Heatmap Tiles</h1>
+ * The tiles of the heatmap of every route, laid out like those of Google Maps: at zoom level z the
+ * world, in the Web Mercator projection, is split into 2^z by 2^z tiles of TILE_SIZE pixels. Each
+ * tile holds the number of sessions which passed through each bin of BIN_SIZE by BIN_SIZE pixels.
+ * Counts of sessions, unlike pictures, can be added to and taken away from, so tiles are kept up
+ * to date one session at a time and are only drawn once their counts have changed.
+ * <p>
+ * Tiles are kept for zoom levels MINIMUM_ZOOM to MAXIMUM_ZOOM. Coarser levels show little more
+ * than a dot for a city, and at finer levels the bins would be smaller than the accuracy of GPS
+ */
+public class HeatmapTiles {
+
+    public static final int MINIMUM_ZOOM = 10;
+    public static final int MAXIMUM_ZOOM = 15;
+    public static final int TILE_SIZE = 256;
+    public static final int BIN_SIZE = 4;
+    public static final int BINS_PER_SIDE = TILE_SIZE / BIN_SIZE;
+
+    // Latitude at which the Web Mercator projection is square
+    private static final double MAXIMUM_LATITUDE = 85.05112878;
+
+    // Number of sessions through a bin at which it is drawn at full heat. Counts are drawn on a
+    // fixed scale so that tiles drawn at different times match
+    private static final int SATURATION_SESSIONS = 32;
+    private static final int MINIMUM_ALPHA = 96;
+
+    private static final int COORDINATE_BITS = 26;
+    private static final long COORDINATE_MASK = (1L << COORDINATE_BITS) - 1;
+
+    public static long getKey(int zoom, int x, int y){
+        return ((long) zoom << (COORDINATE_BITS * 2)) | ((long) x << COORDINATE_BITS) | y;
+    }
+
+    public static int getZoom(long key){
+        return (int) (key >>> (COORDINATE_BITS * 2));
+    }
+
+    public static int getX(long key){
+        return (int) ((key >>> COORDINATE_BITS) & COORDINATE_MASK);
+    }
+
+    public static int getY(long key){
+        return (int) (key & COORDINATE_MASK);
+    }
+
+    /**
+     * @return  Distance of the longitude from the left of the world in bins of the zoom level
+     */
+    public static double getBinX(double longitude, int zoom){
+        return (longitude + 180) / 360 * getBinsAcrossWorld(zoom);
+    }
+
+    /**
+     * @return  Distance of the latitude from the top of the world in bins of the zoom level
+     */
+    public static double getBinY(double latitude, int zoom){
+        double clampedLatitude = Math.toRadians(Math.max(-MAXIMUM_LATITUDE, Math.min(MAXIMUM_LATITUDE, latitude)));
+        double mercatorY = Math.log(Math.tan(Math.PI / 4 + clampedLatitude / 2));
+        return (1 - mercatorY / Math.PI) / 2 * getBinsAcrossWorld(zoom);
+    }
+
+    public static long getBinsAcrossWorld(int zoom){
+        return (long) BINS_PER_SIDE << zoom;
+    }
+
+    /**
+     * @param sessions  Number of sessions which passed through a bin
+     * @return          The colour of the bin as ARGB, which is transparent if no sessions did. It
+     *                  goes from a faint red for a single session to white once there are
+     *                  SATURATION_SESSIONS
+     */
+    public static int getColor(int sessions){
+        if(sessions <= 0){
+            return 0;
+        }
+
+        double heat = Math.min(1, Math.log(1 + sessions) / Math.log(1 + SATURATION_SESSIONS));
+        int alpha = (int) Math.round(MINIMUM_ALPHA + (255 - MINIMUM_ALPHA) * heat);
+        int green = (int) Math.round(255 * Math.min(1, heat * 1.5));
+        int blue = (int) Math.round(255 * Math.max(0, heat * 3 - 2));
+        return (alpha << 24) | (255 << 16) | (green << 8) | blue;
+    }
+
+    /**
+     * Compresses the counts of a tile, which are mostly 0, by storing only the bins which are not
+     * @param counts    Count of each bin, row by row
+     * @return          The encoded counts
+     */
+    public static byte[] encode(int[] counts){
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        try(DataOutputStream outputStream = new DataOutputStream(new DeflaterOutputStream(byteStream))){
+            int numberOfBins = 0;
+            for(int count : counts){
+                if(count != 0){
+                    numberOfBins++;
+                }
+            }
+
+            outputStream.writeInt(numberOfBins);
+            for(int i = 0; i < counts.length; i++){
+                if(counts[i] != 0){
+                    outputStream.writeShort(i);
+                    outputStream.writeInt(counts[i]);
+                }
+            }
+        }catch(IOException e){
+            // Writing to memory does not fail
+            throw new IllegalStateException(e);
+        }
+        return byteStream.toByteArray();
+    }
+
+    /**
+     * @param encoded   Counts as returned by encode
+     * @return          Count of each bin, row by row
+     * @throws IOException  If the counts are not those of a tile
+     */
+    public static int[] decode(byte[] encoded) throws IOException {
+        int[] counts = new int[BINS_PER_SIDE * BINS_PER_SIDE];
+        try(DataInputStream inputStream = new DataInputStream(new InflaterInputStream(
+                new ByteArrayInputStream(encoded)))){
+            int numberOfBins = inputStream.readInt();
+            for(int i = 0; i < numberOfBins; i++){
+                int bin = inputStream.readUnsignedShort();
+                if(bin >= counts.length){
+                    throw new IOException("Bin out of range: " + bin);
+                }
+                counts[bin] = inputStream.readInt();
+            }
+        }
+        return counts;
+    }
+}
@@ -9,4 +9,12 @@ public interface IWorkoutSessionListener {
     void onDistanceUpdated(int distance);
     void onPaceUpdated(double pace);
     void onLocationUpdated(double latitude, double longitude);
+
+    /**
+     * Called on each location update while racing a past session, see GhostRacer
+     * @param metresAhead   Metres ahead of the past session at the same time, negative if behind
+     * @param secondsAhead  Seconds ahead of the past session at the same distance, negative if
+     *                      behind, or Double.NaN once past the whole of its distance
+     */
+    void onGhostUpdated(double metresAhead, double secondsAhead);
 }
@@ -0,0 +1,132 @@
+package com.mdp.cw4.runningtracker;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <h1>Latency Histogram</h1>
+ * Records durations into a fixed set of buckets which can be updated from any number of threads
+ * without locking or allocating.
+ * <p>
+ * In the same way as an HDR histogram, buckets grow exponentially but each power of two is split
+ * into a number of equally sized sub-buckets, so every recorded value is known to within about 6%
+ * regardless of whether it is a few microseconds or several minutes. Values are recorded in
+ * microseconds
+ */
+public class LatencyHistogram {
+
+    // Each power of two is split into 2^SUB_BUCKET_BITS sub-buckets
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    // Values up to 2^MAXIMUM_EXPONENT microseconds, about 12 days, can be told apart
+    private static final int MAXIMUM_EXPONENT = 40;
+    private static final int NUMBER_OF_BUCKETS = (MAXIMUM_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private static final long NANOSECONDS_PER_MICROSECOND = 1000;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUMBER_OF_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicroseconds = new AtomicLong();
+    private final AtomicLong maximumMicroseconds = new AtomicLong();
+
+    /**
+     * @param durationNanoseconds   Duration to record, for example the difference between two
+     *                              calls to System.nanoTime
+     */
+    public void recordNanoseconds(long durationNanoseconds){
+        recordMicroseconds(durationNanoseconds / NANOSECONDS_PER_MICROSECOND);
+    }
+
+    public void recordMicroseconds(long durationMicroseconds){
+        long value = Math.max(0, durationMicroseconds);
+
+        counts.incrementAndGet(getBucketIndex(value));
+        count.incrementAndGet();
+        totalMicroseconds.addAndGet(value);
+
+        long maximum = maximumMicroseconds.get();
+        while(value > maximum && !maximumMicroseconds.compareAndSet(maximum, value)){
+            maximum = maximumMicroseconds.get();
+        }
+    }
+
+    public long getCount(){
+        return count.get();
+    }
+
+    public long getMaximumMicroseconds(){
+        return maximumMicroseconds.get();
+    }
+
+    public double getMeanMicroseconds(){
+        long numberOfValues = count.get();
+        return numberOfValues == 0 ? 0 : (double) totalMicroseconds.get() / numberOfValues;
+    }
+
+    /**
+     * As values are recorded while this is running, the result is approximate while the histogram
+     * is being updated
+     * @param percentile    Percentile to find, between 0 and 100
+     * @return              Upper bound of the bucket holding the percentile, or 0 if nothing has
+     *                      been recorded
+     */
+    public long getPercentileMicroseconds(double percentile){
+        long numberOfValues = count.get();
+        if(numberOfValues == 0){
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * numberOfValues));
+        long seen = 0;
+        for(int i = 0; i < NUMBER_OF_BUCKETS; i++){
+            seen += counts.get(i);
+            if(seen >= rank){
+                return Math.min(getBucketUpperBound(i), maximumMicroseconds.get());
+            }
+        }
+
+        return maximumMicroseconds.get();
+    }
+
+    public void reset(){
+        for(int i = 0; i < NUMBER_OF_BUCKETS; i++){
+            counts.set(i, 0);
+        }
+        count.set(0);
+        totalMicroseconds.set(0);
+        maximumMicroseconds.set(0);
+    }
+
+    /**
+     * Values below SUB_BUCKET_COUNT have a bucket each. Above that, the bucket is chosen by the
+     * position of the highest set bit followed by the next SUB_BUCKET_BITS bits
+     */
+    static int getBucketIndex(long value){
+        if(value < SUB_BUCKET_COUNT){
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if(exponent > MAXIMUM_EXPONENT){
+            return NUMBER_OF_BUCKETS - 1;
+        }
+
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * @return  The largest value which falls into the bucket
+     */
+    static long getBucketUpperBound(int index){
+        if(index < SUB_BUCKET_COUNT){
+            return index;
+        }
+
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,121 @@
+package com.mdp.cw4.runningtracker;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Polyline;
+import com.google.android.gms.maps.model.PolylineOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <h1>Live Route Renderer</h1>
+ * Draws the route of an ongoing workout session as it is recorded.
+ * <p>
+ * The Google Maps Polyline has no way to append a point, and replacing its points costs time
+ * proportional to the length of the route. Instead, new points are added to a short tail polyline.
+ * Once the tail reaches MAXIMUM_TAIL_POINTS it is simplified and left on the map as a finished
+ * section, and a new tail is started from its last point. The cost of each new point is therefore
+ * bounded by the length of the tail rather than the length of the route
+ */
+public class LiveRouteRenderer {
+
+    private final GoogleMap googleMap;
+    private final int color;
+    private final List<Polyline> finishedSections = new ArrayList<>();
+    private final List<LatLng> tailPoints = new ArrayList<>();
+    private Polyline tail;
+
+    private static final int MAXIMUM_TAIL_POINTS = 100;
+
+    // Tolerance used when simplifying finished sections. Small enough to be invisible at the zoom
+    // levels used while following the user
+    private static final double FINISHED_SECTION_TOLERANCE_METRES = 1.0;
+
+    public LiveRouteRenderer(GoogleMap googleMap, int color){
+        this.googleMap = googleMap;
+        this.color = color;
+    }
+
+    /**
+     * Adds the next point of the route. Must be called on the UI thread
+     */
+    public void addPoint(double latitude, double longitude){
+        tailPoints.add(new LatLng(latitude, longitude));
+
+        if(tail == null){
+            tail = googleMap.addPolyline(new PolylineOptions().color(color).addAll(tailPoints));
+        }else{
+            tail.setPoints(tailPoints);
+        }
+
+        if(tailPoints.size() >= MAXIMUM_TAIL_POINTS){
+            finishTail();
+        }
+    }
+
+    /**
+     * Draws a route recorded before the renderer was created, for example when returning to an
+     * ongoing session
+     */
+    public void setRoute(double[] latitudes, double[] longitudes){
+        clear();
+        for(int i = 0; i < latitudes.length; i++){
+            tailPoints.add(new LatLng(latitudes[i], longitudes[i]));
+            if(tailPoints.size() >= MAXIMUM_TAIL_POINTS){
+                finishTail();
+            }
+        }
+
+        if(!tailPoints.isEmpty()){
+            tail = googleMap.addPolyline(new PolylineOptions().color(color).addAll(tailPoints));
+        }
+    }
+
+    /**
+     * Removes the route from the map
+     */
+    public void clear(){
+        for(Polyline section : finishedSections){
+            section.remove();
+        }
+        finishedSections.clear();
+
+        if(tail != null){
+            tail.remove();
+            tail = null;
+        }
+        tailPoints.clear();
+    }
+
+    /**
+     * Replaces the tail with a simplified, finished section and starts a new tail from its last point
+     */
+    private void finishTail(){
+        int numberOfPoints = tailPoints.size();
+        double[] latitudes = new double[numberOfPoints];
+        double[] longitudes = new double[numberOfPoints];
+        for(int i = 0; i < numberOfPoints; i++){
+            latitudes[i] = tailPoints.get(i).latitude;
+            longitudes[i] = tailPoints.get(i).longitude;
+        }
+
+        int[] keptIndices = RouteSimplifier.simplify(
+                RouteSimplifier.calculateSignificance(latitudes, longitudes), FINISHED_SECTION_TOLERANCE_METRES);
+
+        List<LatLng> sectionPoints = new ArrayList<>(keptIndices.length);
+        for(int index : keptIndices){
+            sectionPoints.add(tailPoints.get(index));
+        }
+
+        finishedSections.add(googleMap.addPolyline(new PolylineOptions().color(color).addAll(sectionPoints)));
+
+        LatLng lastPoint = tailPoints.get(numberOfPoints - 1);
+        tailPoints.clear();
+        tailPoints.add(lastPoint);
+
+        if(tail != null){
+            tail.setPoints(tailPoints);
+        }
+    }
+}
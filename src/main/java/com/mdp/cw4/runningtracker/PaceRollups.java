@@ -0,0 +1,182 @@
+package com.mdp.cw4.runningtracker;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.PACE_ROLLUPS_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.PACE_SKETCHES_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.SESSION_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.Contract.*;
+
+/**
+ * <h1>Pace Rollups</h1>
+ * Keeps the pace sketch of each session, see PaceSketch, along with one sketch for each workout
+ * type and month made by merging those of its sessions. These are kept up to date as sessions are
+ * stored and deleted, so the distribution of speeds over a month or year is found by merging at
+ * most one sketch per workout type and month, however many sessions there are. A day has no rollup
+ * as it holds few sessions, so the sketches of its sessions are merged instead.
+ * <p>
+ * The methods work directly on the database and are called by WorkoutSessionContentProvider
+ */
+class PaceRollups {
+
+    private static final double[] QUANTILES = { 0.1, 0.25, 0.5, 0.75, 0.9 };
+
+    static final String[] DISTRIBUTION_COLUMNS = { PACE_DURATION, PACE_P10, PACE_P25, PACE_MEDIAN,
+            PACE_P75, PACE_P90 };
+
+    /**
+     * Stores the sketch of a session, replacing any stored for it before, and merges it into the
+     * rollup for its workout type and month
+     * @param values    The session id, workout type, date, month, year and encoded sketch
+     * @return          Whether the sketch was stored, which it is not if the session no longer exists
+     */
+    static boolean store(SQLiteDatabase database, ContentValues values){
+        Long sessionId = values.getAsLong(RECORD_SESSION_ID);
+        Integer workoutType = values.getAsInteger(WORKOUT_TYPE);
+        Integer year = values.getAsInteger(YEAR);
+        Integer month = values.getAsInteger(MONTH);
+        if(sessionId == null || workoutType == null || year == null || month == null){
+            return false;
+        }
+
+        PaceSketch sketch = PaceSketch.decode(values.getAsString(PACE_SKETCH));
+
+        database.beginTransaction();
+        try {
+            // The session may have been deleted, taking its sketch out of the rollups, while it was
+            // being analysed
+            if(!WorkoutSessionContentProvider.sessionExists(database, sessionId)){
+                return false;
+            }
+
+            remove(database, sessionId);
+            if(database.insert(PACE_SKETCHES_TABLE_NAME, null, values) == -1){
+                return false;
+            }
+            updateRollup(database, workoutType, year, month, sketch, true);
+            database.setTransactionSuccessful();
+        }finally{
+            database.endTransaction();
+        }
+
+        return true;
+    }
+
+    /**
+     * Deletes the sketch of a session and takes it away from the rollup it was merged into
+     */
+    static void remove(SQLiteDatabase database, long sessionId){
+        Cursor cursor = database.query(PACE_SKETCHES_TABLE_NAME,
+                new String[] { WORKOUT_TYPE, YEAR, MONTH, PACE_SKETCH },
+                RECORD_SESSION_ID + " = ?", new String[] { String.valueOf(sessionId) },
+                null, null, null);
+
+        try {
+            if(!cursor.moveToNext()){
+                return;
+            }
+
+            database.beginTransaction();
+            try {
+                updateRollup(database, cursor.getInt(0), cursor.getInt(1), cursor.getInt(2),
+                        PaceSketch.decode(cursor.getString(3)), false);
+                database.delete(PACE_SKETCHES_TABLE_NAME, RECORD_SESSION_ID + " = ?",
+                        new String[] { String.valueOf(sessionId) });
+                database.setTransactionSuccessful();
+            }finally{
+                database.endTransaction();
+            }
+        }finally{
+            cursor.close();
+        }
+    }
+
+    /**
+     * Removes the sketches of any sessions which no longer exist, for example after deleting
+     * sessions by a selection
+     */
+    static void removeDeletedSessions(SQLiteDatabase database){
+        List<Long> sessionIds = new ArrayList<>();
+        Cursor cursor = database.rawQuery("SELECT " + RECORD_SESSION_ID + " FROM " + PACE_SKETCHES_TABLE_NAME
+                + " WHERE " + RECORD_SESSION_ID + " NOT IN (SELECT _id FROM " + SESSION_TABLE_NAME + ")", null);
+        try {
+            while(cursor.moveToNext()){
+                sessionIds.add(cursor.getLong(0));
+            }
+        }finally{
+            cursor.close();
+        }
+
+        for(long sessionId : sessionIds){
+            remove(database, sessionId);
+        }
+    }
+
+    /**
+     * Merges the sketches in a cursor and summarises the result
+     * @param sketches  Cursor whose first column holds encoded sketches, which is closed
+     * @return          A single row with the total time in milliseconds and the speed in metres
+     *                  per second at each quantile, all of which are 0 if there were no sketches
+     */
+    static Cursor getDistributionCursor(Cursor sketches){
+        PaceSketch merged = new PaceSketch();
+        try {
+            while(sketches.moveToNext()){
+                merged.merge(PaceSketch.decode(sketches.getString(0)));
+            }
+        }finally{
+            sketches.close();
+        }
+
+        Object[] row = new Object[DISTRIBUTION_COLUMNS.length];
+        row[0] = merged.getTotalMilliseconds();
+        for(int i = 0; i < QUANTILES.length; i++){
+            row[i + 1] = merged.getQuantile(QUANTILES[i]);
+        }
+
+        MatrixCursor cursor = new MatrixCursor(DISTRIBUTION_COLUMNS, 1);
+        cursor.addRow(row);
+        return cursor;
+    }
+
+    private static void updateRollup(SQLiteDatabase database, int workoutType, int year, int month,
+                                     PaceSketch sketch, boolean add){
+        String selection = WORKOUT_TYPE + " = ? AND " + YEAR + " = ? AND " + MONTH + " = ?";
+        String[] selectionArgs = { String.valueOf(workoutType), String.valueOf(year), String.valueOf(month) };
+
+        PaceSketch rollup = new PaceSketch();
+        Cursor cursor = database.query(PACE_ROLLUPS_TABLE_NAME, new String[] { PACE_SKETCH },
+                selection, selectionArgs, null, null, null);
+        try {
+            if(cursor.moveToNext()){
+                rollup = PaceSketch.decode(cursor.getString(0));
+            }
+        }finally{
+            cursor.close();
+        }
+
+        if(add){
+            rollup.merge(sketch);
+        }else{
+            rollup.subtract(sketch);
+        }
+
+        if(rollup.isEmpty()){
+            database.delete(PACE_ROLLUPS_TABLE_NAME, selection, selectionArgs);
+            return;
+        }
+
+        ContentValues values = new ContentValues();
+        values.put(WORKOUT_TYPE, workoutType);
+        values.put(YEAR, year);
+        values.put(MONTH, month);
+        values.put(PACE_SKETCH, rollup.encode());
+        database.insertWithOnConflict(PACE_ROLLUPS_TABLE_NAME, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+}
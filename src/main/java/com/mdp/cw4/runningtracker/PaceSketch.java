@@ -0,0 +1,214 @@
+package com.mdp.cw4.runningtracker;
+
+/**
+ * <h1>Pace Sketch</h1>
+ * Summary of the speeds held during one or more sessions, from which the median or any other
+ * quantile of the speed can be found without the routes of the sessions.
+ * <p>
+ * The sketch is a histogram of the time spent at each speed. Like LatencyHistogram, each power of
+ * two is split into a fixed number of equally sized buckets, here 32, so every bucket is at most
+ * 1/32 of its lower bound wide. A quantile is given as the middle of the bucket holding it, which
+ * is within 1/64, about 1.6%, of the speed at that quantile, or 1 mm/s for speeds under 32 mm/s.
+ * The time at each speed is kept exactly to the millisecond, so there is no error in the rank.
+ * <p>
+ * As the buckets are the same for every sketch, sketches are merged, or taken away from each
+ * other, by adding up or subtracting the time in each bucket. Combining any number of sessions
+ * therefore costs the same as the number of buckets and gives exactly the sketch that would have
+ * been built from all of their routes
+ */
+public class PaceSketch {
+
+    // Each power of two is split into 2^SUB_BUCKET_BITS sub-buckets
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    // Speeds below 2^(MAXIMUM_EXPONENT + 1) mm/s, about 131 m/s, can be told apart
+    private static final int MAXIMUM_EXPONENT = 16;
+    static final int NUMBER_OF_BUCKETS = (MAXIMUM_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    // Faster than any workout, so a step between two fixes at this speed is a GPS error
+    private static final double MAXIMUM_SPEED = 100;
+
+    private static final double MILLIMETRES_PER_METRE = 1000;
+    private static final double MILLISECONDS_PER_SECOND = 1000;
+
+    private static final char BUCKET_SEPARATOR = ';';
+    private static final char WEIGHT_SEPARATOR = ':';
+
+    private final long[] milliseconds = new long[NUMBER_OF_BUCKETS];
+    private long totalMilliseconds;
+
+    /**
+     * Builds the sketch of a route, where each step between two points adds the time taken at the
+     * speed of that step
+     * @param cumulativeDistances   Distance in metres along the route to each point
+     * @param times                 Time in seconds since the start of the session at each point
+     */
+    public static PaceSketch fromRoute(double[] cumulativeDistances, double[] times){
+        PaceSketch sketch = new PaceSketch();
+        int numberOfPoints = Math.min(cumulativeDistances.length, times.length);
+        for(int i = 1; i < numberOfPoints; i++){
+            double durationSeconds = times[i] - times[i - 1];
+            if(durationSeconds > 0){
+                sketch.add((cumulativeDistances[i] - cumulativeDistances[i - 1]) / durationSeconds,
+                        durationSeconds);
+            }
+        }
+        return sketch;
+    }
+
+    /**
+     * @param speed             Speed in metres per second
+     * @param durationSeconds   Time spent at the speed
+     */
+    public void add(double speed, double durationSeconds){
+        if(speed < 0 || speed > MAXIMUM_SPEED || Double.isNaN(speed)){
+            return;
+        }
+
+        long duration = Math.round(durationSeconds * MILLISECONDS_PER_SECOND);
+        if(duration <= 0){
+            return;
+        }
+
+        milliseconds[getBucketIndex(Math.round(speed * MILLIMETRES_PER_METRE))] += duration;
+        totalMilliseconds += duration;
+    }
+
+    /**
+     * Adds the time at each speed of another sketch to this one
+     */
+    public void merge(PaceSketch other){
+        for(int i = 0; i < NUMBER_OF_BUCKETS; i++){
+            milliseconds[i] += other.milliseconds[i];
+        }
+        totalMilliseconds += other.totalMilliseconds;
+    }
+
+    /**
+     * Takes away the time at each speed of a sketch previously merged into this one
+     */
+    public void subtract(PaceSketch other){
+        totalMilliseconds = 0;
+        for(int i = 0; i < NUMBER_OF_BUCKETS; i++){
+            milliseconds[i] = Math.max(0, milliseconds[i] - other.milliseconds[i]);
+            totalMilliseconds += milliseconds[i];
+        }
+    }
+
+    /**
+     * @return  Total time in milliseconds covered by the sketch
+     */
+    public long getTotalMilliseconds(){
+        return totalMilliseconds;
+    }
+
+    public boolean isEmpty(){
+        return totalMilliseconds == 0;
+    }
+
+    /**
+     * @param quantile  Quantile to find, between 0 and 1, for example 0.5 for the median
+     * @return          Speed in metres per second which was not exceeded for that fraction of the
+     *                  time, or 0 if the sketch is empty
+     */
+    public double getQuantile(double quantile){
+        if(totalMilliseconds == 0){
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * totalMilliseconds));
+        long seen = 0;
+        int bucket = 0;
+        for(; bucket < NUMBER_OF_BUCKETS - 1; bucket++){
+            seen += milliseconds[bucket];
+            if(seen >= rank){
+                break;
+            }
+        }
+
+        return getBucketMiddle(bucket) / MILLIMETRES_PER_METRE;
+    }
+
+    /**
+     * Encodes the buckets holding any time as "bucket:milliseconds;" pairs, ready for storing in
+     * the database
+     */
+    public String encode(){
+        StringBuilder stringBuilder = new StringBuilder();
+        for(int i = 0; i < NUMBER_OF_BUCKETS; i++){
+            if(milliseconds[i] > 0){
+                stringBuilder.append(i).append(WEIGHT_SEPARATOR).append(milliseconds[i])
+                        .append(BUCKET_SEPARATOR);
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * @param encoded   Sketch as returned by encode
+     * @return          The sketch, which is empty if nothing was encoded
+     * @throws IllegalArgumentException If the text is not an encoded sketch
+     */
+    public static PaceSketch decode(String encoded){
+        PaceSketch sketch = new PaceSketch();
+        if(encoded == null){
+            return sketch;
+        }
+
+        int start = 0;
+        while(start < encoded.length()){
+            int weightSeparator = encoded.indexOf(WEIGHT_SEPARATOR, start);
+            int bucketSeparator = encoded.indexOf(BUCKET_SEPARATOR, start);
+            if(weightSeparator < 0 || bucketSeparator < weightSeparator){
+                throw new IllegalArgumentException("Invalid pace sketch " + encoded);
+            }
+
+            int bucket = Integer.parseInt(encoded.substring(start, weightSeparator));
+            long duration = Long.parseLong(encoded.substring(weightSeparator + 1, bucketSeparator));
+            if(bucket < 0 || bucket >= NUMBER_OF_BUCKETS || duration < 0){
+                throw new IllegalArgumentException("Invalid pace sketch " + encoded);
+            }
+
+            sketch.milliseconds[bucket] += duration;
+            sketch.totalMilliseconds += duration;
+            start = bucketSeparator + 1;
+        }
+
+        return sketch;
+    }
+
+    /**
+     * Speeds below SUB_BUCKET_COUNT mm/s have a bucket each. Above that, the bucket is chosen by
+     * the position of the highest set bit followed by the next SUB_BUCKET_BITS bits
+     */
+    static int getBucketIndex(long speedMillimetresPerSecond){
+        if(speedMillimetresPerSecond < SUB_BUCKET_COUNT){
+            return (int) Math.max(0, speedMillimetresPerSecond);
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(speedMillimetresPerSecond);
+        if(exponent > MAXIMUM_EXPONENT){
+            return NUMBER_OF_BUCKETS - 1;
+        }
+
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (speedMillimetresPerSecond >>> shift) - SUB_BUCKET_COUNT;
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * @return  The speed in mm/s half way between the smallest and largest speeds of the bucket
+     */
+    static double getBucketMiddle(int index){
+        if(index < SUB_BUCKET_COUNT){
+            return index;
+        }
+
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        long lowerBound = subBucket << shift;
+        long upperBound = ((subBucket + 1) << shift) - 1;
+        return (lowerBound + upperBound) / 2.0;
+    }
+}
@@ -0,0 +1,62 @@
+package com.mdp.cw4.runningtracker;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+
+import java.util.List;
+
+/**
+ * <h1>Personal Records</h1>
+ * Finds the best efforts of stored sessions with BestEffortCalculator and stores them in the
+ * personal records table, from which the provider returns the personal records for each workout
+ * type and effort.
+ * <p>
+ * Sessions are processed once by SessionProcessingService when they are saved, or by its backfill
+ * if they were stored before personal records were kept, so finding a record never means scanning
+ * every stored route
+ */
+public class PersonalRecords {
+
+    private static final double MILLISECONDS_PER_SECOND = 1000.0;
+
+    /**
+     * Finds and stores the best efforts of a stored session, replacing any stored before
+     * @param contentResolver   Content resolver used to access the WorkoutSessionContentProvider
+     * @param session           The session
+     * @return                  Number of efforts stored
+     */
+    public static int updateSession(ContentResolver contentResolver, AnalysedSession session){
+        List<BestEffortCalculator.Effort> efforts = BestEffortCalculator.calculate(
+                session.getCumulativeDistances(), session.getTimes());
+        if(efforts.isEmpty()){
+            return 0;
+        }
+
+        return contentResolver.bulkInsert(WorkoutSessionContentProvider.Contract.PERSONAL_RECORDS_URI,
+                toContentValues(session.getSessionValues(), efforts));
+    }
+
+    /**
+     * @param session   Workout type and date of the session, along with its id
+     * @param efforts   Best efforts of the session
+     * @return          A row of the personal records table for each effort
+     */
+    static ContentValues[] toContentValues(ContentValues session, List<BestEffortCalculator.Effort> efforts){
+        ContentValues[] values = new ContentValues[efforts.size()];
+        for(int i = 0; i < efforts.size(); i++){
+            BestEffortCalculator.Effort effort = efforts.get(i);
+
+            ContentValues effortValues = new ContentValues(session);
+            effortValues.put(WorkoutSessionContentProvider.Contract.RECORD_EFFORT,
+                    effort.getBestEffort().getEffortID());
+            effortValues.put(WorkoutSessionContentProvider.Contract.DISTANCE, effort.getDistanceMetres());
+            effortValues.put(WorkoutSessionContentProvider.Contract.DURATION,
+                    Math.round(effort.getDurationSeconds() * MILLISECONDS_PER_SECOND));
+            effortValues.put(WorkoutSessionContentProvider.Contract.RECORD_START,
+                    Math.round(effort.getStartSeconds() * MILLISECONDS_PER_SECOND));
+            effortValues.put(WorkoutSessionContentProvider.Contract.RECORD_SPEED, effort.getSpeed());
+            values[i] = effortValues;
+        }
+        return values;
+    }
+}
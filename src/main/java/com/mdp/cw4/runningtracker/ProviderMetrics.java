@@ -0,0 +1,168 @@
+package com.mdp.cw4.runningtracker;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.Contract.*;
+
+/**
+ * <h1>Provider Metrics</h1>
+ * Records how long each query, insert and delete made through WorkoutSessionContentProvider takes,
+ * and how many rows it returned or changed, grouped by the URI match code that was hit and labelled
+ * with the path of its URI.
+ * <p>
+ * Recording only updates atomic counters and a LatencyHistogram, so it can be called from the
+ * binder threads of the provider without locking. Operations slower than SLOW_OPERATION_MILLISECONDS
+ * are also kept, along with their SQL, in a small ring buffer of recent slow operations. Both can
+ * be read back as a cursor through the diagnostics URIs
+ */
+class ProviderMetrics {
+
+    static final int QUERY = 0;
+    static final int INSERT = 1;
+    static final int DELETE = 2;
+    private static final String[] OPERATION_NAMES = { "query", "insert", "delete" };
+    private static final String UNMATCHED_URI_PATH = "unmatched";
+
+    // Operations taking longer than this are likely to have caused a dropped frame if they were
+    // made on the UI thread
+    static final long SLOW_OPERATION_MILLISECONDS = 16;
+    private static final int NUMBER_OF_SLOW_OPERATIONS = 32;
+
+    private static final long NANOSECONDS_PER_MILLISECOND = 1000000;
+    private static final double MICROSECONDS_PER_MILLISECOND = 1000.0;
+
+    private final int numberOfUriCodes;
+    private final String[] uriPaths;
+    private final LatencyHistogram[] histograms;
+    private final AtomicLongArray rows;
+    private final AtomicReferenceArray<SlowOperation> slowOperations =
+            new AtomicReferenceArray<>(NUMBER_OF_SLOW_OPERATIONS);
+    private final AtomicInteger numberOfSlowOperations = new AtomicInteger();
+
+    /**
+     * @param uriPaths  Path of the URI matched by each code used by the provider, indexed by code.
+     *                  URIs which do not match are recorded under code 0
+     */
+    ProviderMetrics(String[] uriPaths){
+        this.uriPaths = uriPaths;
+        numberOfUriCodes = uriPaths.length;
+        histograms = new LatencyHistogram[OPERATION_NAMES.length * numberOfUriCodes];
+        for(int i = 0; i < histograms.length; i++){
+            histograms[i] = new LatencyHistogram();
+        }
+        rows = new AtomicLongArray(histograms.length);
+    }
+
+    /**
+     * @return  Whether the operation was slow, in which case the caller should also call
+     *          recordSlowOperation with the SQL that was run
+     */
+    boolean record(int operation, int uriCode, long durationNanoseconds, int numberOfRows){
+        int index = getIndex(operation, uriCode);
+        histograms[index].recordNanoseconds(durationNanoseconds);
+        rows.addAndGet(index, Math.max(0, numberOfRows));
+
+        return durationNanoseconds >= SLOW_OPERATION_MILLISECONDS * NANOSECONDS_PER_MILLISECOND;
+    }
+
+    void recordSlowOperation(int operation, int uriCode, long durationNanoseconds, int numberOfRows,
+                             String sql){
+        SlowOperation slowOperation = new SlowOperation(System.currentTimeMillis(), operation,
+                Math.max(0, uriCode), durationNanoseconds, numberOfRows, sql);
+        int position = numberOfSlowOperations.getAndIncrement();
+        // The count wraps around to negative numbers after enough slow operations
+        slowOperations.set(Math.floorMod(position, NUMBER_OF_SLOW_OPERATIONS), slowOperation);
+    }
+
+    /**
+     * @return  One row for each operation and URI code which has been used, with the number of
+     *          calls, total rows and latency percentiles in milliseconds
+     */
+    Cursor getMetricsCursor(){
+        MatrixCursor cursor = new MatrixCursor(new String[] { DIAGNOSTICS_OPERATION, DIAGNOSTICS_URI_CODE,
+                DIAGNOSTICS_URI_PATH, DIAGNOSTICS_COUNT, DIAGNOSTICS_ROWS, DIAGNOSTICS_MEAN, DIAGNOSTICS_P50,
+                DIAGNOSTICS_P90, DIAGNOSTICS_P99, DIAGNOSTICS_MAX });
+
+        for(int operation = 0; operation < OPERATION_NAMES.length; operation++){
+            for(int uriCode = 0; uriCode < numberOfUriCodes; uriCode++){
+                int index = getIndex(operation, uriCode);
+                LatencyHistogram histogram = histograms[index];
+                if(histogram.getCount() == 0){
+                    continue;
+                }
+
+                cursor.addRow(new Object[] { OPERATION_NAMES[operation], uriCode, getUriPath(uriCode),
+                        histogram.getCount(), rows.get(index),
+                        histogram.getMeanMicroseconds() / MICROSECONDS_PER_MILLISECOND,
+                        histogram.getPercentileMicroseconds(50) / MICROSECONDS_PER_MILLISECOND,
+                        histogram.getPercentileMicroseconds(90) / MICROSECONDS_PER_MILLISECOND,
+                        histogram.getPercentileMicroseconds(99) / MICROSECONDS_PER_MILLISECOND,
+                        histogram.getMaximumMicroseconds() / MICROSECONDS_PER_MILLISECOND });
+            }
+        }
+
+        return cursor;
+    }
+
+    /**
+     * @return  The most recent slow operations, newest first
+     */
+    Cursor getSlowOperationsCursor(){
+        MatrixCursor cursor = new MatrixCursor(new String[] { DIAGNOSTICS_TIMESTAMP,
+                DIAGNOSTICS_OPERATION, DIAGNOSTICS_URI_CODE, DIAGNOSTICS_URI_PATH, DIAGNOSTICS_DURATION,
+                DIAGNOSTICS_ROWS, DIAGNOSTICS_SQL });
+
+        // Slots not yet written are empty, so every slot can be read even before the count wraps
+        int next = numberOfSlowOperations.get();
+        for(int age = 1; age <= NUMBER_OF_SLOW_OPERATIONS; age++){
+            SlowOperation slowOperation = slowOperations.get(
+                    Math.floorMod(next - age, NUMBER_OF_SLOW_OPERATIONS));
+            if(slowOperation == null){
+                continue;
+            }
+
+            cursor.addRow(new Object[] { slowOperation.timestamp, OPERATION_NAMES[slowOperation.operation],
+                    slowOperation.uriCode, getUriPath(slowOperation.uriCode),
+                    (double) slowOperation.durationNanoseconds / NANOSECONDS_PER_MILLISECOND,
+                    slowOperation.rows, slowOperation.sql });
+        }
+
+        return cursor;
+    }
+
+    private String getUriPath(int uriCode){
+        String path = uriCode < numberOfUriCodes ? uriPaths[uriCode] : null;
+        return path != null ? path : UNMATCHED_URI_PATH;
+    }
+
+    private int getIndex(int operation, int uriCode){
+        if(uriCode < 0 || uriCode >= numberOfUriCodes){
+            uriCode = 0;
+        }
+        return operation * numberOfUriCodes + uriCode;
+    }
+
+    private static class SlowOperation {
+        final long timestamp;
+        final int operation;
+        final int uriCode;
+        final long durationNanoseconds;
+        final int rows;
+        final String sql;
+
+        SlowOperation(long timestamp, int operation, int uriCode, long durationNanoseconds, int rows,
+                      String sql){
+            this.timestamp = timestamp;
+            this.operation = operation;
+            this.uriCode = uriCode;
+            this.durationNanoseconds = durationNanoseconds;
+            this.rows = rows;
+            this.sql = sql;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.mdp.cw4.runningtracker;
+
+/**
+ * <h1>Route Bounds</h1>
+ * The smallest box of latitudes and longitudes holding every point of a route. Boxes are stored
+ * for each session so that those which cannot pass near a place can be ruled out without reading
+ * their routes. A box is also a region for finding routes in, such as the area shown by a map.
+ * Routes are not expected to cross the 180th meridian
+ */
+public class RouteBounds implements RouteGrid.Region {
+
+    private final double minimumLatitude;
+    private final double maximumLatitude;
+    private final double minimumLongitude;
+    private final double maximumLongitude;
+
+    public RouteBounds(double minimumLatitude, double maximumLatitude, double minimumLongitude,
+                       double maximumLongitude){
+        this.minimumLatitude = minimumLatitude;
+        this.maximumLatitude = maximumLatitude;
+        this.minimumLongitude = minimumLongitude;
+        this.maximumLongitude = maximumLongitude;
+    }
+
+    /**
+     * @param latitudes     Latitudes of the route
+     * @param longitudes    Longitudes of the route, must be the same length as the latitudes
+     * @return              The bounds of the route, or null if it has no points
+     */
+    public static RouteBounds of(double[] latitudes, double[] longitudes){
+        if(latitudes.length == 0){
+            return null;
+        }
+
+        double minimumLatitude = latitudes[0];
+        double maximumLatitude = latitudes[0];
+        double minimumLongitude = longitudes[0];
+        double maximumLongitude = longitudes[0];
+        for(int i = 1; i < latitudes.length; i++){
+            minimumLatitude = Math.min(minimumLatitude, latitudes[i]);
+            maximumLatitude = Math.max(maximumLatitude, latitudes[i]);
+            minimumLongitude = Math.min(minimumLongitude, longitudes[i]);
+            maximumLongitude = Math.max(maximumLongitude, longitudes[i]);
+        }
+
+        return new RouteBounds(minimumLatitude, maximumLatitude, minimumLongitude, maximumLongitude);
+    }
+
+    /**
+     * @return  Degrees of latitude covering the distance
+     */
+    public static double getLatitudeMargin(double metres){
+        return metres / RouteDistance.METRES_PER_DEGREE;
+    }
+
+    /**
+     * @return  Degrees of longitude covering the distance at the latitude
+     */
+    public static double getLongitudeMargin(double latitude, double metres){
+        return metres / (RouteDistance.METRES_PER_DEGREE
+                * Math.max(Math.cos(Math.toRadians(latitude)), 1e-6));
+    }
+
+    /**
+     * @param marginMetres  Distance the bounds are widened by on every side
+     * @return              Whether the point is within the widened bounds
+     */
+    public boolean contains(double latitude, double longitude, double marginMetres){
+        double latitudeMargin = getLatitudeMargin(marginMetres);
+        double longitudeMargin = getLongitudeMargin(latitude, marginMetres);
+        return latitude >= minimumLatitude - latitudeMargin && latitude <= maximumLatitude + latitudeMargin
+                && longitude >= minimumLongitude - longitudeMargin && longitude <= maximumLongitude + longitudeMargin;
+    }
+
+    @Override
+    public boolean containsBox(double south, double north, double west, double east){
+        return south >= minimumLatitude && north <= maximumLatitude
+                && west >= minimumLongitude && east <= maximumLongitude;
+    }
+
+    @Override
+    public boolean intersectsBox(double south, double north, double west, double east){
+        return south <= maximumLatitude && north >= minimumLatitude
+                && west <= maximumLongitude && east >= minimumLongitude;
+    }
+
+    /**
+     * Each step is taken as a straight line in latitude and longitude, which for the short steps
+     * of a route is the same as on the ground
+     */
+    @Override
+    public boolean intersectsRoute(double[] latitudes, double[] longitudes){
+        for(int i = 0; i < latitudes.length; i++){
+            if(contains(latitudes[i], longitudes[i], 0)){
+                return true;
+            }
+            if(i > 0 && !RouteGrid.isGap(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i])
+                    && stepIntersects(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i])){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Clips the step to the box one side at a time, the Liang-Barsky algorithm
+     * @return  Whether any of the step is left
+     */
+    private boolean stepIntersects(double latitude1, double longitude1, double latitude2, double longitude2){
+        double changeLatitude = latitude2 - latitude1;
+        double changeLongitude = longitude2 - longitude1;
+        double[] changes = { -changeLongitude, changeLongitude, -changeLatitude, changeLatitude };
+        double[] distances = { longitude1 - minimumLongitude, maximumLongitude - longitude1,
+                latitude1 - minimumLatitude, maximumLatitude - latitude1 };
+
+        double enter = 0;
+        double leave = 1;
+        for(int side = 0; side < 4; side++){
+            if(changes[side] == 0){
+                if(distances[side] < 0){
+                    return false;
+                }
+            }else{
+                double fraction = distances[side] / changes[side];
+                if(changes[side] < 0){
+                    enter = Math.max(enter, fraction);
+                }else{
+                    leave = Math.min(leave, fraction);
+                }
+            }
+        }
+        return enter <= leave;
+    }
+
+    @Override
+    public double getMinimumLatitude(){
+        return minimumLatitude;
+    }
+
+    @Override
+    public double getMaximumLatitude(){
+        return maximumLatitude;
+    }
+
+    @Override
+    public double getMinimumLongitude(){
+        return minimumLongitude;
+    }
+
+    @Override
+    public double getMaximumLongitude(){
+        return maximumLongitude;
+    }
+}
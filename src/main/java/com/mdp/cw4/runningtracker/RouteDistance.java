@@ -0,0 +1,61 @@
+package com.mdp.cw4.runningtracker;
+
+/**
+ * <h1>Route Distance</h1>
+ * Measures the distance along a route of latitude and longitude coordinates. Distances are great
+ * circle distances on a spherical earth, which differ from Location.distanceTo, measured on the
+ * WGS84 ellipsoid, by well under one percent, and can be calculated away from the Android framework
+ */
+public class RouteDistance {
+
+    public static final double EARTH_RADIUS_METRES = 6371008.8;
+    // Length of a degree of latitude, and of a degree of longitude at the equator
+    public static final double METRES_PER_DEGREE = Math.toRadians(EARTH_RADIUS_METRES);
+
+    /**
+     * Great circle distance between two coordinates using the haversine formula
+     * @return  Distance in metres
+     */
+    public static double between(double latitude1, double longitude1, double latitude2, double longitude2){
+        double latitude1Radians = Math.toRadians(latitude1);
+        double latitude2Radians = Math.toRadians(latitude2);
+        double sinHalfLatitudeChange = Math.sin((latitude2Radians - latitude1Radians) / 2);
+        double sinHalfLongitudeChange = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+
+        double a = sinHalfLatitudeChange * sinHalfLatitudeChange
+                + Math.cos(latitude1Radians) * Math.cos(latitude2Radians)
+                * sinHalfLongitudeChange * sinHalfLongitudeChange;
+
+        return 2 * EARTH_RADIUS_METRES * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Accumulates the distance along the route the same way WorkoutSessionService does while
+     * recording, that is each step is rounded to the nearest metre before being added to the total
+     * @param latitudes     Latitudes of the route
+     * @param longitudes    Longitudes of the route, must be the same length as the latitudes
+     * @return              Distance in whole metres
+     */
+    public static int accumulate(double[] latitudes, double[] longitudes){
+        int distanceMetres = 0;
+        for(int i = 1; i < latitudes.length; i++){
+            distanceMetres += Math.round(between(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i]));
+        }
+
+        return distanceMetres;
+    }
+
+    /**
+     * @param latitudes     Latitudes of the route
+     * @param longitudes    Longitudes of the route, must be the same length as the latitudes
+     * @return              Cumulative distance in metres to each point of the route, starting at 0
+     */
+    public static double[] cumulativeDistances(double[] latitudes, double[] longitudes){
+        double[] distances = new double[latitudes.length];
+        for(int i = 1; i < latitudes.length; i++){
+            distances[i] = distances[i - 1] + between(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i]);
+        }
+
+        return distances;
+    }
+}
@@ -0,0 +1,245 @@
+package com.mdp.cw4.runningtracker;
+
+import java.util.Arrays;
+
+/**
+ * <h1>Route Fingerprint</h1>
+ * Summarises a route so that sessions covering the same ground can be found without comparing
+ * their coordinates.
+ * <p>
+ * A route is turned into the set of geohash cells it passes through, at 7 characters, which are
+ * about 150 m tall and 90 m wide in the UK. Points are added along each step of the route so that
+ * no cell is skipped between two distant fixes. The similarity of two routes is the Jaccard
+ * similarity of their sets of cells, which does not depend on the direction they were run in or
+ * the number of laps.
+ * <p>
+ * The signature of a route is its MinHash, the smallest hash of its cells under each of 64 hash
+ * functions. The fraction of equal values in two signatures estimates the similarity of the
+ * routes. The signature is split into 16 bands of 4 values and each band is hashed into a key, so
+ * two routes share at least one band key with a probability of 1 - (1 - s^4)^16 for a similarity
+ * s. This is above 0.5 for routes which are at least 50% similar and falls quickly below that, so
+ * looking up the sessions sharing a band key finds the similar ones without reading the others
+ */
+public class RouteFingerprint {
+
+    static final int NUMBER_OF_HASHES = 64;
+    static final int NUMBER_OF_BANDS = 16;
+    static final int ROWS_PER_BAND = NUMBER_OF_HASHES / NUMBER_OF_BANDS;
+
+    // Similarity above which routes are found through their band keys at least half the time
+    public static final double DEFAULT_MINIMUM_SIMILARITY = 0.5;
+
+    // 7 characters of 5 bits each
+    private static final int GEOHASH_BITS = 35;
+    private static final int BITS_PER_CHARACTER = 5;
+    private static final String GEOHASH_CHARACTERS = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    // Spacing of the points added along each step, well under the size of a cell
+    private static final double SAMPLE_METRES = 30;
+    // Steps longer than this are GPS errors or gaps in the route, so nothing is added along them
+    private static final double MAXIMUM_STEP_METRES = 1000;
+
+    private static final char SIGNATURE_SEPARATOR = ',';
+
+    private static final long[] SEEDS = new long[NUMBER_OF_HASHES];
+
+    static {
+        for(int i = 0; i < NUMBER_OF_HASHES; i++){
+            SEEDS[i] = mix(0x9E3779B97F4A7C15L * (i + 1));
+        }
+    }
+
+    /**
+     * @param latitudes     Latitude of each point of the route
+     * @param longitudes    Longitude of each point of the route
+     * @return              The MinHash signature of the route, or null if the route has no points
+     */
+    public static int[] getSignature(double[] latitudes, double[] longitudes){
+        long[] cells = getCells(latitudes, longitudes);
+        if(cells.length == 0){
+            return null;
+        }
+
+        int[] signature = new int[NUMBER_OF_HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for(long cell : cells){
+            for(int i = 0; i < NUMBER_OF_HASHES; i++){
+                int hash = (int) (mix(cell ^ SEEDS[i]) >>> 33);
+                if(hash < signature[i]){
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * @return  The geohash cells the route passes through, in order of their geohash without
+     *          repeats
+     */
+    static long[] getCells(double[] latitudes, double[] longitudes){
+        int numberOfPoints = Math.min(latitudes.length, longitudes.length);
+        long[] cells = new long[Math.max(16, numberOfPoints * 2)];
+        int numberOfCells = 0;
+
+        for(int i = 0; i < numberOfPoints; i++){
+            int numberOfSamples = 1;
+            if(i > 0){
+                double stepMetres = RouteDistance.between(latitudes[i - 1], longitudes[i - 1],
+                        latitudes[i], longitudes[i]);
+                if(stepMetres <= MAXIMUM_STEP_METRES){
+                    numberOfSamples = Math.max(1, (int) Math.ceil(stepMetres / SAMPLE_METRES));
+                }
+            }
+
+            for(int sample = numberOfSamples - 1; sample >= 0; sample--){
+                // Samples run from just after the previous point up to and including this one
+                double fraction = (double) sample / numberOfSamples;
+                double latitude = latitudes[i] - (i > 0 ? (latitudes[i] - latitudes[i - 1]) * fraction : 0);
+                double longitude = longitudes[i] - (i > 0 ? (longitudes[i] - longitudes[i - 1]) * fraction : 0);
+
+                long cell = getCell(latitude, longitude);
+                if(numberOfCells > 0 && cells[numberOfCells - 1] == cell){
+                    continue;
+                }
+                if(numberOfCells == cells.length){
+                    cells = Arrays.copyOf(cells, cells.length * 2);
+                }
+                cells[numberOfCells++] = cell;
+            }
+        }
+
+        Arrays.sort(cells, 0, numberOfCells);
+        int numberOfUniqueCells = 0;
+        for(int i = 0; i < numberOfCells; i++){
+            if(numberOfUniqueCells == 0 || cells[numberOfUniqueCells - 1] != cells[i]){
+                cells[numberOfUniqueCells++] = cells[i];
+            }
+        }
+        return Arrays.copyOf(cells, numberOfUniqueCells);
+    }
+
+    /**
+     * @return  The bits of the geohash of the cell holding the point, alternating between
+     *          longitude and latitude starting with longitude
+     */
+    static long getCell(double latitude, double longitude){
+        double minimumLatitude = -90;
+        double maximumLatitude = 90;
+        double minimumLongitude = -180;
+        double maximumLongitude = 180;
+
+        long cell = 0;
+        for(int bit = 0; bit < GEOHASH_BITS; bit++){
+            cell <<= 1;
+            if(bit % 2 == 0){
+                double middle = (minimumLongitude + maximumLongitude) / 2;
+                if(longitude >= middle){
+                    cell |= 1;
+                    minimumLongitude = middle;
+                }else{
+                    maximumLongitude = middle;
+                }
+            }else{
+                double middle = (minimumLatitude + maximumLatitude) / 2;
+                if(latitude >= middle){
+                    cell |= 1;
+                    minimumLatitude = middle;
+                }else{
+                    maximumLatitude = middle;
+                }
+            }
+        }
+        return cell;
+    }
+
+    /**
+     * @return  The geohash of a cell as text, for example "gcrjhv1"
+     */
+    static String toGeohash(long cell){
+        StringBuilder geohash = new StringBuilder(GEOHASH_BITS / BITS_PER_CHARACTER);
+        for(int shift = GEOHASH_BITS - BITS_PER_CHARACTER; shift >= 0; shift -= BITS_PER_CHARACTER){
+            geohash.append(GEOHASH_CHARACTERS.charAt((int) (cell >>> shift) & 31));
+        }
+        return geohash.toString();
+    }
+
+    /**
+     * @return  Key of each band of a signature. Keys include the band they were made from, so
+     *          equal keys mean equal values in the same band
+     */
+    public static long[] getBandKeys(int[] signature){
+        long[] keys = new long[NUMBER_OF_BANDS];
+        for(int band = 0; band < NUMBER_OF_BANDS; band++){
+            long key = band;
+            for(int row = 0; row < ROWS_PER_BAND; row++){
+                key = mix(key * 0x100000001B3L + signature[band * ROWS_PER_BAND + row]);
+            }
+            keys[band] = key;
+        }
+        return keys;
+    }
+
+    /**
+     * @return  Estimate of the similarity, between 0 and 1, of the routes with the signatures
+     */
+    public static double getSimilarity(int[] signature, int[] otherSignature){
+        int equal = 0;
+        for(int i = 0; i < NUMBER_OF_HASHES; i++){
+            if(signature[i] == otherSignature[i]){
+                equal++;
+            }
+        }
+        return (double) equal / NUMBER_OF_HASHES;
+    }
+
+    /**
+     * Encodes a signature as comma separated values, ready for storing in the database
+     */
+    public static String encode(int[] signature){
+        StringBuilder stringBuilder = new StringBuilder(NUMBER_OF_HASHES * 11);
+        for(int i = 0; i < signature.length; i++){
+            if(i > 0){
+                stringBuilder.append(SIGNATURE_SEPARATOR);
+            }
+            stringBuilder.append(signature[i]);
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * @param encoded   Signature as returned by encode
+     * @return          The signature
+     * @throws IllegalArgumentException If the text is not an encoded signature
+     */
+    public static int[] decode(String encoded){
+        if(encoded == null){
+            throw new IllegalArgumentException("Missing route signature");
+        }
+
+        int[] signature = new int[NUMBER_OF_HASHES];
+        int start = 0;
+        for(int i = 0; i < NUMBER_OF_HASHES; i++){
+            int end = encoded.indexOf(SIGNATURE_SEPARATOR, start);
+            if(end < 0){
+                end = encoded.length();
+            }
+            if((end == encoded.length()) != (i == NUMBER_OF_HASHES - 1)){
+                throw new IllegalArgumentException("Invalid route signature " + encoded);
+            }
+
+            signature[i] = Integer.parseInt(encoded.substring(start, end));
+            start = end + 1;
+        }
+        return signature;
+    }
+
+    /**
+     * The finaliser of SplitMix64, which spreads every bit of the value over the whole hash
+     */
+    private static long mix(long value){
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,409 @@
+package com.mdp.cw4.runningtracker;
+
+import java.util.Arrays;
+
+/**
+ * <h1>Route Grid</h1>
+ * A spatial index of routes made of nested grids of latitude and longitude cells. The finest cells
+ * are 0.01 degrees across, about 1.1 km by 0.7 km in the UK, and each coarser level is made of 4 by
+ * 4 cells of the level below, up to cells of about 41 degrees. A route is indexed under every cell
+ * it passes through at every level, found by walking each step of the route across the finest
+ * grid, so nothing between two distant points is missed.
+ * <p>
+ * A region, such as a map viewport or a circle around a point, is covered by starting at the
+ * finest level on which it spans only a handful of cells. Cells wholly inside the region are kept
+ * as they are, while those on its edge are split into their smaller cells, down to two levels
+ * further. Routes under a cell inside the region certainly pass through it, and only those under
+ * the remaining cells on the edge need checking against the region itself. However large the
+ * region, it is covered by a few hundred cells.
+ * <p>
+ * Routes are indexed by their outline, see getOutline, and steps longer than MAXIMUM_STEP_METRES
+ * are gaps in the route and left out. Routes are not expected to cross the 180th meridian
+ */
+public class RouteGrid {
+
+    // Every point of a route is within this distance of its outline
+    public static final double OUTLINE_TOLERANCE_METRES = 10;
+    // Steps longer than this are GPS errors or gaps in the route
+    public static final double MAXIMUM_STEP_METRES = 5000;
+
+    static final int NUMBER_OF_LEVELS = 7;
+    static final double FINEST_CELL_DEGREES = 0.01;
+    // Each level is 4 by 4 cells of the level below, that is 2 bits of the row and column
+    private static final int BITS_PER_LEVEL = 2;
+
+    // Largest number of cells of the level a region is first covered with, and the number of
+    // levels its edge is then split down by
+    private static final int MAXIMUM_STARTING_CELLS = 64;
+    private static final int SPLIT_LEVELS = 2;
+
+    private static final int ROW_BITS = 24;
+    private static final int LEVEL_SHIFT = ROW_BITS * 2;
+    private static final int COLUMN_MASK = (1 << ROW_BITS) - 1;
+
+    /**
+     * Simplifies a route to its outline. Both ends of each gap are kept, so no ground covered is
+     * merged into a gap, and long straight stretches keep enough points that none of their steps
+     * is taken for a gap
+     * @param latitudes     Latitudes of the route
+     * @param longitudes    Longitudes of the route, must be the same length as the latitudes
+     * @return              Indices, in route order, of the points of the outline
+     */
+    public static int[] getOutline(double[] latitudes, double[] longitudes){
+        double[] significance = RouteSimplifier.calculateSignificance(latitudes, longitudes);
+        for(int i = 1; i < latitudes.length; i++){
+            if(isGap(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i])){
+                significance[i - 1] = Double.POSITIVE_INFINITY;
+                significance[i] = Double.POSITIVE_INFINITY;
+            }
+        }
+
+        int[] keptIndices = RouteSimplifier.simplify(significance, OUTLINE_TOLERANCE_METRES);
+        int[] outline = new int[latitudes.length];
+        int numberOfPoints = 0;
+        for(int k = 0; k < keptIndices.length; k++){
+            if(k > 0){
+                int previous = keptIndices[k - 1];
+                for(int i = previous + 1; i < keptIndices[k]; i++){
+                    if(RouteDistance.between(latitudes[previous], longitudes[previous], latitudes[i + 1],
+                            longitudes[i + 1]) > MAXIMUM_STEP_METRES / 2){
+                        outline[numberOfPoints++] = i;
+                        previous = i;
+                    }
+                }
+            }
+            outline[numberOfPoints++] = keptIndices[k];
+        }
+        return Arrays.copyOf(outline, numberOfPoints);
+    }
+
+    /**
+     * @param latitudes     Latitudes of the outline
+     * @param longitudes    Longitudes of the outline, must be the same length as the latitudes
+     * @return              Key of every cell the outline passes through at every level, in order
+     *                      without repeats
+     */
+    public static long[] getCells(double[] latitudes, double[] longitudes){
+        long[] cells = new long[Math.max(16, latitudes.length * 2)];
+        int numberOfCells = 0;
+
+        for(int i = 0; i < latitudes.length; i++){
+            int row = getFinestRow(latitudes[i]);
+            int column = getFinestColumn(longitudes[i]);
+
+            if(i == 0 || isGap(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i])){
+                if(numberOfCells + NUMBER_OF_LEVELS > cells.length){
+                    cells = Arrays.copyOf(cells, cells.length * 2);
+                }
+                numberOfCells = addCell(cells, numberOfCells, row, column);
+                continue;
+            }
+
+            // Walk across the finest grid from the previous point, one cell edge at a time
+            double startX = (longitudes[i - 1] + 180) / FINEST_CELL_DEGREES;
+            double startY = (latitudes[i - 1] + 90) / FINEST_CELL_DEGREES;
+            double changeX = (longitudes[i] + 180) / FINEST_CELL_DEGREES - startX;
+            double changeY = (latitudes[i] + 90) / FINEST_CELL_DEGREES - startY;
+            int currentColumn = getFinestColumn(longitudes[i - 1]);
+            int currentRow = getFinestRow(latitudes[i - 1]);
+            int stepColumn = changeX > 0 ? 1 : -1;
+            int stepRow = changeY > 0 ? 1 : -1;
+            double nextX = changeX == 0 ? Double.POSITIVE_INFINITY
+                    : ((changeX > 0 ? currentColumn + 1 : currentColumn) - startX) / changeX;
+            double nextY = changeY == 0 ? Double.POSITIVE_INFINITY
+                    : ((changeY > 0 ? currentRow + 1 : currentRow) - startY) / changeY;
+            double deltaX = changeX == 0 ? Double.POSITIVE_INFINITY : 1 / Math.abs(changeX);
+            double deltaY = changeY == 0 ? Double.POSITIVE_INFINITY : 1 / Math.abs(changeY);
+
+            int numberOfSteps = Math.abs(column - currentColumn) + Math.abs(row - currentRow);
+            if(numberOfCells + (numberOfSteps + 1) * NUMBER_OF_LEVELS > cells.length){
+                cells = Arrays.copyOf(cells, Math.max(cells.length * 2,
+                        numberOfCells + (numberOfSteps + 1) * NUMBER_OF_LEVELS));
+            }
+            for(int step = 0; step < numberOfSteps; step++){
+                // Rounding must not take the walk past the cell of the point
+                if(currentColumn != column && (currentRow == row || nextX < nextY)){
+                    currentColumn += stepColumn;
+                    nextX += deltaX;
+                }else{
+                    currentRow += stepRow;
+                    nextY += deltaY;
+                }
+                numberOfCells = addCell(cells, numberOfCells, currentRow, currentColumn);
+            }
+        }
+
+        Arrays.sort(cells, 0, numberOfCells);
+        int numberOfUniqueCells = 0;
+        for(int i = 0; i < numberOfCells; i++){
+            if(numberOfUniqueCells == 0 || cells[numberOfUniqueCells - 1] != cells[i]){
+                cells[numberOfUniqueCells++] = cells[i];
+            }
+        }
+        return Arrays.copyOf(cells, numberOfUniqueCells);
+    }
+
+    /**
+     * Covers a region with cells
+     * @return  The cells, split into those wholly inside the region and those on its edge
+     */
+    public static Cover cover(Region region){
+        int firstRow = getFinestRow(region.getMinimumLatitude());
+        int lastRow = getFinestRow(region.getMaximumLatitude());
+        int firstColumn = getFinestColumn(region.getMinimumLongitude());
+        int lastColumn = getFinestColumn(region.getMaximumLongitude());
+
+        int level = 0;
+        while(level < NUMBER_OF_LEVELS - 1 && getNumberOfCells(level, firstRow, lastRow, firstColumn, lastColumn)
+                > MAXIMUM_STARTING_CELLS){
+            level++;
+        }
+
+        Cover cover = new Cover();
+        int shift = level * BITS_PER_LEVEL;
+        for(int row = firstRow >> shift; row <= lastRow >> shift; row++){
+            for(int column = firstColumn >> shift; column <= lastColumn >> shift; column++){
+                addToCover(cover, region, level, Math.max(0, level - SPLIT_LEVELS), row, column);
+            }
+        }
+        return cover;
+    }
+
+    /**
+     * @return  Whether the step between two points is a gap in the route rather than ground covered
+     */
+    public static boolean isGap(double latitude1, double longitude1, double latitude2, double longitude2){
+        return RouteDistance.between(latitude1, longitude1, latitude2, longitude2) > MAXIMUM_STEP_METRES;
+    }
+
+    static long getKey(int level, int row, int column){
+        return ((long) level << LEVEL_SHIFT) | ((long) row << ROW_BITS) | column;
+    }
+
+    static int getLevel(long key){
+        return (int) (key >>> LEVEL_SHIFT);
+    }
+
+    static int getRow(long key){
+        return (int) (key >>> ROW_BITS) & COLUMN_MASK;
+    }
+
+    static int getColumn(long key){
+        return (int) key & COLUMN_MASK;
+    }
+
+    private static int getFinestRow(double latitude){
+        return (int) Math.floor((Math.max(-90, Math.min(90, latitude)) + 90) / FINEST_CELL_DEGREES);
+    }
+
+    private static int getFinestColumn(double longitude){
+        return (int) Math.floor((Math.max(-180, Math.min(180, longitude)) + 180) / FINEST_CELL_DEGREES);
+    }
+
+    /**
+     * @return  Number of cells of the level covering the range of rows and columns of the finest
+     *          level
+     */
+    private static long getNumberOfCells(int level, int firstRow, int lastRow, int firstColumn, int lastColumn){
+        int shift = level * BITS_PER_LEVEL;
+        return (long) ((lastRow >> shift) - (firstRow >> shift) + 1) * ((lastColumn >> shift) - (firstColumn >> shift) + 1);
+    }
+
+    /**
+     * Adds a cell of the finest level along with the cells holding it at every other level
+     * @return  The new number of cells
+     */
+    private static int addCell(long[] cells, int numberOfCells, int row, int column){
+        for(int level = 0; level < NUMBER_OF_LEVELS; level++){
+            int shift = level * BITS_PER_LEVEL;
+            cells[numberOfCells++] = getKey(level, row >> shift, column >> shift);
+        }
+        return numberOfCells;
+    }
+
+    private static void addToCover(Cover cover, Region region, int level, int lowestLevel, int row, int column){
+        int shift = level * BITS_PER_LEVEL;
+        double south = (row << shift) * FINEST_CELL_DEGREES - 90;
+        double north = ((row + 1) << shift) * FINEST_CELL_DEGREES - 90;
+        double west = (column << shift) * FINEST_CELL_DEGREES - 180;
+        double east = ((column + 1) << shift) * FINEST_CELL_DEGREES - 180;
+
+        if(!region.intersectsBox(south, north, west, east)){
+            return;
+        }
+        if(region.containsBox(south, north, west, east)){
+            cover.addInside(getKey(level, row, column));
+            return;
+        }
+        if(level == lowestLevel){
+            cover.addEdge(getKey(level, row, column));
+            return;
+        }
+
+        int childrenPerSide = 1 << BITS_PER_LEVEL;
+        for(int childRow = row * childrenPerSide; childRow < (row + 1) * childrenPerSide; childRow++){
+            for(int childColumn = column * childrenPerSide; childColumn < (column + 1) * childrenPerSide; childColumn++){
+                addToCover(cover, region, level - 1, lowestLevel, childRow, childColumn);
+            }
+        }
+    }
+
+    /**
+     * An area to find routes in
+     */
+    public interface Region {
+        double getMinimumLatitude();
+        double getMaximumLatitude();
+        double getMinimumLongitude();
+        double getMaximumLongitude();
+
+        /**
+         * @return  Whether the box is wholly inside the region
+         */
+        boolean containsBox(double south, double north, double west, double east);
+
+        /**
+         * @return  Whether the box may overlap the region. This must never be false when they do
+         */
+        boolean intersectsBox(double south, double north, double west, double east);
+
+        /**
+         * @return  Whether any part of the outline, other than its gaps, is in the region
+         */
+        boolean intersectsRoute(double[] latitudes, double[] longitudes);
+    }
+
+    /**
+     * The points within a distance of a centre
+     */
+    public static class Circle implements Region {
+        private final double latitude;
+        private final double longitude;
+        private final double radiusMetres;
+        private final RouteBounds bounds;
+
+        public Circle(double latitude, double longitude, double radiusMetres){
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.radiusMetres = radiusMetres;
+
+            double latitudeMargin = RouteBounds.getLatitudeMargin(radiusMetres);
+            double longitudeMargin = RouteBounds.getLongitudeMargin(latitude, radiusMetres);
+            bounds = new RouteBounds(latitude - latitudeMargin, latitude + latitudeMargin,
+                    longitude - longitudeMargin, longitude + longitudeMargin);
+        }
+
+        /**
+         * @return  The closest the outline, other than its gaps, comes to the centre in metres, or
+         *          Double.POSITIVE_INFINITY if it has no points
+         */
+        public double getDistanceMetres(double[] latitudes, double[] longitudes){
+            double degreesPerMetreLatitude = RouteBounds.getLatitudeMargin(1);
+            double degreesPerMetreLongitude = RouteBounds.getLongitudeMargin(latitude, 1);
+
+            double closestSquared = Double.POSITIVE_INFINITY;
+            for(int i = 0; i < latitudes.length; i++){
+                double x = (longitudes[i] - longitude) / degreesPerMetreLongitude;
+                double y = (latitudes[i] - latitude) / degreesPerMetreLatitude;
+                double distanceSquared = x * x + y * y;
+
+                if(i > 0 && !isGap(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i])){
+                    double previousX = (longitudes[i - 1] - longitude) / degreesPerMetreLongitude;
+                    double previousY = (latitudes[i - 1] - latitude) / degreesPerMetreLatitude;
+                    double stepX = x - previousX;
+                    double stepY = y - previousY;
+                    double stepSquared = stepX * stepX + stepY * stepY;
+                    if(stepSquared > 0){
+                        double fraction = Math.max(0, Math.min(1, -(previousX * stepX + previousY * stepY) / stepSquared));
+                        double closestX = previousX + stepX * fraction;
+                        double closestY = previousY + stepY * fraction;
+                        distanceSquared = Math.min(distanceSquared, closestX * closestX + closestY * closestY);
+                    }
+                }
+                closestSquared = Math.min(closestSquared, distanceSquared);
+            }
+            return Math.sqrt(closestSquared);
+        }
+
+        public double getRadiusMetres(){
+            return radiusMetres;
+        }
+
+        @Override
+        public double getMinimumLatitude(){
+            return bounds.getMinimumLatitude();
+        }
+
+        @Override
+        public double getMaximumLatitude(){
+            return bounds.getMaximumLatitude();
+        }
+
+        @Override
+        public double getMinimumLongitude(){
+            return bounds.getMinimumLongitude();
+        }
+
+        @Override
+        public double getMaximumLongitude(){
+            return bounds.getMaximumLongitude();
+        }
+
+        @Override
+        public boolean containsBox(double south, double north, double west, double east){
+            // The corner furthest from the centre is within the radius
+            double furthestLatitude = Math.abs(south - latitude) > Math.abs(north - latitude) ? south : north;
+            double furthestLongitude = Math.abs(west - longitude) > Math.abs(east - longitude) ? west : east;
+            return RouteDistance.between(latitude, longitude, furthestLatitude, furthestLongitude) <= radiusMetres;
+        }
+
+        @Override
+        public boolean intersectsBox(double south, double north, double west, double east){
+            return bounds.intersectsBox(south, north, west, east);
+        }
+
+        @Override
+        public boolean intersectsRoute(double[] latitudes, double[] longitudes){
+            return getDistanceMetres(latitudes, longitudes) <= radiusMetres;
+        }
+    }
+
+    /**
+     * Cells covering a region, see cover
+     */
+    public static class Cover {
+        private long[] insideCells = new long[16];
+        private long[] edgeCells = new long[16];
+        private int numberOfInsideCells;
+        private int numberOfEdgeCells;
+
+        private void addInside(long key){
+            if(numberOfInsideCells == insideCells.length){
+                insideCells = Arrays.copyOf(insideCells, insideCells.length * 2);
+            }
+            insideCells[numberOfInsideCells++] = key;
+        }
+
+        private void addEdge(long key){
+            if(numberOfEdgeCells == edgeCells.length){
+                edgeCells = Arrays.copyOf(edgeCells, edgeCells.length * 2);
+            }
+            edgeCells[numberOfEdgeCells++] = key;
+        }
+
+        /**
+         * @return  Cells wholly inside the region, so routes passing through them are in it
+         */
+        public long[] getInsideCells(){
+            return Arrays.copyOf(insideCells, numberOfInsideCells);
+        }
+
+        /**
+         * @return  Cells on the edge of the region, so routes passing through them need checking
+         *          against the region
+         */
+        public long[] getEdgeCells(){
+            return Arrays.copyOf(edgeCells, numberOfEdgeCells);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.mdp.cw4.runningtracker;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.ROUTE_BANDS_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.ROUTE_SIGNATURES_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.SESSION_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.Contract.*;
+
+/**
+ * <h1>Route Index</h1>
+ * Keeps the route signature of each session, see RouteFingerprint, along with a row for each of
+ * its band keys. The band keys are indexed, so the sessions which may have been along the same
+ * route as another are those sharing any of its 16 band keys, found with 16 index lookups
+ * however many sessions there are. Only their signatures are then compared to estimate how
+ * similar they are.
+ * <p>
+ * The methods work directly on the database and are called by WorkoutSessionContentProvider
+ */
+class RouteIndex {
+
+    static final String[] SIMILAR_SESSIONS_COLUMNS = { _ID, ROUTE_SIMILARITY };
+
+    /**
+     * Stores the signature of a session and its band keys, replacing any stored for it before
+     * @param values    The session id and encoded signature
+     * @return          Whether the signature was stored, which it is not if it is invalid or the
+     *                  session no longer exists
+     */
+    static boolean store(SQLiteDatabase database, ContentValues values){
+        Long sessionId = values.getAsLong(RECORD_SESSION_ID);
+        String encodedSignature = values.getAsString(ROUTE_SIGNATURE);
+        if(sessionId == null || encodedSignature == null){
+            return false;
+        }
+
+        long[] bandKeys;
+        try {
+            bandKeys = RouteFingerprint.getBandKeys(RouteFingerprint.decode(encodedSignature));
+        }catch(IllegalArgumentException e){
+            e.printStackTrace();
+            return false;
+        }
+
+        database.beginTransaction();
+        try {
+            // The session may have been deleted while it was being analysed
+            if(!WorkoutSessionContentProvider.sessionExists(database, sessionId)){
+                return false;
+            }
+
+            remove(database, sessionId);
+
+            ContentValues signatureValues = new ContentValues();
+            signatureValues.put(RECORD_SESSION_ID, sessionId);
+            signatureValues.put(ROUTE_SIGNATURE, encodedSignature);
+            if(database.insert(ROUTE_SIGNATURES_TABLE_NAME, null, signatureValues) == -1){
+                return false;
+            }
+
+            ContentValues bandValues = new ContentValues();
+            bandValues.put(RECORD_SESSION_ID, sessionId);
+            for(long bandKey : bandKeys){
+                bandValues.put(ROUTE_BAND_KEY, bandKey);
+                database.insert(ROUTE_BANDS_TABLE_NAME, null, bandValues);
+            }
+            database.setTransactionSuccessful();
+        }finally{
+            database.endTransaction();
+        }
+
+        return true;
+    }
+
+    /**
+     * Deletes the signature and band keys of a session
+     */
+    static void remove(SQLiteDatabase database, long sessionId){
+        String[] selectionArgs = { String.valueOf(sessionId) };
+        database.delete(ROUTE_BANDS_TABLE_NAME, RECORD_SESSION_ID + " = ?", selectionArgs);
+        database.delete(ROUTE_SIGNATURES_TABLE_NAME, RECORD_SESSION_ID + " = ?", selectionArgs);
+    }
+
+    /**
+     * Removes the signatures of any sessions which no longer exist, for example after deleting
+     * sessions by a selection
+     */
+    static void removeDeletedSessions(SQLiteDatabase database){
+        String deletedSessions = RECORD_SESSION_ID + " NOT IN (SELECT _id FROM " + SESSION_TABLE_NAME + ")";
+        database.delete(ROUTE_BANDS_TABLE_NAME, deletedSessions, null);
+        database.delete(ROUTE_SIGNATURES_TABLE_NAME, deletedSessions, null);
+    }
+
+    /**
+     * Finds the sessions along the same route as a session
+     * @param sessionId             id of the session
+     * @param minimumSimilarity     Lowest estimated similarity, between 0 and 1, of the sessions
+     *                              returned
+     * @param limit                 Largest number of sessions returned, or 0 for all of them
+     * @return                      The id and estimated similarity of each session, most similar
+     *                              first, which is empty if the session has no signature
+     */
+    static Cursor getSimilarSessionsCursor(SQLiteDatabase database, long sessionId, double minimumSimilarity,
+                                           int limit){
+        MatrixCursor similarSessions = new MatrixCursor(SIMILAR_SESSIONS_COLUMNS);
+        String[] sessionArgs = { String.valueOf(sessionId) };
+
+        int[] signature;
+        Cursor cursor = database.query(ROUTE_SIGNATURES_TABLE_NAME, new String[] { ROUTE_SIGNATURE },
+                RECORD_SESSION_ID + " = ?", sessionArgs, null, null, null);
+        try {
+            if(!cursor.moveToNext()){
+                return similarSessions;
+            }
+            signature = RouteFingerprint.decode(cursor.getString(0));
+        }finally{
+            cursor.close();
+        }
+
+        List<Object[]> rows = new ArrayList<>();
+        cursor = database.rawQuery("SELECT " + RECORD_SESSION_ID + ", " + ROUTE_SIGNATURE + " FROM "
+                + ROUTE_SIGNATURES_TABLE_NAME + " WHERE " + RECORD_SESSION_ID + " IN (SELECT "
+                + RECORD_SESSION_ID + " FROM " + ROUTE_BANDS_TABLE_NAME + " WHERE " + ROUTE_BAND_KEY
+                + " IN (SELECT " + ROUTE_BAND_KEY + " FROM " + ROUTE_BANDS_TABLE_NAME + " WHERE "
+                + RECORD_SESSION_ID + " = ?)) AND " + RECORD_SESSION_ID + " != ?",
+                new String[] { sessionArgs[0], sessionArgs[0] });
+        try {
+            while(cursor.moveToNext()){
+                double similarity = RouteFingerprint.getSimilarity(signature,
+                        RouteFingerprint.decode(cursor.getString(1)));
+                if(similarity >= minimumSimilarity){
+                    rows.add(new Object[] { cursor.getLong(0), similarity });
+                }
+            }
+        }finally{
+            cursor.close();
+        }
+
+        Collections.sort(rows, new Comparator<Object[]>() {
+            @Override
+            public int compare(Object[] row, Object[] otherRow) {
+                return Double.compare((Double) otherRow[1], (Double) row[1]);
+            }
+        });
+
+        int numberOfRows = limit > 0 ? Math.min(limit, rows.size()) : rows.size();
+        for(int i = 0; i < numberOfRows; i++){
+            similarSessions.addRow(rows.get(i));
+        }
+        return similarSessions;
+    }
+}
@@ -0,0 +1,136 @@
+package com.mdp.cw4.runningtracker;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <h1>Route Level Of Detail</h1>
+ * Prepares a route for display on a map at every zoom level. For each zoom level the route is
+ * simplified so that no point is removed which would move the line by more than about a pixel
+ * on screen, meaning zoomed out views only draw a small fraction of the stored points.
+ * Zoom levels which would result in the same simplified route share a single level of detail
+ */
+public class RouteLevelOfDetail {
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final int[][] levelIndices;
+    private final int[] zoomToLevel;
+    private final List<List<LatLng>> levelPoints;
+
+    private double minimumLatitude = Double.POSITIVE_INFINITY;
+    private double maximumLatitude = Double.NEGATIVE_INFINITY;
+    private double minimumLongitude = Double.POSITIVE_INFINITY;
+    private double maximumLongitude = Double.NEGATIVE_INFINITY;
+
+    public static final int MINIMUM_ZOOM = 0;
+    public static final int MAXIMUM_ZOOM = 21;
+
+    // Tolerance, in screen pixels, used to simplify the route at each zoom level
+    private static final double TOLERANCE_PIXELS = 1.0;
+
+    // Ground resolution in metres per pixel at the equator for zoom level 0
+    private static final double METRES_PER_PIXEL_AT_ZOOM_ZERO = 156543.03392;
+
+    /**
+     * Simplifies the route for each zoom level. This is relatively expensive for long routes so
+     * should be carried out away from the UI thread where possible
+     * @param latitudes     Latitudes of the route
+     * @param longitudes    Longitudes of the route, must be the same length as the latitudes
+     */
+    public RouteLevelOfDetail(double[] latitudes, double[] longitudes){
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+
+        for(int i = 0; i < latitudes.length; i++){
+            minimumLatitude = Math.min(minimumLatitude, latitudes[i]);
+            maximumLatitude = Math.max(maximumLatitude, latitudes[i]);
+            minimumLongitude = Math.min(minimumLongitude, longitudes[i]);
+            maximumLongitude = Math.max(maximumLongitude, longitudes[i]);
+        }
+
+        double[] significance = RouteSimplifier.calculateSignificance(latitudes, longitudes);
+        double latitudeScale = latitudes.length > 0 ? Math.cos(Math.toRadians(latitudes[0])) : 1;
+
+        List<int[]> levels = new ArrayList<>();
+        zoomToLevel = new int[MAXIMUM_ZOOM - MINIMUM_ZOOM + 1];
+
+        // Start from the most zoomed out view; each subsequent zoom level keeps at least as many
+        // points, so a new level only needs creating when the number of points changes
+        int previousNumberOfPoints = -1;
+        for(int zoom = MINIMUM_ZOOM; zoom <= MAXIMUM_ZOOM; zoom++){
+            double toleranceMetres = TOLERANCE_PIXELS * METRES_PER_PIXEL_AT_ZOOM_ZERO * latitudeScale
+                    / Math.pow(2, zoom);
+            int numberOfPoints = RouteSimplifier.countPoints(significance, toleranceMetres);
+
+            if(numberOfPoints != previousNumberOfPoints){
+                levels.add(RouteSimplifier.simplify(significance, toleranceMetres));
+                previousNumberOfPoints = numberOfPoints;
+            }
+
+            zoomToLevel[zoom - MINIMUM_ZOOM] = levels.size() - 1;
+        }
+
+        levelIndices = levels.toArray(new int[levels.size()][]);
+        levelPoints = new ArrayList<>(levelIndices.length);
+        for(int i = 0; i < levelIndices.length; i++){
+            levelPoints.add(null);
+        }
+    }
+
+    /**
+     * @param zoom  Current zoom level of the map camera
+     * @return      The level of detail to use for the zoom level
+     */
+    public int getLevelForZoom(float zoom){
+        int zoomLevel = Math.max(MINIMUM_ZOOM, Math.min(MAXIMUM_ZOOM, (int) Math.ceil(zoom)));
+        return zoomToLevel[zoomLevel - MINIMUM_ZOOM];
+    }
+
+    /**
+     * Gets the points making up the simplified route for the level of detail. The LatLng objects
+     * are only created the first time a level is requested
+     * @param level     Level of detail as returned by getLevelForZoom
+     */
+    public List<LatLng> getPoints(int level){
+        List<LatLng> points = levelPoints.get(level);
+
+        if(points == null){
+            int[] indices = levelIndices[level];
+            points = new ArrayList<>(indices.length);
+            for(int index : indices){
+                points.add(new LatLng(latitudes[index], longitudes[index]));
+            }
+            levelPoints.set(level, points);
+        }
+
+        return points;
+    }
+
+    /**
+     * @param level     Level of detail as returned by getLevelForZoom
+     * @return          Number of points drawn for the level of detail
+     */
+    public int getNumberOfPoints(int level){
+        return levelIndices[level].length;
+    }
+
+    public int getNumberOfLevels(){
+        return levelIndices.length;
+    }
+
+    /**
+     * @return  The bounds containing the whole route, or null if the route is empty
+     */
+    public LatLngBounds getBounds(){
+        if(latitudes.length == 0){
+            return null;
+        }
+
+        return new LatLngBounds(new LatLng(minimumLatitude, minimumLongitude),
+                new LatLng(maximumLatitude, maximumLongitude));
+    }
+}
@@ -0,0 +1,177 @@
+package com.mdp.cw4.runningtracker;
+
+/**
+ * <h1>Route Simplifier</h1>
+ * Douglas-Peucker simplification of a route made up of latitude and longitude coordinates.
+ * <p>
+ * Rather than simplifying the route once for a single tolerance, the simplifier calculates the
+ * significance of every point, that is, the largest tolerance (in metres) at which Douglas-Peucker
+ * would still keep that point. Simplifying the route for any tolerance is then a single pass over
+ * the significances, which allows the route to be prepared for many zoom levels at once.
+ * Because the significance of a point is capped by the significance of the point which split its
+ * range, the simplified routes are nested: every point kept at a coarse tolerance is also kept at
+ * all finer tolerances
+ */
+public class RouteSimplifier {
+
+    /**
+     * Calculates the significance of each point in the route
+     * @param latitudes     Latitudes of the route
+     * @param longitudes    Longitudes of the route, must be the same length as the latitudes
+     * @return              Array the same length as the route where each value is the tolerance in
+     *                      metres at which the corresponding point would be removed. The first and
+     *                      last points are always kept and so have a significance of
+     *                      Double.POSITIVE_INFINITY
+     */
+    public static double[] calculateSignificance(double[] latitudes, double[] longitudes){
+        int numberOfPoints = latitudes.length;
+        double[] significance = new double[numberOfPoints];
+
+        if(numberOfPoints == 0){
+            return significance;
+        }
+
+        significance[0] = Double.POSITIVE_INFINITY;
+        significance[numberOfPoints - 1] = Double.POSITIVE_INFINITY;
+
+        if(numberOfPoints < 3){
+            return significance;
+        }
+
+        // Project the coordinates onto a flat plane, in metres, centred on the first point. Over the
+        // distances covered by a workout session the distortion of this projection is negligible
+        double[] x = new double[numberOfPoints];
+        double[] y = new double[numberOfPoints];
+        project(latitudes, longitudes, x, y);
+
+        // Iterative rather than recursive so that long, straight routes cannot overflow the stack.
+        // Each range is stored as its first and last index along with the significance of the point
+        // which created it
+        int[] rangeStack = new int[64];
+        double[] parentSignificanceStack = new double[32];
+        int stackSize = 0;
+
+        rangeStack[0] = 0;
+        rangeStack[1] = numberOfPoints - 1;
+        parentSignificanceStack[0] = Double.POSITIVE_INFINITY;
+        stackSize++;
+
+        while(stackSize > 0){
+            stackSize--;
+            int first = rangeStack[stackSize * 2];
+            int last = rangeStack[stackSize * 2 + 1];
+            double parentSignificance = parentSignificanceStack[stackSize];
+
+            if(last - first < 2){
+                continue;
+            }
+
+            // Find the point furthest from the line between the first and last point of the range
+            int furthestIndex = first + 1;
+            double furthestDistanceSquared = -1;
+            for(int i = first + 1; i < last; i++){
+                double distanceSquared = segmentDistanceSquared(x[i], y[i], x[first], y[first], x[last], y[last]);
+                if(distanceSquared > furthestDistanceSquared){
+                    furthestDistanceSquared = distanceSquared;
+                    furthestIndex = i;
+                }
+            }
+
+            double pointSignificance = Math.min(Math.sqrt(furthestDistanceSquared), parentSignificance);
+            significance[furthestIndex] = pointSignificance;
+
+            // Make room for the two new ranges if necessary
+            if((stackSize + 2) * 2 > rangeStack.length){
+                int[] largerRangeStack = new int[rangeStack.length * 2];
+                double[] largerParentStack = new double[parentSignificanceStack.length * 2];
+                System.arraycopy(rangeStack, 0, largerRangeStack, 0, stackSize * 2);
+                System.arraycopy(parentSignificanceStack, 0, largerParentStack, 0, stackSize);
+                rangeStack = largerRangeStack;
+                parentSignificanceStack = largerParentStack;
+            }
+
+            rangeStack[stackSize * 2] = first;
+            rangeStack[stackSize * 2 + 1] = furthestIndex;
+            parentSignificanceStack[stackSize] = pointSignificance;
+            stackSize++;
+
+            rangeStack[stackSize * 2] = furthestIndex;
+            rangeStack[stackSize * 2 + 1] = last;
+            parentSignificanceStack[stackSize] = pointSignificance;
+            stackSize++;
+        }
+
+        return significance;
+    }
+
+    /**
+     * Simplifies the route for a single tolerance
+     * @param significance      Significance of each point as returned by calculateSignificance
+     * @param toleranceMetres   Points closer than this to the simplified line are removed
+     * @return                  Indices, in route order, of the points which are kept
+     */
+    public static int[] simplify(double[] significance, double toleranceMetres){
+        int numberOfKeptPoints = countPoints(significance, toleranceMetres);
+        int[] keptIndices = new int[numberOfKeptPoints];
+
+        int keptIndex = 0;
+        for(int i = 0; i < significance.length; i++){
+            if(significance[i] >= toleranceMetres){
+                keptIndices[keptIndex++] = i;
+            }
+        }
+
+        return keptIndices;
+    }
+
+    /**
+     * Counts the number of points that would be kept when simplifying with the given tolerance
+     * @param significance      Significance of each point as returned by calculateSignificance
+     * @param toleranceMetres   Points closer than this to the simplified line are removed
+     */
+    public static int countPoints(double[] significance, double toleranceMetres){
+        int numberOfKeptPoints = 0;
+        for(double pointSignificance : significance){
+            if(pointSignificance >= toleranceMetres){
+                numberOfKeptPoints++;
+            }
+        }
+
+        return numberOfKeptPoints;
+    }
+
+    /**
+     * Equirectangular projection of the coordinates in metres, relative to the first coordinate
+     */
+    private static void project(double[] latitudes, double[] longitudes, double[] x, double[] y){
+        double originLatitude = latitudes[0];
+        double originLongitude = longitudes[0];
+        double metresPerDegreeLatitude = RouteDistance.METRES_PER_DEGREE;
+        double metresPerDegreeLongitude = metresPerDegreeLatitude * Math.cos(Math.toRadians(originLatitude));
+
+        for(int i = 0; i < latitudes.length; i++){
+            x[i] = (longitudes[i] - originLongitude) * metresPerDegreeLongitude;
+            y[i] = (latitudes[i] - originLatitude) * metresPerDegreeLatitude;
+        }
+    }
+
+    /**
+     * Squared distance from point p to the line segment between a and b
+     */
+    private static double segmentDistanceSquared(double px, double py, double ax, double ay,
+                                                 double bx, double by){
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+
+        double t = 0;
+        if(lengthSquared > 0){
+            t = ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+            t = Math.max(0, Math.min(1, t));
+        }
+
+        double closestX = ax + t * dx - px;
+        double closestY = ay + t * dy - py;
+        return closestX * closestX + closestY * closestY;
+    }
+}
@@ -0,0 +1,212 @@
+package com.mdp.cw4.runningtracker;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * <h1>Route Thumbnail Cache</h1>
+ * Two level cache of route thumbnails, keyed by session id. Recently used thumbnails are kept in
+ * memory, while all thumbnails are written to the application's cache directory so that they
+ * survive the application being closed. Both levels are limited in size and discard the least
+ * recently used thumbnails first.
+ * <p>
+ * Only getFromMemory may be called on the UI thread, as all other methods may access the disk
+ */
+public class RouteThumbnailCache {
+
+    private static RouteThumbnailCache instance;
+
+    private final LruCache<Long, Bitmap> memoryCache;
+    private final Set<Long> sessionsWithoutRoutes = Collections.synchronizedSet(new HashSet<Long>());
+    private final File directory;
+    private long diskCacheBytes = -1;
+
+    private static final String DIRECTORY_NAME = "routeThumbnails";
+    private static final String FILE_EXTENSION = ".png";
+    private static final long MAXIMUM_DISK_CACHE_BYTES = 8 * 1024 * 1024;
+    private static final int MEMORY_CACHE_FRACTION = 16;
+
+    private RouteThumbnailCache(Context context){
+        int memoryCacheBytes = (int) Math.min(Integer.MAX_VALUE,
+                Runtime.getRuntime().maxMemory() / MEMORY_CACHE_FRACTION);
+
+        memoryCache = new LruCache<Long, Bitmap>(memoryCacheBytes) {
+            @Override
+            protected int sizeOf(Long sessionId, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+
+        directory = new File(context.getCacheDir(), DIRECTORY_NAME);
+    }
+
+    public static synchronized RouteThumbnailCache getInstance(Context context){
+        if(instance == null){
+            instance = new RouteThumbnailCache(context.getApplicationContext());
+        }
+
+        return instance;
+    }
+
+    /**
+     * Safe to call on the UI thread
+     * @return  The thumbnail if it is held in memory, otherwise null
+     */
+    public Bitmap getFromMemory(long sessionId){
+        return memoryCache.get(sessionId);
+    }
+
+    /**
+     * Safe to call on the UI thread
+     * @return  True if the session is known to have no route to draw
+     */
+    public boolean hasNoRoute(long sessionId){
+        return sessionsWithoutRoutes.contains(sessionId);
+    }
+
+    /**
+     * Records that the session has no route, so that no attempt is made to draw it again
+     */
+    public void markNoRoute(long sessionId){
+        sessionsWithoutRoutes.add(sessionId);
+    }
+
+    /**
+     * Gets the thumbnail from memory, or failing that from disk
+     * @return  The thumbnail, or null if it has not been cached
+     */
+    public Bitmap get(long sessionId){
+        Bitmap bitmap = memoryCache.get(sessionId);
+        if(bitmap != null){
+            return bitmap;
+        }
+
+        synchronized (this){
+            File file = getFile(sessionId);
+            if(!file.exists()){
+                return null;
+            }
+
+            bitmap = BitmapFactory.decodeFile(file.getPath());
+
+            // Record the use so that the file is not the next to be discarded
+            file.setLastModified(System.currentTimeMillis());
+        }
+
+        if(bitmap != null){
+            memoryCache.put(sessionId, bitmap);
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * Adds the thumbnail to the memory and disk caches
+     */
+    public void put(long sessionId, Bitmap bitmap){
+        memoryCache.put(sessionId, bitmap);
+        sessionsWithoutRoutes.remove(sessionId);
+
+        synchronized (this){
+            if(!directory.exists() && !directory.mkdirs()){
+                return;
+            }
+
+            File file = getFile(sessionId);
+            long previousLength = file.length();
+
+            try(FileOutputStream outputStream = new FileOutputStream(file)){
+                bitmap.compress(Bitmap.CompressFormat.PNG, 100, outputStream);
+            }catch(IOException e){
+                e.printStackTrace();
+                file.delete();
+                return;
+            }
+
+            diskCacheBytes = getDiskCacheBytes() - previousLength + file.length();
+            trimDiskCache();
+        }
+    }
+
+    /**
+     * Removes the thumbnail for a session, for example when the session has been deleted
+     */
+    public void remove(long sessionId){
+        memoryCache.remove(sessionId);
+        sessionsWithoutRoutes.remove(sessionId);
+
+        synchronized (this){
+            File file = getFile(sessionId);
+            long length = file.length();
+            if(file.delete() && diskCacheBytes >= 0){
+                diskCacheBytes -= length;
+            }
+        }
+    }
+
+    private File getFile(long sessionId){
+        return new File(directory, sessionId + FILE_EXTENSION);
+    }
+
+    /**
+     * The total size of the disk cache is calculated once and then kept up to date as files are
+     * added and removed
+     */
+    private long getDiskCacheBytes(){
+        if(diskCacheBytes < 0){
+            diskCacheBytes = 0;
+            File[] files = directory.listFiles();
+            if(files != null){
+                for(File file : files){
+                    diskCacheBytes += file.length();
+                }
+            }
+        }
+
+        return diskCacheBytes;
+    }
+
+    /**
+     * If the disk cache is over its limit, deletes the least recently used thumbnails until it is
+     * back under three quarters of the limit, so that trimming does not happen on every write
+     */
+    private void trimDiskCache(){
+        if(diskCacheBytes <= MAXIMUM_DISK_CACHE_BYTES){
+            return;
+        }
+
+        File[] files = directory.listFiles();
+        if(files == null){
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                return Long.compare(first.lastModified(), second.lastModified());
+            }
+        });
+
+        for(File file : files){
+            if(diskCacheBytes <= MAXIMUM_DISK_CACHE_BYTES * 3 / 4){
+                break;
+            }
+
+            long length = file.length();
+            if(file.delete()){
+                diskCacheBytes -= length;
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.mdp.cw4.runningtracker;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+
+/**
+ * <h1>Route Thumbnail Renderer</h1>
+ * Draws a small picture of a route, scaled to fit a square bitmap. The route is simplified to
+ * roughly a pixel before being drawn, so even very long routes produce a short path
+ */
+public class RouteThumbnailRenderer {
+
+    /**
+     * Draws the thumbnail for a stored session and adds it to the RouteThumbnailCache. This reads
+     * the session's route from the database so must not be called on the UI thread
+     * @param context       Context used to access the content provider and resources
+     * @param sessionId     id of the session to draw
+     * @return              The thumbnail, or null if the session has no route to draw
+     */
+    public static Bitmap renderSession(Context context, long sessionId){
+        RouteThumbnailCache routeThumbnailCache = RouteThumbnailCache.getInstance(context);
+        WorkoutSessionRoute route = WorkoutSessionRoute.load(context.getContentResolver(), sessionId);
+
+        Bitmap bitmap = null;
+        if(route != null){
+            Resources resources = context.getResources();
+            bitmap = render(route, resources.getDimensionPixelSize(R.dimen.routeThumbnailSize),
+                    context.getColor(R.color.colorAccent),
+                    resources.getDimension(R.dimen.routeThumbnailStrokeWidth));
+        }
+
+        if(bitmap == null){
+            routeThumbnailCache.markNoRoute(sessionId);
+        }else{
+            routeThumbnailCache.put(sessionId, bitmap);
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * @param route         Route to draw
+     * @param size          Width and height of the thumbnail in pixels
+     * @param color         Color of the route
+     * @param strokeWidth   Width of the route line in pixels
+     * @return              The thumbnail, or null if the route is too short to draw
+     */
+    public static Bitmap render(WorkoutSessionRoute route, int size, int color, float strokeWidth){
+        double[] latitudes = route.getLatitudes();
+        double[] longitudes = route.getLongitudes();
+
+        if(latitudes.length < 2 || size <= 0){
+            return null;
+        }
+
+        double minimumLatitude = Double.POSITIVE_INFINITY;
+        double maximumLatitude = Double.NEGATIVE_INFINITY;
+        double minimumLongitude = Double.POSITIVE_INFINITY;
+        double maximumLongitude = Double.NEGATIVE_INFINITY;
+        for(int i = 0; i < latitudes.length; i++){
+            minimumLatitude = Math.min(minimumLatitude, latitudes[i]);
+            maximumLatitude = Math.max(maximumLatitude, latitudes[i]);
+            minimumLongitude = Math.min(minimumLongitude, longitudes[i]);
+            maximumLongitude = Math.max(maximumLongitude, longitudes[i]);
+        }
+
+        // Work in metres so that the route keeps its shape away from the equator
+        double longitudeScale = Math.cos(Math.toRadians((minimumLatitude + maximumLatitude) / 2));
+        double widthMetres = (maximumLongitude - minimumLongitude) * RouteDistance.METRES_PER_DEGREE
+                * longitudeScale;
+        double heightMetres = (maximumLatitude - minimumLatitude) * RouteDistance.METRES_PER_DEGREE;
+        double extentMetres = Math.max(widthMetres, heightMetres);
+
+        if(extentMetres <= 0){
+            return null;
+        }
+
+        // Leave room for the width of the line around the edge of the thumbnail
+        float padding = strokeWidth;
+        double pixelsPerMetre = (size - 2 * padding) / extentMetres;
+        double xOffset = padding + (size - 2 * padding - widthMetres * pixelsPerMetre) / 2;
+        double yOffset = padding + (size - 2 * padding - heightMetres * pixelsPerMetre) / 2;
+
+        double[] significance = RouteSimplifier.calculateSignificance(latitudes, longitudes);
+        int[] indices = RouteSimplifier.simplify(significance, 1 / pixelsPerMetre);
+
+        Path path = new Path();
+        for(int i = 0; i < indices.length; i++){
+            int index = indices[i];
+            float x = (float) (xOffset + (longitudes[index] - minimumLongitude)
+                    * RouteDistance.METRES_PER_DEGREE * longitudeScale * pixelsPerMetre);
+            // Latitudes increase upwards whereas the y axis of the bitmap increases downwards
+            float y = (float) (size - yOffset - (latitudes[index] - minimumLatitude)
+                    * RouteDistance.METRES_PER_DEGREE * pixelsPerMetre);
+
+            if(i == 0){
+                path.moveTo(x, y);
+            }else{
+                path.lineTo(x, y);
+            }
+        }
+
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(color);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeWidth(strokeWidth);
+        paint.setStrokeCap(Paint.Cap.ROUND);
+        paint.setStrokeJoin(Paint.Join.ROUND);
+
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        new Canvas(bitmap).drawPath(path, paint);
+
+        return bitmap;
+    }
+}
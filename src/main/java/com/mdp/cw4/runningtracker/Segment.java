@@ -0,0 +1,253 @@
+package com.mdp.cw4.runningtracker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <h1>Segment</h1>
+ * A stretch of ground users want timed whenever they cover it, such as a climb or a bridge. A
+ * segment is a path of points with a gate across each end and a corridor either side of the path.
+ * <p>
+ * A route covers the segment when it crosses the start gate in the direction of the path, stays
+ * within the corridor, and then crosses the end gate in the direction of the path. Each gate is a
+ * line through the end point of the path, at right angles to its first or last step, reaching
+ * the width of the corridor either side. Between points the route is taken to be covered at a
+ * steady speed, so the times the gates are crossed are found part way between two fixes.
+ * <p>
+ * Points are placed on a flat plane around the start of the segment, which is accurate to well
+ * under a metre over the few kilometres a segment covers
+ */
+public class Segment {
+
+    // Least distance covered along the route between the gates, as a fraction of the length of
+    // the segment, so that a segment ending where it starts is not covered by crossing both gates
+    // at once
+    private static final double MINIMUM_COVERED_FRACTION = 0.8;
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double corridorMetres;
+
+    private final double originLatitude;
+    private final double originLongitude;
+    private final double metresPerDegreeLongitude;
+    private final double[] x;
+    private final double[] y;
+    private final double lengthMetres;
+
+    /**
+     * @param latitudes         Latitudes of the path, from the start to the end of the segment
+     * @param longitudes        Longitudes of the path, must be the same length as the latitudes
+     * @param corridorMetres    Furthest a route may stray either side of the path
+     * @throws IllegalArgumentException If the path has fewer than two points, its first or last
+     *                                  step has no length, or the corridor is not positive
+     */
+    public Segment(double[] latitudes, double[] longitudes, double corridorMetres){
+        if(latitudes.length < 2 || latitudes.length != longitudes.length || !(corridorMetres > 0)){
+            throw new IllegalArgumentException("Invalid segment");
+        }
+
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.corridorMetres = corridorMetres;
+
+        originLatitude = latitudes[0];
+        originLongitude = longitudes[0];
+        metresPerDegreeLongitude = RouteDistance.METRES_PER_DEGREE * Math.cos(Math.toRadians(originLatitude));
+
+        int numberOfPoints = latitudes.length;
+        x = new double[numberOfPoints];
+        y = new double[numberOfPoints];
+        double length = 0;
+        for(int i = 0; i < numberOfPoints; i++){
+            x[i] = getX(longitudes[i]);
+            y[i] = getY(latitudes[i]);
+            if(i > 0){
+                length += Math.hypot(x[i] - x[i - 1], y[i] - y[i - 1]);
+            }
+        }
+        lengthMetres = length;
+
+        int last = numberOfPoints - 1;
+        if((x[1] == x[0] && y[1] == y[0]) || (x[last] == x[last - 1] && y[last] == y[last - 1])){
+            throw new IllegalArgumentException("Invalid segment");
+        }
+    }
+
+    /**
+     * Finds every time a route covers the segment, for example once for each lap
+     * @param latitudes             Latitudes of the route
+     * @param longitudes            Longitudes of the route
+     * @param cumulativeDistances   Distance in metres along the route to each point
+     * @param times                 Time in seconds since the start of the session at each point
+     * @return                      The efforts in the order they were made, with no BestEffort
+     */
+    public List<BestEffortCalculator.Effort> findEfforts(double[] latitudes, double[] longitudes,
+                                                         double[] cumulativeDistances, double[] times){
+        List<BestEffortCalculator.Effort> efforts = new ArrayList<>();
+        int numberOfPoints = Math.min(Math.min(latitudes.length, longitudes.length),
+                Math.min(cumulativeDistances.length, times.length));
+        int last = x.length - 1;
+
+        boolean inSegment = false;
+        double entrySeconds = 0;
+        double entryDistance = 0;
+
+        double previousX = numberOfPoints > 0 ? getX(longitudes[0]) : 0;
+        double previousY = numberOfPoints > 0 ? getY(latitudes[0]) : 0;
+        for(int i = 1; i < numberOfPoints; i++){
+            double currentX = getX(longitudes[i]);
+            double currentY = getY(latitudes[i]);
+
+            if(inSegment){
+                double fraction = getGateCrossing(x[last], y[last], x[last] - x[last - 1], y[last] - y[last - 1],
+                        previousX, previousY, currentX, currentY);
+                if(fraction >= 0){
+                    double exitSeconds = interpolate(times, i, fraction);
+                    double exitDistance = interpolate(cumulativeDistances, i, fraction);
+                    if(exitDistance - entryDistance >= lengthMetres * MINIMUM_COVERED_FRACTION
+                            && exitSeconds > entrySeconds){
+                        efforts.add(new BestEffortCalculator.Effort(null, entrySeconds,
+                                exitSeconds - entrySeconds, exitDistance - entryDistance));
+                    }
+                    inSegment = false;
+                }else if(!isInCorridor(currentX, currentY)){
+                    inSegment = false;
+                }
+            }
+
+            // Crossing the start gate again starts a new attempt from the later crossing
+            double fraction = getGateCrossing(x[0], y[0], x[1] - x[0], y[1] - y[0],
+                    previousX, previousY, currentX, currentY);
+            if(fraction >= 0){
+                inSegment = true;
+                entrySeconds = interpolate(times, i, fraction);
+                entryDistance = interpolate(cumulativeDistances, i, fraction);
+            }
+
+            previousX = currentX;
+            previousY = currentY;
+        }
+
+        return efforts;
+    }
+
+    /**
+     * @return  The fastest time the route covered the segment, or null if it never did
+     */
+    public BestEffortCalculator.Effort findBestEffort(double[] latitudes, double[] longitudes,
+                                                      double[] cumulativeDistances, double[] times){
+        BestEffortCalculator.Effort best = null;
+        for(BestEffortCalculator.Effort effort : findEfforts(latitudes, longitudes, cumulativeDistances,
+                times)){
+            if(best == null || effort.getDurationSeconds() < best.getDurationSeconds()){
+                best = effort;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * A route can only cross both gates if its bounds, widened by the corridor, hold both ends of
+     * the path, so sessions which fail this need not be read
+     */
+    public boolean mayBeCoveredBy(RouteBounds bounds){
+        int last = latitudes.length - 1;
+        return bounds.contains(latitudes[0], longitudes[0], corridorMetres)
+                && bounds.contains(latitudes[last], longitudes[last], corridorMetres);
+    }
+
+    /**
+     * @return  Length of the path in metres
+     */
+    public double getLengthMetres(){
+        return lengthMetres;
+    }
+
+    public double getCorridorMetres(){
+        return corridorMetres;
+    }
+
+    public double getStartLatitude(){
+        return latitudes[0];
+    }
+
+    public double getStartLongitude(){
+        return longitudes[0];
+    }
+
+    public double getEndLatitude(){
+        return latitudes[latitudes.length - 1];
+    }
+
+    public double getEndLongitude(){
+        return longitudes[longitudes.length - 1];
+    }
+
+    /**
+     * Finds where a step of the route crosses a gate in the direction of the path
+     * @param gateX         Position of the middle of the gate
+     * @param gateY         Position of the middle of the gate
+     * @param directionX    Direction of the path through the gate, of any length
+     * @param directionY    Direction of the path through the gate, of any length
+     * @return              Fraction of the way along the step at which it crosses the gate, or -1
+     *                      if it does not cross it going forwards within the corridor
+     */
+    private double getGateCrossing(double gateX, double gateY, double directionX, double directionY,
+                                   double startX, double startY, double endX, double endY){
+        double length = Math.hypot(directionX, directionY);
+        directionX /= length;
+        directionY /= length;
+
+        double startAlong = (startX - gateX) * directionX + (startY - gateY) * directionY;
+        double endAlong = (endX - gateX) * directionX + (endY - gateY) * directionY;
+        if(!(startAlong < 0 && endAlong >= 0)){
+            return -1;
+        }
+
+        double fraction = startAlong / (startAlong - endAlong);
+        double crossingX = startX + (endX - startX) * fraction;
+        double crossingY = startY + (endY - startY) * fraction;
+        double across = (crossingX - gateX) * -directionY + (crossingY - gateY) * directionX;
+        return Math.abs(across) <= corridorMetres ? fraction : -1;
+    }
+
+    /**
+     * @return  Whether the point is within the corridor of any step of the path
+     */
+    private boolean isInCorridor(double pointX, double pointY){
+        double corridorSquared = corridorMetres * corridorMetres;
+        for(int i = 1; i < x.length; i++){
+            double stepX = x[i] - x[i - 1];
+            double stepY = y[i] - y[i - 1];
+            double stepSquared = stepX * stepX + stepY * stepY;
+
+            double fraction = stepSquared == 0 ? 0
+                    : ((pointX - x[i - 1]) * stepX + (pointY - y[i - 1]) * stepY) / stepSquared;
+            fraction = Math.max(0, Math.min(1, fraction));
+
+            double offsetX = pointX - (x[i - 1] + stepX * fraction);
+            double offsetY = pointY - (y[i - 1] + stepY * fraction);
+            if(offsetX * offsetX + offsetY * offsetY <= corridorSquared){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return  The value the given fraction of the way from the point before the index to the
+     *          point at the index
+     */
+    private static double interpolate(double[] values, int index, double fraction){
+        return values[index - 1] + (values[index] - values[index - 1]) * fraction;
+    }
+
+    private double getX(double longitude){
+        return (longitude - originLongitude) * metresPerDegreeLongitude;
+    }
+
+    private double getY(double latitude){
+        return (latitude - originLatitude) * RouteDistance.METRES_PER_DEGREE;
+    }
+}
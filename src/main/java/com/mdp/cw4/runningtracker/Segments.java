@@ -0,0 +1,215 @@
+package com.mdp.cw4.runningtracker;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.ROUTE_BOUNDS_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.SEGMENTS_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.SEGMENT_EFFORTS_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.SESSION_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.Contract.*;
+
+/**
+ * <h1>Segments</h1>
+ * Keeps the segments users have defined, see Segment, along with the fastest effort of each
+ * session over each segment and the bounds of every session's route.
+ * <p>
+ * A new session is matched against the segments by SessionProcessingService once it is stored,
+ * and a new segment against the sessions whose route passes near both of its gates, found through
+ * SpatialIndex, so only those routes are read. The efforts of a segment are indexed by their time,
+ * so its leaderboard is always up to date without being built again.
+ * <p>
+ * The methods work directly on the database and are called by WorkoutSessionContentProvider
+ */
+class Segments {
+
+    // Fastest effort of each session over a segment, fastest first, along with the session's
+    // date and workout type
+    private static final String LEADERBOARD_QUERY = "SELECT e." + RECORD_SESSION_ID + ", e." + RECORD_START
+            + ", e." + DURATION + ", e." + RECORD_SPEED + ", s." + YEAR + ", s." + MONTH + ", s." + DATE
+            + ", s." + WORKOUT_TYPE + " FROM " + SEGMENT_EFFORTS_TABLE_NAME + " e INNER JOIN "
+            + SESSION_TABLE_NAME + " s ON s._id = e." + RECORD_SESSION_ID + " WHERE e." + SEGMENT_ID
+            + " = ? ORDER BY e." + DURATION + " ASC";
+
+    /**
+     * Stores a new segment, adding its length
+     * @param values    The name, path and corridor of the segment
+     * @return          id of the segment, or -1 if it is not valid
+     */
+    static long addSegment(SQLiteDatabase database, ContentValues values){
+        Segment segment = toSegment(values.getAsString(LATITUDE), values.getAsString(LONGITUDE),
+                values.getAsDouble(SEGMENT_CORRIDOR));
+        if(segment == null){
+            return -1;
+        }
+
+        ContentValues segmentValues = new ContentValues(values);
+        segmentValues.put(DISTANCE, segment.getLengthMetres());
+        return database.insert(SEGMENTS_TABLE_NAME, null, segmentValues);
+    }
+
+    /**
+     * Deletes a segment and its efforts
+     * @return  Number of segments deleted
+     */
+    static int removeSegment(SQLiteDatabase database, long segmentId){
+        String[] selectionArgs = { String.valueOf(segmentId) };
+
+        database.beginTransaction();
+        try {
+            database.delete(SEGMENT_EFFORTS_TABLE_NAME, SEGMENT_ID + " = ?", selectionArgs);
+            int rowsDeleted = database.delete(SEGMENTS_TABLE_NAME, _ID + " = ?", selectionArgs);
+            database.setTransactionSuccessful();
+            return rowsDeleted;
+        }finally{
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Stores the fastest effort of a session over a segment, replacing any stored before
+     * @param values    The segment id, session id, start time, duration and speed
+     * @return          Whether the effort was stored, which it is not if the session no longer
+     *                  exists
+     */
+    static boolean storeEffort(SQLiteDatabase database, ContentValues values){
+        if(values.getAsLong(SEGMENT_ID) == null || values.getAsLong(RECORD_SESSION_ID) == null
+                || values.getAsLong(DURATION) == null){
+            return false;
+        }
+
+        return storeForSession(database, SEGMENT_EFFORTS_TABLE_NAME, values);
+    }
+
+    /**
+     * Stores the bounds of a session's route, replacing any stored before
+     * @param values    The session id and bounds
+     * @return          Whether the bounds were stored, which they are not if the session no longer
+     *                  exists
+     */
+    static boolean storeBounds(SQLiteDatabase database, ContentValues values){
+        if(values.getAsLong(RECORD_SESSION_ID) == null){
+            return false;
+        }
+
+        return storeForSession(database, ROUTE_BOUNDS_TABLE_NAME, values);
+    }
+
+    /**
+     * Stores a row of a session, replacing any stored before, unless the session was deleted while
+     * it was being analysed
+     * @return  Whether the row was stored
+     */
+    private static boolean storeForSession(SQLiteDatabase database, String tableName, ContentValues values){
+        database.beginTransaction();
+        try {
+            if(!WorkoutSessionContentProvider.sessionExists(database, values.getAsLong(RECORD_SESSION_ID))){
+                return false;
+            }
+
+            boolean stored = database.insertWithOnConflict(tableName, null, values,
+                    SQLiteDatabase.CONFLICT_REPLACE) != -1;
+            database.setTransactionSuccessful();
+            return stored;
+        }finally{
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Deletes the bounds and efforts of a session
+     */
+    static void remove(SQLiteDatabase database, long sessionId){
+        String[] selectionArgs = { String.valueOf(sessionId) };
+        database.delete(SEGMENT_EFFORTS_TABLE_NAME, RECORD_SESSION_ID + " = ?", selectionArgs);
+        database.delete(ROUTE_BOUNDS_TABLE_NAME, RECORD_SESSION_ID + " = ?", selectionArgs);
+    }
+
+    /**
+     * Removes the bounds and efforts of any sessions which no longer exist, for example after
+     * deleting sessions by a selection
+     */
+    static void removeDeletedSessions(SQLiteDatabase database){
+        String deletedSessions = RECORD_SESSION_ID + " NOT IN (SELECT _id FROM " + SESSION_TABLE_NAME + ")";
+        database.delete(SEGMENT_EFFORTS_TABLE_NAME, deletedSessions, null);
+        database.delete(ROUTE_BOUNDS_TABLE_NAME, deletedSessions, null);
+    }
+
+    /**
+     * @param segmentArgs   id of the segment
+     * @param limit         Limit clause, or null for every session
+     * @return              The leaderboard of the segment, see LEADERBOARD_QUERY
+     */
+    static Cursor getLeaderboardCursor(SQLiteDatabase database, String[] segmentArgs, String limit){
+        return database.rawQuery(getLeaderboardQuery(limit), segmentArgs);
+    }
+
+    static String getLeaderboardQuery(String limit){
+        return LEADERBOARD_QUERY + (limit != null ? " LIMIT " + limit : "");
+    }
+
+    /**
+     * Finds the sessions whose route passes within the corridor of both gates of a segment, allowing
+     * for the tolerance of their outlines, see SpatialIndex. Only these can cover the segment
+     * @return  The session ids, or null if the segment does not exist
+     */
+    static Cursor getCandidatesCursor(SQLiteDatabase database, long segmentId){
+        Segment segment;
+        Cursor cursor = database.query(SEGMENTS_TABLE_NAME, new String[] { LATITUDE, LONGITUDE, SEGMENT_CORRIDOR },
+                _ID + " = ?", new String[] { String.valueOf(segmentId) }, null, null, null);
+        try {
+            if(!cursor.moveToNext()){
+                return null;
+            }
+            segment = toSegment(cursor.getString(0), cursor.getString(1), cursor.getDouble(2));
+        }finally{
+            cursor.close();
+        }
+
+        if(segment == null){
+            return null;
+        }
+
+        double radiusMetres = segment.getCorridorMetres() + RouteGrid.OUTLINE_TOLERANCE_METRES;
+        Set<Long> sessionIds = SpatialIndex.findSessionsNear(database, new RouteGrid.Circle(
+                segment.getStartLatitude(), segment.getStartLongitude(), radiusMetres)).keySet();
+        sessionIds.retainAll(SpatialIndex.findSessionsNear(database, new RouteGrid.Circle(
+                segment.getEndLatitude(), segment.getEndLongitude(), radiusMetres)).keySet());
+
+        List<Long> sortedSessionIds = new ArrayList<>(sessionIds);
+        Collections.sort(sortedSessionIds);
+        MatrixCursor candidates = new MatrixCursor(new String[] { RECORD_SESSION_ID }, sortedSessionIds.size());
+        for(Long sessionId : sortedSessionIds){
+            candidates.addRow(new Object[] { sessionId });
+        }
+        return candidates;
+    }
+
+    /**
+     * @return  The segment, or null if the values do not make a valid segment
+     */
+    static Segment toSegment(String latitudes, String longitudes, Double corridorMetres){
+        if(corridorMetres == null){
+            return null;
+        }
+
+        try {
+            double[] decodedLatitudes = CoordinateScanner.decode(latitudes);
+            double[] decodedLongitudes = CoordinateScanner.decode(longitudes);
+            if(decodedLatitudes == null || decodedLongitudes == null){
+                return null;
+            }
+            return new Segment(decodedLatitudes, decodedLongitudes, corridorMetres);
+        }catch(IllegalArgumentException e){
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
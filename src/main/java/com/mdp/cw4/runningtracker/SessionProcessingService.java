@@ -0,0 +1,370 @@
+package com.mdp.cw4.runningtracker;
+
+import android.app.IntentService;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.net.Uri;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <h1>Session Processing Service</h1>
+ * Carries out the work which needs doing when a workout session is stored or deleted, such as
+ * preparing its route thumbnail, finding its best efforts, building its pace sketch, indexing its
+ * route signature and outline, timing it over each segment it covers and adding it to the heatmap
+ * of every route. New segments are timed over every stored session that may cover them. Requests
+ * are handled one at a time on a background thread so none of this work delays the activity that
+ * stored or deleted the session.
+ * <p>
+ * Sessions stored before an analysis was added are analysed by a backfill, which remembers how
+ * far it has got so it can be stopped and resumed at any point. Whenever a new analysis is added,
+ * ANALYSIS_VERSION is increased so that the backfill runs over every session once more. The
+ * backfill finishes by bringing the heatmap up to date with the stored sessions
+ */
+public class SessionProcessingService extends IntentService {
+
+    private static final String ACTION_SESSION_SAVED = "com.mdp.cw4.runningtracker.action.SESSION_SAVED";
+    private static final String ACTION_SESSION_DELETED = "com.mdp.cw4.runningtracker.action.SESSION_DELETED";
+    private static final String ACTION_SESSIONS_DELETED = "com.mdp.cw4.runningtracker.action.SESSIONS_DELETED";
+    private static final String ACTION_BACKFILL = "com.mdp.cw4.runningtracker.action.BACKFILL";
+    private static final String ACTION_SEGMENT_ADDED = "com.mdp.cw4.runningtracker.action.SEGMENT_ADDED";
+    private static final String EXTRA_SESSION_ID = "com.mdp.cw4.runningtracker.extra.SESSION_ID";
+    private static final String EXTRA_SESSION_IDS = "com.mdp.cw4.runningtracker.extra.SESSION_IDS";
+    private static final String EXTRA_SEGMENT_ID = "com.mdp.cw4.runningtracker.extra.SEGMENT_ID";
+
+    // 1: personal records, 2: pace sketches, 3: route signatures, 4: route bounds and segments,
+    // 5: route outlines
+    private static final int ANALYSIS_VERSION = 5;
+
+    private static final double MILLISECONDS_PER_SECOND = 1000.0;
+
+    private static final String PREFERENCES_NAME = "sessionProcessing";
+    private static final String PREFERENCE_ANALYSIS_VERSION = "analysisVersion";
+    private static final String PREFERENCE_BACKFILLED_SESSION_ID = "backfilledSessionId";
+
+    // Number of sessions processed by the backfill between saving its progress
+    private static final int BACKFILL_PROGRESS_INTERVAL = 50;
+
+    public SessionProcessingService() {
+        super("SessionProcessingService");
+    }
+
+    /**
+     * Requests that a newly stored session is processed
+     * @param context       Context used to start the service
+     * @param sessionId     id of the stored session
+     */
+    public static void enqueueSessionSaved(Context context, long sessionId){
+        Intent intent = new Intent(context, SessionProcessingService.class);
+        intent.setAction(ACTION_SESSION_SAVED);
+        intent.putExtra(EXTRA_SESSION_ID, sessionId);
+        startService(context, intent);
+    }
+
+    /**
+     * Requests that anything prepared for a deleted session is removed
+     * @param context       Context used to start the service
+     * @param sessionId     id of the deleted session
+     */
+    public static void enqueueSessionDeleted(Context context, long sessionId){
+        Intent intent = new Intent(context, SessionProcessingService.class);
+        intent.setAction(ACTION_SESSION_DELETED);
+        intent.putExtra(EXTRA_SESSION_ID, sessionId);
+        startService(context, intent);
+    }
+
+    /**
+     * Requests that anything prepared for several sessions deleted at once is removed
+     * @param context       Context used to start the service
+     * @param sessionIds    ids of the deleted sessions
+     */
+    public static void enqueueSessionsDeleted(Context context, long[] sessionIds){
+        Intent intent = new Intent(context, SessionProcessingService.class);
+        intent.setAction(ACTION_SESSIONS_DELETED);
+        intent.putExtra(EXTRA_SESSION_IDS, sessionIds);
+        startService(context, intent);
+    }
+
+    /**
+     * Requests that a newly stored segment is timed over every stored session that covers it
+     * @param context       Context used to start the service
+     * @param segmentId     id of the stored segment
+     */
+    public static void enqueueSegmentAdded(Context context, long segmentId){
+        Intent intent = new Intent(context, SessionProcessingService.class);
+        intent.setAction(ACTION_SEGMENT_ADDED);
+        intent.putExtra(EXTRA_SEGMENT_ID, segmentId);
+        if(!startService(context, intent)){
+            // Only a backfill from the first session times the segment over every stored session
+            context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE).edit()
+                    .putLong(PREFERENCE_BACKFILLED_SESSION_ID, 0)
+                    .apply();
+        }
+    }
+
+    /**
+     * Requests that any sessions stored before the current analyses were added are analysed. This
+     * does nothing once every session has been processed
+     * @param context       Context used to start the service
+     */
+    public static void enqueueBackfill(Context context){
+        Intent intent = new Intent(context, SessionProcessingService.class);
+        intent.setAction(ACTION_BACKFILL);
+        startService(context, intent);
+    }
+
+    /**
+     * Starts the service, which Android 8 and above does not allow while the app is in the
+     * background. Work which could not be requested is caught up by the backfill the app requests
+     * whenever it is opened: it analyses sessions stored since it last ran and brings the heatmap up
+     * to date, while thumbnails are drawn whenever they are missing
+     * @return  Whether the service was started
+     */
+    private static boolean startService(Context context, Intent intent){
+        try {
+            context.startService(intent);
+            return true;
+        }catch(IllegalStateException e){
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        if(intent == null || intent.getAction() == null){
+            return;
+        }
+
+        if(ACTION_BACKFILL.equals(intent.getAction())){
+            backfill();
+            return;
+        }
+        if(ACTION_SEGMENT_ADDED.equals(intent.getAction())){
+            onSegmentAdded(intent.getLongExtra(EXTRA_SEGMENT_ID, -1));
+            return;
+        }
+        if(ACTION_SESSIONS_DELETED.equals(intent.getAction())){
+            long[] sessionIds = intent.getLongArrayExtra(EXTRA_SESSION_IDS);
+            if(sessionIds != null){
+                for(long sessionId : sessionIds){
+                    onSessionDeleted(sessionId);
+                }
+            }
+            return;
+        }
+
+        long sessionId = intent.getLongExtra(EXTRA_SESSION_ID, -1);
+        if(sessionId == -1){
+            return;
+        }
+
+        switch(intent.getAction()){
+            case ACTION_SESSION_SAVED:
+                onSessionSaved(sessionId);
+                break;
+            case ACTION_SESSION_DELETED:
+                onSessionDeleted(sessionId);
+                break;
+        }
+    }
+
+    private void onSessionSaved(long sessionId){
+        RouteThumbnailRenderer.renderSession(this, sessionId);
+        analyseSession(sessionId);
+        HeatmapRenderer.addSession(this, sessionId);
+    }
+
+    private void onSessionDeleted(long sessionId){
+        RouteThumbnailCache.getInstance(this).remove(sessionId);
+        HeatmapRenderer.removeSession(this, sessionId);
+    }
+
+    /**
+     * Carries out every analysis of a stored session, replacing the results of any carried out
+     * before
+     */
+    private void analyseSession(long sessionId){
+        AnalysedSession session = AnalysedSession.load(getContentResolver(), sessionId);
+        if(session == null){
+            return;
+        }
+
+        PersonalRecords.updateSession(getContentResolver(), session);
+
+        PaceSketch paceSketch = PaceSketch.fromRoute(session.getCumulativeDistances(), session.getTimes());
+        ContentValues paceSketchValues = session.getSessionValues();
+        paceSketchValues.put(WorkoutSessionContentProvider.Contract.PACE_SKETCH, paceSketch.encode());
+        getContentResolver().insert(WorkoutSessionContentProvider.Contract.PACE_SKETCHES_URI, paceSketchValues);
+
+        int[] routeSignature = RouteFingerprint.getSignature(session.getLatitudes(), session.getLongitudes());
+        if(routeSignature != null){
+            ContentValues routeSignatureValues = new ContentValues();
+            routeSignatureValues.put(WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID, sessionId);
+            routeSignatureValues.put(WorkoutSessionContentProvider.Contract.ROUTE_SIGNATURE,
+                    RouteFingerprint.encode(routeSignature));
+            getContentResolver().insert(WorkoutSessionContentProvider.Contract.ROUTE_SIGNATURES_URI,
+                    routeSignatureValues);
+        }
+
+        RouteBounds bounds = RouteBounds.of(session.getLatitudes(), session.getLongitudes());
+        if(bounds != null){
+            ContentValues boundsValues = new ContentValues();
+            boundsValues.put(WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID, sessionId);
+            boundsValues.put(WorkoutSessionContentProvider.Contract.BOUNDS_MINIMUM_LATITUDE, bounds.getMinimumLatitude());
+            boundsValues.put(WorkoutSessionContentProvider.Contract.BOUNDS_MAXIMUM_LATITUDE, bounds.getMaximumLatitude());
+            boundsValues.put(WorkoutSessionContentProvider.Contract.BOUNDS_MINIMUM_LONGITUDE, bounds.getMinimumLongitude());
+            boundsValues.put(WorkoutSessionContentProvider.Contract.BOUNDS_MAXIMUM_LONGITUDE, bounds.getMaximumLongitude());
+            getContentResolver().insert(WorkoutSessionContentProvider.Contract.ROUTE_BOUNDS_URI, boundsValues);
+
+            int[] outline = RouteGrid.getOutline(session.getLatitudes(), session.getLongitudes());
+            List<Double> outlineLatitudes = new ArrayList<>(outline.length);
+            List<Double> outlineLongitudes = new ArrayList<>(outline.length);
+            for(int index : outline){
+                outlineLatitudes.add(session.getLatitudes()[index]);
+                outlineLongitudes.add(session.getLongitudes()[index]);
+            }
+            ContentValues outlineValues = new ContentValues();
+            outlineValues.put(WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID, sessionId);
+            outlineValues.put(WorkoutSessionContentProvider.Contract.LATITUDE, CoordinateScanner.encode(outlineLatitudes));
+            outlineValues.put(WorkoutSessionContentProvider.Contract.LONGITUDE, CoordinateScanner.encode(outlineLongitudes));
+            getContentResolver().insert(WorkoutSessionContentProvider.Contract.ROUTE_OUTLINES_URI, outlineValues);
+
+            Map<Long, Segment> segments = loadSegments(WorkoutSessionContentProvider.Contract.SEGMENTS_URI);
+            for(Map.Entry<Long, Segment> segment : segments.entrySet()){
+                if(segment.getValue().mayBeCoveredBy(bounds)){
+                    storeSegmentEffort(segment.getKey(), segment.getValue(), session);
+                }
+            }
+        }
+    }
+
+    /**
+     * Times a new segment over every stored session whose route passes near both of its gates
+     */
+    private void onSegmentAdded(long segmentId){
+        Map<Long, Segment> segments = loadSegments(ContentUris.withAppendedId(
+                WorkoutSessionContentProvider.Contract.SEGMENTS_URI, segmentId));
+        Segment segment = segments.get(segmentId);
+        if(segment == null){
+            return;
+        }
+
+        List<Long> sessionIds = new ArrayList<>();
+        Cursor cursor = getContentResolver().query(ContentUris.withAppendedId(
+                WorkoutSessionContentProvider.Contract.SEGMENT_CANDIDATES_URI, segmentId), null, null, null, null);
+        if(cursor == null){
+            return;
+        }
+        while(cursor.moveToNext()){
+            sessionIds.add(cursor.getLong(0));
+        }
+        cursor.close();
+
+        for(long sessionId : sessionIds){
+            AnalysedSession session = AnalysedSession.load(getContentResolver(), sessionId);
+            if(session != null){
+                storeSegmentEffort(segmentId, segment, session);
+            }
+        }
+    }
+
+    /**
+     * Stores the fastest effort of a session over a segment, if it covered the segment
+     */
+    private void storeSegmentEffort(long segmentId, Segment segment, AnalysedSession session){
+        BestEffortCalculator.Effort effort = segment.findBestEffort(session.getLatitudes(), session.getLongitudes(),
+                session.getCumulativeDistances(), session.getTimes());
+        if(effort == null){
+            return;
+        }
+
+        ContentValues effortValues = new ContentValues();
+        effortValues.put(WorkoutSessionContentProvider.Contract.SEGMENT_ID, segmentId);
+        effortValues.put(WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID,
+                session.getSessionValues().getAsLong(WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID));
+        effortValues.put(WorkoutSessionContentProvider.Contract.RECORD_START,
+                Math.round(effort.getStartSeconds() * MILLISECONDS_PER_SECOND));
+        effortValues.put(WorkoutSessionContentProvider.Contract.DURATION,
+                Math.round(effort.getDurationSeconds() * MILLISECONDS_PER_SECOND));
+        effortValues.put(WorkoutSessionContentProvider.Contract.RECORD_SPEED, effort.getSpeed());
+        getContentResolver().insert(WorkoutSessionContentProvider.Contract.SEGMENT_EFFORTS_URI, effortValues);
+    }
+
+    /**
+     * @param uri   The segments URI, or that of a single segment
+     * @return      Each valid segment by its id
+     */
+    private Map<Long, Segment> loadSegments(Uri uri){
+        Map<Long, Segment> segments = new HashMap<>();
+        Cursor cursor = getContentResolver().query(uri, new String[] {
+                        WorkoutSessionContentProvider.Contract._ID,
+                        WorkoutSessionContentProvider.Contract.LATITUDE,
+                        WorkoutSessionContentProvider.Contract.LONGITUDE,
+                        WorkoutSessionContentProvider.Contract.SEGMENT_CORRIDOR
+                }, null, null, null);
+        if(cursor == null){
+            return segments;
+        }
+
+        while(cursor.moveToNext()){
+            Segment segment = Segments.toSegment(cursor.getString(1), cursor.getString(2), cursor.getDouble(3));
+            if(segment != null){
+                segments.put(cursor.getLong(0), segment);
+            }
+        }
+        cursor.close();
+        return segments;
+    }
+
+    /**
+     * Analyses every stored session which the backfill has not yet reached, oldest first
+     */
+    private void backfill(){
+        SharedPreferences preferences = getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        long backfilledSessionId = preferences.getLong(PREFERENCE_BACKFILLED_SESSION_ID, 0);
+
+        // Start again from the first session if analyses have been added since the last backfill
+        if(preferences.getInt(PREFERENCE_ANALYSIS_VERSION, 0) != ANALYSIS_VERSION){
+            backfilledSessionId = 0;
+            preferences.edit()
+                    .putInt(PREFERENCE_ANALYSIS_VERSION, ANALYSIS_VERSION)
+                    .putLong(PREFERENCE_BACKFILLED_SESSION_ID, backfilledSessionId)
+                    .apply();
+        }
+
+        List<Long> sessionIds = new ArrayList<>();
+        Cursor cursor = getContentResolver().query(WorkoutSessionContentProvider.Contract.SESSION_URI,
+                new String[] { WorkoutSessionContentProvider.Contract._ID },
+                WorkoutSessionContentProvider.Contract._ID + " > ?",
+                new String[] { String.valueOf(backfilledSessionId) },
+                WorkoutSessionContentProvider.Contract._ID + " ASC");
+        if(cursor == null){
+            return;
+        }
+        while(cursor.moveToNext()){
+            sessionIds.add(cursor.getLong(0));
+        }
+        cursor.close();
+
+        for(int i = 0; i < sessionIds.size(); i++){
+            long sessionId = sessionIds.get(i);
+            analyseSession(sessionId);
+
+            if((i + 1) % BACKFILL_PROGRESS_INTERVAL == 0 || i == sessionIds.size() - 1){
+                preferences.edit().putLong(PREFERENCE_BACKFILLED_SESSION_ID, sessionId).apply();
+            }
+        }
+
+        // The heatmap keeps track of its own sessions, which also catches those deleted by a
+        // selection rather than one at a time
+        HeatmapRenderer.update(this);
+    }
+}
@@ -0,0 +1,176 @@
+package com.mdp.cw4.runningtracker;
+
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.PACE_ROLLUPS_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.PACE_SKETCHES_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.PERSONAL_RECORDS_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.SESSION_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.Contract.*;
+
+/**
+ * <h1>Session Queries</h1>
+ * Builds the SQL used by WorkoutSessionContentProvider for the summary URIs. The queries only
+ * depend on the selection arguments, so are kept apart from the provider where they can be tested
+ * and benchmarked without a database
+ */
+class SessionQueries {
+
+    static final String MINIMUM_YEAR_QUERY =
+            "SELECT MIN(" + YEAR + ") AS " + MINIMUM_YEAR +
+            " FROM " + SESSION_TABLE_NAME;
+
+    /**
+     * Parses a query to find the total amount achieved for a particular variable for each month
+     * of the year, for example returning for each month how much the year have travelled.
+     * The only selection argument is the year
+     * @param dependentVariable     Variable to find the total of
+     * @param workoutTypeMask       Workout types to include, see WorkoutTypeFilter, or -1 to
+     *                              include all sessions
+     */
+    static String parseQueryMaxTotalByMonthWithSessionType(String dependentVariable, int workoutTypeMask) {
+        return "SELECT SUM(" + dependentVariable + ") AS '" + MONTHLY_TOTAL + "', " + MONTH +
+                " FROM " + SESSION_TABLE_NAME +
+                " WHERE " + YEAR + " = ? " + parseSessionWhereClause(workoutTypeMask) +
+                " GROUP BY " + MONTH + ";";
+    }
+
+    /**
+     * Parses a query to find the maximum value obtained for a particular variable i.e. distance or
+     * duration during a month for the whole selected year.
+     * The only selection argument is the year
+     * @param dependentVariable     Variable to find the maximum of
+     * @param workoutTypeMask       Workout types to include, see WorkoutTypeFilter, or -1 to
+     *                              include all sessions
+     */
+    static String parseQueryMaxTotalForYearWithSessionType(String dependentVariable, int workoutTypeMask){
+        return "SELECT MAX(" + MONTHLY_TOTAL + ") AS " + MONTHLY_TOTAL + " FROM (" +
+                "SELECT SUM(" + dependentVariable + ") AS '" + MONTHLY_TOTAL + "'" +
+                " FROM " + SESSION_TABLE_NAME +
+                " WHERE " + YEAR + " = ? " + parseSessionWhereClause(workoutTypeMask) +
+                " GROUP BY " + MONTH + ", " + WORKOUT_TYPE + ");";
+    }
+
+    /**
+     * Generates a selection clause restricting the sessions to the workout types in the mask
+     * @param workoutTypeMask   Workout types to include, or -1 to include all sessions
+     */
+    static String parseSessionWhereClause(int workoutTypeMask){
+        if(workoutTypeMask < 0){
+            return "";
+        }
+
+        return "AND " + WorkoutTypeFilter.getSelection(workoutTypeMask) + " ";
+    }
+
+    /**
+     * Builds a query returning a single row with the number of sessions and the total, minimum,
+     * maximum and average distance and duration of the sessions in a period. The selection
+     * arguments are the year, followed by the month and date if used
+     * @param byMonth               Whether the period is restricted to a month of the year
+     * @param byDate                Whether the period is restricted to a date of the month
+     * @param workoutTypeMask       Workout types to include, see WorkoutTypeFilter, or -1 to
+     *                              include all sessions
+     */
+    static String parseAggregateQuery(boolean byMonth, boolean byDate, int workoutTypeMask){
+        StringBuilder query = new StringBuilder(512);
+        query.append("SELECT COUNT(*) AS ").append(AGGREGATE_COUNT)
+                .append(", IFNULL(SUM(").append(DISTANCE).append("), 0) AS ").append(AGGREGATE_TOTAL_DISTANCE)
+                .append(", IFNULL(SUM(").append(DURATION).append("), 0) AS ").append(AGGREGATE_TOTAL_DURATION)
+                .append(", IFNULL(MIN(").append(DISTANCE).append("), 0) AS ").append(AGGREGATE_MINIMUM_DISTANCE)
+                .append(", IFNULL(MAX(").append(DISTANCE).append("), 0) AS ").append(AGGREGATE_MAXIMUM_DISTANCE)
+                .append(", IFNULL(AVG(").append(DISTANCE).append("), 0) AS ").append(AGGREGATE_AVERAGE_DISTANCE)
+                .append(", IFNULL(MIN(").append(DURATION).append("), 0) AS ").append(AGGREGATE_MINIMUM_DURATION)
+                .append(", IFNULL(MAX(").append(DURATION).append("), 0) AS ").append(AGGREGATE_MAXIMUM_DURATION)
+                .append(", IFNULL(AVG(").append(DURATION).append("), 0) AS ").append(AGGREGATE_AVERAGE_DURATION)
+                .append(" FROM ").append(SESSION_TABLE_NAME)
+                .append(" WHERE ").append(YEAR).append(" = ?");
+
+        if(byMonth){
+            query.append(" AND ").append(MONTH).append(" = ?");
+        }
+
+        if(byDate){
+            query.append(" AND ").append(DATE).append(" = ?");
+        }
+
+        if(workoutTypeMask >= 0){
+            query.append(" AND ").append(WorkoutTypeFilter.getSelection(workoutTypeMask));
+        }
+
+        return query.toString();
+    }
+
+    /**
+     * Builds a query returning the best effort, that with the highest average speed, of each
+     * workout type and effort. There are no selection arguments
+     * @param workoutTypeMask       Workout types to include, see WorkoutTypeFilter, or -1 to
+     *                              include all sessions
+     */
+    static String parsePersonalRecordsQuery(int workoutTypeMask){
+        // SQLite takes the other columns from the row holding the maximum speed
+        StringBuilder query = new StringBuilder(256);
+        query.append("SELECT ").append(RECORD_SESSION_ID)
+                .append(", ").append(WORKOUT_TYPE)
+                .append(", ").append(RECORD_EFFORT)
+                .append(", ").append(DISTANCE)
+                .append(", ").append(DURATION)
+                .append(", ").append(RECORD_START)
+                .append(", ").append(DATE)
+                .append(", ").append(MONTH)
+                .append(", ").append(YEAR)
+                .append(", MAX(").append(RECORD_SPEED).append(") AS ").append(RECORD_SPEED)
+                .append(" FROM ").append(PERSONAL_RECORDS_TABLE_NAME);
+
+        if(workoutTypeMask >= 0){
+            query.append(" WHERE ").append(WorkoutTypeFilter.getSelection(workoutTypeMask));
+        }
+
+        query.append(" GROUP BY ").append(WORKOUT_TYPE).append(", ").append(RECORD_EFFORT)
+                .append(" ORDER BY ").append(WORKOUT_TYPE).append(", ").append(RECORD_EFFORT);
+
+        return query.toString();
+    }
+
+    /**
+     * Builds the selection for the best efforts of every session for one effort. The only
+     * selection argument is the effort id
+     * @param workoutTypeMask       Workout types to include, see WorkoutTypeFilter, or -1 to
+     *                              include all sessions
+     */
+    static String parseBestEffortsSelection(int workoutTypeMask){
+        if(workoutTypeMask < 0){
+            return RECORD_EFFORT + " = ?";
+        }
+        return RECORD_EFFORT + " = ? AND " + WorkoutTypeFilter.getSelection(workoutTypeMask);
+    }
+
+    /**
+     * Builds a query returning the pace sketches to merge for the distribution of speeds over a
+     * period. Months and years are made up from the rollup for each workout type and month, days
+     * from the sketches of their sessions. The selection arguments are the same as those of
+     * parseAggregateQuery
+     * @param byMonth               Whether the period is restricted to a month of the year
+     * @param byDate                Whether the period is restricted to a date of the month
+     * @param workoutTypeMask       Workout types to include, see WorkoutTypeFilter, or -1 to
+     *                              include all sessions
+     */
+    static String parsePaceSketchesQuery(boolean byMonth, boolean byDate, int workoutTypeMask){
+        StringBuilder query = new StringBuilder(128);
+        query.append("SELECT ").append(PACE_SKETCH)
+                .append(" FROM ").append(byDate ? PACE_SKETCHES_TABLE_NAME : PACE_ROLLUPS_TABLE_NAME)
+                .append(" WHERE ").append(YEAR).append(" = ?");
+
+        if(byMonth){
+            query.append(" AND ").append(MONTH).append(" = ?");
+        }
+
+        if(byDate){
+            query.append(" AND ").append(DATE).append(" = ?");
+        }
+
+        if(workoutTypeMask >= 0){
+            query.append(" AND ").append(WorkoutTypeFilter.getSelection(workoutTypeMask));
+        }
+
+        return query.toString();
+    }
+}
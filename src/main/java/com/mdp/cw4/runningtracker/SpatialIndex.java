@@ -0,0 +1,266 @@
+package com.mdp.cw4.runningtracker;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.ROUTE_BOUNDS_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.ROUTE_CELLS_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.ROUTE_OUTLINES_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.SESSION_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.Contract.*;
+
+/**
+ * <h1>Spatial Index</h1>
+ * Keeps the outline of each session's route along with a row for every cell of RouteGrid it
+ * passes through. The cells are indexed, so the sessions passing through a region are found by
+ * looking up the few hundred cells covering it however many sessions there are. Only the
+ * outlines of the sessions under cells on the edge of the region are read, and only if the
+ * bounds of their routes, see Segments, overlap the region.
+ * <p>
+ * The methods work directly on the database and are called by WorkoutSessionContentProvider
+ */
+class SpatialIndex {
+
+    static final String[] VIEWPORT_COLUMNS = { _ID };
+    static final String[] NEARBY_COLUMNS = { _ID, NEARBY_DISTANCE };
+
+    // Sessions whose bounds overlap a box. The arguments are the highest latitude, lowest
+    // latitude, highest longitude and lowest longitude of the box
+    private static final String BOUNDS_OVERLAP_SELECTION = "b." + BOUNDS_MINIMUM_LATITUDE + " <= ? AND b."
+            + BOUNDS_MAXIMUM_LATITUDE + " >= ? AND b." + BOUNDS_MINIMUM_LONGITUDE + " <= ? AND b."
+            + BOUNDS_MAXIMUM_LONGITUDE + " >= ?";
+
+    /**
+     * Stores the outline of a session and its cells, replacing any stored for it before
+     * @param values    The session id and the latitudes and longitudes of the outline
+     * @return          Whether the outline was stored, which it is not if the session no longer
+     *                  exists
+     */
+    static boolean store(SQLiteDatabase database, ContentValues values){
+        Long sessionId = values.getAsLong(RECORD_SESSION_ID);
+        if(sessionId == null){
+            return false;
+        }
+
+        long[] cells;
+        try {
+            double[] latitudes = CoordinateScanner.decode(values.getAsString(LATITUDE));
+            double[] longitudes = CoordinateScanner.decode(values.getAsString(LONGITUDE));
+            if(latitudes == null || longitudes == null || latitudes.length != longitudes.length){
+                return false;
+            }
+            cells = RouteGrid.getCells(latitudes, longitudes);
+        }catch(NumberFormatException e){
+            e.printStackTrace();
+            return false;
+        }
+
+        database.beginTransaction();
+        try {
+            // The session may have been deleted while it was being analysed
+            if(!WorkoutSessionContentProvider.sessionExists(database, sessionId)){
+                return false;
+            }
+
+            remove(database, sessionId);
+
+            ContentValues outlineValues = new ContentValues();
+            outlineValues.put(RECORD_SESSION_ID, sessionId);
+            outlineValues.put(LATITUDE, values.getAsString(LATITUDE));
+            outlineValues.put(LONGITUDE, values.getAsString(LONGITUDE));
+            if(database.insert(ROUTE_OUTLINES_TABLE_NAME, null, outlineValues) == -1){
+                return false;
+            }
+
+            // A route passes through a few hundred cells, so the statement is compiled once
+            SQLiteStatement statement = database.compileStatement("INSERT INTO " + ROUTE_CELLS_TABLE_NAME
+                    + " (" + ROUTE_CELL + ", " + RECORD_SESSION_ID + ") VALUES (?, ?)");
+            try {
+                for(long cell : cells){
+                    statement.bindLong(1, cell);
+                    statement.bindLong(2, sessionId);
+                    statement.executeInsert();
+                }
+            }finally{
+                statement.close();
+            }
+            database.setTransactionSuccessful();
+        }finally{
+            database.endTransaction();
+        }
+
+        return true;
+    }
+
+    /**
+     * Deletes the outline and cells of a session
+     */
+    static void remove(SQLiteDatabase database, long sessionId){
+        String[] selectionArgs = { String.valueOf(sessionId) };
+        database.delete(ROUTE_CELLS_TABLE_NAME, RECORD_SESSION_ID + " = ?", selectionArgs);
+        database.delete(ROUTE_OUTLINES_TABLE_NAME, RECORD_SESSION_ID + " = ?", selectionArgs);
+    }
+
+    /**
+     * Removes the outlines of any sessions which no longer exist, for example after deleting
+     * sessions by a selection
+     */
+    static void removeDeletedSessions(SQLiteDatabase database){
+        String deletedSessions = RECORD_SESSION_ID + " NOT IN (SELECT _id FROM " + SESSION_TABLE_NAME + ")";
+        database.delete(ROUTE_CELLS_TABLE_NAME, deletedSessions, null);
+        database.delete(ROUTE_OUTLINES_TABLE_NAME, deletedSessions, null);
+    }
+
+    /**
+     * @return  The id of every session whose route passes through the viewport, in order
+     */
+    static Cursor getViewportCursor(SQLiteDatabase database, RouteBounds viewport){
+        RouteGrid.Cover cover = RouteGrid.cover(viewport);
+        Set<Long> sessionIds = getSessionIds(database, cover.getInsideCells());
+
+        Cursor cursor = database.rawQuery(getOutlinesQuery(toList(cover.getEdgeCells())), getBoxArguments(viewport));
+        try {
+            while(cursor.moveToNext()){
+                if(!sessionIds.contains(cursor.getLong(0))
+                        && viewport.intersectsRoute(decode(cursor, 1), decode(cursor, 2))){
+                    sessionIds.add(cursor.getLong(0));
+                }
+            }
+        }finally{
+            cursor.close();
+        }
+
+        List<Long> sortedSessionIds = new ArrayList<>(sessionIds);
+        Collections.sort(sortedSessionIds);
+        MatrixCursor viewportSessions = new MatrixCursor(VIEWPORT_COLUMNS, sortedSessionIds.size());
+        for(Long sessionId : sortedSessionIds){
+            viewportSessions.addRow(new Object[] { sessionId });
+        }
+        return viewportSessions;
+    }
+
+    /**
+     * @param limit     Largest number of sessions returned, or 0 for all of them
+     * @return          The id of every session whose route passes within the circle and the
+     *                  closest it comes to the centre in metres, nearest first
+     */
+    static Cursor getNearbyCursor(SQLiteDatabase database, RouteGrid.Circle circle, int limit){
+        List<Map.Entry<Long, Double>> sessions = new ArrayList<>(findSessionsNear(database, circle).entrySet());
+        Collections.sort(sessions, new Comparator<Map.Entry<Long, Double>>() {
+            @Override
+            public int compare(Map.Entry<Long, Double> session, Map.Entry<Long, Double> otherSession) {
+                return Double.compare(session.getValue(), otherSession.getValue());
+            }
+        });
+
+        int numberOfRows = limit > 0 ? Math.min(limit, sessions.size()) : sessions.size();
+        MatrixCursor nearbySessions = new MatrixCursor(NEARBY_COLUMNS, numberOfRows);
+        for(int i = 0; i < numberOfRows; i++){
+            nearbySessions.addRow(new Object[] { sessions.get(i).getKey(), sessions.get(i).getValue() });
+        }
+        return nearbySessions;
+    }
+
+    /**
+     * Finds the sessions whose route passes within a circle. Each of their outlines is read to
+     * work out how close it comes, including those under cells wholly inside the circle
+     * @return  The closest each session's route comes to the centre in metres, by session id
+     */
+    static Map<Long, Double> findSessionsNear(SQLiteDatabase database, RouteGrid.Circle circle){
+        RouteGrid.Cover cover = RouteGrid.cover(circle);
+        String cells = toList(cover.getInsideCells());
+        String edgeCells = toList(cover.getEdgeCells());
+        if(cells.isEmpty()){
+            cells = edgeCells;
+        }else if(!edgeCells.isEmpty()){
+            cells += ", " + edgeCells;
+        }
+
+        Map<Long, Double> sessions = new HashMap<>();
+        Cursor cursor = database.rawQuery(getOutlinesQuery(cells), getBoxArguments(circle));
+        try {
+            while(cursor.moveToNext()){
+                double distance = circle.getDistanceMetres(decode(cursor, 1), decode(cursor, 2));
+                if(distance <= circle.getRadiusMetres()){
+                    sessions.put(cursor.getLong(0), distance);
+                }
+            }
+        }finally{
+            cursor.close();
+        }
+        return sessions;
+    }
+
+    /**
+     * @param cells     Comma separated cell keys
+     * @return          The id, latitudes and longitudes of the outline of every session under any
+     *                  of the cells whose bounds overlap a box, see BOUNDS_OVERLAP_SELECTION
+     */
+    static String getOutlinesQuery(String cells){
+        return "SELECT o." + RECORD_SESSION_ID + ", o." + LATITUDE + ", o." + LONGITUDE + " FROM "
+                + ROUTE_OUTLINES_TABLE_NAME + " o INNER JOIN " + ROUTE_BOUNDS_TABLE_NAME + " b ON b."
+                + RECORD_SESSION_ID + " = o." + RECORD_SESSION_ID + " WHERE o." + RECORD_SESSION_ID
+                + " IN (SELECT " + RECORD_SESSION_ID + " FROM " + ROUTE_CELLS_TABLE_NAME + " WHERE "
+                + ROUTE_CELL + " IN (" + cells + ")) AND " + BOUNDS_OVERLAP_SELECTION;
+    }
+
+    /**
+     * @return  The id of every session under any of the cells
+     */
+    private static Set<Long> getSessionIds(SQLiteDatabase database, long[] cells){
+        Set<Long> sessionIds = new HashSet<>();
+        if(cells.length == 0){
+            return sessionIds;
+        }
+
+        // Cell keys are numbers made here, so they are written into the query rather than bound,
+        // which keeps the number of them under SQLite's limit on arguments from mattering
+        Cursor cursor = database.rawQuery("SELECT DISTINCT " + RECORD_SESSION_ID + " FROM "
+                + ROUTE_CELLS_TABLE_NAME + " WHERE " + ROUTE_CELL + " IN (" + toList(cells) + ")", null);
+        try {
+            while(cursor.moveToNext()){
+                sessionIds.add(cursor.getLong(0));
+            }
+        }finally{
+            cursor.close();
+        }
+        return sessionIds;
+    }
+
+    /**
+     * @return  The arguments of BOUNDS_OVERLAP_SELECTION for the bounds of the region
+     */
+    private static String[] getBoxArguments(RouteGrid.Region region){
+        return new String[] { String.valueOf(region.getMaximumLatitude()),
+                String.valueOf(region.getMinimumLatitude()), String.valueOf(region.getMaximumLongitude()),
+                String.valueOf(region.getMinimumLongitude()) };
+    }
+
+    private static String toList(long[] cells){
+        StringBuilder stringBuilder = new StringBuilder(cells.length * 16);
+        for(int i = 0; i < cells.length; i++){
+            if(i > 0){
+                stringBuilder.append(", ");
+            }
+            stringBuilder.append(cells[i]);
+        }
+        return stringBuilder.toString();
+    }
+
+    private static double[] decode(Cursor cursor, int column){
+        double[] coordinates = CoordinateScanner.decode(cursor.getString(column));
+        return coordinates != null ? coordinates : new double[0];
+    }
+}
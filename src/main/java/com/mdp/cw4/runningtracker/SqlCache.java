@@ -0,0 +1,76 @@
+package com.mdp.cw4.runningtracker;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <h1>SQL Cache</h1>
+ * Bounded cache of the SQL built by WorkoutSessionContentProvider for its summary URIs, keyed by
+ * the shape of the query: the URI code, the workout type mask and which parts of the period are
+ * given. Everything else, such as the year, is bound as a selection argument, so a shape always
+ * produces the same SQL.
+ * <p>
+ * Handing SQLite exactly the same text for the same shape means a refresh of the statistics screen
+ * neither rebuilds the SQL nor has SQLite prepare it again, as each database connection keeps its
+ * own cache of prepared statements keyed by their text. See WorkoutSessionDatabase for the size of
+ * that cache. The least recently used entry is dropped once the cache is full
+ */
+class SqlCache {
+
+    private final Map<Long, String> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maximumSize   Largest number of queries to hold
+     */
+    SqlCache(final int maximumSize){
+        entries = new LinkedHashMap<Long, String>(maximumSize, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, String> eldest){
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    /**
+     * @param uriCode           URI match code of the query
+     * @param workoutTypeMask   Workout types included, or -1 if not filtered by workout type
+     * @param flags             Any other options changing the SQL, for example whether the month
+     *                          and date are given
+     * @return                  Key identifying the shape of the query
+     */
+    static long getKey(int uriCode, int workoutTypeMask, int flags){
+        return ((long) uriCode << 48) | ((long) (flags & 0xFFFF) << 32) | (workoutTypeMask & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return  The cached SQL, or null if the shape has not been seen or has since been dropped
+     */
+    synchronized String get(long key){
+        String sql = entries.get(key);
+        if(sql == null){
+            misses.incrementAndGet();
+        }else{
+            hits.incrementAndGet();
+        }
+        return sql;
+    }
+
+    synchronized void put(long key, String sql){
+        entries.put(key, sql);
+    }
+
+    synchronized int size(){
+        return entries.size();
+    }
+
+    long getHitCount(){
+        return hits.get();
+    }
+
+    long getMissCount(){
+        return misses.get();
+    }
+}
@@ -0,0 +1,361 @@
+package com.mdp.cw4.runningtracker;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * <h1>Start Clustering</h1>
+ * Groups the first point of each session's route into the places training usually starts from,
+ * using DBSCAN: a start with at least MINIMUM_SESSIONS starts, itself included, within
+ * EPSILON_METRES is a core, cores within EPSILON_METRES of each other are in the same cluster and
+ * any other start within EPSILON_METRES of a core joins its cluster. Starts near no core are noise.
+ * <p>
+ * Clusters are kept up to date one start at a time, as each start keeps the number of starts
+ * around it. Adding a start only changes the number around those within EPSILON_METRES, so only
+ * starts within twice that are needed to find the cores it creates and the clusters it joins or
+ * merges. Removing one can split a cluster, so the clusters which lose a core are found again from
+ * their own starts, which is still far less than every start. Starts near a point are found through
+ * a grid of cells at least EPSILON_METRES high, see getCells.
+ * <p>
+ * Cluster ids are those they are stored with. A cluster found by this class which has not been
+ * stored yet has an id below NOISE
+ */
+public class StartClustering {
+
+    public static final double EPSILON_METRES = 150;
+    public static final int MINIMUM_SESSIONS = 3;
+
+    // Cluster id of a start in no cluster, and of the first new cluster found
+    public static final long NOISE = 0;
+    public static final long NEW_CLUSTER = -1;
+
+    private static final double CELL_DEGREES = 0.002;
+    private static final long COLUMNS = Math.round(360 / CELL_DEGREES);
+    private static final double MAXIMUM_LATITUDE = 89.9;
+
+    /**
+     * The first point of a session's route, along with its session's distance
+     */
+    public static class Start {
+
+        private final long sessionId;
+        private final double latitude;
+        private final double longitude;
+        private final long distance;
+        private int neighbours;
+        private long clusterId;
+        private boolean changed;
+
+        /**
+         * @param neighbours    Number of starts within EPSILON_METRES, itself included
+         * @param clusterId     Id of the cluster the start is in, or NOISE
+         */
+        public Start(long sessionId, double latitude, double longitude, long distance, int neighbours,
+                     long clusterId){
+            this.sessionId = sessionId;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.distance = distance;
+            this.neighbours = neighbours;
+            this.clusterId = clusterId;
+        }
+
+        public long getSessionId(){
+            return sessionId;
+        }
+
+        public double getLatitude(){
+            return latitude;
+        }
+
+        public double getLongitude(){
+            return longitude;
+        }
+
+        public long getDistance(){
+            return distance;
+        }
+
+        public int getNeighbours(){
+            return neighbours;
+        }
+
+        public long getClusterId(){
+            return clusterId;
+        }
+
+        public boolean isCore(){
+            return neighbours >= MINIMUM_SESSIONS;
+        }
+
+        /**
+         * @return  Whether the number of neighbours or the cluster has changed since the start was
+         *          created, so it needs storing again
+         */
+        public boolean isChanged(){
+            return changed;
+        }
+
+        private void setNeighbours(int neighbours){
+            changed |= this.neighbours != neighbours;
+            this.neighbours = neighbours;
+        }
+
+        private void setClusterId(long clusterId){
+            changed |= this.clusterId != clusterId;
+            this.clusterId = clusterId;
+        }
+    }
+
+    /**
+     * @return  Key of the cell of the grid the point is in
+     */
+    public static long getCell(double latitude, double longitude){
+        long row = (long) Math.floor((latitude + 90) / CELL_DEGREES);
+        long column = (long) Math.floor((longitude + 180) / CELL_DEGREES);
+        return row * COLUMNS + column;
+    }
+
+    /**
+     * @return  Keys of the cells of the grid covering every point within the radius of the point
+     */
+    public static long[] getCells(double latitude, double longitude, double radiusMetres){
+        double latitudeChange = radiusMetres / RouteDistance.METRES_PER_DEGREE;
+        // A degree of longitude is narrowest on the side of the circle nearest the pole
+        double widestLatitude = Math.min(MAXIMUM_LATITUDE, Math.abs(latitude) + latitudeChange);
+        double longitudeChange = radiusMetres
+                / (RouteDistance.METRES_PER_DEGREE * Math.cos(Math.toRadians(widestLatitude)));
+
+        long firstRow = (long) Math.floor((latitude - latitudeChange + 90) / CELL_DEGREES);
+        long lastRow = (long) Math.floor((latitude + latitudeChange + 90) / CELL_DEGREES);
+        long firstColumn = (long) Math.floor((longitude - longitudeChange + 180) / CELL_DEGREES);
+        long lastColumn = (long) Math.floor((longitude + longitudeChange + 180) / CELL_DEGREES);
+
+        long[] cells = new long[(int) ((lastRow - firstRow + 1) * (lastColumn - firstColumn + 1))];
+        int numberOfCells = 0;
+        for(long row = firstRow; row <= lastRow; row++){
+            for(long column = firstColumn; column <= lastColumn; column++){
+                cells[numberOfCells++] = row * COLUMNS + column;
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Adds a start, updating the number of neighbours of the starts around it and the clusters of
+     * any which join a cluster. Starts in clusters merged into another are moved to it, but only
+     * those passed in, so the rest must be moved by the caller
+     * @param start     The new start, with no neighbours and in no cluster
+     * @param nearby    Every other start within twice EPSILON_METRES of the new one, see getCells
+     * @return          Ids of the clusters merged into the cluster of the new start
+     */
+    public static Set<Long> insert(Start start, List<Start> nearby){
+        List<Start> neighbours = getNeighbours(start, nearby);
+        start.setNeighbours(neighbours.size() + 1);
+
+        List<Start> newCores = new ArrayList<>();
+        if(start.isCore()){
+            newCores.add(start);
+        }
+        for(Start neighbour : neighbours){
+            neighbour.setNeighbours(neighbour.getNeighbours() + 1);
+            if(neighbour.getNeighbours() == MINIMUM_SESSIONS){
+                newCores.add(neighbour);
+            }
+        }
+
+        // Without new cores no clusters are joined together, so the start is at most on the edge
+        // of a cluster
+        if(newCores.isEmpty()){
+            attach(start, neighbours);
+            return Collections.emptySet();
+        }
+
+        // Every cluster with a core within reach of a new core becomes one, kept under the
+        // oldest cluster's id
+        List<Start> starts = new ArrayList<>(nearby);
+        starts.add(start);
+        List<List<Start>> newCoreNeighbours = new ArrayList<>();
+        TreeSet<Long> clusterIds = new TreeSet<>();
+        for(Start newCore : newCores){
+            List<Start> coreNeighbours = getNeighbours(newCore, starts);
+            newCoreNeighbours.add(coreNeighbours);
+            for(Start neighbour : coreNeighbours){
+                if(neighbour.isCore() && neighbour.getClusterId() > NOISE){
+                    clusterIds.add(neighbour.getClusterId());
+                }
+            }
+        }
+
+        long clusterId = clusterIds.isEmpty() ? NEW_CLUSTER : clusterIds.pollFirst();
+        for(int i = 0; i < newCores.size(); i++){
+            newCores.get(i).setClusterId(clusterId);
+            for(Start neighbour : newCoreNeighbours.get(i)){
+                if(neighbour.getClusterId() == NOISE){
+                    neighbour.setClusterId(clusterId);
+                }
+            }
+        }
+        for(Start other : nearby){
+            if(clusterIds.contains(other.getClusterId())){
+                other.setClusterId(clusterId);
+            }
+        }
+
+        return clusterIds;
+    }
+
+    /**
+     * Removes a start, updating the number of neighbours of the starts around it
+     * @param start     The start being removed
+     * @param nearby    Every other start within EPSILON_METRES of it, see getCells
+     * @return          Ids of the clusters which have lost a core, which may have split and must
+     *                  be found again, see recluster
+     */
+    public static Set<Long> remove(Start start, List<Start> nearby){
+        Set<Long> clusterIds = new HashSet<>();
+        if(start.isCore()){
+            clusterIds.add(start.getClusterId());
+        }
+
+        for(Start neighbour : getNeighbours(start, nearby)){
+            boolean wasCore = neighbour.isCore();
+            neighbour.setNeighbours(neighbour.getNeighbours() - 1);
+            if(wasCore && !neighbour.isCore()){
+                clusterIds.add(neighbour.getClusterId());
+            }
+        }
+
+        clusterIds.remove(NOISE);
+        return clusterIds;
+    }
+
+    /**
+     * Finds the clusters again among the starts of a cluster which has lost a core. The largest
+     * keeps the cluster's id and any others are given new ids, NEW_CLUSTER and below. A cluster
+     * only ever splits when a start is removed, so no start outside it can join it
+     * @param members   Every start of the cluster
+     * @return          The starts left outside every cluster, which may still be on the edge of
+     *                  another, see attach
+     */
+    public static List<Start> recluster(List<Start> members){
+        if(members.isEmpty()){
+            return members;
+        }
+        long clusterId = members.get(0).getClusterId();
+
+        Map<Long, List<Start>> cells = new HashMap<>();
+        for(Start member : members){
+            long cell = getCell(member.getLatitude(), member.getLongitude());
+            List<Start> cellMembers = cells.get(cell);
+            if(cellMembers == null){
+                cellMembers = new ArrayList<>();
+                cells.put(cell, cellMembers);
+            }
+            cellMembers.add(member);
+        }
+
+        // Each cluster is every start reached from one of its cores through other cores
+        Set<Start> reached = new HashSet<>();
+        List<List<Start>> clusters = new ArrayList<>();
+        Queue<Start> queue = new ArrayDeque<>();
+        for(Start member : members){
+            if(!member.isCore() || !reached.add(member)){
+                continue;
+            }
+
+            List<Start> cluster = new ArrayList<>();
+            queue.add(member);
+            while(!queue.isEmpty()){
+                Start start = queue.remove();
+                cluster.add(start);
+                if(!start.isCore()){
+                    continue;
+                }
+
+                for(long cell : getCells(start.getLatitude(), start.getLongitude(), EPSILON_METRES)){
+                    List<Start> cellMembers = cells.get(cell);
+                    if(cellMembers == null){
+                        continue;
+                    }
+                    for(Start neighbour : getNeighbours(start, cellMembers)){
+                        if(reached.add(neighbour)){
+                            queue.add(neighbour);
+                        }
+                    }
+                }
+            }
+            clusters.add(cluster);
+        }
+
+        Collections.sort(clusters, new Comparator<List<Start>>() {
+            @Override
+            public int compare(List<Start> cluster, List<Start> otherCluster) {
+                return Integer.compare(otherCluster.size(), cluster.size());
+            }
+        });
+        for(int i = 0; i < clusters.size(); i++){
+            for(Start start : clusters.get(i)){
+                start.setClusterId(i == 0 ? clusterId : NEW_CLUSTER - (i - 1));
+            }
+        }
+
+        List<Start> leftOver = new ArrayList<>();
+        for(Start member : members){
+            if(!reached.contains(member)){
+                member.setClusterId(NOISE);
+                leftOver.add(member);
+            }
+        }
+        return leftOver;
+    }
+
+    /**
+     * Puts a start which is not a core in the cluster of the nearest core within EPSILON_METRES,
+     * or in no cluster if there is none
+     * @param nearby    Every other start within EPSILON_METRES of it, see getCells
+     */
+    public static void attach(Start start, List<Start> nearby){
+        long clusterId = NOISE;
+        double nearestDistance = Double.POSITIVE_INFINITY;
+        for(Start neighbour : nearby){
+            if(!neighbour.isCore() || neighbour.getClusterId() == NOISE){
+                continue;
+            }
+
+            double distance = getDistanceMetres(start, neighbour);
+            if(distance <= EPSILON_METRES && distance < nearestDistance){
+                clusterId = neighbour.getClusterId();
+                nearestDistance = distance;
+            }
+        }
+        start.setClusterId(clusterId);
+    }
+
+    /**
+     * @return  The starts within EPSILON_METRES of the start, other than itself
+     */
+    private static List<Start> getNeighbours(Start start, List<Start> starts){
+        List<Start> neighbours = new ArrayList<>();
+        for(Start other : starts){
+            if(other != start && getDistanceMetres(start, other) <= EPSILON_METRES){
+                neighbours.add(other);
+            }
+        }
+        return neighbours;
+    }
+
+    private static double getDistanceMetres(Start start, Start other){
+        return RouteDistance.between(start.getLatitude(), start.getLongitude(), other.getLatitude(),
+                other.getLongitude());
+    }
+}
@@ -0,0 +1,275 @@
+package com.mdp.cw4.runningtracker;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.SESSION_STARTS_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.SESSION_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.START_CLUSTERS_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.Contract.*;
+
+/**
+ * <h1>Start Clusters</h1>
+ * Keeps the places training usually starts from, see StartClustering. The first point of each
+ * session's route is kept along with its cell of the grid, its number of neighbours and its
+ * cluster, so a session's start is read from its route only once, when it is stored. Each
+ * cluster is kept with the centre of its starts, its number of sessions and their total
+ * distance, which are worked out again from its starts whenever they change.
+ * <p>
+ * Storing a session reads only the starts in the cells around its own, and deleting one reads
+ * those and, if a cluster has lost a core, the starts of that cluster.
+ * <p>
+ * The methods work directly on the database and are called by WorkoutSessionContentProvider
+ */
+class StartClusters {
+
+    private static final String[] START_COLUMNS = { RECORD_SESSION_ID, LATITUDE, LONGITUDE, DISTANCE,
+            START_NEIGHBOURS, CLUSTER_ID };
+    private static final String[] SESSION_COLUMNS = { _ID, LATITUDE, LONGITUDE, DISTANCE };
+
+    /**
+     * Adds the start of a newly stored session to the clusters
+     * @param values    The values the session was stored with
+     */
+    static void addSession(SQLiteDatabase database, long sessionId, ContentValues values){
+        Long distance = values.getAsLong(DISTANCE);
+        StartClustering.Start start = toStart(sessionId, values.getAsString(LATITUDE),
+                values.getAsString(LONGITUDE), distance != null ? distance : 0);
+        if(start == null){
+            return;
+        }
+
+        database.beginTransaction();
+        try {
+            addStart(database, start);
+            database.setTransactionSuccessful();
+        }finally{
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Takes the starts of the sessions matching a selection away from the clusters. This must be
+     * called before the sessions are deleted
+     */
+    static void removeSessions(SQLiteDatabase database, String selection, String[] selectionArgs){
+        database.beginTransaction();
+        try {
+            if(selection == null){
+                database.delete(SESSION_STARTS_TABLE_NAME, null, null);
+                database.delete(START_CLUSTERS_TABLE_NAME, null, null);
+            }else{
+                for(StartClustering.Start start : loadStarts(database, RECORD_SESSION_ID + " IN (SELECT _id FROM "
+                        + SESSION_TABLE_NAME + " WHERE " + selection + ")", selectionArgs)){
+                    removeStart(database, start);
+                }
+            }
+            database.setTransactionSuccessful();
+        }finally{
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Finds the clusters from every stored session, replacing anything stored before
+     */
+    static void rebuild(SQLiteDatabase database){
+        database.beginTransaction();
+        try {
+            database.delete(SESSION_STARTS_TABLE_NAME, null, null);
+            database.delete(START_CLUSTERS_TABLE_NAME, null, null);
+
+            Cursor cursor = database.query(SESSION_TABLE_NAME, SESSION_COLUMNS, null, null, null, null,
+                    _ID + " ASC");
+            try {
+                while(cursor.moveToNext()){
+                    StartClustering.Start start = toStart(cursor.getLong(0), cursor.getString(1),
+                            cursor.getString(2), cursor.getLong(3));
+                    if(start != null){
+                        addStart(database, start);
+                    }
+                }
+            }finally{
+                cursor.close();
+            }
+            database.setTransactionSuccessful();
+        }finally{
+            database.endTransaction();
+        }
+    }
+
+    private static void addStart(SQLiteDatabase database, StartClustering.Start start){
+        List<StartClustering.Start> nearby = loadStartsNear(database, start, 2 * StartClustering.EPSILON_METRES);
+        Set<Long> mergedClusterIds = StartClustering.insert(start, nearby);
+
+        List<StartClustering.Start> starts = new ArrayList<>(nearby);
+        starts.add(start);
+        Map<Long, Long> clusterIds = storeStarts(database, starts);
+
+        // Starts of merged clusters further away than those read are moved by the index
+        long clusterId = getStoredClusterId(clusterIds, start.getClusterId());
+        for(long mergedClusterId : mergedClusterIds){
+            ContentValues values = new ContentValues();
+            values.put(CLUSTER_ID, clusterId);
+            database.update(SESSION_STARTS_TABLE_NAME, values, CLUSTER_ID + " = ?",
+                    new String[] { String.valueOf(mergedClusterId) });
+            database.delete(START_CLUSTERS_TABLE_NAME, _ID + " = ?",
+                    new String[] { String.valueOf(mergedClusterId) });
+        }
+
+        Set<Long> changedClusterIds = new HashSet<>(clusterIds.values());
+        changedClusterIds.add(clusterId);
+        changedClusterIds.removeAll(mergedClusterIds);
+        updateClusters(database, changedClusterIds);
+    }
+
+    private static void removeStart(SQLiteDatabase database, StartClustering.Start start){
+        database.delete(SESSION_STARTS_TABLE_NAME, RECORD_SESSION_ID + " = ?",
+                new String[] { String.valueOf(start.getSessionId()) });
+
+        List<StartClustering.Start> nearby = loadStartsNear(database, start, StartClustering.EPSILON_METRES);
+        Set<Long> splitClusterIds = StartClustering.remove(start, nearby);
+
+        Set<Long> changedClusterIds = new HashSet<>(storeStarts(database, nearby).values());
+        changedClusterIds.add(start.getClusterId());
+        for(long clusterId : splitClusterIds){
+            List<StartClustering.Start> members = loadStarts(database, CLUSTER_ID + " = ?",
+                    new String[] { String.valueOf(clusterId) });
+            List<StartClustering.Start> leftOver = StartClustering.recluster(members);
+            changedClusterIds.addAll(storeStarts(database, members).values());
+
+            for(StartClustering.Start other : leftOver){
+                StartClustering.attach(other, loadStartsNear(database, other, StartClustering.EPSILON_METRES));
+                changedClusterIds.addAll(storeStarts(database, Collections.singletonList(other)).values());
+            }
+        }
+        updateClusters(database, changedClusterIds);
+    }
+
+    /**
+     * Stores every changed start, first storing any new clusters they are in
+     * @return  The id each start's cluster is stored with, by the cluster id of the start
+     */
+    private static Map<Long, Long> storeStarts(SQLiteDatabase database, List<StartClustering.Start> starts){
+        Map<Long, Long> clusterIds = new HashMap<>();
+        for(StartClustering.Start start : starts){
+            if(!start.isChanged()){
+                continue;
+            }
+
+            Long clusterId = clusterIds.get(start.getClusterId());
+            if(clusterId == null){
+                clusterId = start.getClusterId() < StartClustering.NOISE
+                        ? database.insert(START_CLUSTERS_TABLE_NAME, null, new ContentValues())
+                        : start.getClusterId();
+                clusterIds.put(start.getClusterId(), clusterId);
+            }
+
+            ContentValues values = new ContentValues();
+            values.put(RECORD_SESSION_ID, start.getSessionId());
+            values.put(LATITUDE, start.getLatitude());
+            values.put(LONGITUDE, start.getLongitude());
+            values.put(DISTANCE, start.getDistance());
+            values.put(START_CELL, StartClustering.getCell(start.getLatitude(), start.getLongitude()));
+            values.put(START_NEIGHBOURS, start.getNeighbours());
+            values.put(CLUSTER_ID, clusterId);
+            database.insertWithOnConflict(SESSION_STARTS_TABLE_NAME, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        }
+        return clusterIds;
+    }
+
+    private static long getStoredClusterId(Map<Long, Long> clusterIds, long clusterId){
+        Long storedClusterId = clusterIds.get(clusterId);
+        return storedClusterId != null ? storedClusterId : clusterId;
+    }
+
+    /**
+     * Works out the centre, number of sessions and total distance of each cluster again from its
+     * starts, removing any cluster left without a start
+     */
+    private static void updateClusters(SQLiteDatabase database, Set<Long> clusterIds){
+        for(long clusterId : clusterIds){
+            if(clusterId == StartClustering.NOISE){
+                continue;
+            }
+
+            String[] clusterArgs = { String.valueOf(clusterId) };
+            Cursor cursor = database.rawQuery("SELECT COUNT(*), AVG(" + LATITUDE + "), AVG(" + LONGITUDE
+                    + "), SUM(" + DISTANCE + ") FROM " + SESSION_STARTS_TABLE_NAME + " WHERE " + CLUSTER_ID
+                    + " = ?", clusterArgs);
+            try {
+                if(!cursor.moveToNext() || cursor.getLong(0) == 0){
+                    database.delete(START_CLUSTERS_TABLE_NAME, _ID + " = ?", clusterArgs);
+                    continue;
+                }
+
+                ContentValues values = new ContentValues();
+                values.put(AGGREGATE_COUNT, cursor.getLong(0));
+                values.put(LATITUDE, cursor.getDouble(1));
+                values.put(LONGITUDE, cursor.getDouble(2));
+                values.put(DISTANCE, cursor.getLong(3));
+                database.update(START_CLUSTERS_TABLE_NAME, values, _ID + " = ?", clusterArgs);
+            }finally{
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * @return  Every stored start within the cells covering the radius of the start, other than
+     *          the start itself
+     */
+    private static List<StartClustering.Start> loadStartsNear(SQLiteDatabase database, StartClustering.Start start,
+                                                               double radiusMetres){
+        long[] cells = StartClustering.getCells(start.getLatitude(), start.getLongitude(), radiusMetres);
+        StringBuilder stringBuilder = new StringBuilder(cells.length * 16);
+        for(int i = 0; i < cells.length; i++){
+            if(i > 0){
+                stringBuilder.append(", ");
+            }
+            stringBuilder.append(cells[i]);
+        }
+
+        // Cell keys are numbers made here, so they are written into the query rather than bound
+        return loadStarts(database, START_CELL + " IN (" + stringBuilder + ") AND " + RECORD_SESSION_ID + " != ?",
+                new String[] { String.valueOf(start.getSessionId()) });
+    }
+
+    private static List<StartClustering.Start> loadStarts(SQLiteDatabase database, String selection,
+                                                          String[] selectionArgs){
+        List<StartClustering.Start> starts = new ArrayList<>();
+        Cursor cursor = database.query(SESSION_STARTS_TABLE_NAME, START_COLUMNS, selection, selectionArgs,
+                null, null, null);
+        try {
+            while(cursor.moveToNext()){
+                starts.add(new StartClustering.Start(cursor.getLong(0), cursor.getDouble(1), cursor.getDouble(2),
+                        cursor.getLong(3), cursor.getInt(4), cursor.getLong(5)));
+            }
+        }finally{
+            cursor.close();
+        }
+        return starts;
+    }
+
+    /**
+     * @return  The start of a session from its route as stored, or null if it has no route
+     */
+    private static StartClustering.Start toStart(long sessionId, String latitudes, String longitudes,
+                                                 long distance){
+        double latitude = CoordinateScanner.decodeFirst(latitudes);
+        double longitude = CoordinateScanner.decodeFirst(longitudes);
+        if(Double.isNaN(latitude) || Double.isNaN(longitude)){
+            return null;
+        }
+        return new StartClustering.Start(sessionId, latitude, longitude, distance, 0, StartClustering.NOISE);
+    }
+}
@@ -0,0 +1,110 @@
+package com.mdp.cw4.runningtracker;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * <h1>Tracking Metrics</h1>
+ * Registry of the timings recorded by WorkoutSessionService while a session is being tracked, so
+ * that complaints about battery use or jank can be matched with what the service was doing.
+ * <p>
+ * Each metric is identified by one of the constants below and backed by a LatencyHistogram, so
+ * recording a value from the location or timer threads neither locks nor allocates. The metrics can
+ * be read at any time through the service binder and are written to a file when a session ends
+ */
+public class TrackingMetrics {
+
+    // Time between successive GPS fixes arriving
+    public static final int FIX_INTERVAL = 0;
+    // Difference between an interval between fixes and the interval before it
+    public static final int FIX_JITTER = 1;
+    // Time taken to process a fix in onLocationChanged, including notifying listeners
+    public static final int LOCATION_PROCESSING = 2;
+    // Time taken by the registered listeners to handle an update
+    public static final int LISTENER_DISPATCH = 3;
+    // How much later than requested each tick of the session duration timer happened
+    public static final int TICK_DRIFT = 4;
+    // Time taken to build and post the ongoing notification
+    public static final int NOTIFICATION_POST = 5;
+
+    private static final String[] NAMES = { "fixInterval", "fixJitter", "locationProcessing",
+            "listenerDispatch", "tickDrift", "notificationPost" };
+
+    private static final double MICROSECONDS_PER_MILLISECOND = 1000.0;
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[NAMES.length];
+    private final long startTimeMilliseconds = System.currentTimeMillis();
+
+    public TrackingMetrics(){
+        for(int i = 0; i < histograms.length; i++){
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public void recordNanoseconds(int metric, long durationNanoseconds){
+        histograms[metric].recordNanoseconds(durationNanoseconds);
+    }
+
+    public void recordMicroseconds(int metric, long durationMicroseconds){
+        histograms[metric].recordMicroseconds(durationMicroseconds);
+    }
+
+    public LatencyHistogram getHistogram(int metric){
+        return histograms[metric];
+    }
+
+    /**
+     * @return  Number of notifications posted per minute since the metrics were created
+     */
+    public double getNotificationsPerMinute(){
+        final double MILLISECONDS_PER_MINUTE = 60000;
+        long elapsedMilliseconds = Math.max(1, System.currentTimeMillis() - startTimeMilliseconds);
+        return histograms[NOTIFICATION_POST].getCount() * MILLISECONDS_PER_MINUTE / elapsedMilliseconds;
+    }
+
+    /**
+     * @return  Summary of every metric, with times in milliseconds
+     */
+    public JSONObject toJson() throws JSONException {
+        JSONObject metrics = new JSONObject();
+        metrics.put("startTime", startTimeMilliseconds);
+        metrics.put("endTime", System.currentTimeMillis());
+        metrics.put("notificationsPerMinute", getNotificationsPerMinute());
+
+        for(int i = 0; i < histograms.length; i++){
+            LatencyHistogram histogram = histograms[i];
+            JSONObject metric = new JSONObject();
+            metric.put("count", histogram.getCount());
+            metric.put("mean", histogram.getMeanMicroseconds() / MICROSECONDS_PER_MILLISECOND);
+            metric.put("p50", histogram.getPercentileMicroseconds(50) / MICROSECONDS_PER_MILLISECOND);
+            metric.put("p90", histogram.getPercentileMicroseconds(90) / MICROSECONDS_PER_MILLISECOND);
+            metric.put("p99", histogram.getPercentileMicroseconds(99) / MICROSECONDS_PER_MILLISECOND);
+            metric.put("max", histogram.getMaximumMicroseconds() / MICROSECONDS_PER_MILLISECOND);
+            metrics.put(NAMES[i], metric);
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Writes the summary of every metric to the file as JSON. This carries out file IO so should
+     * not be called on the UI thread
+     */
+    public void writeTo(File file) throws IOException, JSONException {
+        File directory = file.getParentFile();
+        if(directory != null && !directory.exists() && !directory.mkdirs()){
+            throw new IOException("Unable to create " + directory);
+        }
+
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(toJson().toString(2));
+        }finally{
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.mdp.cw4.runningtracker;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.Calendar;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.SESSION_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.TRAINING_LOAD_TABLE_NAME;
+import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.Contract.*;
+
+/**
+ * <h1>Training Load</h1>
+ * Keeps the training load, fatigue and fitness of every day, see TrainingLoadCalculator, in the
+ * training load table. The table holds a row for each day from the first to the last day with a
+ * session, including the days without any, so the values of a day always follow from the row
+ * before it.
+ * <p>
+ * When sessions are stored or deleted the load of their days is changed and the fatigue and
+ * fitness are worked out again from the earliest of those days onwards. Sessions are normally
+ * stored on the day they were recorded, in which case only the last row changes. The table is
+ * built from the stored sessions when it is first created.
+ * <p>
+ * The methods work directly on the database and are called by WorkoutSessionContentProvider
+ */
+class TrainingLoad {
+
+    static final String[] COLUMNS = { TRAINING_DAY, YEAR, MONTH, DATE, TRAINING_LOAD_VALUE,
+            TRAINING_FATIGUE, TRAINING_FITNESS, TRAINING_FORM };
+
+    // Longest range of days returned by a single query, which is a little over a century
+    private static final int MAXIMUM_RANGE_DAYS = 40000;
+
+    private static final String[] SESSION_COLUMNS = { YEAR, MONTH, DATE, DURATION };
+
+    /**
+     * Adds the load of a newly stored session
+     * @param values    The values the session was stored with
+     */
+    static void addSession(SQLiteDatabase database, ContentValues values){
+        Integer year = values.getAsInteger(YEAR);
+        Integer month = values.getAsInteger(MONTH);
+        Integer date = values.getAsInteger(DATE);
+        Long duration = values.getAsLong(DURATION);
+        if(year == null || month == null || date == null || duration == null){
+            return;
+        }
+
+        Map<Integer, Double> changes = new TreeMap<>();
+        changes.put(TrainingLoadCalculator.getDay(year, month, date),
+                TrainingLoadCalculator.getSessionLoad(duration));
+        applyChanges(database, changes);
+    }
+
+    /**
+     * Takes away the load of the sessions matching a selection. This must be called before the
+     * sessions are deleted
+     */
+    static void removeSessions(SQLiteDatabase database, String selection, String[] selectionArgs){
+        Cursor cursor = database.query(SESSION_TABLE_NAME, SESSION_COLUMNS, selection, selectionArgs,
+                null, null, null);
+        applyChanges(database, getDailyLoads(cursor, -1));
+    }
+
+    /**
+     * Builds the table from every stored session, replacing anything stored in it before
+     */
+    static void rebuild(SQLiteDatabase database){
+        Cursor cursor = database.rawQuery("SELECT " + YEAR + ", " + MONTH + ", " + DATE + ", SUM("
+                + DURATION + ") FROM " + SESSION_TABLE_NAME + " GROUP BY " + YEAR + ", " + MONTH + ", "
+                + DATE, null);
+
+        database.beginTransaction();
+        try {
+            database.delete(TRAINING_LOAD_TABLE_NAME, null, null);
+            applyChanges(database, getDailyLoads(cursor, 1));
+            database.setTransactionSuccessful();
+        }finally{
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Returns a row for every day of a range, in order. Days before the first session have no
+     * load, fatigue or fitness, and those after the last session have no load while the fatigue
+     * and fitness fall away
+     * @param firstDay  First day of the range, numbered as by TrainingLoadCalculator.getDay
+     * @param lastDay   Last day of the range
+     * @return          The rows, with the columns in COLUMNS, or null if the range is not valid
+     */
+    static Cursor getRangeCursor(SQLiteDatabase database, int firstDay, int lastDay){
+        if(lastDay < firstDay || (long) lastDay - firstDay >= MAXIMUM_RANGE_DAYS){
+            return null;
+        }
+
+        // Values at the end of the last stored day before the range, from which days after the
+        // last stored day are worked out
+        double fatigue = 0;
+        double fitness = 0;
+        Cursor cursor = database.query(TRAINING_LOAD_TABLE_NAME,
+                new String[] { TRAINING_FATIGUE, TRAINING_FITNESS, TRAINING_DAY },
+                TRAINING_DAY + " < ?", new String[] { String.valueOf(firstDay) },
+                null, null, TRAINING_DAY + " DESC", "1");
+        try {
+            if(cursor.moveToNext()){
+                int restDays = firstDay - 1 - cursor.getInt(2);
+                fatigue = cursor.getDouble(0);
+                fitness = cursor.getDouble(1);
+                for(int i = 0; i < restDays; i++){
+                    fatigue = TrainingLoadCalculator.getFatigue(fatigue, 0);
+                    fitness = TrainingLoadCalculator.getFitness(fitness, 0);
+                }
+            }
+        }finally{
+            cursor.close();
+        }
+
+        MatrixCursor rangeCursor = new MatrixCursor(COLUMNS, lastDay - firstDay + 1);
+        Calendar calendar = TrainingLoadCalculator.getCalendar(firstDay);
+
+        cursor = database.query(TRAINING_LOAD_TABLE_NAME,
+                new String[] { TRAINING_DAY, TRAINING_LOAD_VALUE, TRAINING_FATIGUE, TRAINING_FITNESS },
+                TRAINING_DAY + " BETWEEN ? AND ?",
+                new String[] { String.valueOf(firstDay), String.valueOf(lastDay) },
+                null, null, TRAINING_DAY + " ASC");
+        try {
+            boolean hasStoredDay = cursor.moveToNext();
+            for(int day = firstDay; day <= lastDay; day++){
+                double load = 0;
+                if(hasStoredDay && cursor.getInt(0) == day){
+                    load = cursor.getDouble(1);
+                    fatigue = cursor.getDouble(2);
+                    fitness = cursor.getDouble(3);
+                    hasStoredDay = cursor.moveToNext();
+                }else{
+                    fatigue = TrainingLoadCalculator.getFatigue(fatigue, 0);
+                    fitness = TrainingLoadCalculator.getFitness(fitness, 0);
+                }
+
+                rangeCursor.addRow(new Object[] { day, calendar.get(Calendar.YEAR),
+                        calendar.get(Calendar.MONTH), calendar.get(Calendar.DATE), load, fatigue,
+                        fitness, fitness - fatigue });
+                calendar.add(Calendar.DATE, 1);
+            }
+        }finally{
+            cursor.close();
+        }
+
+        return rangeCursor;
+    }
+
+    /**
+     * @param sessions  Cursor with the year, month, date and duration of sessions, which is closed
+     * @param sign      1 to add the sessions' load or -1 to take it away
+     * @return          Change in load of each day with a session
+     */
+    private static Map<Integer, Double> getDailyLoads(Cursor sessions, int sign){
+        Map<Integer, Double> loads = new TreeMap<>();
+        try {
+            while(sessions.moveToNext()){
+                int day = TrainingLoadCalculator.getDay(sessions.getInt(0), sessions.getInt(1),
+                        sessions.getInt(2));
+                double load = sign * TrainingLoadCalculator.getSessionLoad(sessions.getLong(3));
+                Double previousLoad = loads.get(day);
+                loads.put(day, previousLoad == null ? load : previousLoad + load);
+            }
+        }finally{
+            sessions.close();
+        }
+        return loads;
+    }
+
+    /**
+     * Changes the load of some days, adding rows for any days not yet in the table, and works out
+     * the fatigue and fitness again from the earliest of them onwards
+     * @param changes   Change in load of each day, ordered by day
+     */
+    private static void applyChanges(SQLiteDatabase database, Map<Integer, Double> changes){
+        if(changes.isEmpty()){
+            return;
+        }
+
+        database.beginTransaction();
+        try {
+            int firstChangedDay = changes.keySet().iterator().next();
+            int lastChangedDay = firstChangedDay;
+            for(int day : changes.keySet()){
+                lastChangedDay = day;
+            }
+            addMissingDays(database, firstChangedDay, lastChangedDay);
+
+            SQLiteStatement updateLoad = database.compileStatement("UPDATE " + TRAINING_LOAD_TABLE_NAME
+                    + " SET " + TRAINING_LOAD_VALUE + " = MAX(0, " + TRAINING_LOAD_VALUE + " + ?) WHERE "
+                    + TRAINING_DAY + " = ?");
+            for(Map.Entry<Integer, Double> change : changes.entrySet()){
+                updateLoad.bindDouble(1, change.getValue());
+                updateLoad.bindLong(2, change.getKey());
+                updateLoad.executeUpdateDelete();
+            }
+            updateLoad.close();
+
+            recalculateFrom(database, firstChangedDay);
+            database.setTransactionSuccessful();
+        }finally{
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Adds rows with no load so that the table covers every day from the first to the last day
+     * given, as well as those it covered already
+     */
+    private static void addMissingDays(SQLiteDatabase database, int firstDay, int lastDay){
+        Cursor cursor = database.rawQuery("SELECT MIN(" + TRAINING_DAY + "), MAX(" + TRAINING_DAY
+                + ") FROM " + TRAINING_LOAD_TABLE_NAME, null);
+        int firstStoredDay = lastDay + 1;
+        int lastStoredDay = lastDay;
+        try {
+            if(cursor.moveToNext() && !cursor.isNull(0)){
+                firstStoredDay = cursor.getInt(0);
+                lastStoredDay = cursor.getInt(1);
+            }
+        }finally{
+            cursor.close();
+        }
+
+        SQLiteStatement insert = database.compileStatement("INSERT INTO " + TRAINING_LOAD_TABLE_NAME
+                + " (" + TRAINING_DAY + ", " + TRAINING_LOAD_VALUE + ", " + TRAINING_FATIGUE + ", "
+                + TRAINING_FITNESS + ") VALUES (?, 0, 0, 0)");
+        for(int day = firstDay; day < firstStoredDay; day++){
+            insert.bindLong(1, day);
+            insert.executeInsert();
+        }
+        for(int day = Math.max(lastStoredDay + 1, firstStoredDay); day <= lastDay; day++){
+            insert.bindLong(1, day);
+            insert.executeInsert();
+        }
+        insert.close();
+    }
+
+    private static void recalculateFrom(SQLiteDatabase database, int firstDay){
+        double previousFatigue = 0;
+        double previousFitness = 0;
+        Cursor cursor = database.query(TRAINING_LOAD_TABLE_NAME,
+                new String[] { TRAINING_FATIGUE, TRAINING_FITNESS },
+                TRAINING_DAY + " = ?", new String[] { String.valueOf(firstDay - 1) },
+                null, null, null);
+        try {
+            if(cursor.moveToNext()){
+                previousFatigue = cursor.getDouble(0);
+                previousFitness = cursor.getDouble(1);
+            }
+        }finally{
+            cursor.close();
+        }
+
+        cursor = database.query(TRAINING_LOAD_TABLE_NAME, new String[] { TRAINING_LOAD_VALUE },
+                TRAINING_DAY + " >= ?", new String[] { String.valueOf(firstDay) },
+                null, null, TRAINING_DAY + " ASC");
+        double[] loads;
+        try {
+            loads = new double[cursor.getCount()];
+            for(int i = 0; cursor.moveToNext(); i++){
+                loads[i] = cursor.getDouble(0);
+            }
+        }finally{
+            cursor.close();
+        }
+
+        double[] fatigues = new double[loads.length];
+        double[] fitnesses = new double[loads.length];
+        TrainingLoadCalculator.calculate(loads, fatigues, fitnesses, loads.length,
+                previousFatigue, previousFitness);
+
+        // Rows are consecutive days, so the row at index i is that of firstDay + i
+        SQLiteStatement update = database.compileStatement("UPDATE " + TRAINING_LOAD_TABLE_NAME
+                + " SET " + TRAINING_FATIGUE + " = ?, " + TRAINING_FITNESS + " = ? WHERE "
+                + TRAINING_DAY + " = ?");
+        for(int i = 0; i < loads.length; i++){
+            update.bindDouble(1, fatigues[i]);
+            update.bindDouble(2, fitnesses[i]);
+            update.bindLong(3, firstDay + i);
+            update.executeUpdateDelete();
+        }
+        update.close();
+    }
+}
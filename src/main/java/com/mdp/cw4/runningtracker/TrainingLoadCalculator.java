@@ -0,0 +1,103 @@
+package com.mdp.cw4.runningtracker;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * <h1>Training Load Calculator</h1>
+ * Works out the fatigue, fitness and form of each day from the training load of every day before
+ * it. The load of a session is its duration in minutes and the load of a day is the total of its
+ * sessions.
+ * <p>
+ * Fatigue and fitness are exponentially weighted averages of the daily load, over 7 and 42 days
+ * respectively, so each depends only on its value the day before and that day's load. Form is
+ * fitness less fatigue. Changing the load of a day therefore only changes the values from that day
+ * onwards, which is all that needs recalculating when a session is stored or deleted.
+ * <p>
+ * Days are numbered from 1 January 1970, so that consecutive days have consecutive numbers
+ * whatever the month or year
+ */
+public class TrainingLoadCalculator {
+
+    static final int FATIGUE_DAYS = 7;
+    static final int FITNESS_DAYS = 42;
+
+    // Fraction of the previous day's average kept each day
+    private static final double FATIGUE_DECAY = Math.exp(-1.0 / FATIGUE_DAYS);
+    private static final double FITNESS_DECAY = Math.exp(-1.0 / FITNESS_DAYS);
+
+    private static final double MILLISECONDS_PER_MINUTE = 60000.0;
+    private static final long MILLISECONDS_PER_DAY = 86400000L;
+
+    /**
+     * @param durationMilliseconds  Duration of a session
+     * @return                      The training load of the session
+     */
+    public static double getSessionLoad(long durationMilliseconds){
+        return Math.max(0, durationMilliseconds) / MILLISECONDS_PER_MINUTE;
+    }
+
+    /**
+     * @param year      Year
+     * @param month     Month, starting from 0 as in Calendar
+     * @param date      Day of the month
+     * @return          Number of days between 1 January 1970 and the date
+     */
+    public static int getDay(int year, int month, int date){
+        Calendar calendar = createCalendar();
+        calendar.set(year, month, date);
+        return (int) Math.floor(calendar.getTimeInMillis() / (double) MILLISECONDS_PER_DAY);
+    }
+
+    /**
+     * @return  A calendar set to the start of a day numbered as by getDay, which can be moved on a
+     *          day at a time with Calendar.add
+     */
+    public static Calendar getCalendar(int day){
+        Calendar calendar = createCalendar();
+        calendar.setTimeInMillis(day * MILLISECONDS_PER_DAY);
+        return calendar;
+    }
+
+    /**
+     * Works out the fatigue and fitness of a run of consecutive days
+     * @param loads             Training load of each day
+     * @param fatigues          Filled with the fatigue at the end of each day
+     * @param fitnesses         Filled with the fitness at the end of each day
+     * @param numberOfDays      Number of days to work out, from the first
+     * @param previousFatigue   Fatigue at the end of the day before the first, 0 if there was none
+     * @param previousFitness   Fitness at the end of the day before the first, 0 if there was none
+     */
+    public static void calculate(double[] loads, double[] fatigues, double[] fitnesses, int numberOfDays,
+                                 double previousFatigue, double previousFitness){
+        double fatigue = previousFatigue;
+        double fitness = previousFitness;
+        for(int i = 0; i < numberOfDays; i++){
+            fatigue = getFatigue(fatigue, loads[i]);
+            fitness = getFitness(fitness, loads[i]);
+            fatigues[i] = fatigue;
+            fitnesses[i] = fitness;
+        }
+    }
+
+    /**
+     * @return  Fatigue at the end of a day given that of the day before and the day's load
+     */
+    public static double getFatigue(double previousFatigue, double load){
+        return previousFatigue * FATIGUE_DECAY + load * (1 - FATIGUE_DECAY);
+    }
+
+    /**
+     * @return  Fitness at the end of a day given that of the day before and the day's load
+     */
+    public static double getFitness(double previousFitness, double load){
+        return previousFitness * FITNESS_DECAY + load * (1 - FITNESS_DECAY);
+    }
+
+    private static Calendar createCalendar(){
+        // Days are counted in UTC so that every day is exactly the same length
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        return calendar;
+    }
+}
@@ -9,8 +9,45 @@ import java.util.Locale;
  */
 public class ValueFormatter {
 
+    private static final String[] MONTHS = new String[] { "January", "February", "March", "April",
+            "May", "June", "July", "August", "September", "October", "November", "December" };
+
+    private static final String NO_DURATION = "-- sec";
+    private static final String NO_DISTANCE = "-- km";
+    private static final String NO_SPEED = "-- m/s";
+    private static final String KILOMETRES = " km";
+    private static final String METRES_PER_SECOND = " m/s";
+    private static final String METRES_AHEAD = " m ahead";
+    private static final String METRES_BEHIND = " m behind";
+
+    // Largest distance, in metres, which is represented exactly as a float when converted to
+    // kilometres, and so can be formatted without falling back to String.format
+    private static final int MAXIMUM_EXACT_DISTANCE = 1 << 24;
+
+    // Speeds above this, or whose hundredths are this close to a rounding tie, are formatted using
+    // String.format to guarantee exactly the same output
+    private static final double MAXIMUM_FAST_SPEED = 1e6;
+    private static final double ROUNDING_TIE_MARGIN = 1e-6;
+    private static final long NEGATIVE_ZERO_BITS = Double.doubleToRawLongBits(-0.0);
+
     public static String formatDuration(long durationMilliseconds){
+        return appendDuration(new StringBuilder(8), durationMilliseconds).toString();
+    }
+
+    public static String formatDistance(int distanceMetres){
+        return appendDistance(new StringBuilder(10), distanceMetres).toString();
+    }
 
+    public static String formatAverageSpeed(double metresPerSecond){
+        return appendAverageSpeed(new StringBuilder(10), metresPerSecond).toString();
+    }
+
+    /**
+     * Appends the duration in the format hh:mm:ss without creating any intermediate objects
+     * @param builder               Builder to append to, which is returned
+     * @param durationMilliseconds  Duration to format, if negative "-- sec" is appended
+     */
+    public static StringBuilder appendDuration(StringBuilder builder, long durationMilliseconds){
         if(durationMilliseconds >= 0) {
             final int MILLISECONDS_IN_HOUR = 3600000;
             final int MILLISECONDS_IN_MINUTE = 60000;
@@ -22,28 +59,123 @@ public class ValueFormatter {
             int minutes = (int) (durationMilliseconds / MILLISECONDS_IN_MINUTE % MINUTES_IN_HOUR);
             int seconds = (int) (durationMilliseconds / MILLISECONDS_IN_SECOND % SECONDS_IN_MINUTE);
 
-            return String.format(Locale.ENGLISH, "%02d", hours) + ":"
-                    + String.format(Locale.ENGLISH, "%02d", minutes)
-                    + ":" + String.format(Locale.ENGLISH, "%02d", seconds);
+            appendTwoDigits(builder, hours);
+            builder.append(':');
+            appendTwoDigits(builder, minutes);
+            builder.append(':');
+            appendTwoDigits(builder, seconds);
+            return builder;
         }
 
-        return "-- sec";
+        return builder.append(NO_DURATION);
     }
 
-    public static String formatDistance(int distanceMetres){
+    /**
+     * Appends the distance in kilometres to two decimal places, e.g. "1.25 km", without creating
+     * any intermediate objects
+     * @param builder           Builder to append to, which is returned
+     * @param distanceMetres    Distance to format, if negative "-- km" is appended
+     */
+    public static StringBuilder appendDistance(StringBuilder builder, int distanceMetres){
         final float METRES_IN_KILOMETRE = 1000;
-        if(distanceMetres >= 0){
-            return String.format(Locale.ENGLISH, "%.2f", distanceMetres/METRES_IN_KILOMETRE) + " km";
+        if(distanceMetres < 0){
+            return builder.append(NO_DISTANCE);
+        }
+
+        if(distanceMetres >= MAXIMUM_EXACT_DISTANCE){
+            return builder.append(String.format(Locale.ENGLISH, "%.2f",
+                    distanceMetres / METRES_IN_KILOMETRE)).append(KILOMETRES);
         }
 
-        return "-- km";
+        // The displayed value has always been the float number of kilometres rounded half up. Below
+        // MAXIMUM_EXACT_DISTANCE that is the exact number of kilometres rounded to the nearest 10
+        // metres, except for distances ending in exactly 5 metres, which round down only when the
+        // float lies below the exact value. The product of the float and 1000 is exact as a double,
+        // so comparing it with the distance answers that without any error
+        int hundredths = distanceMetres / 10;
+        int remainder = distanceMetres % 10;
+        if(remainder > 5){
+            hundredths++;
+        }else if(remainder == 5){
+            double kilometres = distanceMetres / METRES_IN_KILOMETRE;
+            if(kilometres * 1000 >= distanceMetres){
+                hundredths++;
+            }
+        }
+
+        appendHundredths(builder, hundredths);
+        return builder.append(KILOMETRES);
     }
 
-    public static String formatAverageSpeed(double metresPerSecond){
-        if(metresPerSecond >= 0){
-            return String.format(Locale.ENGLISH, "%.2f", metresPerSecond) + " m/s";
+    /**
+     * Appends the speed in metres per second to two decimal places, e.g. "2.50 m/s", without
+     * creating any intermediate objects for realistic speeds
+     * @param builder           Builder to append to, which is returned
+     * @param metresPerSecond   Speed to format, if negative "-- m/s" is appended
+     */
+    public static StringBuilder appendAverageSpeed(StringBuilder builder, double metresPerSecond){
+        if(!(metresPerSecond >= 0)){
+            return builder.append(NO_SPEED);
+        }
+
+        // Negative zero is displayed as "-0.00" by String.format
+        if(metresPerSecond < MAXIMUM_FAST_SPEED && Double.doubleToRawLongBits(metresPerSecond) != NEGATIVE_ZERO_BITS){
+            double scaled = metresPerSecond * 100;
+            double wholeHundredths = Math.floor(scaled);
+            double fraction = scaled - wholeHundredths;
+
+            // String.format rounds the shortest decimal representation of the value half up, which
+            // can differ from rounding the binary value when it is within an ulp of a tie
+            if(Math.abs(fraction - 0.5) > ROUNDING_TIE_MARGIN){
+                long hundredths = (long) wholeHundredths;
+                if(fraction > 0.5){
+                    hundredths++;
+                }
+                appendHundredths(builder, hundredths);
+                return builder.append(METRES_PER_SECOND);
+            }
+        }
+
+        return builder.append(String.format(Locale.ENGLISH, "%.2f", metresPerSecond))
+                .append(METRES_PER_SECOND);
+    }
+
+    /**
+     * Appends how far ahead of or behind a past session the ongoing session is, e.g.
+     * "12 m ahead (4 sec)", without creating any intermediate objects
+     * @param builder       Builder to append to, which is returned
+     * @param metresAhead   Metres ahead of the past session, negative if behind
+     * @param secondsAhead  Seconds ahead of the past session, negative if behind, or Double.NaN if
+     *                      not known, in which case only the distance is appended
+     */
+    public static StringBuilder appendGhostGap(StringBuilder builder, double metresAhead,
+                                               double secondsAhead){
+        long metres = Math.round(metresAhead);
+        builder.append(Math.abs(metres)).append(metres >= 0 ? METRES_AHEAD : METRES_BEHIND);
+        if(!Double.isNaN(secondsAhead)){
+            builder.append(" (").append(Math.abs(Math.round(secondsAhead))).append(" sec)");
+        }
+        return builder;
+    }
+
+    /**
+     * Appends a non negative number of hundredths as a decimal with two decimal places
+     */
+    private static void appendHundredths(StringBuilder builder, long hundredths){
+        builder.append(hundredths / 100);
+        builder.append('.');
+        appendTwoDigits(builder, (int) (hundredths % 100));
+    }
+
+    /**
+     * Equivalent to String.format("%02d", value)
+     * @param builder   Builder to append to, which is returned
+     */
+    public static StringBuilder appendTwoDigits(StringBuilder builder, int value){
+        if(value >= 0 && value < 10){
+            builder.append('0');
         }
-        return "-- m/s";
+        return builder.append(value);
     }
 
     public static String formatYear(int year){
@@ -54,9 +186,7 @@ public class ValueFormatter {
      * In keeping with the Java format, the months start at zero i.e. Jan = 0, Feb = 1 ... Dec = 11
      */
     public static String formatMonth(int month){
-        final String[] months = new String[] { "January", "February", "March", "April", "May",
-                "June", "July", "August", "September", "October", "November", "December" };
-        return months[month];
+        return MONTHS[month];
     }
 
     /**
@@ -0,0 +1,214 @@
+package com.mdp.cw4.runningtracker.Views;
+
+import android.view.Choreographer;
+import android.view.View;
+import android.widget.TextView;
+
+import com.mdp.cw4.runningtracker.ValueFormatter;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <h1>Live Metrics Presenter</h1>
+ * Displays the duration, distance and pace of an ongoing workout session, and how far ahead of or
+ * behind a past session being raced it is.
+ * <p>
+ * Updates may arrive from any thread and as often as the session service produces them. Each update
+ * only stores the latest value and, if one is not already pending, requests a callback for the next
+ * display frame. On that frame the latest values are applied to the views on the UI thread, so
+ * however many updates arrive the views are updated at most once per frame. A value is only
+ * formatted if it has changed since it was last displayed, into a reused buffer, and setText is only
+ * called if the formatted text is different
+ */
+public class LiveMetricsPresenter implements Choreographer.FrameCallback {
+
+    private final TextView duration;
+    private final TextView distance;
+    private final TextView pace;
+    private final TextView ghostGap;
+    private final Choreographer choreographer;
+    private final AtomicBoolean frameScheduled = new AtomicBoolean(false);
+
+    // Latest values received, written from any thread
+    private volatile long durationMilliseconds;
+    private volatile int distanceMetres;
+    private volatile double paceMetresPerSecond;
+    private volatile double ghostMetresAhead = Double.NaN;
+    private volatile double ghostSecondsAhead = Double.NaN;
+
+    // Values currently displayed, only accessed on the UI thread
+    private long displayedDurationSeconds = Long.MIN_VALUE;
+    private int displayedDistanceMetres = Integer.MIN_VALUE;
+    private double displayedPaceMetresPerSecond = Double.NaN;
+    private double displayedGhostMetresAhead = Double.NaN;
+    private double displayedGhostSecondsAhead = Double.NaN;
+    private final DisplayedText durationText = new DisplayedText();
+    private final DisplayedText distanceText = new DisplayedText();
+    private final DisplayedText paceText = new DisplayedText();
+    private final DisplayedText ghostGapText = new DisplayedText();
+
+    private static final int MILLISECONDS_PER_SECOND = 1000;
+
+    /**
+     * Must be created on the UI thread
+     * @param ghostGap  View showing the gap to a past session, which is hidden unless one is raced
+     */
+    public LiveMetricsPresenter(TextView duration, TextView distance, TextView pace,
+                                TextView ghostGap){
+        this.duration = duration;
+        this.distance = distance;
+        this.pace = pace;
+        this.ghostGap = ghostGap;
+        this.choreographer = Choreographer.getInstance();
+    }
+
+    public void setDuration(long durationMilliseconds){
+        this.durationMilliseconds = durationMilliseconds;
+        scheduleFrame();
+    }
+
+    public void setDistance(int distanceMetres){
+        this.distanceMetres = distanceMetres;
+        scheduleFrame();
+    }
+
+    public void setPace(double paceMetresPerSecond){
+        this.paceMetresPerSecond = paceMetresPerSecond;
+        scheduleFrame();
+    }
+
+    /**
+     * @param metresAhead   Metres ahead of the past session being raced, negative if behind
+     * @param secondsAhead  Seconds ahead of it, negative if behind, or Double.NaN if not known
+     */
+    public void setGhostGap(double metresAhead, double secondsAhead){
+        this.ghostSecondsAhead = secondsAhead;
+        this.ghostMetresAhead = metresAhead;
+        scheduleFrame();
+    }
+
+    /**
+     * Sets all values to zero, hides the gap to a past session and displays them straight away.
+     * Must be called on the UI thread
+     */
+    public void reset(){
+        durationMilliseconds = 0;
+        distanceMetres = 0;
+        paceMetresPerSecond = 0;
+        ghostMetresAhead = Double.NaN;
+        ghostSecondsAhead = Double.NaN;
+        applyLatestValues();
+    }
+
+    /**
+     * Cancels any pending frame callback, e.g. when the activity is destroyed
+     */
+    public void stop(){
+        choreographer.removeFrameCallback(this);
+        frameScheduled.set(false);
+    }
+
+    /**
+     * Choreographer guards its callback queue with a lock, so a frame can be requested from the
+     * session service's threads without allocating a Runnable to post to the UI thread
+     */
+    private void scheduleFrame(){
+        if(frameScheduled.compareAndSet(false, true)){
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        // Cleared before reading the values so that an update arriving part way through this frame
+        // schedules another one rather than being lost
+        frameScheduled.set(false);
+        applyLatestValues();
+    }
+
+    private void applyLatestValues(){
+        long durationSeconds = durationMilliseconds / MILLISECONDS_PER_SECOND;
+        if(durationMilliseconds < 0){
+            durationSeconds = -1;
+        }
+
+        if(durationSeconds != displayedDurationSeconds){
+            displayedDurationSeconds = durationSeconds;
+            ValueFormatter.appendDuration(clear(durationText.pending), durationSeconds * MILLISECONDS_PER_SECOND);
+            durationText.apply(duration);
+        }
+
+        int latestDistanceMetres = distanceMetres;
+        if(latestDistanceMetres != displayedDistanceMetres){
+            displayedDistanceMetres = latestDistanceMetres;
+            ValueFormatter.appendDistance(clear(distanceText.pending), latestDistanceMetres);
+            distanceText.apply(distance);
+        }
+
+        double latestPaceMetresPerSecond = paceMetresPerSecond;
+        if(Double.compare(latestPaceMetresPerSecond, displayedPaceMetresPerSecond) != 0){
+            displayedPaceMetresPerSecond = latestPaceMetresPerSecond;
+            ValueFormatter.appendAverageSpeed(clear(paceText.pending), latestPaceMetresPerSecond);
+            paceText.apply(pace);
+        }
+
+        double latestGhostMetresAhead = ghostMetresAhead;
+        double latestGhostSecondsAhead = ghostSecondsAhead;
+        if(Double.compare(latestGhostMetresAhead, displayedGhostMetresAhead) != 0
+                || Double.compare(latestGhostSecondsAhead, displayedGhostSecondsAhead) != 0){
+            displayedGhostMetresAhead = latestGhostMetresAhead;
+            displayedGhostSecondsAhead = latestGhostSecondsAhead;
+            if(Double.isNaN(latestGhostMetresAhead)){
+                ghostGap.setVisibility(View.GONE);
+            }else{
+                ValueFormatter.appendGhostGap(clear(ghostGapText.pending), latestGhostMetresAhead,
+                        latestGhostSecondsAhead);
+                ghostGapText.apply(ghostGap);
+                ghostGap.setVisibility(View.VISIBLE);
+            }
+        }
+    }
+
+    private static StringBuilder clear(StringBuilder builder){
+        builder.setLength(0);
+        return builder;
+    }
+
+    /**
+     * The text displayed by a view along with a buffer the next text is formatted into. The two are
+     * compared so that setText, which copies the text, is only called when it has changed
+     */
+    private static class DisplayedText {
+
+        private StringBuilder displayed = new StringBuilder(16);
+        private StringBuilder pending = new StringBuilder(16);
+        private boolean hasBeenDisplayed;
+
+        void apply(TextView textView){
+            if(hasBeenDisplayed && contentEquals(displayed, pending)){
+                return;
+            }
+
+            textView.setText(pending);
+            hasBeenDisplayed = true;
+
+            StringBuilder previous = displayed;
+            displayed = pending;
+            pending = previous;
+        }
+
+        private static boolean contentEquals(StringBuilder first, StringBuilder second){
+            int length = first.length();
+            if(length != second.length()){
+                return false;
+            }
+
+            for(int i = 0; i < length; i++){
+                if(first.charAt(i) != second.charAt(i)){
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
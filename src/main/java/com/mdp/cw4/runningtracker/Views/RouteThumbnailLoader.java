@@ -0,0 +1,90 @@
+package com.mdp.cw4.runningtracker.Views;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.widget.ImageView;
+
+import com.mdp.cw4.runningtracker.RouteThumbnailCache;
+import com.mdp.cw4.runningtracker.RouteThumbnailRenderer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <h1>Route Thumbnail Loader</h1>
+ * Binds route thumbnails to ImageViews in a list. Thumbnails held in memory are shown straight
+ * away; otherwise the thumbnail is read from the disk cache, or drawn if this is the first time the
+ * session has been shown, on a background thread. As views are recycled while scrolling, the
+ * thumbnail is only set if the view is still showing the same session once it has loaded
+ */
+public class RouteThumbnailLoader {
+
+    private final Context context;
+    private final RouteThumbnailCache routeThumbnailCache;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    public RouteThumbnailLoader(Context context){
+        this.context = context.getApplicationContext();
+        this.routeThumbnailCache = RouteThumbnailCache.getInstance(context);
+    }
+
+    /**
+     * Shows the thumbnail for the session in the ImageView. Must be called on the UI thread
+     * @param imageView     View to display the thumbnail in
+     * @param sessionId     id of the session to display
+     */
+    public void bind(final ImageView imageView, final long sessionId){
+        imageView.setTag(sessionId);
+
+        Bitmap bitmap = routeThumbnailCache.getFromMemory(sessionId);
+        imageView.setImageBitmap(bitmap);
+
+        if(bitmap != null || routeThumbnailCache.hasNoRoute(sessionId)){
+            return;
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // Check whether the view has been reused for another session while waiting
+                if(!isStillBound(imageView, sessionId)){
+                    return;
+                }
+
+                Bitmap thumbnail = routeThumbnailCache.get(sessionId);
+                if(thumbnail == null){
+                    thumbnail = RouteThumbnailRenderer.renderSession(context, sessionId);
+                }
+
+                if(thumbnail == null){
+                    return;
+                }
+
+                final Bitmap loadedThumbnail = thumbnail;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(isStillBound(imageView, sessionId)){
+                            imageView.setImageBitmap(loadedThumbnail);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Stops loading any thumbnails which have not yet started
+     */
+    public void shutdown(){
+        executor.shutdownNow();
+    }
+
+    private boolean isStillBound(ImageView imageView, long sessionId){
+        Object tag = imageView.getTag();
+        return tag instanceof Long && (Long) tag == sessionId;
+    }
+}
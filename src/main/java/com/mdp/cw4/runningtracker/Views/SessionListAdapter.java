@@ -0,0 +1,142 @@
+package com.mdp.cw4.runningtracker.Views;
+
+import android.arch.paging.PagedListAdapter;
+import android.support.annotation.NonNull;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import com.mdp.cw4.runningtracker.R;
+import com.mdp.cw4.runningtracker.ValueFormatter;
+import com.mdp.cw4.runningtracker.WorkoutSessionSummary;
+
+
+/**
+ * <h1>Session List Adapter</h1>
+ * Displays pages of workout sessions in the session history. When a new page list is submitted,
+ * for example after a session has been deleted, it is compared against the current list on a
+ * background thread and only the rows which have changed are rebound
+ */
+public class SessionListAdapter extends PagedListAdapter<WorkoutSessionSummary, SessionListAdapter.SessionViewHolder> {
+
+    private final OnSessionClickListener onSessionClickListener;
+    private final RouteThumbnailLoader routeThumbnailLoader;
+    private final int sessionTypeIcons[] = { R.drawable.runner, R.drawable.walking, R.drawable.cyclist };
+
+    /**
+     * Used to inform the activity when the user selects a session from the list
+     */
+    public interface OnSessionClickListener {
+        void onSessionClick(long sessionId);
+    }
+
+    private static final DiffUtil.ItemCallback<WorkoutSessionSummary> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<WorkoutSessionSummary>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull WorkoutSessionSummary oldSession,
+                                               @NonNull WorkoutSessionSummary newSession) {
+                    return oldSession.getId() == newSession.getId();
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull WorkoutSessionSummary oldSession,
+                                                  @NonNull WorkoutSessionSummary newSession) {
+                    return oldSession.equals(newSession);
+                }
+            };
+
+    public SessionListAdapter(OnSessionClickListener onSessionClickListener,
+                              RouteThumbnailLoader routeThumbnailLoader){
+        super(DIFF_CALLBACK);
+        this.onSessionClickListener = onSessionClickListener;
+        this.routeThumbnailLoader = routeThumbnailLoader;
+    }
+
+    @NonNull
+    @Override
+    public SessionViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.single_session_entry, parent, false);
+        return new SessionViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull SessionViewHolder holder, int position) {
+        holder.bind(getItem(position));
+    }
+
+    /**
+     * Holds the views of a single entry in the list and assigns the session's values to them
+     */
+    class SessionViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
+        private final TextView date;
+        private final TextView month;
+        private final TextView year;
+        private final TextView hour;
+        private final TextView minute;
+        private final TextView distance;
+        private final TextView duration;
+        private final ImageView sessionTypeImage;
+        private final ImageView routeThumbnail;
+        private long sessionId = -1;
+        private final StringBuilder text = new StringBuilder(16);
+
+        SessionViewHolder(View view){
+            super(view);
+            date = (TextView) view.findViewById(R.id.date);
+            month = (TextView) view.findViewById(R.id.month);
+            year = (TextView) view.findViewById(R.id.year);
+            hour = (TextView) view.findViewById(R.id.hour);
+            minute = (TextView) view.findViewById(R.id.minute);
+            distance = (TextView) view.findViewById(R.id.distance);
+            duration = (TextView) view.findViewById(R.id.duration);
+            sessionTypeImage = (ImageView) view.findViewById(R.id.sessionTypeImage);
+            routeThumbnail = (ImageView) view.findViewById(R.id.routeThumbnail);
+            view.setOnClickListener(this);
+        }
+
+        /**
+         * @param session   Session to display, or null if the session has not been loaded yet
+         */
+        void bind(WorkoutSessionSummary session){
+            if(session == null){
+                sessionId = -1;
+                routeThumbnail.setTag(null);
+                routeThumbnail.setImageBitmap(null);
+                return;
+            }
+
+            sessionId = session.getId();
+            date.setText(ValueFormatter.formatDateOfMonth(session.getDate()));
+            month.setText(ValueFormatter.formatMonth(session.getMonth()));
+            year.setText(ValueFormatter.formatYear(session.getYear()));
+
+            // The builder is reused for each view; setText takes its own copy of the text
+            text.setLength(0);
+            hour.setText(ValueFormatter.appendTwoDigits(text, session.getHour()));
+            text.setLength(0);
+            minute.setText(ValueFormatter.appendTwoDigits(text.append(':'), session.getMinute()));
+            text.setLength(0);
+            distance.setText(ValueFormatter.appendDistance(text, session.getDistance()));
+            text.setLength(0);
+            duration.setText(ValueFormatter.appendDuration(text, session.getDuration()));
+
+            if(session.getWorkoutType() >= 0 && session.getWorkoutType() < sessionTypeIcons.length){
+                sessionTypeImage.setImageResource(sessionTypeIcons[session.getWorkoutType()]);
+            }
+
+            routeThumbnailLoader.bind(routeThumbnail, sessionId);
+        }
+
+        @Override
+        public void onClick(View view) {
+            if(sessionId != -1 && onSessionClickListener != null){
+                onSessionClickListener.onSessionClick(sessionId);
+            }
+        }
+    }
+}
@@ -7,29 +7,121 @@ import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import static com.mdp.cw4.runningtracker.WorkoutSessionContentProvider.Contract.*;
 
 public class WorkoutSessionContentProvider extends ContentProvider {
 
     private WorkoutSessionDatabase workoutSessionDatabase;
-    private static final int VERSION_NUMBER = 5;
+    static final int VERSION_NUMBER = 14;
     public static final String WORKOUT_SESSION_DATABASE_NAME = "sessionDB";
     static final String SESSION_TABLE_NAME = "sessionTable";
+    static final String PERSONAL_RECORDS_TABLE_NAME = "personal_records";
+    static final String PACE_SKETCHES_TABLE_NAME = "pace_sketches";
+    static final String PACE_ROLLUPS_TABLE_NAME = "pace_rollups";
+    static final String TRAINING_LOAD_TABLE_NAME = "training_load";
+    static final String GOALS_TABLE_NAME = "goals";
+    static final String ACTIVITY_DAYS_TABLE_NAME = "activity_days";
+    static final String STREAKS_TABLE_NAME = "streaks";
+    static final String ROUTE_SIGNATURES_TABLE_NAME = "route_signatures";
+    static final String ROUTE_BANDS_TABLE_NAME = "route_bands";
+    static final String SEGMENTS_TABLE_NAME = "segments";
+    static final String SEGMENT_EFFORTS_TABLE_NAME = "segment_efforts";
+    static final String ROUTE_BOUNDS_TABLE_NAME = "route_bounds";
+    static final String ROUTE_OUTLINES_TABLE_NAME = "route_outlines";
+    static final String ROUTE_CELLS_TABLE_NAME = "route_cells";
+    static final String SESSION_STARTS_TABLE_NAME = "session_starts";
+    static final String START_CLUSTERS_TABLE_NAME = "start_clusters";
+
+    // Codes returned by the URI matcher for each URI the provider handles
+    private static final int URI_SESSIONS = 1;
+    private static final int URI_SESSION_ID = 2;
+    private static final int URI_MONTHLY_SUMMARY_DISTANCE = 3;
+    private static final int URI_MONTHLY_SUMMARY_DURATION = 4;
+    private static final int URI_MINIMUM_YEAR = 5;
+    private static final int URI_MAX_TOTAL_DISTANCE_FOR_YEAR = 6;
+    private static final int URI_MAX_TOTAL_DURATION_FOR_YEAR = 7;
+    private static final int URI_DIAGNOSTICS = 8;
+    private static final int URI_SLOW_OPERATIONS = 9;
+    private static final int URI_AGGREGATE = 10;
+    private static final int URI_PERSONAL_RECORDS = 11;
+    private static final int URI_PERSONAL_RECORDS_FOR_EFFORT = 12;
+    private static final int URI_PACE_SKETCHES = 13;
+    private static final int URI_PACE_DISTRIBUTION = 14;
+    private static final int URI_TRAINING_LOAD = 15;
+    private static final int URI_GOALS = 16;
+    private static final int URI_GOAL_ID = 17;
+    private static final int URI_ROUTE_SIGNATURES = 18;
+    private static final int URI_SIMILAR_SESSIONS = 19;
+    private static final int URI_SEGMENTS = 20;
+    private static final int URI_SEGMENT_ID = 21;
+    private static final int URI_SEGMENT_EFFORTS = 22;
+    private static final int URI_SEGMENT_LEADERBOARD = 23;
+    private static final int URI_ROUTE_BOUNDS = 24;
+    private static final int URI_SEGMENT_CANDIDATES = 25;
+    private static final int URI_ROUTE_OUTLINES = 26;
+    private static final int URI_SESSIONS_IN_VIEWPORT = 27;
+    private static final int URI_SESSIONS_NEARBY = 28;
+    private static final int URI_START_CLUSTERS = 29;
+    private static final int MAXIMUM_URI_CODE = URI_START_CLUSTERS;
 
     private static UriMatcher uriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
+    // Path of the URI matched by each code, used to label the metrics
+    private static final String[] URI_PATHS = new String[MAXIMUM_URI_CODE + 1];
+    private static final String TAG = "SessionProvider";
+
+    private final ProviderMetrics metrics = new ProviderMetrics(URI_PATHS);
+    private final SqlCache sqlCache = new SqlCache(WorkoutSessionDatabase.STATEMENT_CACHE_SIZE);
 
     static {
-        uriMatcher.addURI(Contract.AUTHORITY, WORKOUT_SESSION_DATABASE_NAME, 1);
-        uriMatcher.addURI(Contract.AUTHORITY, WORKOUT_SESSION_DATABASE_NAME + "/#", 2);
-        uriMatcher.addURI(Contract.AUTHORITY, MONTHLY_SUMMARY_DISTANCE, 3);
-        uriMatcher.addURI(Contract.AUTHORITY, MONTHLY_SUMMARY_DURATION, 4);
-        uriMatcher.addURI(Contract.AUTHORITY, MINIMUM_YEAR, 5);
-        uriMatcher.addURI(Contract.AUTHORITY, MAX_TOTAL_DISTANCE_FOR_YEAR, 6);
-        uriMatcher.addURI(Contract.AUTHORITY, MAX_TOTAL_DURATION_FOR_YEAR, 7);
+        addUri(WORKOUT_SESSION_DATABASE_NAME, URI_SESSIONS);
+        addUri(WORKOUT_SESSION_DATABASE_NAME + "/#", URI_SESSION_ID);
+        addUri(MONTHLY_SUMMARY_DISTANCE, URI_MONTHLY_SUMMARY_DISTANCE);
+        addUri(MONTHLY_SUMMARY_DURATION, URI_MONTHLY_SUMMARY_DURATION);
+        addUri(MINIMUM_YEAR, URI_MINIMUM_YEAR);
+        addUri(MAX_TOTAL_DISTANCE_FOR_YEAR, URI_MAX_TOTAL_DISTANCE_FOR_YEAR);
+        addUri(MAX_TOTAL_DURATION_FOR_YEAR, URI_MAX_TOTAL_DURATION_FOR_YEAR);
+        addUri(DIAGNOSTICS, URI_DIAGNOSTICS);
+        addUri(DIAGNOSTICS + "/" + DIAGNOSTICS_SLOW, URI_SLOW_OPERATIONS);
+        addUri(AGGREGATE, URI_AGGREGATE);
+        addUri(PERSONAL_RECORDS, URI_PERSONAL_RECORDS);
+        addUri(PERSONAL_RECORDS + "/#", URI_PERSONAL_RECORDS_FOR_EFFORT);
+        addUri(PACE_SKETCHES, URI_PACE_SKETCHES);
+        addUri(PACE_DISTRIBUTION, URI_PACE_DISTRIBUTION);
+        addUri(TRAINING_LOAD, URI_TRAINING_LOAD);
+        addUri(GOALS, URI_GOALS);
+        addUri(GOALS + "/#", URI_GOAL_ID);
+        addUri(ROUTE_SIGNATURES, URI_ROUTE_SIGNATURES);
+        addUri(SIMILAR_SESSIONS + "/#", URI_SIMILAR_SESSIONS);
+        addUri(SEGMENTS, URI_SEGMENTS);
+        addUri(SEGMENTS + "/#", URI_SEGMENT_ID);
+        addUri(SEGMENT_EFFORTS, URI_SEGMENT_EFFORTS);
+        addUri(SEGMENT_LEADERBOARD + "/#", URI_SEGMENT_LEADERBOARD);
+        addUri(ROUTE_BOUNDS, URI_ROUTE_BOUNDS);
+        addUri(SEGMENT_CANDIDATES + "/#", URI_SEGMENT_CANDIDATES);
+        addUri(ROUTE_OUTLINES, URI_ROUTE_OUTLINES);
+        addUri(SESSIONS_IN_VIEWPORT, URI_SESSIONS_IN_VIEWPORT);
+        addUri(SESSIONS_NEARBY, URI_SESSIONS_NEARBY);
+        addUri(START_CLUSTERS, URI_START_CLUSTERS);
+    }
+
+    /**
+     * Adds a URI to the matcher, keeping its path as the label the metrics show for its code
+     */
+    private static void addUri(String path, int uriCode){
+        uriMatcher.addURI(Contract.AUTHORITY, path, uriCode);
+        URI_PATHS[uriCode] = path;
     }
 
     @Override
@@ -42,134 +134,483 @@ public class WorkoutSessionContentProvider extends ContentProvider {
     @Override
     public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
                         @Nullable String[] selectionArgs, @Nullable String sortOrder) {
+        int uriCode = uriMatcher.match(uri);
+
+        switch (uriCode) {
+            case URI_DIAGNOSTICS:
+                return metrics.getMetricsCursor();
+            case URI_SLOW_OPERATIONS:
+                return metrics.getSlowOperationsCursor();
+        }
+
+        if(uriCode == URI_SESSION_ID || uriCode == URI_SEGMENT_ID){
+            selection = "_ID = ?";
+            selectionArgs = new String[] { uri.getLastPathSegment() };
+        }else if(uriCode == URI_PERSONAL_RECORDS_FOR_EFFORT || uriCode == URI_SEGMENT_LEADERBOARD
+                || uriCode == URI_SEGMENT_CANDIDATES){
+            selection = null;
+            selectionArgs = new String[] { uri.getLastPathSegment() };
+        }
+
+        // Workout types are passed to the summary URIs as ids after the year, and to the aggregate
+        // and personal record URIs as a mask. Either way they are compiled into the SQL rather than bound
+        int workoutTypeMask = -1;
+        try {
+            switch (uriCode) {
+                case URI_MONTHLY_SUMMARY_DISTANCE:
+                case URI_MONTHLY_SUMMARY_DURATION:
+                case URI_MAX_TOTAL_DISTANCE_FOR_YEAR:
+                case URI_MAX_TOTAL_DURATION_FOR_YEAR:
+                    if(selectionArgs != null && selectionArgs.length > 1){
+                        workoutTypeMask = WorkoutTypeFilter.parseMask(selectionArgs, 1);
+                        selectionArgs = new String[] { selectionArgs[0] };
+                    }
+                    break;
+                case URI_AGGREGATE:
+                case URI_PACE_DISTRIBUTION:
+                    selectionArgs = parseAggregateArguments(uri);
+                    workoutTypeMask = parseWorkoutTypeMask(uri);
+                    break;
+                case URI_PERSONAL_RECORDS:
+                case URI_PERSONAL_RECORDS_FOR_EFFORT:
+                    workoutTypeMask = parseWorkoutTypeMask(uri);
+                    break;
+            }
+        }catch(IllegalArgumentException e){
+            e.printStackTrace();
+            return null;
+        }
+
+        if((uriCode == URI_AGGREGATE || uriCode == URI_PACE_DISTRIBUTION) && selectionArgs == null){
+            return null;
+        }
+
+        if(uriCode == URI_TRAINING_LOAD){
+            selectionArgs = parseTrainingLoadArguments(uri);
+            if(selectionArgs == null){
+                return null;
+            }
+        }else if(uriCode == URI_GOALS){
+            selectionArgs = parseGoalsArguments(uri);
+            if(selectionArgs == null){
+                return null;
+            }
+        }else if(uriCode == URI_SIMILAR_SESSIONS){
+            selectionArgs = parseSimilarSessionsArguments(uri);
+            if(selectionArgs == null){
+                return null;
+            }
+        }else if(uriCode == URI_SESSIONS_IN_VIEWPORT){
+            selectionArgs = parseViewportArguments(uri);
+            if(selectionArgs == null){
+                return null;
+            }
+        }else if(uriCode == URI_SESSIONS_NEARBY){
+            selectionArgs = parseNearbyArguments(uri);
+            if(selectionArgs == null){
+                return null;
+            }
+        }
+
+        long start = System.nanoTime();
+        Cursor cursor = performQuery(uriCode, uri, projection, selection, selectionArgs, sortOrder,
+                workoutTypeMask);
+
+        // The query is only run once the cursor is first used, so count the rows here for the
+        // time recorded to include running it
+        int numberOfRows = cursor != null ? cursor.getCount() : 0;
+        long duration = System.nanoTime() - start;
+
+        if(metrics.record(ProviderMetrics.QUERY, uriCode, duration, numberOfRows)){
+            String sql = describeQuery(uriCode, uri, projection, selection, selectionArgs, sortOrder,
+                    workoutTypeMask);
+            metrics.recordSlowOperation(ProviderMetrics.QUERY, uriCode, duration, numberOfRows, sql);
+            Log.w(TAG, "Slow query (" + duration / 1000000 + " ms, " + numberOfRows + " rows): " + sql);
+        }
+
+        return cursor;
+    }
+
+    private Cursor performQuery(int uriCode, Uri uri, String[] projection, String selection,
+                                String[] selectionArgs, String sortOrder, int workoutTypeMask){
         SQLiteDatabase database = getReadableDatabase();
 
         if(database == null){
             return null;
         }
 
-        switch (uriMatcher.match(uri)) {
-            case 2:
-                selection = "_ID = ?";
-                selectionArgs = new String[] { uri.getLastPathSegment() };
-            case 1:
+        switch (uriCode) {
+            case URI_SESSIONS:
+            case URI_SESSION_ID:
                 return database.query(SESSION_TABLE_NAME, projection, selection, selectionArgs,
-                        null, null, sortOrder);
-            case 5:
-                String query =
-                    "SELECT MIN(" + Contract.YEAR + ") AS " + Contract.MINIMUM_YEAR +
-                    " FROM " + SESSION_TABLE_NAME;
-                return database.rawQuery(query, null);
+                        null, null, sortOrder, parseLimitClause(uri));
+            case URI_MINIMUM_YEAR:
+                return database.rawQuery(SessionQueries.MINIMUM_YEAR_QUERY, null);
 
             // Queries for returning the total amount for a variable i.e. distance, for each month
-            case 3:
-                query = parseQueryMaxTotalByMonthWithSessionType(Contract.DISTANCE, selectionArgs);
-                return database.rawQuery(query, selectionArgs);
-
-            case 4:
-                query = parseQueryMaxTotalByMonthWithSessionType(Contract.DURATION, selectionArgs);
-                return database.rawQuery(query, selectionArgs);
-
+            case URI_MONTHLY_SUMMARY_DISTANCE:
+            case URI_MONTHLY_SUMMARY_DURATION:
             // Queries for returning the maximum variable i.e. distance obtained during a month
             // over the whole year
-            case 6:
-                query = parseQueryMaxTotalForYearWithSessionType(Contract.DISTANCE, selectionArgs);
-                return database.rawQuery(query, selectionArgs);
-            case 7:
-                query = parseQueryMaxTotalForYearWithSessionType(Contract.DURATION, selectionArgs);
-                return database.rawQuery(query, selectionArgs);
+            case URI_MAX_TOTAL_DISTANCE_FOR_YEAR:
+            case URI_MAX_TOTAL_DURATION_FOR_YEAR:
+            // Count, totals and averages for a period
+            case URI_AGGREGATE:
+            // Best effort of each workout type and effort
+            case URI_PERSONAL_RECORDS:
+                return database.rawQuery(getSummaryQuery(uriCode, uri, workoutTypeMask), selectionArgs);
+            // Every session's best effort for one effort, fastest first
+            case URI_PERSONAL_RECORDS_FOR_EFFORT:
+                return database.query(PERSONAL_RECORDS_TABLE_NAME, projection,
+                        SessionQueries.parseBestEffortsSelection(workoutTypeMask), selectionArgs,
+                        null, null, Contract.RECORD_SPEED + " DESC", parseLimitClause(uri));
+            // Quantiles of the speed over a period
+            case URI_PACE_DISTRIBUTION:
+                return PaceRollups.getDistributionCursor(database.rawQuery(
+                        getSummaryQuery(uriCode, uri, workoutTypeMask), selectionArgs));
+            // Training load, fatigue, fitness and form of each day of a range
+            case URI_TRAINING_LOAD:
+                return TrainingLoad.getRangeCursor(database, Integer.parseInt(selectionArgs[0]),
+                        Integer.parseInt(selectionArgs[1]));
+            // Progress towards each goal
+            case URI_GOALS:
+                return Goals.getGoalsCursor(database, Integer.parseInt(selectionArgs[0]));
+            // Sessions along the same route as a session
+            case URI_SIMILAR_SESSIONS:
+                return RouteIndex.getSimilarSessionsCursor(database, Long.parseLong(selectionArgs[0]),
+                        Double.parseDouble(selectionArgs[1]), Integer.parseInt(selectionArgs[2]));
+            case URI_SEGMENTS:
+            case URI_SEGMENT_ID:
+                return database.query(SEGMENTS_TABLE_NAME, projection, selection, selectionArgs,
+                        null, null, sortOrder);
+            // Fastest effort of each session over a segment, fastest first
+            case URI_SEGMENT_LEADERBOARD:
+                return Segments.getLeaderboardCursor(database, selectionArgs, parseLimitClause(uri));
+            // Sessions which may cover a segment
+            case URI_SEGMENT_CANDIDATES:
+                return Segments.getCandidatesCursor(database, Long.parseLong(selectionArgs[0]));
+            // Sessions whose route passes through a box
+            case URI_SESSIONS_IN_VIEWPORT:
+                return SpatialIndex.getViewportCursor(database, new RouteBounds(
+                        Double.parseDouble(selectionArgs[0]), Double.parseDouble(selectionArgs[1]),
+                        Double.parseDouble(selectionArgs[2]), Double.parseDouble(selectionArgs[3])));
+            // Sessions whose route passes within a distance of a point, nearest first
+            case URI_SESSIONS_NEARBY:
+                return SpatialIndex.getNearbyCursor(database, new RouteGrid.Circle(
+                        Double.parseDouble(selectionArgs[0]), Double.parseDouble(selectionArgs[1]),
+                        Double.parseDouble(selectionArgs[2])), Integer.parseInt(selectionArgs[3]));
+            // Places training starts from, most sessions first
+            case URI_START_CLUSTERS:
+                return database.query(START_CLUSTERS_TABLE_NAME, projection, selection, selectionArgs,
+                        null, null, sortOrder != null ? sortOrder : Contract.AGGREGATE_COUNT + " DESC",
+                        parseLimitClause(uri));
             default:
                 return null;
         }
     }
 
     /**
-     * Parses a query to find the total amount achieved for a particular variable for each month
-     * of the year, for example returning for each month how much the year have travelled
-     * @param dependentVariable     Variable to find the total of
+     * Looks up the SQL for a summary URI in the cache, building it only the first time a shape of
+     * query is seen
      */
-    private String parseQueryMaxTotalVariableByMonth(String dependentVariable){
-        return "SELECT SUM(" + dependentVariable + ") AS '" + MONTHLY_TOTAL + "', " + Contract.MONTH +
-                " FROM " + SESSION_TABLE_NAME +
-                " WHERE " + Contract.YEAR + " = ? " +
-                " GROUP BY " + Contract.MONTH + ";";
+    private String getSummaryQuery(int uriCode, Uri uri, int workoutTypeMask){
+        int flags = 0;
+        if(uriCode == URI_AGGREGATE || uriCode == URI_PACE_DISTRIBUTION){
+            flags = (uri.getQueryParameter(Contract.QUERY_PARAMETER_MONTH) != null ? 1 : 0)
+                    | (uri.getQueryParameter(Contract.QUERY_PARAMETER_DATE) != null ? 2 : 0);
+        }
+
+        long key = SqlCache.getKey(uriCode, workoutTypeMask, flags);
+        String sql = sqlCache.get(key);
+        if(sql == null){
+            sql = describeQuery(uriCode, uri, null, null, null, null, workoutTypeMask);
+            sqlCache.put(key, sql);
+        }
+        return sql;
     }
 
     /**
-     * Parses a query to find the total amount achieved for a particular variable for each month
-     * of the year, for example returning for each month how much the year have travelled.
-     * This includes an additional selection clause to filter by workout session type
-     * @param dependentVariable     Variable to find the total of
-     * @param selectionArgs         Workout session selection arguments
+     * @return  The SQL run for the URI code, with the selection arguments as placeholders
      */
-    private String parseQueryMaxTotalByMonthWithSessionType(String dependentVariable,
-                                                            String[] selectionArgs) {
-        if(selectionArgs == null || selectionArgs.length <= 1){
-            return parseQueryMaxTotalVariableByMonth(dependentVariable);
+    private String describeQuery(int uriCode, Uri uri, String[] projection, String selection,
+                                 String[] selectionArgs, String sortOrder, int workoutTypeMask){
+        switch (uriCode) {
+            case URI_SESSIONS:
+            case URI_SESSION_ID:
+                return SQLiteQueryBuilder.buildQueryString(false, SESSION_TABLE_NAME, projection,
+                        selection, null, null, sortOrder, parseLimitClause(uri));
+            case URI_MONTHLY_SUMMARY_DISTANCE:
+                return SessionQueries.parseQueryMaxTotalByMonthWithSessionType(Contract.DISTANCE, workoutTypeMask);
+            case URI_MONTHLY_SUMMARY_DURATION:
+                return SessionQueries.parseQueryMaxTotalByMonthWithSessionType(Contract.DURATION, workoutTypeMask);
+            case URI_MINIMUM_YEAR:
+                return SessionQueries.MINIMUM_YEAR_QUERY;
+            case URI_MAX_TOTAL_DISTANCE_FOR_YEAR:
+                return SessionQueries.parseQueryMaxTotalForYearWithSessionType(Contract.DISTANCE, workoutTypeMask);
+            case URI_MAX_TOTAL_DURATION_FOR_YEAR:
+                return SessionQueries.parseQueryMaxTotalForYearWithSessionType(Contract.DURATION, workoutTypeMask);
+            case URI_AGGREGATE:
+                return SessionQueries.parseAggregateQuery(
+                        uri.getQueryParameter(Contract.QUERY_PARAMETER_MONTH) != null,
+                        uri.getQueryParameter(Contract.QUERY_PARAMETER_DATE) != null,
+                        workoutTypeMask);
+            case URI_PERSONAL_RECORDS:
+                return SessionQueries.parsePersonalRecordsQuery(workoutTypeMask);
+            case URI_PERSONAL_RECORDS_FOR_EFFORT:
+                return SQLiteQueryBuilder.buildQueryString(false, PERSONAL_RECORDS_TABLE_NAME, projection,
+                        SessionQueries.parseBestEffortsSelection(workoutTypeMask), null, null,
+                        Contract.RECORD_SPEED + " DESC", parseLimitClause(uri));
+            case URI_PACE_DISTRIBUTION:
+                return SessionQueries.parsePaceSketchesQuery(
+                        uri.getQueryParameter(Contract.QUERY_PARAMETER_MONTH) != null,
+                        uri.getQueryParameter(Contract.QUERY_PARAMETER_DATE) != null,
+                        workoutTypeMask);
+            case URI_TRAINING_LOAD:
+                return "SELECT * FROM " + TRAINING_LOAD_TABLE_NAME + " WHERE " + Contract.TRAINING_DAY
+                        + " BETWEEN ? AND ?";
+            case URI_GOALS:
+                return "SELECT * FROM " + GOALS_TABLE_NAME;
+            case URI_SIMILAR_SESSIONS:
+                return "SELECT " + Contract.RECORD_SESSION_ID + ", " + Contract.ROUTE_SIGNATURE + " FROM "
+                        + ROUTE_SIGNATURES_TABLE_NAME + " WHERE " + Contract.RECORD_SESSION_ID + " IN (SELECT "
+                        + Contract.RECORD_SESSION_ID + " FROM " + ROUTE_BANDS_TABLE_NAME + " WHERE "
+                        + Contract.ROUTE_BAND_KEY + " IN (SELECT " + Contract.ROUTE_BAND_KEY + " FROM "
+                        + ROUTE_BANDS_TABLE_NAME + " WHERE " + Contract.RECORD_SESSION_ID + " = ?))";
+            case URI_SEGMENTS:
+            case URI_SEGMENT_ID:
+                return SQLiteQueryBuilder.buildQueryString(false, SEGMENTS_TABLE_NAME, projection,
+                        selection, null, null, sortOrder, null);
+            case URI_SEGMENT_LEADERBOARD:
+                return Segments.getLeaderboardQuery(parseLimitClause(uri));
+            // The cells covering the region are written into the query
+            case URI_SEGMENT_CANDIDATES:
+            case URI_SESSIONS_IN_VIEWPORT:
+            case URI_SESSIONS_NEARBY:
+                return SpatialIndex.getOutlinesQuery("?");
+            case URI_START_CLUSTERS:
+                return SQLiteQueryBuilder.buildQueryString(false, START_CLUSTERS_TABLE_NAME, projection,
+                        selection, null, null, sortOrder != null ? sortOrder : Contract.AGGREGATE_COUNT + " DESC",
+                        parseLimitClause(uri));
+            default:
+                return uri.toString();
         }
+    }
+
+    /**
+     * Parses the period of an aggregate URI into selection arguments, in the order expected by
+     * SessionQueries.parseAggregateQuery
+     * @return  The selection arguments, or null if the year is missing or any value is not a number
+     */
+    private String[] parseAggregateArguments(Uri uri){
+        List<String> arguments = new ArrayList<>();
+
+        try {
+            // Parse the values rather than passing them on so that only numbers reach the query
+            String year = uri.getQueryParameter(Contract.QUERY_PARAMETER_YEAR);
+            if(year == null){
+                return null;
+            }
+            arguments.add(String.valueOf(Integer.parseInt(year)));
 
-        String additionalWhereClause = parseSessionWhereClause(selectionArgs);
+            String month = uri.getQueryParameter(Contract.QUERY_PARAMETER_MONTH);
+            if(month != null){
+                arguments.add(String.valueOf(Integer.parseInt(month)));
+            }
 
-        return "SELECT SUM(" + dependentVariable + ") AS '" + MONTHLY_TOTAL + "', " + Contract.MONTH +
-                " FROM " + SESSION_TABLE_NAME +
-                " WHERE " + Contract.YEAR + " = ? " + additionalWhereClause +
-                " GROUP BY " + Contract.MONTH + ";";
+            String date = uri.getQueryParameter(Contract.QUERY_PARAMETER_DATE);
+            if(date != null){
+                arguments.add(String.valueOf(Integer.parseInt(date)));
+            }
+        }catch(NumberFormatException e){
+            e.printStackTrace();
+            return null;
+        }
+
+        return arguments.toArray(new String[arguments.size()]);
     }
 
     /**
-     * Parses a query to find the maximum value obtained for a particular variable i.e. distance or
-     * duration during a month for the whole selected year
-     * @param dependentVariable     Variable to find the maximum of
+     * Parses the range of days of a training load URI into selection arguments
+     * @return  The first and last day, or null if either is missing or not a number
      */
-    private String parseQueryMaxTotalVariableForYear(String dependentVariable){
-        return "SELECT MAX(" + MONTHLY_TOTAL + ") AS " + MONTHLY_TOTAL + " FROM (" +
-                "SELECT SUM(" + dependentVariable + ") AS '" + MONTHLY_TOTAL + "'" +
-                " FROM " + SESSION_TABLE_NAME +
-                " WHERE " + Contract.YEAR + " = ? " +
-                " GROUP BY " + Contract.MONTH + ", " + Contract.WORKOUT_TYPE + ");";
+    private String[] parseTrainingLoadArguments(Uri uri){
+        String firstDay = uri.getQueryParameter(Contract.QUERY_PARAMETER_FIRST_DAY);
+        String lastDay = uri.getQueryParameter(Contract.QUERY_PARAMETER_LAST_DAY);
+        if(firstDay == null || lastDay == null){
+            return null;
+        }
+
+        try {
+            // Parse the values rather than passing them on so that only numbers reach the query
+            return new String[] { String.valueOf(Integer.parseInt(firstDay)),
+                    String.valueOf(Integer.parseInt(lastDay)) };
+        }catch(NumberFormatException e){
+            e.printStackTrace();
+            return null;
+        }
     }
 
     /**
-     * Parses a query to find the maximum value obtained for a particular variable i.e. distance or
-     * duration during a month for the whole selected year.
-     * This includes an additional selection clause to filter by workout session type
-     * @param dependentVariable     Variable to find the maximum of
-     * @param selectionArgs         Workout session selection arguments
+     * Parses the optional day to work out the progress of goals on, which is otherwise today
+     * @return  The day, or null if it is not a number
      */
-    private String parseQueryMaxTotalForYearWithSessionType(String dependentVariable, String[] selectionArgs){
-        if(selectionArgs == null || selectionArgs.length <= 1){
-            return parseQueryMaxTotalVariableForYear(dependentVariable);
+    private String[] parseGoalsArguments(Uri uri){
+        String today = uri.getQueryParameter(Contract.QUERY_PARAMETER_TODAY);
+        if(today == null){
+            Calendar calendar = Calendar.getInstance();
+            return new String[] { String.valueOf(TrainingLoadCalculator.getDay(calendar.get(Calendar.YEAR),
+                    calendar.get(Calendar.MONTH), calendar.get(Calendar.DATE))) };
         }
 
-        String additionalWhereClause = parseSessionWhereClause(selectionArgs);
+        try {
+            return new String[] { String.valueOf(Integer.parseInt(today)) };
+        }catch(NumberFormatException e){
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Parses the session id, optional minimum similarity and optional limit of a similar sessions
+     * URI into selection arguments
+     * @return  The arguments, or null if any value is not a number or the similarity is not
+     *          between 0 and 1
+     */
+    private String[] parseSimilarSessionsArguments(Uri uri){
+        String minimumSimilarity = uri.getQueryParameter(Contract.QUERY_PARAMETER_MINIMUM_SIMILARITY);
+        String limit = uri.getQueryParameter(Contract.QUERY_PARAMETER_LIMIT);
+
+        try {
+            // Parse the values rather than passing them on so that only numbers reach the query
+            double similarity = minimumSimilarity != null ? Double.parseDouble(minimumSimilarity)
+                    : RouteFingerprint.DEFAULT_MINIMUM_SIMILARITY;
+            if(!(similarity >= 0 && similarity <= 1)){
+                return null;
+            }
 
-        return "SELECT MAX(" + MONTHLY_TOTAL + ") AS " + MONTHLY_TOTAL + " FROM (" +
-                "SELECT SUM(" + dependentVariable + ") AS '" + MONTHLY_TOTAL + "'" +
-                " FROM " + SESSION_TABLE_NAME +
-                " WHERE " + Contract.YEAR + " = ? " + additionalWhereClause +
-                " GROUP BY " + Contract.MONTH + ", " + Contract.WORKOUT_TYPE + ");";
+            return new String[] { String.valueOf(ContentUris.parseId(uri)), String.valueOf(similarity),
+                    String.valueOf(limit != null ? Integer.parseInt(limit) : 0) };
+        }catch(NumberFormatException e){
+            e.printStackTrace();
+            return null;
+        }
     }
 
     /**
-     * Generates a selection clause to account for each workout type selection argument
-     * @param selectionArgs     Workout session selection arguments
+     * Parses the box of a sessions in viewport URI into selection arguments
+     * @return  The lowest and highest latitude followed by the lowest and highest longitude, or
+     *          null if any is missing or not a number, or they are not in order
      */
-    private String parseSessionWhereClause(String[] selectionArgs){
-        String additionalWhereClause = "";
+    private String[] parseViewportArguments(Uri uri){
+        try {
+            // Parse the values rather than passing them on so that only numbers reach the query
+            double minimumLatitude = parseCoordinate(uri, Contract.QUERY_PARAMETER_MINIMUM_LATITUDE, 90);
+            double maximumLatitude = parseCoordinate(uri, Contract.QUERY_PARAMETER_MAXIMUM_LATITUDE, 90);
+            double minimumLongitude = parseCoordinate(uri, Contract.QUERY_PARAMETER_MINIMUM_LONGITUDE, 180);
+            double maximumLongitude = parseCoordinate(uri, Contract.QUERY_PARAMETER_MAXIMUM_LONGITUDE, 180);
+            if(minimumLatitude > maximumLatitude || minimumLongitude > maximumLongitude){
+                return null;
+            }
+
+            return new String[] { String.valueOf(minimumLatitude), String.valueOf(maximumLatitude),
+                    String.valueOf(minimumLongitude), String.valueOf(maximumLongitude) };
+        }catch(IllegalArgumentException e){
+            e.printStackTrace();
+            return null;
+        }
+    }
 
-        if(selectionArgs.length <= 1){
-            return additionalWhereClause;
+    /**
+     * Parses the point, radius and optional limit of a sessions nearby URI into selection
+     * arguments
+     * @return  The arguments, or null if any value is missing or not a number, or the radius is not
+     *          above 0
+     */
+    private String[] parseNearbyArguments(Uri uri){
+        String radius = uri.getQueryParameter(Contract.QUERY_PARAMETER_RADIUS);
+        String limit = uri.getQueryParameter(Contract.QUERY_PARAMETER_LIMIT);
+        if(radius == null){
+            return null;
         }
 
-        additionalWhereClause += "AND (" + Contract.WORKOUT_TYPE + " = ? ";
+        try {
+            double latitude = parseCoordinate(uri, Contract.QUERY_PARAMETER_LATITUDE, 90);
+            double longitude = parseCoordinate(uri, Contract.QUERY_PARAMETER_LONGITUDE, 180);
+            double radiusMetres = Double.parseDouble(radius);
+            if(!(radiusMetres > 0)){
+                return null;
+            }
 
-        for(int i = 2; i < selectionArgs.length; i++){
-            additionalWhereClause += "OR " + Contract.WORKOUT_TYPE + " = ? ";
+            return new String[] { String.valueOf(latitude), String.valueOf(longitude),
+                    String.valueOf(radiusMetres), String.valueOf(limit != null ? Integer.parseInt(limit) : 0) };
+        }catch(IllegalArgumentException e){
+            e.printStackTrace();
+            return null;
         }
+    }
 
-        additionalWhereClause += ")";
+    /**
+     * @param limit     Largest size of the coordinate either side of 0
+     * @return          The coordinate query parameter
+     * @throws IllegalArgumentException If the parameter is missing, not a number or out of range
+     */
+    private double parseCoordinate(Uri uri, String parameter, double limit){
+        String value = uri.getQueryParameter(parameter);
+        if(value == null){
+            throw new IllegalArgumentException("Missing " + parameter);
+        }
 
-        return additionalWhereClause;
+        double coordinate = Double.parseDouble(value);
+        if(!(Math.abs(coordinate) <= limit)){
+            throw new IllegalArgumentException(parameter + " out of range: " + value);
+        }
+        return coordinate;
+    }
+
+    /**
+     * @return  Whether the values are those of a goal of a known type with a target above 0
+     */
+    private boolean isValidGoal(ContentValues contentValues){
+        if(contentValues == null){
+            return false;
+        }
+
+        Integer goalType = contentValues.getAsInteger(Contract.GOAL_TYPE);
+        Long target = contentValues.getAsLong(Contract.GOAL_TARGET);
+        return goalType != null && GoalType.getGoalType(goalType) != null && target != null && target > 0;
+    }
+
+    /**
+     * @return  The optional workout type mask query parameter, or -1 if there is none
+     * @throws IllegalArgumentException If the mask is not valid
+     */
+    private int parseWorkoutTypeMask(Uri uri){
+        String mask = uri.getQueryParameter(Contract.QUERY_PARAMETER_WORKOUT_TYPE_MASK);
+        return mask == null ? -1 : WorkoutTypeFilter.parseMask(mask);
+    }
+
+    /**
+     * Parses the optional limit and offset query parameters, allowing sessions to be queried a page
+     * at a time
+     * @return  The limit clause, or null if no limit has been requested
+     */
+    private String parseLimitClause(Uri uri){
+        String limit = uri.getQueryParameter(Contract.QUERY_PARAMETER_LIMIT);
+        if(limit == null){
+            return null;
+        }
+
+        String offset = uri.getQueryParameter(Contract.QUERY_PARAMETER_OFFSET);
+        try {
+            // Parse the values rather than passing them on so that only numbers reach the query
+            if(offset == null){
+                return String.valueOf(Integer.parseInt(limit));
+            }
+            return Integer.parseInt(offset) + "," + Integer.parseInt(limit);
+        }catch(NumberFormatException e){
+            e.printStackTrace();
+            return null;
+        }
     }
 
     @Nullable
@@ -187,23 +628,163 @@ public class WorkoutSessionContentProvider extends ContentProvider {
             return null;
         }
 
+        int uriCode = uriMatcher.match(uri);
+        long start = System.nanoTime();
+
         long id;
-        switch (uriMatcher.match(uri)){
-            case 1:
+        String tableName;
+        switch (uriCode){
+            // The pace sketch of a session, which is identified by the session's id
+            case URI_PACE_SKETCHES:
+                tableName = PACE_SKETCHES_TABLE_NAME;
+                id = contentValues != null && PaceRollups.store(database, contentValues)
+                        ? contentValues.getAsLong(Contract.RECORD_SESSION_ID) : -1;
+                break;
+            // The route signature of a session, which is identified by the session's id
+            case URI_ROUTE_SIGNATURES:
+                tableName = ROUTE_SIGNATURES_TABLE_NAME;
+                id = contentValues != null && RouteIndex.store(database, contentValues)
+                        ? contentValues.getAsLong(Contract.RECORD_SESSION_ID) : -1;
+                break;
+            // The fastest effort of a session over a segment, identified by the segment's id
+            case URI_SEGMENT_EFFORTS:
+                tableName = SEGMENT_EFFORTS_TABLE_NAME;
+                id = contentValues != null && Segments.storeEffort(database, contentValues)
+                        ? contentValues.getAsLong(Contract.SEGMENT_ID) : -1;
+                break;
+            // The bounds of a session's route, which are identified by the session's id
+            case URI_ROUTE_BOUNDS:
+                tableName = ROUTE_BOUNDS_TABLE_NAME;
+                id = contentValues != null && Segments.storeBounds(database, contentValues)
+                        ? contentValues.getAsLong(Contract.RECORD_SESSION_ID) : -1;
+                break;
+            // The outline of a session's route, which is identified by the session's id
+            case URI_ROUTE_OUTLINES:
+                tableName = ROUTE_OUTLINES_TABLE_NAME;
+                id = contentValues != null && SpatialIndex.store(database, contentValues)
+                        ? contentValues.getAsLong(Contract.RECORD_SESSION_ID) : -1;
+                break;
+            case URI_SEGMENTS:
+                tableName = SEGMENTS_TABLE_NAME;
+                id = contentValues != null ? Segments.addSegment(database, contentValues) : -1;
+                break;
+            case URI_GOALS:
+                tableName = GOALS_TABLE_NAME;
+                id = isValidGoal(contentValues) ? database.insert(GOALS_TABLE_NAME, null, contentValues) : -1;
+                break;
+            case URI_SESSIONS:
             default:
-                id = database.insert(SESSION_TABLE_NAME, null, contentValues);
+                tableName = SESSION_TABLE_NAME;
+                id = insertSession(database, contentValues);
                 break;
         }
 
+        long duration = System.nanoTime() - start;
+        int numberOfRows = id != -1 ? 1 : 0;
+        if(metrics.record(ProviderMetrics.INSERT, uriCode, duration, numberOfRows)){
+            metrics.recordSlowOperation(ProviderMetrics.INSERT, uriCode, duration, numberOfRows,
+                    "INSERT INTO " + tableName);
+        }
+
         Uri newUri = ContentUris.withAppendedId(uri, id);
 
+        if(uriCode == URI_PACE_SKETCHES){
+            getContext().getContentResolver().notifyChange(Contract.PACE_DISTRIBUTION_URI, null);
+            return newUri;
+        }else if(uriCode == URI_GOALS){
+            getContext().getContentResolver().notifyChange(Contract.GOALS_URI, null);
+            return newUri;
+        }else if(uriCode == URI_ROUTE_SIGNATURES){
+            getContext().getContentResolver().notifyChange(Contract.SIMILAR_SESSIONS_URI, null);
+            return newUri;
+        }else if(uriCode == URI_SEGMENT_EFFORTS){
+            getContext().getContentResolver().notifyChange(Contract.SEGMENT_LEADERBOARD_URI, null);
+            return newUri;
+        }else if(uriCode == URI_ROUTE_BOUNDS){
+            return newUri;
+        }else if(uriCode == URI_ROUTE_OUTLINES){
+            getContext().getContentResolver().notifyChange(Contract.SESSIONS_IN_VIEWPORT_URI, null);
+            getContext().getContentResolver().notifyChange(Contract.SESSIONS_NEARBY_URI, null);
+            return newUri;
+        }else if(uriCode == URI_SEGMENTS){
+            getContext().getContentResolver().notifyChange(Contract.SEGMENTS_URI, null);
+            if(id != -1){
+                SessionProcessingService.enqueueSegmentAdded(getContext(), id);
+            }
+            return newUri;
+        }
+
         getContext().getContentResolver().notifyChange(newUri, null);
+        getContext().getContentResolver().notifyChange(Contract.TRAINING_LOAD_URI, null);
+        getContext().getContentResolver().notifyChange(Contract.GOALS_URI, null);
+        getContext().getContentResolver().notifyChange(Contract.START_CLUSTERS_URI, null);
 
-        database.close();
+        if(id != -1){
+            SessionProcessingService.enqueueSessionSaved(getContext(), id);
+        }
 
         return newUri;
     }
 
+    /**
+     * Stores the best efforts of sessions in the personal records table, replacing any stored
+     * previously for the same sessions, in a single transaction. Efforts of sessions which no
+     * longer exist, having been deleted while they were analysed, are left out
+     */
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        int uriCode = uriMatcher.match(uri);
+        if(uriCode != URI_PERSONAL_RECORDS){
+            return super.bulkInsert(uri, values);
+        }
+
+        SQLiteDatabase database = getWritableDatabase();
+        if(database == null){
+            return 0;
+        }
+
+        long start = System.nanoTime();
+        int numberOfRows = 0;
+
+        database.beginTransaction();
+        try {
+            Set<Long> replacedSessions = new HashSet<>();
+            Set<Long> deletedSessions = new HashSet<>();
+            for(ContentValues effort : values){
+                Long sessionId = effort.getAsLong(Contract.RECORD_SESSION_ID);
+                // The session may have been deleted while it was being analysed
+                if(sessionId == null || deletedSessions.contains(sessionId)){
+                    continue;
+                }
+                if(!replacedSessions.contains(sessionId) && !sessionExists(database, sessionId)){
+                    deletedSessions.add(sessionId);
+                    continue;
+                }
+                if(replacedSessions.add(sessionId)){
+                    database.delete(PERSONAL_RECORDS_TABLE_NAME, Contract.RECORD_SESSION_ID + " = ?",
+                            new String[] { String.valueOf(sessionId) });
+                }
+
+                if(database.insert(PERSONAL_RECORDS_TABLE_NAME, null, effort) != -1){
+                    numberOfRows++;
+                }
+            }
+            database.setTransactionSuccessful();
+        }finally{
+            database.endTransaction();
+        }
+
+        long duration = System.nanoTime() - start;
+        if(metrics.record(ProviderMetrics.INSERT, uriCode, duration, numberOfRows)){
+            metrics.recordSlowOperation(ProviderMetrics.INSERT, uriCode, duration, numberOfRows,
+                    "INSERT INTO " + PERSONAL_RECORDS_TABLE_NAME);
+        }
+
+        getContext().getContentResolver().notifyChange(uri, null);
+
+        return numberOfRows;
+    }
+
     @Override
     public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
         SQLiteDatabase database = getWritableDatabase();
@@ -213,25 +794,151 @@ public class WorkoutSessionContentProvider extends ContentProvider {
             return -1;
         }
 
+        int uriCode = uriMatcher.match(uri);
+        long start = System.nanoTime();
+
+        String tableName = SESSION_TABLE_NAME;
         try {
-            switch (uriMatcher.match(uri)) {
-                case 2:
+            switch (uriCode) {
+                case URI_SESSION_ID:
                     selection = "_ID = ?";
                     selectionArgs = new String[] { uri.getLastPathSegment() };
-                case 1:
-                    rowsDeleted = database.delete(SESSION_TABLE_NAME, selection, selectionArgs);
-                    getContext().getContentResolver().notifyChange(uri, null);
+                    rowsDeleted = deleteSessions(database, selection, selectionArgs, ContentUris.parseId(uri));
+                    notifySessionsDeleted(uri);
+
+                    if(rowsDeleted > 0){
+                        SessionProcessingService.enqueueSessionDeleted(getContext(), ContentUris.parseId(uri));
+                    }
+                    break;
+                case URI_SESSIONS:
+                    long[] sessionIds = getSessionIds(database, selection, selectionArgs);
+                    rowsDeleted = deleteSessions(database, selection, selectionArgs, -1);
+                    notifySessionsDeleted(uri);
+
+                    if(rowsDeleted > 0){
+                        SessionProcessingService.enqueueSessionsDeleted(getContext(), sessionIds);
+                    }
+                    break;
+                case URI_GOAL_ID:
+                    tableName = GOALS_TABLE_NAME;
+                    selection = "_ID = ?";
+                    selectionArgs = new String[] { uri.getLastPathSegment() };
+                    rowsDeleted = database.delete(GOALS_TABLE_NAME, selection, selectionArgs);
+                    getContext().getContentResolver().notifyChange(Contract.GOALS_URI, null);
+                    break;
+                case URI_SEGMENT_ID:
+                    tableName = SEGMENTS_TABLE_NAME;
+                    rowsDeleted = Segments.removeSegment(database, ContentUris.parseId(uri));
+                    getContext().getContentResolver().notifyChange(Contract.SEGMENTS_URI, null);
+                    getContext().getContentResolver().notifyChange(Contract.SEGMENT_LEADERBOARD_URI, null);
+                    break;
                 default:
             }
         }catch(Exception e){
+            // Each delete is made in a single transaction, so after a failure nothing was deleted
             e.printStackTrace();
+            rowsDeleted = 0;
         }
 
-        database.close();
+        long duration = System.nanoTime() - start;
+        if(metrics.record(ProviderMetrics.DELETE, uriCode, duration, rowsDeleted)){
+            metrics.recordSlowOperation(ProviderMetrics.DELETE, uriCode, duration, rowsDeleted,
+                    "DELETE FROM " + tableName + (selection != null ? " WHERE " + selection : ""));
+        }
 
         return rowsDeleted;
     }
 
+    /**
+     * Stores a session and adds it to the training load, goals and start clusters in a single
+     * transaction, so none of them is ever left out of step with the sessions
+     * @return  id of the session, or -1 if it was not stored
+     */
+    private long insertSession(SQLiteDatabase database, ContentValues contentValues){
+        database.beginTransaction();
+        try {
+            long id = database.insert(SESSION_TABLE_NAME, null, contentValues);
+            if(id != -1){
+                TrainingLoad.addSession(database, contentValues);
+                Goals.addSession(database, contentValues);
+                StartClusters.addSession(database, id, contentValues);
+            }
+            database.setTransactionSuccessful();
+            return id;
+        }finally{
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Deletes the sessions matching a selection along with everything kept about them, in a single
+     * transaction, so nothing is left out of step with the sessions if any part fails
+     * @param sessionId     id of the session the selection matches, or -1 if it may match any number
+     * @return              Number of sessions deleted
+     */
+    private int deleteSessions(SQLiteDatabase database, String selection, String[] selectionArgs,
+                               long sessionId){
+        database.beginTransaction();
+        try {
+            TrainingLoad.removeSessions(database, selection, selectionArgs);
+            Goals.removeSessions(database, selection, selectionArgs);
+            StartClusters.removeSessions(database, selection, selectionArgs);
+            int rowsDeleted = database.delete(SESSION_TABLE_NAME, selection, selectionArgs);
+
+            if(sessionId != -1){
+                database.delete(PERSONAL_RECORDS_TABLE_NAME, Contract.RECORD_SESSION_ID + " = ?",
+                        new String[] { String.valueOf(sessionId) });
+                PaceRollups.remove(database, sessionId);
+                RouteIndex.remove(database, sessionId);
+                Segments.remove(database, sessionId);
+                SpatialIndex.remove(database, sessionId);
+            }else{
+                database.delete(PERSONAL_RECORDS_TABLE_NAME, Contract.RECORD_SESSION_ID
+                        + " NOT IN (SELECT _id FROM " + SESSION_TABLE_NAME + ")", null);
+                PaceRollups.removeDeletedSessions(database);
+                RouteIndex.removeDeletedSessions(database);
+                Segments.removeDeletedSessions(database);
+                SpatialIndex.removeDeletedSessions(database);
+            }
+            database.setTransactionSuccessful();
+            return rowsDeleted;
+        }finally{
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * @return  ids of the sessions matching the selection, found before they are deleted so that
+     *          their thumbnails and heatmap routes can be removed afterwards
+     */
+    private static long[] getSessionIds(SQLiteDatabase database, String selection,
+                                        String[] selectionArgs){
+        Cursor cursor = database.query(SESSION_TABLE_NAME, new String[] { "_id" }, selection,
+                selectionArgs, null, null, null);
+        try {
+            long[] sessionIds = new long[cursor.getCount()];
+            for(int i = 0; cursor.moveToNext(); i++){
+                sessionIds[i] = cursor.getLong(0);
+            }
+            return sessionIds;
+        }finally{
+            cursor.close();
+        }
+    }
+
+    private void notifySessionsDeleted(Uri uri){
+        getContext().getContentResolver().notifyChange(uri, null);
+        getContext().getContentResolver().notifyChange(Contract.PERSONAL_RECORDS_URI, null);
+        getContext().getContentResolver().notifyChange(Contract.PACE_DISTRIBUTION_URI, null);
+        getContext().getContentResolver().notifyChange(Contract.TRAINING_LOAD_URI, null);
+        getContext().getContentResolver().notifyChange(Contract.GOALS_URI, null);
+        getContext().getContentResolver().notifyChange(Contract.SIMILAR_SESSIONS_URI, null);
+        getContext().getContentResolver().notifyChange(Contract.SEGMENT_LEADERBOARD_URI, null);
+        getContext().getContentResolver().notifyChange(Contract.SESSIONS_IN_VIEWPORT_URI, null);
+        getContext().getContentResolver().notifyChange(Contract.SESSIONS_NEARBY_URI, null);
+        getContext().getContentResolver().notifyChange(Contract.START_CLUSTERS_URI, null);
+    }
+
     @Override
     public int update(@NonNull Uri uri, @Nullable ContentValues contentValues, @Nullable String s, @Nullable String[] strings) {
         return 0;
@@ -269,6 +976,20 @@ public class WorkoutSessionContentProvider extends ContentProvider {
         return database;
     }
 
+    /**
+     * Checks that a session is still stored, so that results analysed from a session deleted while
+     * it was being analysed are not stored. Must be called within the transaction which stores them
+     */
+    static boolean sessionExists(SQLiteDatabase database, long sessionId){
+        Cursor cursor = database.rawQuery("SELECT 1 FROM " + SESSION_TABLE_NAME + " WHERE _id = ?",
+                new String[] { String.valueOf(sessionId) });
+        try {
+            return cursor.moveToNext();
+        }finally{
+            cursor.close();
+        }
+    }
+
     public static class Contract {
         public static final String AUTHORITY = "com.mdp.cw4.runningtracker.WorkoutSessionContentProvider";
 
@@ -290,6 +1011,159 @@ public class WorkoutSessionContentProvider extends ContentProvider {
         public static final String LONGITUDE = "longitude";
         public static final String LATITUDE = "latitude";
         public static final String WORKOUT_TYPE = "sessionMode";
+        // Time in seconds since the start of the session at each point of the route
+        public static final String TIMES = "times";
+
+        public static final String QUERY_PARAMETER_LIMIT = "limit";
+        public static final String QUERY_PARAMETER_OFFSET = "offset";
+
+        // Aggregate of the sessions in a year, month or day. The year is required, the month,
+        // date and a mask of workout types, see WorkoutTypeFilter, are optional
+        public static final String AGGREGATE = "aggregate";
+        public static final String QUERY_PARAMETER_YEAR = "year";
+        public static final String QUERY_PARAMETER_MONTH = "month";
+        public static final String QUERY_PARAMETER_DATE = "date";
+        public static final String QUERY_PARAMETER_WORKOUT_TYPE_MASK = "workoutTypeMask";
+        public static final String AGGREGATE_COUNT = "sessionCount";
+        public static final String AGGREGATE_TOTAL_DISTANCE = "totalDistance";
+        public static final String AGGREGATE_TOTAL_DURATION = "totalDuration";
+        public static final String AGGREGATE_MINIMUM_DISTANCE = "minimumDistance";
+        public static final String AGGREGATE_MAXIMUM_DISTANCE = "maximumDistance";
+        public static final String AGGREGATE_AVERAGE_DISTANCE = "averageDistance";
+        public static final String AGGREGATE_MINIMUM_DURATION = "minimumDuration";
+        public static final String AGGREGATE_MAXIMUM_DURATION = "maximumDuration";
+        public static final String AGGREGATE_AVERAGE_DURATION = "averageDuration";
+
+        // Best effort of each session for each BestEffort. The personal records URI returns the
+        // fastest for each workout type and effort, and appending an effort id returns every
+        // session's best effort for it, fastest first. Both take an optional workout type mask,
+        // the latter also a limit and offset. Durations and start times are in milliseconds
+        // and speeds in metres per second
+        public static final String PERSONAL_RECORDS = "personalRecords";
+        public static final String RECORD_SESSION_ID = "sessionId";
+        public static final String RECORD_EFFORT = "effort";
+        public static final String RECORD_START = "startTime";
+        public static final String RECORD_SPEED = "speed";
+
+        // Pace sketch of each session, see PaceSketch, which is stored through the pace sketches
+        // URI. The pace distribution URI takes the same query parameters as the aggregate URI and
+        // returns a single row with the total time in milliseconds and quantiles of the speed in
+        // metres per second over the period
+        public static final String PACE_SKETCHES = "paceSketches";
+        public static final String PACE_DISTRIBUTION = "paceDistribution";
+        public static final String PACE_SKETCH = "sketch";
+        public static final String PACE_DURATION = "totalDuration";
+        public static final String PACE_P10 = "p10Speed";
+        public static final String PACE_P25 = "p25Speed";
+        public static final String PACE_MEDIAN = "medianSpeed";
+        public static final String PACE_P75 = "p75Speed";
+        public static final String PACE_P90 = "p90Speed";
+
+        // Training load of each day, see TrainingLoadCalculator. Both query parameters are
+        // required and are days numbered as by TrainingLoadCalculator.getDay. A row is returned for
+        // every day of the range with its day number, date, load, fatigue, fitness and form
+        public static final String TRAINING_LOAD = "trainingLoad";
+        public static final String QUERY_PARAMETER_FIRST_DAY = "firstDay";
+        public static final String QUERY_PARAMETER_LAST_DAY = "lastDay";
+        public static final String TRAINING_DAY = "day";
+        public static final String TRAINING_LOAD_VALUE = "load";
+        public static final String TRAINING_FATIGUE = "fatigue";
+        public static final String TRAINING_FITNESS = "fitness";
+        public static final String TRAINING_FORM = "form";
+
+        // Goals, see GoalType, which are added by inserting a goal type and target into the goals
+        // URI and removed by deleting their URI. Querying the goals URI returns the progress of
+        // every goal as of today, or the day given by the optional today query parameter, numbered
+        // as by TrainingLoadCalculator.getDay. The period start is the first day of the week or of
+        // the current streak
+        public static final String GOALS = "goals";
+        public static final String QUERY_PARAMETER_TODAY = "today";
+        public static final String GOAL_TYPE = "goalType";
+        public static final String GOAL_TARGET = "target";
+        public static final String GOAL_PROGRESS = "progress";
+        public static final String GOAL_PERIOD_START = "periodStart";
+        public static final String GOAL_ACHIEVED = "achieved";
+        public static final String GOAL_LONGEST_STREAK = "longestStreak";
+        public static final String STREAK_FIRST_DAY = "firstDay";
+        public static final String STREAK_LAST_DAY = "lastDay";
+        public static final String STREAK_LENGTH = "length";
+
+        // Route signature of each session, see RouteFingerprint, which is stored through the route
+        // signatures URI. Appending a session id to the similar sessions URI returns the id and
+        // estimated similarity of every session along the same route, most similar first. It takes
+        // an optional minimum similarity between 0 and 1, 0.5 by default, and an optional limit
+        public static final String ROUTE_SIGNATURES = "routeSignatures";
+        public static final String SIMILAR_SESSIONS = "similarSessions";
+        public static final String QUERY_PARAMETER_MINIMUM_SIMILARITY = "minimumSimilarity";
+        public static final String ROUTE_SIGNATURE = "signature";
+        public static final String ROUTE_BAND_KEY = "bandKey";
+        public static final String ROUTE_SIMILARITY = "similarity";
+
+        // Segments, see Segment, which are added by inserting a name, path and corridor in metres
+        // into the segments URI and removed by deleting their URI. Paths are stored like routes,
+        // and the length of the path is added as the distance. Appending a segment id to the
+        // segment leaderboard URI returns the fastest effort of each session over the segment,
+        // fastest first, with the session's date and workout type, and takes an optional limit and
+        // offset. Efforts and route bounds are stored by SessionProcessingService, which finds the
+        // sessions that may cover a new segment through the segment candidates URI
+        public static final String SEGMENTS = "segments";
+        public static final String SEGMENT_EFFORTS = "segmentEfforts";
+        public static final String SEGMENT_LEADERBOARD = "segmentLeaderboard";
+        public static final String SEGMENT_CANDIDATES = "segmentCandidates";
+        public static final String ROUTE_BOUNDS = "routeBounds";
+        public static final String SEGMENT_ID = "segmentId";
+        public static final String SEGMENT_NAME = "name";
+        public static final String SEGMENT_CORRIDOR = "corridor";
+        public static final String BOUNDS_MINIMUM_LATITUDE = "minimumLatitude";
+        public static final String BOUNDS_MAXIMUM_LATITUDE = "maximumLatitude";
+        public static final String BOUNDS_MINIMUM_LONGITUDE = "minimumLongitude";
+        public static final String BOUNDS_MAXIMUM_LONGITUDE = "maximumLongitude";
+
+        // Outline of each session's route, see RouteGrid, which is stored through the route
+        // outlines URI like a route. The sessions in viewport URI returns the id of every session
+        // whose route passes through the box given by its four query parameters. The sessions
+        // nearby URI returns the id of every session whose route passes within the radius in
+        // metres of the point given by its latitude and longitude, along with the closest it
+        // comes in metres, nearest first, and takes an optional limit. Both are accurate to
+        // RouteGrid.OUTLINE_TOLERANCE_METRES
+        public static final String ROUTE_OUTLINES = "routeOutlines";
+        public static final String SESSIONS_IN_VIEWPORT = "sessionsInViewport";
+        public static final String SESSIONS_NEARBY = "sessionsNearby";
+        public static final String QUERY_PARAMETER_MINIMUM_LATITUDE = "minimumLatitude";
+        public static final String QUERY_PARAMETER_MAXIMUM_LATITUDE = "maximumLatitude";
+        public static final String QUERY_PARAMETER_MINIMUM_LONGITUDE = "minimumLongitude";
+        public static final String QUERY_PARAMETER_MAXIMUM_LONGITUDE = "maximumLongitude";
+        public static final String QUERY_PARAMETER_LATITUDE = "latitude";
+        public static final String QUERY_PARAMETER_LONGITUDE = "longitude";
+        public static final String QUERY_PARAMETER_RADIUS = "radius";
+        public static final String NEARBY_DISTANCE = "distanceFromPoint";
+        public static final String ROUTE_CELL = "cell";
+
+        // Places training usually starts from, see StartClustering. The start clusters URI returns
+        // every cluster of session starts with its centre, its number of sessions and their total
+        // distance in metres, most sessions first. The start of each session is kept with its
+        // cell, its number of neighbours and its cluster
+        public static final String START_CLUSTERS = "startClusters";
+        public static final String START_CELL = "startCell";
+        public static final String START_NEIGHBOURS = "neighbours";
+        public static final String CLUSTER_ID = "clusterId";
+
+        // Provider metrics, one row per operation and URI code, see ProviderMetrics
+        public static final String DIAGNOSTICS = "diagnostics";
+        public static final String DIAGNOSTICS_SLOW = "slow";
+        public static final String DIAGNOSTICS_OPERATION = "operation";
+        public static final String DIAGNOSTICS_URI_CODE = "uriCode";
+        public static final String DIAGNOSTICS_URI_PATH = "uriPath";
+        public static final String DIAGNOSTICS_COUNT = "count";
+        public static final String DIAGNOSTICS_ROWS = "rows";
+        public static final String DIAGNOSTICS_MEAN = "meanMilliseconds";
+        public static final String DIAGNOSTICS_P50 = "p50Milliseconds";
+        public static final String DIAGNOSTICS_P90 = "p90Milliseconds";
+        public static final String DIAGNOSTICS_P99 = "p99Milliseconds";
+        public static final String DIAGNOSTICS_MAX = "maxMilliseconds";
+        public static final String DIAGNOSTICS_TIMESTAMP = "timestamp";
+        public static final String DIAGNOSTICS_DURATION = "durationMilliseconds";
+        public static final String DIAGNOSTICS_SQL = "sql";
 
         public static final Uri SESSION_URI = Uri.parse("content://" + AUTHORITY + "/" + WORKOUT_SESSION_DATABASE_NAME);
         public static final Uri MONTHLY_SUMMARY_DISTANCE_URI = Uri.parse("content://" + AUTHORITY + "/" + MONTHLY_SUMMARY_DISTANCE);
@@ -297,5 +1171,24 @@ public class WorkoutSessionContentProvider extends ContentProvider {
         public static final Uri START_YEAR_URI = Uri.parse("content://" + AUTHORITY + "/" + MINIMUM_YEAR);
         public static final Uri MAX_TOTAL_DISTANCE_FOR_YEAR_URI = Uri.parse("content://" + AUTHORITY + "/" + MAX_TOTAL_DISTANCE_FOR_YEAR);
         public static final Uri MAX_TOTAL_DURATION_FOR_YEAR_URI = Uri.parse("content://" + AUTHORITY + "/" + MAX_TOTAL_DURATION_FOR_YEAR);
+        public static final Uri AGGREGATE_URI = Uri.parse("content://" + AUTHORITY + "/" + AGGREGATE);
+        public static final Uri PERSONAL_RECORDS_URI = Uri.parse("content://" + AUTHORITY + "/" + PERSONAL_RECORDS);
+        public static final Uri PACE_SKETCHES_URI = Uri.parse("content://" + AUTHORITY + "/" + PACE_SKETCHES);
+        public static final Uri PACE_DISTRIBUTION_URI = Uri.parse("content://" + AUTHORITY + "/" + PACE_DISTRIBUTION);
+        public static final Uri TRAINING_LOAD_URI = Uri.parse("content://" + AUTHORITY + "/" + TRAINING_LOAD);
+        public static final Uri GOALS_URI = Uri.parse("content://" + AUTHORITY + "/" + GOALS);
+        public static final Uri ROUTE_SIGNATURES_URI = Uri.parse("content://" + AUTHORITY + "/" + ROUTE_SIGNATURES);
+        public static final Uri SIMILAR_SESSIONS_URI = Uri.parse("content://" + AUTHORITY + "/" + SIMILAR_SESSIONS);
+        public static final Uri SEGMENTS_URI = Uri.parse("content://" + AUTHORITY + "/" + SEGMENTS);
+        public static final Uri SEGMENT_EFFORTS_URI = Uri.parse("content://" + AUTHORITY + "/" + SEGMENT_EFFORTS);
+        public static final Uri SEGMENT_LEADERBOARD_URI = Uri.parse("content://" + AUTHORITY + "/" + SEGMENT_LEADERBOARD);
+        public static final Uri SEGMENT_CANDIDATES_URI = Uri.parse("content://" + AUTHORITY + "/" + SEGMENT_CANDIDATES);
+        public static final Uri ROUTE_BOUNDS_URI = Uri.parse("content://" + AUTHORITY + "/" + ROUTE_BOUNDS);
+        public static final Uri ROUTE_OUTLINES_URI = Uri.parse("content://" + AUTHORITY + "/" + ROUTE_OUTLINES);
+        public static final Uri SESSIONS_IN_VIEWPORT_URI = Uri.parse("content://" + AUTHORITY + "/" + SESSIONS_IN_VIEWPORT);
+        public static final Uri SESSIONS_NEARBY_URI = Uri.parse("content://" + AUTHORITY + "/" + SESSIONS_NEARBY);
+        public static final Uri START_CLUSTERS_URI = Uri.parse("content://" + AUTHORITY + "/" + START_CLUSTERS);
+        public static final Uri DIAGNOSTICS_URI = Uri.parse("content://" + AUTHORITY + "/" + DIAGNOSTICS);
+        public static final Uri SLOW_OPERATIONS_URI = Uri.parse("content://" + AUTHORITY + "/" + DIAGNOSTICS + "/" + DIAGNOSTICS_SLOW);
     }
 }
@@ -0,0 +1,174 @@
+package com.mdp.cw4.runningtracker;
+
+import android.arch.paging.DataSource;
+import android.arch.paging.PositionalDataSource;
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <h1>Workout Session Data Source</h1>
+ * Loads pages of workout session summaries from the WorkoutSessionContentProvider for the paged
+ * session history. Pages are loaded by the paging library on a background thread; when the
+ * sessions change, or the filters applied to them change, the data source is invalidated and a
+ * new one is created by the Factory
+ */
+public class WorkoutSessionDataSource extends PositionalDataSource<WorkoutSessionSummary> {
+
+    private final ContentResolver contentResolver;
+    private final Query query;
+
+    private WorkoutSessionDataSource(ContentResolver contentResolver, Query query){
+        this.contentResolver = contentResolver;
+        this.query = query;
+    }
+
+    @Override
+    public void loadInitial(@NonNull LoadInitialParams params,
+                            @NonNull LoadInitialCallback<WorkoutSessionSummary> callback) {
+        int position = params.requestedStartPosition;
+        List<WorkoutSessionSummary> sessions = loadSessions(position, params.requestedLoadSize);
+
+        // If the list has shrunk since the position was requested, i.e. sessions have been deleted,
+        // start again from the top
+        if(sessions.isEmpty() && position > 0){
+            position = 0;
+            sessions = loadSessions(position, params.requestedLoadSize);
+        }
+
+        callback.onResult(sessions, position);
+    }
+
+    @Override
+    public void loadRange(@NonNull LoadRangeParams params,
+                          @NonNull LoadRangeCallback<WorkoutSessionSummary> callback) {
+        callback.onResult(loadSessions(params.startPosition, params.loadSize));
+    }
+
+    /**
+     * Queries the content provider for a single page of sessions
+     * @param offset    Position of the first session to load
+     * @param limit     Maximum number of sessions to load
+     */
+    private List<WorkoutSessionSummary> loadSessions(int offset, int limit){
+        if(query == null || isInvalid()){
+            return Collections.emptyList();
+        }
+
+        Uri uri = WorkoutSessionContentProvider.Contract.SESSION_URI.buildUpon()
+                .appendQueryParameter(WorkoutSessionContentProvider.Contract.QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                .appendQueryParameter(WorkoutSessionContentProvider.Contract.QUERY_PARAMETER_OFFSET, String.valueOf(offset))
+                .build();
+
+        Cursor cursor = contentResolver.query(uri, WorkoutSessionSummary.COLUMNS, query.selection,
+                query.selectionArgs, query.sortOrder);
+
+        if(cursor == null){
+            return Collections.emptyList();
+        }
+
+        List<WorkoutSessionSummary> sessions = new ArrayList<>(cursor.getCount());
+        while(cursor.moveToNext()){
+            sessions.add(WorkoutSessionSummary.fromCursor(cursor));
+        }
+        cursor.close();
+
+        return sessions;
+    }
+
+    /**
+     * The selection and sort order used to query the sessions
+     */
+    public static class Query {
+        private final String selection;
+        private final String[] selectionArgs;
+        private final String sortOrder;
+
+        public Query(String selection, String[] selectionArgs, String sortOrder){
+            this.selection = selection;
+            this.selectionArgs = selectionArgs;
+            this.sortOrder = sortOrder;
+        }
+    }
+
+    /**
+     * Creates a new data source each time the previous one is invalidated. Setting a new query
+     * invalidates the current data source so that the list is reloaded with the new query
+     */
+    public static class Factory extends DataSource.Factory<Integer, WorkoutSessionSummary> {
+        private final ContentResolver contentResolver;
+        private volatile Query query;
+        private volatile WorkoutSessionDataSource currentDataSource;
+
+        public Factory(ContentResolver contentResolver){
+            this.contentResolver = contentResolver;
+        }
+
+        @Override
+        public DataSource<Integer, WorkoutSessionSummary> create() {
+            currentDataSource = new WorkoutSessionDataSource(contentResolver, query);
+            return currentDataSource;
+        }
+
+        /**
+         * @param query     The query to use, or null if no sessions should be shown
+         */
+        public void setQuery(Query query){
+            this.query = query;
+            invalidate();
+        }
+
+        /**
+         * Checks whether a session is matched by the current query, i.e. whether it should appear
+         * in the list. This queries the content provider so must not be called on the UI thread
+         * @param sessionId     id of the session to check
+         * @return              True if the session exists and matches the query, false otherwise
+         */
+        public boolean isSessionInQuery(long sessionId){
+            Query query = this.query;
+            if(query == null){
+                return false;
+            }
+
+            String selection = WorkoutSessionContentProvider.Contract._ID + " = ?";
+            String[] selectionArgs;
+            if(query.selection == null){
+                selectionArgs = new String[] { String.valueOf(sessionId) };
+            }else{
+                selection = "(" + query.selection + ") AND " + selection;
+                int numberOfArgs = query.selectionArgs == null ? 0 : query.selectionArgs.length;
+                selectionArgs = new String[numberOfArgs + 1];
+                if(numberOfArgs > 0){
+                    System.arraycopy(query.selectionArgs, 0, selectionArgs, 0, numberOfArgs);
+                }
+                selectionArgs[numberOfArgs] = String.valueOf(sessionId);
+            }
+
+            Cursor cursor = contentResolver.query(WorkoutSessionContentProvider.Contract.SESSION_URI,
+                    new String[] { WorkoutSessionContentProvider.Contract._ID }, selection, selectionArgs, null);
+
+            if(cursor == null){
+                return false;
+            }
+
+            boolean sessionInQuery = cursor.moveToNext();
+            cursor.close();
+            return sessionInQuery;
+        }
+
+        /**
+         * Causes the sessions to be reloaded with the current query
+         */
+        public void invalidate(){
+            WorkoutSessionDataSource dataSource = currentDataSource;
+            if(dataSource != null){
+                dataSource.invalidate();
+            }
+        }
+    }
+}
@@ -22,10 +22,54 @@ import java.util.concurrent.ThreadLocalRandom;
  * <li>Workout type</li>
  * <li>Latitude</li>
  * <li>Longitude</li>
+ * <li>Time of each point of the route</li>
  * </ul>
+ * Alongside the sessions it holds the tables kept by:
+ * <ul>
+ * <li>PersonalRecords, the best efforts of each session</li>
+ * <li>PaceRollups, the pace sketches of each session, workout type and month</li>
+ * <li>TrainingLoad, the training load of each day</li>
+ * <li>Goals, the goals and the days and streaks used to track them</li>
+ * <li>RouteIndex, the route signatures and their band keys</li>
+ * <li>Segments, the segments, their efforts and the bounds of each route</li>
+ * <li>SpatialIndex, the route outlines and the grid cells they pass through</li>
+ * <li>StartClusters, the start of each route and the clusters of them</li>
+ * </ul>
+ * Sessions are indexed by workout type followed by the date, see WorkoutTypeFilter
  */
 public class WorkoutSessionDatabase extends SQLiteOpenHelper {
 
+    static final String WORKOUT_TYPE_INDEX_NAME = "sessionWorkoutTypeIndex";
+    static final String PERSONAL_RECORDS_INDEX_NAME = "personalRecordsEffortIndex";
+    static final String PERSONAL_RECORDS_SESSION_INDEX_NAME = "personalRecordsSessionIndex";
+    static final String PACE_SKETCHES_DATE_INDEX_NAME = "paceSketchesDateIndex";
+    static final String STREAKS_LAST_DAY_INDEX_NAME = "streaksLastDayIndex";
+    static final String STREAKS_LENGTH_INDEX_NAME = "streaksLengthIndex";
+    static final String ROUTE_BANDS_KEY_INDEX_NAME = "routeBandsKeyIndex";
+    static final String ROUTE_BANDS_SESSION_INDEX_NAME = "routeBandsSessionIndex";
+    static final String SEGMENT_EFFORTS_DURATION_INDEX_NAME = "segmentEffortsDurationIndex";
+    static final String SEGMENT_EFFORTS_SESSION_INDEX_NAME = "segmentEffortsSessionIndex";
+    static final String ROUTE_CELLS_CELL_INDEX_NAME = "routeCellsCellIndex";
+    static final String ROUTE_CELLS_SESSION_INDEX_NAME = "routeCellsSessionIndex";
+    static final String SESSION_STARTS_CELL_INDEX_NAME = "sessionStartsCellIndex";
+    static final String SESSION_STARTS_CLUSTER_INDEX_NAME = "sessionStartsClusterIndex";
+
+    // Number of prepared statements kept by each connection. This is enough for every shape of
+    // summary query made by the statistics screen as well as those of the history screen, which
+    // would otherwise push each other out of the default cache of 25
+    static final int STATEMENT_CACHE_SIZE = 64;
+
+    // Version from which existing sessions are kept when upgrading
+    private static final int SESSION_TABLE_VERSION = 5;
+    // Version in which the time of each point of the route was added
+    private static final int ROUTE_TIMES_VERSION = 7;
+    // Version in which the training load table was added
+    private static final int TRAINING_LOAD_VERSION = 9;
+    // Version in which goals were added
+    private static final int GOALS_VERSION = 10;
+    // Version in which start clusters were added
+    private static final int START_CLUSTERS_VERSION = 14;
+
     public WorkoutSessionDatabase(Context context, String name, SQLiteDatabase.CursorFactory factory, int version) {
         super(context, name, factory, version);
     }
@@ -43,12 +87,259 @@ public class WorkoutSessionDatabase extends SQLiteOpenHelper {
                 WorkoutSessionContentProvider.Contract.DISTANCE + " INTEGER," +
                 WorkoutSessionContentProvider.Contract.WORKOUT_TYPE + " INTEGER," +
                 WorkoutSessionContentProvider.Contract.LATITUDE + " TEXT, " +
-                WorkoutSessionContentProvider.Contract.LONGITUDE + " TEXT);");
+                WorkoutSessionContentProvider.Contract.LONGITUDE + " TEXT, " +
+                WorkoutSessionContentProvider.Contract.TIMES + " TEXT);");
+        createPersonalRecordsTable(database);
+        createPaceTables(database);
+        createTrainingLoadTable(database);
+        createGoalsTables(database);
+        createRouteIndexTables(database);
+        createSegmentTables(database);
+        createSpatialIndexTables(database);
+        createStartClusterTables(database);
+        createIndices(database);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase database) {
+        super.onOpen(database);
+        database.setMaxSqlCacheSize(STATEMENT_CACHE_SIZE);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase database, int oldVersion, int newVersion) {
-        database.execSQL("DROP TABLE IF EXISTS " + WorkoutSessionContentProvider.SESSION_TABLE_NAME);
-        onCreate(database);
+        if(oldVersion < SESSION_TABLE_VERSION){
+            database.execSQL("DROP TABLE IF EXISTS " + WorkoutSessionContentProvider.SESSION_TABLE_NAME);
+            database.execSQL("DROP TABLE IF EXISTS " + WorkoutSessionContentProvider.PERSONAL_RECORDS_TABLE_NAME);
+            database.execSQL("DROP TABLE IF EXISTS " + WorkoutSessionContentProvider.PACE_SKETCHES_TABLE_NAME);
+            database.execSQL("DROP TABLE IF EXISTS " + WorkoutSessionContentProvider.PACE_ROLLUPS_TABLE_NAME);
+            database.execSQL("DROP TABLE IF EXISTS " + WorkoutSessionContentProvider.TRAINING_LOAD_TABLE_NAME);
+            database.execSQL("DROP TABLE IF EXISTS " + WorkoutSessionContentProvider.GOALS_TABLE_NAME);
+            database.execSQL("DROP TABLE IF EXISTS " + WorkoutSessionContentProvider.ACTIVITY_DAYS_TABLE_NAME);
+            database.execSQL("DROP TABLE IF EXISTS " + WorkoutSessionContentProvider.STREAKS_TABLE_NAME);
+            database.execSQL("DROP TABLE IF EXISTS " + WorkoutSessionContentProvider.ROUTE_SIGNATURES_TABLE_NAME);
+            database.execSQL("DROP TABLE IF EXISTS " + WorkoutSessionContentProvider.ROUTE_BANDS_TABLE_NAME);
+            database.execSQL("DROP TABLE IF EXISTS " + WorkoutSessionContentProvider.SEGMENTS_TABLE_NAME);
+            database.execSQL("DROP TABLE IF EXISTS " + WorkoutSessionContentProvider.SEGMENT_EFFORTS_TABLE_NAME);
+            database.execSQL("DROP TABLE IF EXISTS " + WorkoutSessionContentProvider.ROUTE_BOUNDS_TABLE_NAME);
+            database.execSQL("DROP TABLE IF EXISTS " + WorkoutSessionContentProvider.ROUTE_OUTLINES_TABLE_NAME);
+            database.execSQL("DROP TABLE IF EXISTS " + WorkoutSessionContentProvider.ROUTE_CELLS_TABLE_NAME);
+            database.execSQL("DROP TABLE IF EXISTS " + WorkoutSessionContentProvider.SESSION_STARTS_TABLE_NAME);
+            database.execSQL("DROP TABLE IF EXISTS " + WorkoutSessionContentProvider.START_CLUSTERS_TABLE_NAME);
+            onCreate(database);
+            return;
+        }
+
+        // Sessions recorded before this have no route times, which are then spread evenly over
+        // the session's duration
+        if(oldVersion < ROUTE_TIMES_VERSION){
+            database.execSQL("ALTER TABLE " + WorkoutSessionContentProvider.SESSION_TABLE_NAME
+                    + " ADD COLUMN " + WorkoutSessionContentProvider.Contract.TIMES + " TEXT;");
+        }
+
+        createPersonalRecordsTable(database);
+        createPaceTables(database);
+        createTrainingLoadTable(database);
+        createGoalsTables(database);
+        createRouteIndexTables(database);
+        createSegmentTables(database);
+        createSpatialIndexTables(database);
+        createStartClusterTables(database);
+        createIndices(database);
+
+        // Unlike the other analyses, the training load and goals only need the stored sessions'
+        // dates, durations and distances, and the start clusters only the first point of each
+        // route, so they are built straight away
+        if(oldVersion < TRAINING_LOAD_VERSION){
+            TrainingLoad.rebuild(database);
+        }
+        if(oldVersion < GOALS_VERSION){
+            Goals.rebuild(database);
+        }
+        if(oldVersion < START_CLUSTERS_VERSION){
+            StartClusters.rebuild(database);
+        }
+    }
+
+    private void createPersonalRecordsTable(SQLiteDatabase database){
+        database.execSQL("CREATE TABLE IF NOT EXISTS " + WorkoutSessionContentProvider.PERSONAL_RECORDS_TABLE_NAME + " "
+                + "(_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.WORKOUT_TYPE + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.RECORD_EFFORT + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.DISTANCE + " REAL, " +
+                WorkoutSessionContentProvider.Contract.DURATION + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.RECORD_START + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.RECORD_SPEED + " REAL, " +
+                WorkoutSessionContentProvider.Contract.DATE + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.MONTH + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.YEAR + " INTEGER);");
+    }
+
+    private void createPaceTables(SQLiteDatabase database){
+        database.execSQL("CREATE TABLE IF NOT EXISTS " + WorkoutSessionContentProvider.PACE_SKETCHES_TABLE_NAME + " (" +
+                WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID + " INTEGER PRIMARY KEY, " +
+                WorkoutSessionContentProvider.Contract.WORKOUT_TYPE + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.DATE + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.MONTH + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.YEAR + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.PACE_SKETCH + " TEXT);");
+
+        database.execSQL("CREATE TABLE IF NOT EXISTS " + WorkoutSessionContentProvider.PACE_ROLLUPS_TABLE_NAME + " (" +
+                WorkoutSessionContentProvider.Contract.WORKOUT_TYPE + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.YEAR + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.MONTH + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.PACE_SKETCH + " TEXT, " +
+                "PRIMARY KEY (" + WorkoutSessionContentProvider.Contract.WORKOUT_TYPE + ", " +
+                WorkoutSessionContentProvider.Contract.YEAR + ", " +
+                WorkoutSessionContentProvider.Contract.MONTH + "));");
+    }
+
+    private void createTrainingLoadTable(SQLiteDatabase database){
+        database.execSQL("CREATE TABLE IF NOT EXISTS " + WorkoutSessionContentProvider.TRAINING_LOAD_TABLE_NAME + " (" +
+                WorkoutSessionContentProvider.Contract.TRAINING_DAY + " INTEGER PRIMARY KEY, " +
+                WorkoutSessionContentProvider.Contract.TRAINING_LOAD_VALUE + " REAL, " +
+                WorkoutSessionContentProvider.Contract.TRAINING_FATIGUE + " REAL, " +
+                WorkoutSessionContentProvider.Contract.TRAINING_FITNESS + " REAL);");
+    }
+
+    private void createGoalsTables(SQLiteDatabase database){
+        database.execSQL("CREATE TABLE IF NOT EXISTS " + WorkoutSessionContentProvider.GOALS_TABLE_NAME + " (" +
+                "_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                WorkoutSessionContentProvider.Contract.GOAL_TYPE + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.GOAL_TARGET + " INTEGER);");
+
+        database.execSQL("CREATE TABLE IF NOT EXISTS " + WorkoutSessionContentProvider.ACTIVITY_DAYS_TABLE_NAME + " (" +
+                WorkoutSessionContentProvider.Contract.TRAINING_DAY + " INTEGER PRIMARY KEY, " +
+                WorkoutSessionContentProvider.Contract.AGGREGATE_COUNT + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.DISTANCE + " INTEGER);");
+
+        database.execSQL("CREATE TABLE IF NOT EXISTS " + WorkoutSessionContentProvider.STREAKS_TABLE_NAME + " (" +
+                WorkoutSessionContentProvider.Contract.STREAK_FIRST_DAY + " INTEGER PRIMARY KEY, " +
+                WorkoutSessionContentProvider.Contract.STREAK_LAST_DAY + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.STREAK_LENGTH + " INTEGER);");
+    }
+
+    private void createRouteIndexTables(SQLiteDatabase database){
+        database.execSQL("CREATE TABLE IF NOT EXISTS " + WorkoutSessionContentProvider.ROUTE_SIGNATURES_TABLE_NAME + " (" +
+                WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID + " INTEGER PRIMARY KEY, " +
+                WorkoutSessionContentProvider.Contract.ROUTE_SIGNATURE + " TEXT);");
+
+        database.execSQL("CREATE TABLE IF NOT EXISTS " + WorkoutSessionContentProvider.ROUTE_BANDS_TABLE_NAME + " (" +
+                WorkoutSessionContentProvider.Contract.ROUTE_BAND_KEY + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID + " INTEGER);");
+    }
+
+    private void createSegmentTables(SQLiteDatabase database){
+        database.execSQL("CREATE TABLE IF NOT EXISTS " + WorkoutSessionContentProvider.SEGMENTS_TABLE_NAME + " (" +
+                "_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                WorkoutSessionContentProvider.Contract.SEGMENT_NAME + " TEXT, " +
+                WorkoutSessionContentProvider.Contract.LATITUDE + " TEXT, " +
+                WorkoutSessionContentProvider.Contract.LONGITUDE + " TEXT, " +
+                WorkoutSessionContentProvider.Contract.SEGMENT_CORRIDOR + " REAL, " +
+                WorkoutSessionContentProvider.Contract.DISTANCE + " REAL);");
+
+        database.execSQL("CREATE TABLE IF NOT EXISTS " + WorkoutSessionContentProvider.SEGMENT_EFFORTS_TABLE_NAME + " (" +
+                WorkoutSessionContentProvider.Contract.SEGMENT_ID + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.RECORD_START + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.DURATION + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.RECORD_SPEED + " REAL, " +
+                "PRIMARY KEY (" + WorkoutSessionContentProvider.Contract.SEGMENT_ID + ", " +
+                WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID + "));");
+
+        database.execSQL("CREATE TABLE IF NOT EXISTS " + WorkoutSessionContentProvider.ROUTE_BOUNDS_TABLE_NAME + " (" +
+                WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID + " INTEGER PRIMARY KEY, " +
+                WorkoutSessionContentProvider.Contract.BOUNDS_MINIMUM_LATITUDE + " REAL, " +
+                WorkoutSessionContentProvider.Contract.BOUNDS_MAXIMUM_LATITUDE + " REAL, " +
+                WorkoutSessionContentProvider.Contract.BOUNDS_MINIMUM_LONGITUDE + " REAL, " +
+                WorkoutSessionContentProvider.Contract.BOUNDS_MAXIMUM_LONGITUDE + " REAL);");
+    }
+
+    private void createSpatialIndexTables(SQLiteDatabase database){
+        database.execSQL("CREATE TABLE IF NOT EXISTS " + WorkoutSessionContentProvider.ROUTE_OUTLINES_TABLE_NAME + " (" +
+                WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID + " INTEGER PRIMARY KEY, " +
+                WorkoutSessionContentProvider.Contract.LATITUDE + " TEXT, " +
+                WorkoutSessionContentProvider.Contract.LONGITUDE + " TEXT);");
+
+        database.execSQL("CREATE TABLE IF NOT EXISTS " + WorkoutSessionContentProvider.ROUTE_CELLS_TABLE_NAME + " (" +
+                WorkoutSessionContentProvider.Contract.ROUTE_CELL + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID + " INTEGER);");
+    }
+
+    private void createStartClusterTables(SQLiteDatabase database){
+        database.execSQL("CREATE TABLE IF NOT EXISTS " + WorkoutSessionContentProvider.SESSION_STARTS_TABLE_NAME + " (" +
+                WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID + " INTEGER PRIMARY KEY, " +
+                WorkoutSessionContentProvider.Contract.LATITUDE + " REAL, " +
+                WorkoutSessionContentProvider.Contract.LONGITUDE + " REAL, " +
+                WorkoutSessionContentProvider.Contract.DISTANCE + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.START_CELL + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.START_NEIGHBOURS + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.CLUSTER_ID + " INTEGER);");
+
+        database.execSQL("CREATE TABLE IF NOT EXISTS " + WorkoutSessionContentProvider.START_CLUSTERS_TABLE_NAME + " "
+                + "(_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                WorkoutSessionContentProvider.Contract.LATITUDE + " REAL, " +
+                WorkoutSessionContentProvider.Contract.LONGITUDE + " REAL, " +
+                WorkoutSessionContentProvider.Contract.AGGREGATE_COUNT + " INTEGER, " +
+                WorkoutSessionContentProvider.Contract.DISTANCE + " INTEGER);");
+    }
+
+    private void createIndices(SQLiteDatabase database){
+        database.execSQL("CREATE INDEX IF NOT EXISTS " + WORKOUT_TYPE_INDEX_NAME + " ON "
+                + WorkoutSessionContentProvider.SESSION_TABLE_NAME + " ("
+                + WorkoutSessionContentProvider.Contract.WORKOUT_TYPE + ", "
+                + WorkoutSessionContentProvider.Contract.YEAR + ", "
+                + WorkoutSessionContentProvider.Contract.MONTH + ", "
+                + WorkoutSessionContentProvider.Contract.DATE + ");");
+
+        // The best effort of each workout type and effort is the last entry of its part of the index
+        database.execSQL("CREATE INDEX IF NOT EXISTS " + PERSONAL_RECORDS_INDEX_NAME + " ON "
+                + WorkoutSessionContentProvider.PERSONAL_RECORDS_TABLE_NAME + " ("
+                + WorkoutSessionContentProvider.Contract.WORKOUT_TYPE + ", "
+                + WorkoutSessionContentProvider.Contract.RECORD_EFFORT + ", "
+                + WorkoutSessionContentProvider.Contract.RECORD_SPEED + ");");
+        database.execSQL("CREATE INDEX IF NOT EXISTS " + PERSONAL_RECORDS_SESSION_INDEX_NAME + " ON "
+                + WorkoutSessionContentProvider.PERSONAL_RECORDS_TABLE_NAME + " ("
+                + WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID + ");");
+        database.execSQL("CREATE INDEX IF NOT EXISTS " + PACE_SKETCHES_DATE_INDEX_NAME + " ON "
+                + WorkoutSessionContentProvider.PACE_SKETCHES_TABLE_NAME + " ("
+                + WorkoutSessionContentProvider.Contract.YEAR + ", "
+                + WorkoutSessionContentProvider.Contract.MONTH + ", "
+                + WorkoutSessionContentProvider.Contract.DATE + ");");
+        database.execSQL("CREATE INDEX IF NOT EXISTS " + STREAKS_LAST_DAY_INDEX_NAME + " ON "
+                + WorkoutSessionContentProvider.STREAKS_TABLE_NAME + " ("
+                + WorkoutSessionContentProvider.Contract.STREAK_LAST_DAY + ");");
+        database.execSQL("CREATE INDEX IF NOT EXISTS " + STREAKS_LENGTH_INDEX_NAME + " ON "
+                + WorkoutSessionContentProvider.STREAKS_TABLE_NAME + " ("
+                + WorkoutSessionContentProvider.Contract.STREAK_LENGTH + ");");
+        database.execSQL("CREATE INDEX IF NOT EXISTS " + ROUTE_BANDS_KEY_INDEX_NAME + " ON "
+                + WorkoutSessionContentProvider.ROUTE_BANDS_TABLE_NAME + " ("
+                + WorkoutSessionContentProvider.Contract.ROUTE_BAND_KEY + ", "
+                + WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID + ");");
+        database.execSQL("CREATE INDEX IF NOT EXISTS " + ROUTE_BANDS_SESSION_INDEX_NAME + " ON "
+                + WorkoutSessionContentProvider.ROUTE_BANDS_TABLE_NAME + " ("
+                + WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID + ");");
+        database.execSQL("CREATE INDEX IF NOT EXISTS " + SEGMENT_EFFORTS_DURATION_INDEX_NAME + " ON "
+                + WorkoutSessionContentProvider.SEGMENT_EFFORTS_TABLE_NAME + " ("
+                + WorkoutSessionContentProvider.Contract.SEGMENT_ID + ", "
+                + WorkoutSessionContentProvider.Contract.DURATION + ");");
+        database.execSQL("CREATE INDEX IF NOT EXISTS " + SEGMENT_EFFORTS_SESSION_INDEX_NAME + " ON "
+                + WorkoutSessionContentProvider.SEGMENT_EFFORTS_TABLE_NAME + " ("
+                + WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID + ");");
+        // The sessions under a cell are read from the index alone
+        database.execSQL("CREATE INDEX IF NOT EXISTS " + ROUTE_CELLS_CELL_INDEX_NAME + " ON "
+                + WorkoutSessionContentProvider.ROUTE_CELLS_TABLE_NAME + " ("
+                + WorkoutSessionContentProvider.Contract.ROUTE_CELL + ", "
+                + WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID + ");");
+        database.execSQL("CREATE INDEX IF NOT EXISTS " + ROUTE_CELLS_SESSION_INDEX_NAME + " ON "
+                + WorkoutSessionContentProvider.ROUTE_CELLS_TABLE_NAME + " ("
+                + WorkoutSessionContentProvider.Contract.RECORD_SESSION_ID + ");");
+        database.execSQL("CREATE INDEX IF NOT EXISTS " + SESSION_STARTS_CELL_INDEX_NAME + " ON "
+                + WorkoutSessionContentProvider.SESSION_STARTS_TABLE_NAME + " ("
+                + WorkoutSessionContentProvider.Contract.START_CELL + ");");
+        database.execSQL("CREATE INDEX IF NOT EXISTS " + SESSION_STARTS_CLUSTER_INDEX_NAME + " ON "
+                + WorkoutSessionContentProvider.SESSION_STARTS_TABLE_NAME + " ("
+                + WorkoutSessionContentProvider.Contract.CLUSTER_ID + ");");
     }
 }
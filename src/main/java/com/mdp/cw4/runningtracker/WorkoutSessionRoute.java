@@ -0,0 +1,96 @@
+package com.mdp.cw4.runningtracker;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.net.Uri;
+
+/**
+ * <h1>Workout Session Route</h1>
+ * The route recorded during a stored workout session. Routes can be very long, so they should
+ * only be loaded away from the UI thread
+ */
+public class WorkoutSessionRoute {
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] times;
+
+    public WorkoutSessionRoute(double[] latitudes, double[] longitudes){
+        this(latitudes, longitudes, null);
+    }
+
+    /**
+     * @param times     Time in seconds since the start of the session at each point, or null if
+     *                  they were not recorded
+     */
+    public WorkoutSessionRoute(double[] latitudes, double[] longitudes, double[] times){
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.times = times;
+    }
+
+    /**
+     * Reads and decodes the route of a stored session
+     * @param contentResolver   Content resolver used to query the WorkoutSessionContentProvider
+     * @param sessionId         id of the session
+     * @return                  The route, or null if the session does not exist or has no
+     *                          usable route
+     */
+    public static WorkoutSessionRoute load(ContentResolver contentResolver, long sessionId){
+        String[] columns = new String[]{
+                WorkoutSessionContentProvider.Contract.LATITUDE,
+                WorkoutSessionContentProvider.Contract.LONGITUDE,
+                WorkoutSessionContentProvider.Contract.TIMES
+        };
+
+        Uri uri = ContentUris.withAppendedId(WorkoutSessionContentProvider.Contract.SESSION_URI, sessionId);
+        Cursor cursor = contentResolver.query(uri, columns, null, null, null);
+
+        if(cursor == null){
+            return null;
+        }
+
+        double[] latitudes = null;
+        double[] longitudes = null;
+        double[] times = null;
+        if(cursor.moveToNext()){
+            latitudes = CoordinateScanner.decode(cursor.getString(0));
+            longitudes = CoordinateScanner.decode(cursor.getString(1));
+            times = CoordinateScanner.decode(cursor.getString(2));
+        }
+        cursor.close();
+
+        // There is nothing sensible to use if there are a different number of latitudes to longitudes
+        if(latitudes == null || longitudes == null || latitudes.length != longitudes.length){
+            return null;
+        }
+
+        // Times which do not match the points cannot be relied upon either
+        if(times != null && times.length != latitudes.length){
+            times = null;
+        }
+
+        return new WorkoutSessionRoute(latitudes, longitudes, times);
+    }
+
+    public double[] getLatitudes(){
+        return latitudes;
+    }
+
+    public double[] getLongitudes(){
+        return longitudes;
+    }
+
+    /**
+     * @return  Time in seconds since the start of the session at each point, or null if the
+     *          session was recorded before these were stored
+     */
+    public double[] getTimes(){
+        return times;
+    }
+
+    public int getNumberOfPoints(){
+        return latitudes.length;
+    }
+}
@@ -9,15 +9,21 @@ import android.content.Intent;
 import android.location.Location;
 import android.location.LocationListener;
 import android.location.LocationManager;
+import android.os.AsyncTask;
 import android.os.Binder;
 import android.os.Bundle;
 import android.os.IBinder;
 import android.os.SystemClock;
 import android.support.annotation.Nullable;
 import android.support.v4.app.NotificationCompat;
+import android.util.Log;
 
 import com.mdp.cw4.runningtracker.activities.RunningTracker;
 
+import org.json.JSONException;
+
+import java.io.File;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -28,7 +34,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
 /**
  * Service responsible for monitoring an ongoing activity session. It provides updates for the
  * duration, user's current position, distance travelled and pace, displays a notification showing
- * the current duration of the activity session, and stores completed sessions
+ * the current duration of the activity session, and stores completed sessions. If a past session
+ * has been chosen to race, how far ahead or behind it the session is is provided on each location
+ * update, see GhostRacer
  */
 public class WorkoutSessionService extends Service {
 
@@ -41,10 +49,18 @@ public class WorkoutSessionService extends Service {
     private double pace;
     private boolean sessionRunning;
     private long sessionCurrentDurationMilliseconds;
+    private volatile GhostRacer ghostRacer;
+    // Increased whenever the ghost is chosen or cleared, so a ghost which finishes loading after
+    // another has been chosen is not raced
+    private final Object ghostLock = new Object();
+    private int ghostGeneration;
+    private double ghostMetresAhead;
+    private double ghostSecondsAhead = Double.NaN;
 
     private List<IWorkoutSessionListener> sessionListeners;
     private List<Double> longitudes = new ArrayList<>();
     private List<Double> latitudes = new ArrayList<>();
+    private List<Double> times = new ArrayList<>();
 
     private IBinder sessionBinder;
     private SessionDurationHandler sessionDurationHandler;
@@ -55,8 +71,12 @@ public class WorkoutSessionService extends Service {
     private NotificationManager notificationManager;
     private WorkoutType workoutType;
 
+    private final TrackingMetrics trackingMetrics = new TrackingMetrics();
+
     private final int UPDATE_MILLISECONDS = 200;
     private final int NOTIFICATION_ID = 11;
+    private static final String METRICS_DIRECTORY = "sessionMetrics";
+    private static final String TAG = "WorkoutSessionService";
 
     @Override
     public void onCreate(){
@@ -81,6 +101,13 @@ public class WorkoutSessionService extends Service {
             workoutType = WorkoutType.getDefault();
         }
 
+        long ghostSessionId = intent.getLongExtra(RunningTracker.INTENT_GHOST_SESSION_ID, -1);
+        if(ghostSessionId != -1){
+            setGhostSession(ghostSessionId);
+        }else{
+            clearGhostSession();
+        }
+
         return START_NOT_STICKY;
     }
 
@@ -149,14 +176,81 @@ public class WorkoutSessionService extends Service {
     public void stopSession(){
         sessionInProgress.set(false);
         sessionRunning = false;
+        writeTrackingMetrics();
+    }
+
+    /**
+     * Chooses a past session to race. Its route is loaded on a background thread, after which each
+     * location update is compared with it
+     * @param sessionId     id of the past session
+     */
+    public void setGhostSession(final long sessionId){
+        final int generation;
+        synchronized (ghostLock){
+            generation = ++ghostGeneration;
+            ghostRacer = null;
+        }
+
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                AnalysedSession session = AnalysedSession.load(getContentResolver(), sessionId);
+                GhostRacer ghost = session != null
+                        ? GhostRacer.of(session.getCumulativeDistances(), session.getTimes()) : null;
+                synchronized (ghostLock){
+                    if(generation == ghostGeneration){
+                        ghostRacer = ghost;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops racing the past session chosen with setGhostSession
+     */
+    public void clearGhostSession(){
+        synchronized (ghostLock){
+            ghostGeneration++;
+            ghostRacer = null;
+        }
+    }
+
+    /**
+     * @return  Timings recorded while tracking the current session
+     */
+    public TrackingMetrics getTrackingMetrics(){
+        return trackingMetrics;
+    }
+
+    /**
+     * Writes the tracking metrics for the session to a file named after the time the session
+     * ended, on a background thread
+     */
+    private void writeTrackingMetrics(){
+        final File file = new File(new File(getFilesDir(), METRICS_DIRECTORY),
+                "session-" + System.currentTimeMillis() + ".json");
+
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    trackingMetrics.writeTo(file);
+                }catch(IOException | JSONException e){
+                    Log.w(TAG, "Unable to write tracking metrics", e);
+                }
+            }
+        });
     }
 
     /**
      * Updates the notification to display the duration of the current workout session
      */
     private void updateNotification(){
+        long start = System.nanoTime();
         notification.setContentText(ValueFormatter.formatDuration(sessionDurationHandler.getCurrentDurationMilliseconds()));
         notificationManager.notify(NOTIFICATION_ID, notification.build());
+        trackingMetrics.recordNanoseconds(TrackingMetrics.NOTIFICATION_POST, System.nanoTime() - start);
     }
 
     /**
@@ -168,6 +262,9 @@ public class WorkoutSessionService extends Service {
         sessionListener.onPaceUpdated(pace);
         sessionListener.onDistanceUpdated(distance);
         sessionListener.onDurationUpdated(sessionCurrentDurationMilliseconds);
+        if(ghostRacer != null){
+            sessionListener.onGhostUpdated(ghostMetresAhead, ghostSecondsAhead);
+        }
     }
 
     /**
@@ -179,13 +276,36 @@ public class WorkoutSessionService extends Service {
         sessionListeners.remove(sessionListener);
     }
 
+    /**
+     * @return  Copy of the latitudes recorded so far in the session
+     */
+    public double[] getRouteLatitudes(){
+        return toArray(latitudes);
+    }
+
+    /**
+     * @return  Copy of the longitudes recorded so far in the session
+     */
+    public double[] getRouteLongitudes(){
+        return toArray(longitudes);
+    }
+
+    private double[] toArray(List<Double> coordinates){
+        double[] array = new double[coordinates.size()];
+        for(int i = 0; i < array.length; i++){
+            array[i] = coordinates.get(i);
+        }
+        return array;
+    }
+
     /**
      * Stores the complete session to the database
      */
     public void addSessionToDatabase(){
 
-        String longitudes = parseCoordinates(this.longitudes);
-        String latitudes = parseCoordinates(this.latitudes);
+        String longitudes = CoordinateScanner.encode(this.longitudes);
+        String latitudes = CoordinateScanner.encode(this.latitudes);
+        String times = CoordinateScanner.encode(this.times);
 
         ContentValues contentValues = new ContentValues();
         contentValues.put(WorkoutSessionContentProvider.Contract.DISTANCE, distance);
@@ -197,27 +317,12 @@ public class WorkoutSessionService extends Service {
         contentValues.put(WorkoutSessionContentProvider.Contract.MINUTE, minute);
         contentValues.put(WorkoutSessionContentProvider.Contract.LATITUDE, latitudes);
         contentValues.put(WorkoutSessionContentProvider.Contract.LONGITUDE, longitudes);
+        contentValues.put(WorkoutSessionContentProvider.Contract.TIMES, times);
         contentValues.put(WorkoutSessionContentProvider.Contract.WORKOUT_TYPE, workoutType.getworkoutTypeID());
 
         getContentResolver().insert(WorkoutSessionContentProvider.Contract.SESSION_URI, contentValues);
     }
 
-    /**
-     * Converts the list of coordinates i.e. longitudes, to a string separated by a semi-colon
-     * ready for storing in the database
-     * @param coordinates   The coordinates to store
-     * @return
-     */
-    private String parseCoordinates(List<Double> coordinates){
-        StringBuilder stringBuilder = new StringBuilder();
-        for(Double coordinate : coordinates){
-            stringBuilder.append(coordinate);
-            stringBuilder.append(";");
-        }
-
-        return stringBuilder.toString();
-    }
-
     /**
      * The following methods notify registered listeners of updates regarding the ongoing workout session
      */
@@ -245,6 +350,13 @@ public class WorkoutSessionService extends Service {
         }
     }
 
+    private void notifySessionListenersGhostUpdate(double metresAhead, double secondsAhead){
+        // Indexed rather than iterated so that no iterator is allocated on each location update
+        for(int i = 0; i < sessionListeners.size(); i++){
+            sessionListeners.get(i).onGhostUpdated(metresAhead, secondsAhead);
+        }
+    }
+
     /**
      * Monitors the duration of the ongoing session and updates registered session listeners of
      * duration changes
@@ -283,9 +395,16 @@ public class WorkoutSessionService extends Service {
 
                     currentTimeMilliseconds = SystemClock.uptimeMillis();
 
+                    trackingMetrics.recordMicroseconds(TrackingMetrics.TICK_DRIFT,
+                            (currentTimeMilliseconds - previousTimeMilliseconds - UPDATE_MILLISECONDS) * 1000);
+
                     if(sessionRunning){
                         sessionCurrentDurationMilliseconds += currentTimeMilliseconds - previousTimeMilliseconds;
+
+                        long dispatchStart = System.nanoTime();
                         notifySessionListenersDurationUpdate(sessionCurrentDurationMilliseconds);
+                        trackingMetrics.recordNanoseconds(TrackingMetrics.LISTENER_DISPATCH,
+                                System.nanoTime() - dispatchStart);
                     }
 
                     previousTimeMilliseconds = currentTimeMilliseconds;
@@ -323,12 +442,17 @@ public class WorkoutSessionService extends Service {
     public class SessionLocationListener implements LocationListener {
         private Location lastLocation;
         private long lastTimeStamp;
+        private double lastSessionSeconds;
         private long timeStamp;
         private double distanceToNewLocation;
+        private long lastArrivalNanoseconds;
+        private long lastIntervalNanoseconds = -1;
 
         @Override
         public void onLocationChanged(Location location) {
+            long arrivalNanoseconds = System.nanoTime();
             timeStamp = SystemClock.uptimeMillis();
+            recordFixInterval(arrivalNanoseconds);
 
             // While a session is running, update the stored distance travelled and the user's
             // current pace
@@ -338,16 +462,52 @@ public class WorkoutSessionService extends Service {
                 distance += distanceToNewLocation;
                 pace = distanceToNewLocation / ((double) (timeStamp - lastTimeStamp) / 1000.0);
 
+                long dispatchStart = System.nanoTime();
                 notifySessionListenersDistanceUpdate(distance);
                 notifySessionListenersSpeedUpdate(pace);
+                GhostRacer ghost = ghostRacer;
+                if(ghost != null){
+                    double sessionSeconds = sessionDurationHandler.getCurrentDurationMilliseconds() / 1000.0;
+                    ghostMetresAhead = ghost.getMetresAhead(distance, sessionSeconds);
+                    ghostSecondsAhead = ghost.getSecondsAhead(distance, sessionSeconds);
+                    notifySessionListenersGhostUpdate(ghostMetresAhead, ghostSecondsAhead);
+                }
+                long dispatchDuration = System.nanoTime() - dispatchStart;
 
                 longitudes.add(lastLocation.getLongitude());
                 latitudes.add(lastLocation.getLatitude());
+                times.add(lastSessionSeconds);
 
+                dispatchStart = System.nanoTime();
                 notifySessionListenersLocationUpdate(location.getLatitude(), location.getLongitude());
+                dispatchDuration += System.nanoTime() - dispatchStart;
+
+                trackingMetrics.recordNanoseconds(TrackingMetrics.LISTENER_DISPATCH, dispatchDuration);
             }
             lastLocation = location;
             lastTimeStamp = timeStamp;
+            lastSessionSeconds = sessionDurationHandler.getCurrentDurationMilliseconds() / 1000.0;
+
+            trackingMetrics.recordNanoseconds(TrackingMetrics.LOCATION_PROCESSING,
+                    System.nanoTime() - arrivalNanoseconds);
+        }
+
+        /**
+         * Records the time since the previous fix arrived and how much that differs from the
+         * interval before it
+         */
+        private void recordFixInterval(long arrivalNanoseconds){
+            if(lastArrivalNanoseconds != 0){
+                long intervalNanoseconds = arrivalNanoseconds - lastArrivalNanoseconds;
+                trackingMetrics.recordNanoseconds(TrackingMetrics.FIX_INTERVAL, intervalNanoseconds);
+
+                if(lastIntervalNanoseconds >= 0){
+                    trackingMetrics.recordNanoseconds(TrackingMetrics.FIX_JITTER,
+                            Math.abs(intervalNanoseconds - lastIntervalNanoseconds));
+                }
+                lastIntervalNanoseconds = intervalNanoseconds;
+            }
+            lastArrivalNanoseconds = arrivalNanoseconds;
         }
 
         @Override
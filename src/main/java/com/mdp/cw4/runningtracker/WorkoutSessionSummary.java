@@ -0,0 +1,126 @@
+package com.mdp.cw4.runningtracker;
+
+import android.database.Cursor;
+
+/**
+ * <h1>Workout Session Summary</h1>
+ * Immutable summary of a stored workout session, holding everything needed to display the session
+ * in a list but not its route
+ */
+public class WorkoutSessionSummary {
+
+    private final long id;
+    private final int date;
+    private final int month;
+    private final int year;
+    private final int hour;
+    private final int minute;
+    private final int distance;
+    private final long duration;
+    private final int workoutType;
+
+    /**
+     * Columns which must be included in a query for the results to be read by fromCursor
+     */
+    public static final String[] COLUMNS = new String[]{
+            WorkoutSessionContentProvider.Contract._ID,
+            WorkoutSessionContentProvider.Contract.DATE,
+            WorkoutSessionContentProvider.Contract.MONTH,
+            WorkoutSessionContentProvider.Contract.YEAR,
+            WorkoutSessionContentProvider.Contract.DISTANCE,
+            WorkoutSessionContentProvider.Contract.DURATION,
+            WorkoutSessionContentProvider.Contract.WORKOUT_TYPE,
+            WorkoutSessionContentProvider.Contract.HOUR,
+            WorkoutSessionContentProvider.Contract.MINUTE
+    };
+
+    private WorkoutSessionSummary(long id, int date, int month, int year, int hour, int minute,
+                                  int distance, long duration, int workoutType){
+        this.id = id;
+        this.date = date;
+        this.month = month;
+        this.year = year;
+        this.hour = hour;
+        this.minute = minute;
+        this.distance = distance;
+        this.duration = duration;
+        this.workoutType = workoutType;
+    }
+
+    /**
+     * Reads the summary at the current position of the cursor
+     * @param cursor    Cursor which was queried using COLUMNS as its projection
+     */
+    public static WorkoutSessionSummary fromCursor(Cursor cursor){
+        return new WorkoutSessionSummary(
+                cursor.getLong(0),
+                cursor.getInt(1),
+                cursor.getInt(2),
+                cursor.getInt(3),
+                cursor.getInt(7),
+                cursor.getInt(8),
+                cursor.getInt(4),
+                cursor.getLong(5),
+                cursor.getInt(6));
+    }
+
+    public long getId(){
+        return id;
+    }
+
+    public int getDate(){
+        return date;
+    }
+
+    /**
+     * In keeping with the Java format, the months start at zero i.e. Jan = 0, Feb = 1 ... Dec = 11
+     */
+    public int getMonth(){
+        return month;
+    }
+
+    public int getYear(){
+        return year;
+    }
+
+    public int getHour(){
+        return hour;
+    }
+
+    public int getMinute(){
+        return minute;
+    }
+
+    public int getDistance(){
+        return distance;
+    }
+
+    public long getDuration(){
+        return duration;
+    }
+
+    public int getWorkoutType(){
+        return workoutType;
+    }
+
+    @Override
+    public boolean equals(Object object){
+        if(this == object){
+            return true;
+        }
+
+        if(!(object instanceof WorkoutSessionSummary)){
+            return false;
+        }
+
+        WorkoutSessionSummary other = (WorkoutSessionSummary) object;
+        return id == other.id && date == other.date && month == other.month && year == other.year
+                && hour == other.hour && minute == other.minute && distance == other.distance
+                && duration == other.duration && workoutType == other.workoutType;
+    }
+
+    @Override
+    public int hashCode(){
+        return (int) (id ^ (id >>> 32));
+    }
+}
@@ -0,0 +1,107 @@
+package com.mdp.cw4.runningtracker;
+
+/**
+ * <h1>Workout Type Filter</h1>
+ * Filters sessions by a set of workout types, held as a bitmask where bit n is set if the workout
+ * type with id n is included.
+ * <p>
+ * The selection for each mask is an IN list of literal ids, for example "sessionMode IN (0, 2)",
+ * rather than a chain of ORs with a selection argument for each type. The list can be answered
+ * with the workout type index, needs no arguments to be kept in step with it, and is the same text
+ * every time so SQLite can reuse the compiled statement. As there are only a handful of workout
+ * types, the selection for every possible mask is built once up front.
+ * <p>
+ * The workout type index, see WorkoutSessionDatabase, holds the workout type followed by the date,
+ * so a filter on its own or together with a year, month or day is answered from the index
+ */
+public class WorkoutTypeFilter {
+
+    public static final int NONE = 0;
+    public static final int ALL = (1 << WorkoutType.values().length) - 1;
+
+    private static final String[] SELECTIONS = new String[ALL + 1];
+
+    static {
+        for(int mask = NONE; mask <= ALL; mask++){
+            SELECTIONS[mask] = compileSelection(mask);
+        }
+    }
+
+    public static int getMask(WorkoutType workoutType){
+        return 1 << workoutType.getworkoutTypeID();
+    }
+
+    /**
+     * @return  Whether the workout type with the id is included in the mask
+     */
+    public static boolean includes(int mask, int workoutTypeId){
+        return workoutTypeId >= 0 && workoutTypeId < WorkoutType.values().length
+                && (mask & (1 << workoutTypeId)) != 0;
+    }
+
+    /**
+     * @param mask  Workout types to include
+     * @return      Selection matching sessions of the included workout types. If none are included
+     *              the selection matches no sessions
+     * @throws IllegalArgumentException If the mask includes a workout type which does not exist
+     */
+    public static String getSelection(int mask){
+        if(mask < NONE || mask > ALL){
+            throw new IllegalArgumentException("Invalid workout type mask " + mask);
+        }
+        return SELECTIONS[mask];
+    }
+
+    /**
+     * @param mask  Mask written as a decimal number, as passed in a query parameter
+     * @throws IllegalArgumentException If the mask is not a number or includes a workout type which
+     *                                  does not exist
+     */
+    public static int parseMask(String mask){
+        int value = Integer.parseInt(mask);
+        if(value < NONE || value > ALL){
+            throw new IllegalArgumentException("Invalid workout type mask " + value);
+        }
+        return value;
+    }
+
+    /**
+     * Converts workout type ids passed as selection arguments into a mask
+     * @param selectionArgs     Selection arguments containing workout type ids
+     * @param start             Index of the first workout type id in the selection arguments
+     * @throws IllegalArgumentException If any argument is not the id of a workout type
+     */
+    public static int parseMask(String[] selectionArgs, int start){
+        int mask = NONE;
+        for(int i = start; i < selectionArgs.length; i++){
+            int workoutTypeId = Integer.parseInt(selectionArgs[i]);
+            if(workoutTypeId < 0 || workoutTypeId >= WorkoutType.values().length){
+                throw new IllegalArgumentException("Invalid workout type " + workoutTypeId);
+            }
+            mask |= 1 << workoutTypeId;
+        }
+        return mask;
+    }
+
+    private static String compileSelection(int mask){
+        if(mask == NONE){
+            return "0";
+        }
+
+        StringBuilder selection = new StringBuilder(WorkoutSessionContentProvider.Contract.WORKOUT_TYPE);
+        selection.append(" IN (");
+
+        boolean first = true;
+        for(int workoutTypeId = 0; workoutTypeId < WorkoutType.values().length; workoutTypeId++){
+            if(includes(mask, workoutTypeId)){
+                if(!first){
+                    selection.append(", ");
+                }
+                selection.append(workoutTypeId);
+                first = false;
+            }
+        }
+
+        return selection.append(")").toString();
+    }
+}
@@ -16,6 +16,7 @@ import android.location.Location;
 import android.location.LocationManager;
 import android.os.Bundle;
 import android.os.IBinder;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.v4.app.ActivityCompat;
 import android.support.v4.content.ContextCompat;
@@ -36,11 +37,14 @@ import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
 import com.mdp.cw4.runningtracker.IWorkoutSessionListener;
+import com.mdp.cw4.runningtracker.LiveRouteRenderer;
 import com.mdp.cw4.runningtracker.R;
-import com.mdp.cw4.runningtracker.ValueFormatter;
+import com.mdp.cw4.runningtracker.SessionProcessingService;
 import com.mdp.cw4.runningtracker.WorkoutSessionService;
 import com.mdp.cw4.runningtracker.WorkoutType;
+import com.mdp.cw4.runningtracker.Views.LiveMetricsPresenter;
 
 /**
  * <h1>Running Tracker</h1>
@@ -54,6 +58,7 @@ public class RunningTracker extends AppCompatActivity implements IWorkoutSession
     private TextView duration;
     private TextView distanceTravelled;
     private TextView pace;
+    private TextView ghostGap;
     private Button startRunning;
     private Button enableGPSButton;
     private Button stopButton;
@@ -64,11 +69,16 @@ public class RunningTracker extends AppCompatActivity implements IWorkoutSession
     private WorkoutType workoutType;
     private WorkoutSessionService workoutSessionService;
     private GoogleMap googleMap;
+    private LiveRouteRenderer liveRouteRenderer;
+    private LiveMetricsPresenter liveMetricsPresenter;
+    private long lastCameraFollowMilliseconds;
     private GPSBroadcastReceiver gpsBroadcastReceiver;
     private ServiceConnection sessionServiceConnection;
 
     private static final int ACCESS_FINE_LOCATION_PERMISSION = 11;
     public static final String INTENT_WORKOUT_TYPE = "com.mdp.cw4.runningtracker.workoutType";
+    // id of a past session to race, which is passed on to the session service when a session starts
+    public static final String INTENT_GHOST_SESSION_ID = "com.mdp.cw4.runningtracker.ghostSessionId";
     public static final String INTENT_STARTED_FROM_SERVICE = "com.mdp.cw4.runningtracker.startedFromService";
 
     // Different states the action buttons can be in depending on factors related to the session
@@ -99,6 +109,27 @@ public class RunningTracker extends AppCompatActivity implements IWorkoutSession
         // 0 flag causes this activity to bind to the service if and only if it already exists i.e.
         // If the application has been swiped away and reopened via the notification bar
         bindService(new Intent(this, WorkoutSessionService.class), sessionServiceConnection, 0);
+
+        // Analyse any sessions stored before the current analyses were added
+        if(savedInstanceState == null){
+            SessionProcessingService.enqueueBackfill(this);
+        }
+    }
+
+    /**
+     * Called when a past session is chosen to race from ViewWorkoutSession while this activity is
+     * open. It is raced from the next session started, or straight away if one is in progress
+     */
+    @Override
+    protected void onNewIntent(Intent intent) {
+        super.onNewIntent(intent);
+        setIntent(intent);
+
+        long ghostSessionId = intent.getLongExtra(INTENT_GHOST_SESSION_ID, -1);
+        if(ghostSessionId != -1 && workoutSessionService != null
+                && workoutSessionService.isSessionInProgress()){
+            workoutSessionService.setGhostSession(ghostSessionId);
+        }
     }
 
     /**
@@ -120,6 +151,8 @@ public class RunningTracker extends AppCompatActivity implements IWorkoutSession
             unregisterReceiver(gpsBroadcastReceiver);
         }
 
+        liveMetricsPresenter.stop();
+
         super.onDestroy();
     }
 
@@ -157,6 +190,8 @@ public class RunningTracker extends AppCompatActivity implements IWorkoutSession
         duration = (TextView) findViewById(R.id.sessionDuration);
         distanceTravelled = (TextView) findViewById(R.id.distanceTravelled);
         pace = (TextView) findViewById(R.id.pace);
+        ghostGap = (TextView) findViewById(R.id.ghostGap);
+        liveMetricsPresenter = new LiveMetricsPresenter(duration, distanceTravelled, pace, ghostGap);
 
         startRunning = (Button) findViewById(R.id.start);
         stopButton = (Button) findViewById(R.id.stop);
@@ -199,6 +234,10 @@ public class RunningTracker extends AppCompatActivity implements IWorkoutSession
 
         resetWorkoutCounters();
 
+        if(liveRouteRenderer != null){
+            liveRouteRenderer.clear();
+        }
+
         // If permission has not been granted then request it, otherwise start and bind to a session
         // service which is responsible for monitoring the progress of the workout session
         int requestPermission = ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION);
@@ -211,6 +250,7 @@ public class RunningTracker extends AppCompatActivity implements IWorkoutSession
 
                 Intent intent = new Intent(this, WorkoutSessionService.class);
                 intent.putExtra(INTENT_WORKOUT_TYPE, workoutType);
+                intent.putExtra(INTENT_GHOST_SESSION_ID, getIntent().getLongExtra(INTENT_GHOST_SESSION_ID, -1));
                 startService(intent);
                 sessionServiceConnection = serviceConnection;
                 bindService(intent, sessionServiceConnection, BIND_AUTO_CREATE);
@@ -247,9 +287,7 @@ public class RunningTracker extends AppCompatActivity implements IWorkoutSession
      * Sets the workout counters to zero
      */
     private void resetWorkoutCounters(){
-        distanceTravelled.setText(ValueFormatter.formatDistance(0));
-        duration.setText(ValueFormatter.formatDuration(0));
-        pace.setText(ValueFormatter.formatAverageSpeed(0));
+        liveMetricsPresenter.reset();
     }
 
     /**
@@ -345,6 +383,11 @@ public class RunningTracker extends AppCompatActivity implements IWorkoutSession
         this.googleMap = googleMap;
         final float mapZoomLevel = 17;
 
+        if(liveRouteRenderer == null){
+            liveRouteRenderer = new LiveRouteRenderer(googleMap, getColor(R.color.colorAccent));
+            restoreLiveRoute();
+        }
+
         int requestPermission = ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION);
 
         // Need to check and request if necessary the location permission in order to use this feature
@@ -377,19 +420,14 @@ public class RunningTracker extends AppCompatActivity implements IWorkoutSession
     }
 
     /**
-     * This method is called from a background thread, therefore the update of the text needs to be passed
-     * back to the UI thread
+     * This method is called from a background thread. The value is passed to the live metrics
+     * presenter, which applies it on the UI thread with the next display frame
      * @param durationMilliseconds     The length of time the user has been carrying out the ongoing
      *                                 workout
      */
     @Override
-    public void onDurationUpdated(final long durationMilliseconds) {
-        runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                duration.setText(ValueFormatter.formatDuration(durationMilliseconds));
-            }
-        });
+    public void onDurationUpdated(long durationMilliseconds) {
+        liveMetricsPresenter.setDuration(durationMilliseconds);
     }
 
     /**
@@ -398,7 +436,7 @@ public class RunningTracker extends AppCompatActivity implements IWorkoutSession
      */
     @Override
     public void onDistanceUpdated(int distance) {
-        distanceTravelled.setText(ValueFormatter.formatDistance(distance));
+        liveMetricsPresenter.setDistance(distance);
     }
 
     /**
@@ -407,17 +445,79 @@ public class RunningTracker extends AppCompatActivity implements IWorkoutSession
      */
     @Override
     public void onPaceUpdated(double pace) {
-        this.pace.setText(ValueFormatter.formatAverageSpeed(pace));
+        liveMetricsPresenter.setPace(pace);
     }
 
     /**
-     * If the user's location has changed, move the map camera to keep them centred on the map
+     * If the user's location has changed, extend the route drawn on the map and, if necessary,
+     * move the map camera to keep them on the map
      * @param latitude      Current latitude
      * @param longitude     Current longitude
      */
     @Override
     public void onLocationUpdated(double latitude, double longitude) {
-        googleMap.animateCamera(CameraUpdateFactory.newLatLng(new LatLng(latitude, longitude)));
+        if(googleMap == null){
+            return;
+        }
+
+        if(liveRouteRenderer != null){
+            liveRouteRenderer.addPoint(latitude, longitude);
+        }
+
+        followLocation(latitude, longitude);
+    }
+
+    /**
+     * This method is called from a background thread. The gap to the past session being raced is
+     * passed to the live metrics presenter, which shows it with the next display frame
+     */
+    @Override
+    public void onGhostUpdated(double metresAhead, double secondsAhead) {
+        liveMetricsPresenter.setGhostGap(metresAhead, secondsAhead);
+    }
+
+    /**
+     * Moves the camera to the user's location. To avoid animating the map on every location update,
+     * the camera is moved at most once every CAMERA_FOLLOW_INTERVAL_MILLISECONDS, and only if the
+     * user has moved close to the edge of the map
+     * @param latitude      Current latitude
+     * @param longitude     Current longitude
+     */
+    private void followLocation(double latitude, double longitude){
+        final long CAMERA_FOLLOW_INTERVAL_MILLISECONDS = 1000;
+
+        // Fraction of the visible map, on each side, which counts as being close to the edge
+        final double VIEWPORT_MARGIN = 0.2;
+
+        long currentTimeMilliseconds = SystemClock.uptimeMillis();
+        if(currentTimeMilliseconds - lastCameraFollowMilliseconds < CAMERA_FOLLOW_INTERVAL_MILLISECONDS){
+            return;
+        }
+
+        LatLngBounds visibleBounds = googleMap.getProjection().getVisibleRegion().latLngBounds;
+        double latitudeMargin = (visibleBounds.northeast.latitude - visibleBounds.southwest.latitude) * VIEWPORT_MARGIN;
+        double longitudeMargin = (visibleBounds.northeast.longitude - visibleBounds.southwest.longitude) * VIEWPORT_MARGIN;
+
+        boolean withinMargin = latitude > visibleBounds.southwest.latitude + latitudeMargin
+                && latitude < visibleBounds.northeast.latitude - latitudeMargin
+                && longitude > visibleBounds.southwest.longitude + longitudeMargin
+                && longitude < visibleBounds.northeast.longitude - longitudeMargin;
+
+        if(!withinMargin){
+            lastCameraFollowMilliseconds = currentTimeMilliseconds;
+            googleMap.animateCamera(CameraUpdateFactory.newLatLng(new LatLng(latitude, longitude)));
+        }
+    }
+
+    /**
+     * Draws the route recorded so far, for example if the activity has been recreated during an
+     * ongoing session. Requires both the map and the session service to be available
+     */
+    private void restoreLiveRoute(){
+        if(liveRouteRenderer != null && workoutSessionService != null){
+            liveRouteRenderer.setRoute(workoutSessionService.getRouteLatitudes(),
+                    workoutSessionService.getRouteLongitudes());
+        }
     }
 
     public void pauseResumeSession(View view){
@@ -456,6 +556,7 @@ public class RunningTracker extends AppCompatActivity implements IWorkoutSession
         @Override
         public void onServiceConnected(ComponentName componentName, IBinder iBinder) {
             workoutSessionService = ((WorkoutSessionService.SessionBinder) iBinder).getSessionService();
+            restoreLiveRoute();
             workoutSessionService.addSessionListener(RunningTracker.this);
             switchActionButtons(interpretActionButtonState(
                     workoutSessionService.isSessionInProgress(), workoutSessionService.isSessionRunning()));
@@ -20,6 +20,7 @@ import com.mdp.cw4.runningtracker.R;
 import com.mdp.cw4.runningtracker.ValueFormatter;
 import com.mdp.cw4.runningtracker.WorkoutSessionContentProvider;
 import com.mdp.cw4.runningtracker.WorkoutType;
+import com.mdp.cw4.runningtracker.WorkoutTypeFilter;
 import com.mdp.cw4.runningtracker.Views.YearlySummaryView;
 
 import java.util.ArrayList;
@@ -266,7 +267,7 @@ public class Statistics extends AppCompatActivity {
      *              year
      */
     private double getMaxMonthlyTotal() {
-        int maxMonthlyTotal = 0;
+        long maxMonthlyTotal = 0;
         Uri uri;
 
         if (!anyWorkoutSessionTypesSelected()) {
@@ -295,7 +296,7 @@ public class Statistics extends AppCompatActivity {
         }
 
         if (cursor.moveToNext()){
-            maxMonthlyTotal = cursor.getInt(cursor.getColumnIndexOrThrow(WorkoutSessionContentProvider.Contract.MONTHLY_TOTAL));
+            maxMonthlyTotal = cursor.getLong(cursor.getColumnIndexOrThrow(WorkoutSessionContentProvider.Contract.MONTHLY_TOTAL));
         }
 
         cursor.close();
@@ -364,28 +365,26 @@ public class Statistics extends AppCompatActivity {
     /**
      * Populates the views which display the distance, duration and pace with their corresponding
      * value based on the values inside the cursor passed in
-     * @param cursor    Cursor object containing the list of sessions carried out for a paritcular
+     * @param cursor    Cursor returned by the aggregate URI holding the totals for a particular
      *                  range in time i.e a day or month
      */
     private void populateSummary(TextView distanceTextView, TextView durationTextView, TextView paceTextView,
                                  Cursor cursor){
         final int MILLISECONDS_PER_SECOND = 1000;
 
-        int metresTravelled = 0;
-        int sessionDurationMilliseconds = 0;
+        long metresTravelled = 0;
+        long sessionDurationMilliseconds = 0;
         double averagePace = 0;
 
-        // Sum the total distance and duration across all sessions in the cursor object
+        // The totals are summed by SQLite, so there is a single row
         if(cursor != null && cursor.moveToFirst()) {
-            do {
-                metresTravelled += cursor.getInt(cursor.getColumnIndexOrThrow(
-                        WorkoutSessionContentProvider.Contract.DISTANCE));
-                sessionDurationMilliseconds += cursor.getInt(cursor.getColumnIndexOrThrow(
-                        WorkoutSessionContentProvider.Contract.DURATION));
-            } while (cursor.moveToNext());
+            metresTravelled = cursor.getLong(cursor.getColumnIndexOrThrow(
+                    WorkoutSessionContentProvider.Contract.AGGREGATE_TOTAL_DISTANCE));
+            sessionDurationMilliseconds = cursor.getLong(cursor.getColumnIndexOrThrow(
+                    WorkoutSessionContentProvider.Contract.AGGREGATE_TOTAL_DURATION));
         }
 
-        int seconds = sessionDurationMilliseconds / MILLISECONDS_PER_SECOND;
+        long seconds = sessionDurationMilliseconds / MILLISECONDS_PER_SECOND;
 
         // Calculate the average pace of the user across all sessions
         if(seconds > 0){
@@ -393,7 +392,7 @@ public class Statistics extends AppCompatActivity {
         }
 
         // Update views with their corresponding values
-        distanceTextView.setText(ValueFormatter.formatDistance(metresTravelled));
+        distanceTextView.setText(ValueFormatter.formatDistance((int) Math.min(Integer.MAX_VALUE, metresTravelled)));
         durationTextView.setText(ValueFormatter.formatDuration(sessionDurationMilliseconds));
         paceTextView.setText(ValueFormatter.formatAverageSpeed(averagePace));
 
@@ -403,98 +402,65 @@ public class Statistics extends AppCompatActivity {
     }
 
     /**
-     * Gets a cursor object containing sessions which correspond to the date selected by the user
-     * and the workout types they wish to take into account
+     * Gets the totals of the sessions which correspond to the date selected by the user and the
+     * workout types they wish to take into account
      * @param year      Current year selected
      * @param month     Current month selected
      * @param day       Current day selected
-     * @return          Cursor object containing all the relevant sessions based on the user's selections
+     * @return          Cursor holding a single row with the totals based on the user's selections
      */
     public Cursor getDaySummary(int year, int month, int day){
-        String[] columns = new String[]{
-                WorkoutSessionContentProvider.Contract._ID,
-                WorkoutSessionContentProvider.Contract.DATE,
-                WorkoutSessionContentProvider.Contract.MONTH,
-                WorkoutSessionContentProvider.Contract.YEAR,
-                WorkoutSessionContentProvider.Contract.DISTANCE,
-                WorkoutSessionContentProvider.Contract.DURATION,
-        };
+        Uri uri = getSummaryUriBuilder(year, month)
+                .appendQueryParameter(WorkoutSessionContentProvider.Contract.QUERY_PARAMETER_DATE,
+                        String.valueOf(day))
+                .build();
 
-        // Populate the preliminary selection arguments
-        List<String> selectionArguments = new ArrayList<>();
-        selectionArguments.add(String.valueOf(day));
-        selectionArguments.add(String.valueOf(month));
-        selectionArguments.add(String.valueOf(year));
-
-        // Add any required selection arguments and the corresponding where clause for the types of
-        // activities selected by the user
-        String[] selectedActivitiesArguments = addSelectedActivitiesArguments(selectionArguments);
-        String selectedActivitiesWhereClause = parseSessionWhereClause(selectedActivitiesArguments);
-
-        return getContentResolver().query(WorkoutSessionContentProvider.Contract.SESSION_URI, columns,
-                WorkoutSessionContentProvider.Contract.DATE + " = ? AND " +
-                WorkoutSessionContentProvider.Contract.MONTH + " = ? AND " +
-                WorkoutSessionContentProvider.Contract.YEAR + " = ? " + selectedActivitiesWhereClause,
-                selectionArguments.toArray(new String[selectionArguments.size()]), null);
+        return getContentResolver().query(uri, null, null, null, null);
     }
 
     /**
-     * Gets a cursor object containing sessions which correspond to the month and year selected by
-     * the user and the workout types they wish to take into account
+     * Gets the totals of the sessions which correspond to the month and year selected by the user
+     * and the workout types they wish to take into account
      * @param year      Current year selected
      * @param month     Current month selected
-     * @return          Cursor object containing all the relevant sessions based on the user's selections
+     * @return          Cursor holding a single row with the totals based on the user's selections
      */
     public Cursor getMonthSummary(int year, int month){
-        String[] columns = new String[]{
-                WorkoutSessionContentProvider.Contract._ID,
-                WorkoutSessionContentProvider.Contract.DATE,
-                WorkoutSessionContentProvider.Contract.MONTH,
-                WorkoutSessionContentProvider.Contract.YEAR,
-                WorkoutSessionContentProvider.Contract.DISTANCE,
-                WorkoutSessionContentProvider.Contract.DURATION,
-        };
-
-        // Populate the preliminary selection arguments
-        List<String> selectionArguments = new ArrayList<>();
-        selectionArguments.add(String.valueOf(month));
-        selectionArguments.add(String.valueOf(year));
-
-        // Add any required selection arguments and the corresponding where clause for the types of
-        // activities selected by the user
-        String[] selectedActivitiesArguments = addSelectedActivitiesArguments(selectionArguments);
-        String selectedActivitiesWhereClause = parseSessionWhereClause(selectedActivitiesArguments);
+        return getContentResolver().query(getSummaryUriBuilder(year, month).build(), null, null, null, null);
+    }
 
-        return getContentResolver().query(WorkoutSessionContentProvider.Contract.SESSION_URI,
-                columns, WorkoutSessionContentProvider.Contract.MONTH + " = ? AND " +
-                         WorkoutSessionContentProvider.Contract.YEAR + " = ? " + selectedActivitiesWhereClause,
-                selectionArguments.toArray(new String[selectionArguments.size()]), null);
+    /**
+     * Builds the aggregate URI for the month, restricted to the workout types selected by the user
+     */
+    private Uri.Builder getSummaryUriBuilder(int year, int month){
+        return WorkoutSessionContentProvider.Contract.AGGREGATE_URI.buildUpon()
+                .appendQueryParameter(WorkoutSessionContentProvider.Contract.QUERY_PARAMETER_YEAR,
+                        String.valueOf(year))
+                .appendQueryParameter(WorkoutSessionContentProvider.Contract.QUERY_PARAMETER_MONTH,
+                        String.valueOf(month))
+                .appendQueryParameter(WorkoutSessionContentProvider.Contract.QUERY_PARAMETER_WORKOUT_TYPE_MASK,
+                        String.valueOf(getSelectedWorkoutTypeMask()));
     }
 
     /**
-     * Parse the selection where clause to account for the number of workout arguments there are
-     * @param selectionArgs     selection arguments
-     * @return                  String containing the selection clause
+     * @return  Mask of the workout types the user wishes to take into account, see WorkoutTypeFilter
      */
-    private String parseSessionWhereClause(String[] selectionArgs){
-        String additionalWhereClause = "";
+    private int getSelectedWorkoutTypeMask(){
+        int mask = WorkoutTypeFilter.NONE;
 
-        // If there are no selection arguments, just return the empty string
-        if(selectionArgs.length < 1){
-            return additionalWhereClause;
+        if(runningCheckBox.isChecked()){
+            mask |= WorkoutTypeFilter.getMask(WorkoutType.RUNNING);
         }
 
-        // Add the first clause
-        additionalWhereClause += "AND (" + WorkoutSessionContentProvider.Contract.WORKOUT_TYPE + " = ? ";
-
-        // Add any additional clauses
-        for(int i = 2; i < selectionArgs.length; i++){
-            additionalWhereClause += "OR " + WorkoutSessionContentProvider.Contract.WORKOUT_TYPE + " = ? ";
+        if(walkingCheckBox.isChecked()){
+            mask |= WorkoutTypeFilter.getMask(WorkoutType.WALKING);
         }
 
-        additionalWhereClause += ")";
+        if(cyclingCheckBox.isChecked()){
+            mask |= WorkoutTypeFilter.getMask(WorkoutType.CYCLING);
+        }
 
-        return additionalWhereClause;
+        return mask;
     }
 
     /**
@@ -524,7 +490,7 @@ public class Statistics extends AppCompatActivity {
         if(graphMetricDropdown.getSelectedItemPosition() == 0){
             majorGridLineValue.setText(ValueFormatter.formatDistance((int) maxValue));
         }else{
-            majorGridLineValue.setText(ValueFormatter.formatDuration((int) maxValue));
+            majorGridLineValue.setText(ValueFormatter.formatDuration((long) maxValue));
         }
     }
 }
\ No newline at end of file
@@ -3,8 +3,10 @@ package com.mdp.cw4.runningtracker.activities;
 import android.app.AlertDialog;
 import android.content.ContentUris;
 import android.content.DialogInterface;
+import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.util.DisplayMetrics;
@@ -18,14 +20,14 @@ import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
-import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.Polyline;
 import com.google.android.gms.maps.model.PolylineOptions;
 import com.mdp.cw4.runningtracker.R;
+import com.mdp.cw4.runningtracker.RouteLevelOfDetail;
 import com.mdp.cw4.runningtracker.ValueFormatter;
 import com.mdp.cw4.runningtracker.WorkoutSessionContentProvider;
-
-import java.util.Arrays;
+import com.mdp.cw4.runningtracker.WorkoutSessionRoute;
 
 import static com.mdp.cw4.runningtracker.activities.WorkoutSessionHistory.SESSION_INTENT_ID;
 
@@ -36,9 +38,12 @@ public class ViewWorkoutSession extends AppCompatActivity implements OnMapReadyC
     private TextView averageSpeed;
     private TextView completeDate;
     private ImageView workoutTypeImage;
-    private double[] latitudes;
-    private double[] longitudes;
+    private GoogleMap googleMap;
+    private RouteLevelOfDetail routeLevelOfDetail;
+    private RouteLoader routeLoader;
+    private boolean mapLoaded;
     private long sessionId;
+    private int currentLevelOfDetail;
     private int sessionTypeIcons[] = { R.drawable.runner, R.drawable.walking, R.drawable.cyclist };
 
     @Override
@@ -56,12 +61,23 @@ public class ViewWorkoutSession extends AppCompatActivity implements OnMapReadyC
         long sessionId = getIntent().getLongExtra(SESSION_INTENT_ID, -1);
         getSessionDetails(sessionId);
 
+        routeLoader = new RouteLoader();
+        routeLoader.execute(sessionId);
+
         SupportMapFragment mapFragment = (SupportMapFragment) getSupportFragmentManager()
                 .findFragmentById(R.id.map);
 
         mapFragment.getMapAsync(this);
     }
 
+    @Override
+    protected void onDestroy() {
+        if(routeLoader != null){
+            routeLoader.cancel(false);
+        }
+        super.onDestroy();
+    }
+
     /**
      * Inflate and setup the menu options
      */
@@ -78,65 +94,89 @@ public class ViewWorkoutSession extends AppCompatActivity implements OnMapReadyC
             case R.id.delete:
                 createDeleteDialog().show();
                 return true;
+            case R.id.race:
+                raceSession();
+                return true;
             default:
                 return super.onOptionsItemSelected(item);
         }
     }
 
     /**
-     * Draws the route taken for the displayed session on a Google Map and zooms into the starting point
-     * If there are
+     * Once the map is ready, draw the route if it has already been decoded. Otherwise the route will
+     * be drawn by the RouteLoader when it finishes
      */
     @Override
     public void onMapReady(final GoogleMap googleMap) {
-        // If there is no route to show, the latitudes and longitudes will be null so just return.
-        // Also, return if there are a different number of latitude coordinates to longitudes
-        if(latitudes == null || longitudes == null || latitudes.length != longitudes.length){
-            return;
-        }
-
-        LatLng[] latLng = new LatLng[latitudes.length];
-        final LatLngBounds.Builder latLngBounds = new LatLngBounds.Builder();
-
-        // Add each latitude and longitude coordinate to the map
-        for(int i = 0; i < latitudes.length; i++){
-            latLng[i] = new LatLng(latitudes[i], longitudes[i]);
-            latLngBounds.include(latLng[i]);
-        }
-
-        googleMap.addPolyline(new PolylineOptions()
-                .color(getColor(R.color.colorAccent))
-                .add(latLng));
-
+        this.googleMap = googleMap;
         googleMap.setMaxZoomPreference(19);
 
-        // Used as padding for the map to show a small region around the route the user took
-        DisplayMetrics metrics = new DisplayMetrics();
-        getWindowManager().getDefaultDisplay().getMetrics(metrics);
-        final int padding = Math.min(metrics.widthPixels, metrics.heightPixels) / 16;
-
         // Need to wait for the map view to actually be loaded before moving the camera and adding
         // the new LatLng bounds
         googleMap.setOnMapLoadedCallback(new GoogleMap.OnMapLoadedCallback() {
             @Override
             public void onMapLoaded() {
-                setInitialCameraLocation(googleMap, latLngBounds.build(), padding);
+                mapLoaded = true;
+                if(routeLevelOfDetail != null){
+                    setInitialCameraLocation();
+                }
+            }
+        });
+
+        if(routeLevelOfDetail != null){
+            drawRoute();
+        }
+    }
+
+    /**
+     * Draws the route taken for the displayed session on the Google Map and zooms into it.
+     * The route is simplified to suit the zoom level of the map, and is swapped for a more or less
+     * detailed version each time the camera stops moving
+     */
+    private void drawRoute(){
+        currentLevelOfDetail = routeLevelOfDetail.getLevelForZoom(googleMap.getCameraPosition().zoom);
+        final Polyline route = googleMap.addPolyline(new PolylineOptions()
+                .color(getColor(R.color.colorAccent))
+                .addAll(routeLevelOfDetail.getPoints(currentLevelOfDetail)));
+
+        // Only swap the points once the camera has stopped moving so that the route is not rebuilt
+        // on every frame of a zoom gesture
+        googleMap.setOnCameraIdleListener(new GoogleMap.OnCameraIdleListener() {
+            @Override
+            public void onCameraIdle() {
+                int levelOfDetail = routeLevelOfDetail.getLevelForZoom(googleMap.getCameraPosition().zoom);
+                if(levelOfDetail != currentLevelOfDetail){
+                    currentLevelOfDetail = levelOfDetail;
+                    route.setPoints(routeLevelOfDetail.getPoints(levelOfDetail));
+                }
             }
         });
+
+        if(mapLoaded){
+            setInitialCameraLocation();
+        }
     }
 
     /**
-     * Move the Google map camera and adjust the bounds so that it displays the whole root
-     * @param googleMap         GoogleMap object to move around
-     * @param latLngBounds      Bounds of the route to zoom and move to
-     * @param padding           Amount of area to show around the route taken
+     * Move the Google map camera and adjust the bounds so that it displays the whole route
      */
-    private void setInitialCameraLocation(GoogleMap googleMap, LatLngBounds latLngBounds, int padding){
+    private void setInitialCameraLocation(){
+        LatLngBounds latLngBounds = routeLevelOfDetail.getBounds();
+        if(latLngBounds == null){
+            return;
+        }
+
+        // Used as padding for the map to show a small region around the route the user took
+        DisplayMetrics metrics = new DisplayMetrics();
+        getWindowManager().getDefaultDisplay().getMetrics(metrics);
+        int padding = Math.min(metrics.widthPixels, metrics.heightPixels) / 16;
+
         googleMap.moveCamera(CameraUpdateFactory.newLatLngBounds(latLngBounds, padding));
     }
 
     /**
-     * Retrieves the details of the workout session corresponding to the sessionID
+     * Retrieves the details of the workout session corresponding to the sessionID. Only the summary
+     * columns are read here; the route can be very long so is loaded separately by the RouteLoader
      * @param sessionId     id as stored in the database of the workout session to retrieve
      *                      information on
      */
@@ -152,8 +192,6 @@ public class ViewWorkoutSession extends AppCompatActivity implements OnMapReadyC
                 WorkoutSessionContentProvider.Contract.YEAR,
                 WorkoutSessionContentProvider.Contract.DISTANCE,
                 WorkoutSessionContentProvider.Contract.DURATION,
-                WorkoutSessionContentProvider.Contract.LONGITUDE,
-                WorkoutSessionContentProvider.Contract.LATITUDE,
                 WorkoutSessionContentProvider.Contract.HOUR,
                 WorkoutSessionContentProvider.Contract.MINUTE,
                 WorkoutSessionContentProvider.Contract.WORKOUT_TYPE
@@ -165,18 +203,16 @@ public class ViewWorkoutSession extends AppCompatActivity implements OnMapReadyC
 
         if(cursor != null && cursor.moveToNext()){
             int distanceMetres = cursor.getInt(cursor.getColumnIndexOrThrow(WorkoutSessionContentProvider.Contract.DISTANCE));
-            int durationMilliseconds = cursor.getInt(cursor.getColumnIndexOrThrow(WorkoutSessionContentProvider.Contract.DURATION));
+            long durationMilliseconds = cursor.getLong(cursor.getColumnIndexOrThrow(WorkoutSessionContentProvider.Contract.DURATION));
             int date = cursor.getInt(cursor.getColumnIndexOrThrow(WorkoutSessionContentProvider.Contract.DATE));
             int month = cursor.getInt(cursor.getColumnIndexOrThrow(WorkoutSessionContentProvider.Contract.MONTH));
             int year = cursor.getInt(cursor.getColumnIndexOrThrow(WorkoutSessionContentProvider.Contract.YEAR));
             int hour = cursor.getInt(cursor.getColumnIndexOrThrow(WorkoutSessionContentProvider.Contract.HOUR));
             int minute = cursor.getInt(cursor.getColumnIndexOrThrow(WorkoutSessionContentProvider.Contract.MINUTE));
             int workoutType = cursor.getInt(cursor.getColumnIndexOrThrow(WorkoutSessionContentProvider.Contract.WORKOUT_TYPE));
-            String allLatitudes = cursor.getString(cursor.getColumnIndexOrThrow(WorkoutSessionContentProvider.Contract.LATITUDE));
-            String allLongitudes = cursor.getString(cursor.getColumnIndexOrThrow(WorkoutSessionContentProvider.Contract.LONGITUDE));
 
             double metresPerSecond = 0;
-            int seconds = durationMilliseconds / MILLISECONDS_PER_SECOND;
+            long seconds = durationMilliseconds / MILLISECONDS_PER_SECOND;
             if(seconds > 0){
                 metresPerSecond = (double) distanceMetres / (double) seconds;
             }
@@ -188,8 +224,6 @@ public class ViewWorkoutSession extends AppCompatActivity implements OnMapReadyC
                     + ValueFormatter.formatTime(hour, minute);
             completeDate.setText(fullDateAndTime);
             workoutTypeImage.setImageResource(Math.max(0, sessionTypeIcons[workoutType]));
-            latitudes = splitCoordinates(allLatitudes);
-            longitudes = splitCoordinates(allLongitudes);
         }
 
         if(cursor != null){
@@ -228,6 +262,17 @@ public class ViewWorkoutSession extends AppCompatActivity implements OnMapReadyC
     }
 
 
+    /**
+     * Opens the tracker to race this session, showing how far ahead or behind of it the next
+     * session is
+     */
+    private void raceSession(){
+        Intent intent = new Intent(this, RunningTracker.class);
+        intent.putExtra(RunningTracker.INTENT_GHOST_SESSION_ID, sessionId);
+        intent.setFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        startActivity(intent);
+    }
+
     /**
      * Deletes the session from the database
      */
@@ -237,18 +282,34 @@ public class ViewWorkoutSession extends AppCompatActivity implements OnMapReadyC
         getContentResolver().delete(uri, null, null);
     }
 
-    private double[] splitCoordinates(String allCoordinates){
-        if("".equals(allCoordinates)){
-            return null;
-        }
+    /**
+     * Reads and decodes the route of the session on a background thread, then prepares it for
+     * display at each zoom level. The route is drawn once this has finished
+     */
+    private class RouteLoader extends AsyncTask<Long, Void, RouteLevelOfDetail> {
 
-        String[] splitCoordinates = allCoordinates.split(";");
-        double[] coordinates = new double[splitCoordinates.length];
+        @Override
+        protected RouteLevelOfDetail doInBackground(Long... sessionIds) {
+            WorkoutSessionRoute route = WorkoutSessionRoute.load(getContentResolver(), sessionIds[0]);
 
-        for(int i = 0; i < splitCoordinates.length; i++){
-            coordinates[i] = Double.parseDouble(splitCoordinates[i]);
+            // If there is no route to show there is nothing to draw
+            if(route == null || isCancelled()){
+                return null;
+            }
+
+            return new RouteLevelOfDetail(route.getLatitudes(), route.getLongitudes());
         }
 
-        return coordinates;
+        @Override
+        protected void onPostExecute(RouteLevelOfDetail result) {
+            if(result == null || isFinishing()){
+                return;
+            }
+
+            routeLevelOfDetail = result;
+            if(googleMap != null){
+                drawRoute();
+            }
+        }
     }
 }
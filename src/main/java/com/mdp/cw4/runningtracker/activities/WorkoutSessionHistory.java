@@ -1,35 +1,46 @@
 package com.mdp.cw4.runningtracker.activities;
 
+import android.arch.lifecycle.Observer;
+import android.arch.paging.LivePagedListBuilder;
+import android.arch.paging.PagedList;
+import android.content.ContentUris;
 import android.content.Intent;
 import android.database.ContentObserver;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.Bundle;
+import android.support.annotation.Nullable;
 import android.support.constraint.ConstraintLayout;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.DividerItemDecoration;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.view.View;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.CheckBox;
 import android.widget.CompoundButton;
-import android.widget.ImageView;
-import android.widget.ListView;
-import android.widget.SimpleCursorAdapter;
 import android.widget.Spinner;
-import android.widget.TextView;
 
 import com.mdp.cw4.runningtracker.R;
-import com.mdp.cw4.runningtracker.ValueFormatter;
 import com.mdp.cw4.runningtracker.WorkoutSessionContentProvider;
+import com.mdp.cw4.runningtracker.WorkoutSessionDataSource;
+import com.mdp.cw4.runningtracker.WorkoutSessionSummary;
 import com.mdp.cw4.runningtracker.WorkoutType;
+import com.mdp.cw4.runningtracker.WorkoutTypeFilter;
+import com.mdp.cw4.runningtracker.Views.RouteThumbnailLoader;
+import com.mdp.cw4.runningtracker.Views.SessionListAdapter;
 
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * <h1>Session History</h1>
@@ -40,7 +51,11 @@ import java.util.Locale;
 public class WorkoutSessionHistory extends AppCompatActivity {
 
     private SessionContentObserver sessionContentObserver;
-    private ListView sessionList;
+    private ExecutorService sessionChangeExecutor = Executors.newSingleThreadExecutor();
+    private RecyclerView sessionList;
+    private SessionListAdapter sessionListAdapter;
+    private RouteThumbnailLoader routeThumbnailLoader;
+    private WorkoutSessionDataSource.Factory sessionDataSourceFactory;
     private Spinner dateDropdown;
     private Spinner monthDropdown;
     private Spinner yearDropdown;
@@ -53,8 +68,6 @@ public class WorkoutSessionHistory extends AppCompatActivity {
     private Button openCloseFilterOptionsButton;
     private boolean filterOptionsVisible = true;
 
-    private int sessionTypeIcons[] = { R.drawable.runner, R.drawable.walking, R.drawable.cyclist };
-
     public static final String SESSION_INTENT_ID = "com.mdp.cw4.runningtracker.sessionintentid";
     private static final int NO_FILTER_POSITION = 0;
     private static final int DESCENDING = 0;
@@ -79,6 +92,9 @@ public class WorkoutSessionHistory extends AppCompatActivity {
     public void onDestroy(){
         super.onDestroy();
         getContentResolver().unregisterContentObserver(sessionContentObserver);
+        sessionContentObserver.cancel();
+        sessionChangeExecutor.shutdown();
+        routeThumbnailLoader.shutdown();
     }
 
     @Override
@@ -111,13 +127,44 @@ public class WorkoutSessionHistory extends AppCompatActivity {
         walkingCheckbox = (CheckBox) findViewById(R.id.walkingCheckBox);
         cyclingCheckbox = (CheckBox) findViewById(R.id.cyclingCheckBox);
 
-        sessionList = (ListView) findViewById(R.id.sessionList);
+        sessionList = (RecyclerView) findViewById(R.id.sessionList);
+        setupSessionList();
 
         runningCheckbox.setOnCheckedChangeListener(checkedChangeListener);
         walkingCheckbox.setOnCheckedChangeListener(checkedChangeListener);
         cyclingCheckbox.setOnCheckedChangeListener(checkedChangeListener);
     }
 
+    /**
+     * Sets up the paged session list. Pages of sessions are loaded in the background as the user
+     * scrolls, and each time the sessions are reloaded the new list is compared with the old so
+     * that only the rows which have changed are updated
+     */
+    private void setupSessionList(){
+        final int PAGE_SIZE = 30;
+
+        routeThumbnailLoader = new RouteThumbnailLoader(this);
+        sessionListAdapter = new SessionListAdapter(sessionClickListener, routeThumbnailLoader);
+        sessionList.setLayoutManager(new LinearLayoutManager(this));
+        sessionList.addItemDecoration(new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
+        sessionList.setAdapter(sessionListAdapter);
+
+        sessionDataSourceFactory = new WorkoutSessionDataSource.Factory(getContentResolver());
+
+        PagedList.Config pagedListConfig = new PagedList.Config.Builder()
+                .setPageSize(PAGE_SIZE)
+                .setEnablePlaceholders(false)
+                .build();
+
+        new LivePagedListBuilder<>(sessionDataSourceFactory, pagedListConfig).build()
+                .observe(this, new Observer<PagedList<WorkoutSessionSummary>>() {
+                    @Override
+                    public void onChanged(@Nullable PagedList<WorkoutSessionSummary> sessions) {
+                        sessionListAdapter.submitList(sessions);
+                    }
+                });
+    }
+
     /**
      * Delegates the opening and closing of the filter options
      */
@@ -307,118 +354,38 @@ public class WorkoutSessionHistory extends AppCompatActivity {
             };
 
     /**
-     * Populates the list view with details about past workout sessions the user has completed
+     * Populates the list with details about past workout sessions the user has completed by
+     * applying the selected filters and sort order to the paged session list.
      * If no activities are selected i.e. their checkboxes are not checked, then there is nothing
-     * to add to the list so simply return.
+     * to add to the list so the list is emptied.
      */
     private void populateListOfWorkoutSessions(){
 
         if(!runningCheckbox.isChecked() && !walkingCheckbox.isChecked() && !cyclingCheckbox.isChecked()) {
-            ArrayAdapter<String> adapter = new ArrayAdapter<>(this,
-                    android.R.layout.simple_list_item_1, android.R.id.text1, new String[]{});
-
-            sessionList.setAdapter(adapter);
-            return;
-        }
-
-        Cursor cursor = getWorkoutSessionsFromContentProvider();
-        if(cursor == null){
+            sessionDataSourceFactory.setQuery(null);
             return;
         }
 
-        String[] columnsToDisplay = new String[]{
-                WorkoutSessionContentProvider.Contract.DATE,
-                WorkoutSessionContentProvider.Contract.MONTH,
-                WorkoutSessionContentProvider.Contract.YEAR,
-                WorkoutSessionContentProvider.Contract.DISTANCE,
-                WorkoutSessionContentProvider.Contract.DURATION,
-                WorkoutSessionContentProvider.Contract.WORKOUT_TYPE,
-                WorkoutSessionContentProvider.Contract.HOUR,
-                WorkoutSessionContentProvider.Contract.MINUTE,
-                WorkoutSessionContentProvider.Contract._ID,
-        };
-
-        final SimpleCursorAdapter simpleCursorAdapter = new SimpleCursorAdapter(this, R.layout.single_session_entry,
-                cursor, columnsToDisplay,
-                new int[] { R.id.date, R.id.month, R.id.year, R.id.distance, R.id.duration,
-                        R.id.sessionTypeImage, R.id.hour, R.id.minute }, 0);
-
-        simpleCursorAdapter.setViewBinder(workoutSessionViewBinder);
-
-        sessionList.setAdapter(simpleCursorAdapter);
-
-        sessionList.setOnItemClickListener(new AdapterView.OnItemClickListener() {
-            @Override
-            public void onItemClick(AdapterView<?> adapterView, View view, int i, long l) {
-                Intent intent = new Intent(WorkoutSessionHistory.this, ViewWorkoutSession.class);
-                intent.putExtra(SESSION_INTENT_ID, sessionList.getAdapter().getItemId(i));
-                startActivity(intent);
-            }
-        });
+        sessionDataSourceFactory.setQuery(getWorkoutSessionQuery());
     }
 
     /**
-     * Assigns the incoming values from the cursor to their relevant View in the entry
+     * Opens the selected session to show its details
      */
-    private SimpleCursorAdapter.ViewBinder workoutSessionViewBinder = new SimpleCursorAdapter.ViewBinder() {
-        final int DATE_COLUMN_INDEX = 1;
-        final int MONTH_COLUMN_INDEX = 2;
-        final int DISTANCE_COLUMN_INDEX = 4;
-        final int DURATION_COLUMN_INDEX = 5;
-        final int SESSION_MODE_COLUMN_INDEX = 6;
-        final int HOUR_COLUMN_INDEX = 7;
-        final int MINUTE_COLUMN_INDEX = 8;
-
-        /**
-         *
-         * @param view              View within the list entry
-         * @param cursor            Cursor object containing the values return from the database
-         * @param columnNumber      Index of the column within the cursor object.
-         *                          This is set upon the initial query
-         */
-        @Override
-        public boolean setViewValue(View view, Cursor cursor, int columnNumber) {
-
-            int value = cursor.getInt(columnNumber);
-            switch (columnNumber){
-                case DATE_COLUMN_INDEX:
-                    TextView textView = (TextView) view;
-                    textView.setText(ValueFormatter.formatDateOfMonth(value));
-                    return true;
-                case MONTH_COLUMN_INDEX:
-                    textView = (TextView) view;
-                    textView.setText(ValueFormatter.formatMonth(value));
-                    return true;
-                case DISTANCE_COLUMN_INDEX:
-                    textView = (TextView) view;
-                    textView.setText(ValueFormatter.formatDistance(value));
-                    return true;
-                case DURATION_COLUMN_INDEX:
-                    textView = (TextView) view;
-                    textView.setText(ValueFormatter.formatDuration(value));
-                    return true;
-                case SESSION_MODE_COLUMN_INDEX:
-                    ImageView imageView = (ImageView) view;
-                    if(value < sessionTypeIcons.length){
-                        imageView.setImageResource(sessionTypeIcons[value]);
-                    }
-                    return true;
-                case HOUR_COLUMN_INDEX:
-                    textView = (TextView) view;
-                    textView.setText(String.format(Locale.ENGLISH, "%02d", value));
-                    return true;
-                case MINUTE_COLUMN_INDEX:
-                    textView = (TextView) view;
-                    String minute = ":" + String.format(Locale.ENGLISH, "%02d", value);
-                    textView.setText(minute);
-                    return true;
-
-            }
-            return false;
-        }
-    };
+    private SessionListAdapter.OnSessionClickListener sessionClickListener =
+            new SessionListAdapter.OnSessionClickListener() {
+                @Override
+                public void onSessionClick(long sessionId) {
+                    Intent intent = new Intent(WorkoutSessionHistory.this, ViewWorkoutSession.class);
+                    intent.putExtra(SESSION_INTENT_ID, sessionId);
+                    startActivity(intent);
+                }
+            };
 
-    public Cursor getWorkoutSessionsFromContentProvider() {
+    /**
+     * Builds the query for the sessions matching the filters and sort order selected by the user
+     */
+    public WorkoutSessionDataSource.Query getWorkoutSessionQuery() {
         // Predefined sort order used to easily create a query based on the selected positions of
         // the dropdown menus
         final String[] sortOrdersDesc = {
@@ -441,23 +408,10 @@ public class WorkoutSessionHistory extends AppCompatActivity {
                 WorkoutSessionContentProvider.Contract.DURATION
         };
 
-        String[] columns = new String[]{
-                WorkoutSessionContentProvider.Contract._ID,
-                WorkoutSessionContentProvider.Contract.DATE,
-                WorkoutSessionContentProvider.Contract.MONTH,
-                WorkoutSessionContentProvider.Contract.YEAR,
-                WorkoutSessionContentProvider.Contract.DISTANCE,
-                WorkoutSessionContentProvider.Contract.DURATION,
-                WorkoutSessionContentProvider.Contract.WORKOUT_TYPE,
-                WorkoutSessionContentProvider.Contract.HOUR,
-                WorkoutSessionContentProvider.Contract.MINUTE
-        };
-
         // Parse the queries for the date filters and types of activities selected
         List<String> selectionArguments = new ArrayList<>();
         String selection = parseDateSelections(selectionArguments);
         String workoutSelection = parseWorkoutSelection();
-        selectionArguments = addWorkoutSelectionArgs(selectionArguments);
 
         // If no date selections were made, then the selection is just whatever activities are
         // selected
@@ -476,8 +430,8 @@ public class WorkoutSessionHistory extends AppCompatActivity {
             sortOrder = sortOrdersAsc[Math.max(0, sortByDropdown.getSelectedItemPosition())];
         }
 
-        return getContentResolver().query(WorkoutSessionContentProvider.Contract.SESSION_URI, columns,
-                selection, selectionArguments.toArray(new String[selectionArguments.size()]), sortOrder);
+        return new WorkoutSessionDataSource.Query(selection,
+                selectionArguments.toArray(new String[selectionArguments.size()]), sortOrder);
     }
 
     /**
@@ -516,70 +470,55 @@ public class WorkoutSessionHistory extends AppCompatActivity {
     }
 
     /**
-     * Prepares the selection query and arguments if the user filters by workout type
-     * @return  Selection query
+     * Prepares the selection query if the user filters by workout type
+     * @return  Selection query, or null if no workout types have been selected, in which case all
+     *          sessions are shown
      */
     private String parseWorkoutSelection(){
-        int numberOfSelectedWorkoutTypes = calculateNumberOfSelectedSessionTypes();
-
-        // If no workout types have been selected then simple return null
-        if(numberOfSelectedWorkoutTypes == 0){
-            return null;
-        }
-
-        // There will be at least one selection
-        String selection = WorkoutSessionContentProvider.Contract.WORKOUT_TYPE + " = ? ";
-
-        // For every subsequent selection add another clause
-        for(int i = 1; i < numberOfSelectedWorkoutTypes; i++){
-            selection += "OR " + WorkoutSessionContentProvider.Contract.WORKOUT_TYPE + " = ? ";
-        }
+        int mask = WorkoutTypeFilter.NONE;
 
-        return selection;
-    }
-
-    /**
-     * Calculates the number of selected session types based on the checkboxes
-     * @return  Number of selection session types
-     */
-    private int calculateNumberOfSelectedSessionTypes() {
-        int running = runningCheckbox.isChecked() ? 1 : 0;
-        int walking = walkingCheckbox.isChecked() ? 1 : 0;
-        int cycling = cyclingCheckbox.isChecked() ? 1 : 0;
-        return running + walking + cycling;
-    }
-
-    /**
-     * Adds the relevant selection arguments to the list depending on whether the workout type has been
-     * selected or not by the user
-     * @param selectionArgs List of selection arguments to add to. This will be passed on to the
-     *                      content provider when carrying out the query
-     * @return              List of selection arguments
-     */
-    private List<String> addWorkoutSelectionArgs(List<String> selectionArgs){
         if(runningCheckbox.isChecked()){
-            selectionArgs.add(String.valueOf(WorkoutType.RUNNING.getworkoutTypeID()));
+            mask |= WorkoutTypeFilter.getMask(WorkoutType.RUNNING);
         }
 
         if(walkingCheckbox.isChecked()){
-            selectionArgs.add(String.valueOf(WorkoutType.WALKING.getworkoutTypeID()));
+            mask |= WorkoutTypeFilter.getMask(WorkoutType.WALKING);
         }
 
         if(cyclingCheckbox.isChecked()){
-            selectionArgs.add(String.valueOf(WorkoutType.CYCLING.getworkoutTypeID()));
+            mask |= WorkoutTypeFilter.getMask(WorkoutType.CYCLING);
         }
 
-        return selectionArgs;
+        if(mask == WorkoutTypeFilter.NONE){
+            return null;
+        }
+
+        return WorkoutTypeFilter.getSelection(mask);
     }
 
     /**
      * <h1>Session Content Observer</h1>
-     * Observes changes to the session database
+     * Observes changes to the session database.
+     * <p>
+     * Notifications are collected over a short window before being handled, so that a burst of
+     * changes, for example deleting many sessions, results in at most one reload. Where the
+     * notification identifies a single session, the session is checked against what the list is
+     * showing: a change to a session which is neither displayed nor matched by the current filters
+     * does not reload the list at all. Otherwise the paged list is invalidated, and the diff against
+     * the old list means only the affected rows are updated. Notifications which do not identify
+     * a session always cause the list to be reloaded
      */
     class SessionContentObserver extends ContentObserver {
+        private static final int COALESCE_WINDOW_MILLISECONDS = 250;
+
+        private final Handler handler;
+        private final Set<Long> changedSessionIds = new HashSet<>();
+        private boolean reloadRequired;
+        private boolean changesPending;
 
         SessionContentObserver(Handler handler) {
             super(handler);
+            this.handler = handler;
         }
 
         @Override
@@ -587,9 +526,98 @@ public class WorkoutSessionHistory extends AppCompatActivity {
             this.onChange(selfChange, null);
         }
 
+        /**
+         * Records the change, which is applied once no further changes have arrived for the
+         * duration of the coalesce window. As the observer was created with a Handler on the UI
+         * thread, this is always called on the UI thread
+         */
         @Override
         public void onChange(boolean selfChange, Uri uri) {
-            populateListOfWorkoutSessions();
+            long sessionId = parseSessionId(uri);
+            if(sessionId == -1){
+                reloadRequired = true;
+            }else{
+                changedSessionIds.add(sessionId);
+            }
+
+            changesPending = true;
+            handler.removeCallbacks(applyChanges);
+            handler.postDelayed(applyChanges, COALESCE_WINDOW_MILLISECONDS);
+        }
+
+        /**
+         * Stops any pending changes from being applied
+         */
+        void cancel(){
+            handler.removeCallbacks(applyChanges);
+            changesPending = false;
         }
+
+        /**
+         * @return  id of the session the notification refers to, or -1 if it does not refer to a
+         *          single session
+         */
+        private long parseSessionId(Uri uri){
+            if(uri == null){
+                return -1;
+            }
+
+            try {
+                return ContentUris.parseId(uri);
+            }catch(NumberFormatException | UnsupportedOperationException e){
+                return -1;
+            }
+        }
+
+        private final Runnable applyChanges = new Runnable() {
+            @Override
+            public void run() {
+                if(!changesPending){
+                    return;
+                }
+                changesPending = false;
+
+                if(reloadRequired){
+                    reloadRequired = false;
+                    changedSessionIds.clear();
+                    sessionDataSourceFactory.invalidate();
+                    return;
+                }
+
+                // A session that is currently displayed has been updated or deleted, so the list
+                // must be reloaded. No need to check the database for the other sessions
+                PagedList<WorkoutSessionSummary> displayedSessions = sessionListAdapter.getCurrentList();
+                if(displayedSessions != null){
+                    for(WorkoutSessionSummary session : displayedSessions){
+                        if(session != null && changedSessionIds.contains(session.getId())){
+                            changedSessionIds.clear();
+                            sessionDataSourceFactory.invalidate();
+                            return;
+                        }
+                    }
+                }
+
+                // Otherwise the sessions are either new, or were not displayed. The list only
+                // needs reloading if one of them now matches the filters
+                final long[] sessionIds = new long[changedSessionIds.size()];
+                int i = 0;
+                for(Long sessionId : changedSessionIds){
+                    sessionIds[i++] = sessionId;
+                }
+                changedSessionIds.clear();
+
+                sessionChangeExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        for(long sessionId : sessionIds){
+                            if(sessionDataSourceFactory.isSessionInQuery(sessionId)){
+                                sessionDataSourceFactory.invalidate();
+                                return;
+                            }
+                        }
+                    }
+                });
+            }
+        };
     }
 }
@@ -0,0 +1,105 @@
+package com.mdp.cw4.runningtracker;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BestEffortCalculatorTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void steadySession_everyEffortAtSameSpeed() throws Exception {
+        // 12 km at 4 m/s with a point every 100 m
+        double[] distances = new double[121];
+        double[] times = new double[121];
+        for(int i = 0; i < distances.length; i++){
+            distances[i] = i * 100;
+            times[i] = i * 25;
+        }
+
+        List<BestEffortCalculator.Effort> efforts = BestEffortCalculator.calculate(distances, times);
+
+        assertEquals(BestEffort.values().length, efforts.size());
+        for(BestEffortCalculator.Effort effort : efforts){
+            assertEquals(4, effort.getSpeed(), DELTA);
+        }
+        assertEquals(250, find(efforts, BestEffort.ONE_KILOMETRE).getDurationSeconds(), DELTA);
+        assertEquals(4800, find(efforts, BestEffort.TWENTY_MINUTES).getDistanceMetres(), DELTA);
+    }
+
+    @Test
+    public void fastestKilometre_startsPartWayBetweenPoints() throws Exception {
+        // 500 m at 2 m/s, 1 km at 5 m/s, then 500 m at 2 m/s
+        double[] distances = { 0, 500, 1500, 2000 };
+        double[] times = { 0, 250, 450, 700 };
+
+        BestEffortCalculator.Effort kilometre = find(BestEffortCalculator.calculate(distances, times),
+                BestEffort.ONE_KILOMETRE);
+
+        assertEquals(200, kilometre.getDurationSeconds(), DELTA);
+        assertEquals(250, kilometre.getStartSeconds(), DELTA);
+        assertNull(find(BestEffortCalculator.calculate(distances, times), BestEffort.FIVE_KILOMETRES));
+    }
+
+    @Test
+    public void fastestKilometre_endsPartWayBetweenPoints() throws Exception {
+        // The fast section is followed by a long slow segment, so the best kilometre starts at a
+        // point and ends part way along the slow segment
+        double[] distances = { 0, 900, 1900 };
+        double[] times = { 0, 100, 1100 };
+
+        BestEffortCalculator.Effort kilometre = find(BestEffortCalculator.calculate(distances, times),
+                BestEffort.ONE_KILOMETRE);
+
+        assertEquals(200, kilometre.getDurationSeconds(), DELTA);
+        assertEquals(0, kilometre.getStartSeconds(), DELTA);
+    }
+
+    @Test
+    public void mostDistanceInTwentyMinutes() throws Exception {
+        // 10 minutes at 3 m/s, 20 minutes at 4 m/s, then 10 minutes at 3 m/s
+        double[] distances = { 0, 1800, 6600, 8400 };
+        double[] times = { 0, 600, 1800, 2400 };
+
+        BestEffortCalculator.Effort twentyMinutes = find(BestEffortCalculator.calculate(distances, times),
+                BestEffort.TWENTY_MINUTES);
+
+        assertEquals(4800, twentyMinutes.getDistanceMetres(), DELTA);
+        assertEquals(600, twentyMinutes.getStartSeconds(), DELTA);
+    }
+
+    @Test
+    public void pointsRecordedAtTheSameTime_areNotAnEffort() throws Exception {
+        // A jump in position between two fixes with the same time
+        double[] distances = { 0, 1200 };
+        double[] times = { 300, 300 };
+
+        BestEffortCalculator.Effort kilometre = find(BestEffortCalculator.calculate(distances, times),
+                BestEffort.ONE_KILOMETRE);
+
+        assertNull(kilometre);
+    }
+
+    @Test
+    public void shortOrMismatchedRoute_hasNoEfforts() throws Exception {
+        assertTrue(BestEffortCalculator.calculate(new double[] { 0 }, new double[] { 0 }).isEmpty());
+        assertTrue(BestEffortCalculator.calculate(new double[] { 0, 2000 }, new double[] { 0 }).isEmpty());
+    }
+
+    @Test
+    public void interpolateTimes_spreadsPointsOverDuration() throws Exception {
+        assertArrayEquals(new double[] { 0, 50, 100, 150 }, BestEffortCalculator.interpolateTimes(4, 150), DELTA);
+    }
+
+    private static BestEffortCalculator.Effort find(List<BestEffortCalculator.Effort> efforts, BestEffort bestEffort){
+        for(BestEffortCalculator.Effort effort : efforts){
+            if(effort.getBestEffort() == bestEffort){
+                return effort;
+            }
+        }
+        return null;
+    }
+}
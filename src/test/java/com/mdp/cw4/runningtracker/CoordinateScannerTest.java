@@ -0,0 +1,56 @@
+package com.mdp.cw4.runningtracker;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CoordinateScannerTest {
+
+    @Test
+    public void decode_matchesParseDouble() throws Exception {
+        Random random = new Random(7);
+        int numberOfCoordinates = 100000;
+        double[] expected = new double[numberOfCoordinates];
+        StringBuilder allCoordinates = new StringBuilder();
+
+        // Mix of ordinary coordinates, values close to zero which Double.toString writes with an
+        // exponent, and values with too many digits for the fast path
+        for(int i = 0; i < numberOfCoordinates; i++){
+            switch(i % 3){
+                case 0:
+                    expected[i] = (random.nextDouble() - 0.5) * 360;
+                    break;
+                case 1:
+                    expected[i] = (random.nextDouble() - 0.5) * 1e-3;
+                    break;
+                default:
+                    expected[i] = random.nextGaussian() * 1e12;
+            }
+            allCoordinates.append(expected[i]);
+            allCoordinates.append(";");
+        }
+
+        double[] coordinates = CoordinateScanner.decode(allCoordinates.toString());
+
+        assertEquals(numberOfCoordinates, coordinates.length);
+        for(int i = 0; i < numberOfCoordinates; i++){
+            assertEquals(Double.doubleToLongBits(expected[i]), Double.doubleToLongBits(coordinates[i]));
+        }
+    }
+
+    @Test
+    public void decode_emptyRoute() throws Exception {
+        assertNull(CoordinateScanner.decode(""));
+        assertNull(CoordinateScanner.decode(null));
+        assertTrue(Double.isNaN(CoordinateScanner.decodeFirst("")));
+    }
+
+    @Test
+    public void decode_withoutTrailingSeparator() throws Exception {
+        assertArrayEquals(new double[] { 52.5, -1.25, 3.0E-5 },
+                CoordinateScanner.decode("52.5;-1.25;3.0E-5"), 0);
+        assertEquals(52.5, CoordinateScanner.decodeFirst("52.5;-1.25;"), 0);
+    }
+}
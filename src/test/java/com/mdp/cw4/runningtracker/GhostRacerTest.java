@@ -0,0 +1,89 @@
+package com.mdp.cw4.runningtracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GhostRacerTest {
+
+    // 400 m in 120 s with a 10 s stop at 200 m
+    private static final double[] DISTANCES = { 0, 100, 200, 200, 300, 400 };
+    private static final double[] TIMES = { 0, 30, 55, 65, 90, 120 };
+
+    @Test
+    public void of_returnsNullForTooFewPoints() throws Exception {
+        assertNull(GhostRacer.of(new double[] { 0 }, new double[] { 0 }));
+        assertNull(GhostRacer.of(new double[0], new double[0]));
+    }
+
+    @Test
+    public void getTimeAtDistance_interpolatesBetweenPoints() throws Exception {
+        GhostRacer ghost = GhostRacer.of(DISTANCES, TIMES);
+        assertEquals(0, ghost.getTimeAtDistance(0), 1e-9);
+        assertEquals(15, ghost.getTimeAtDistance(50), 1e-9);
+        assertEquals(30, ghost.getTimeAtDistance(100), 1e-9);
+        assertEquals(105, ghost.getTimeAtDistance(350), 1e-9);
+        assertEquals(120, ghost.getTimeAtDistance(400), 1e-9);
+        assertTrue(Double.isNaN(ghost.getTimeAtDistance(401)));
+    }
+
+    @Test
+    public void getTimeAtDistance_usesFirstTimeDistanceWasReached() throws Exception {
+        GhostRacer ghost = GhostRacer.of(DISTANCES, TIMES);
+        assertEquals(55, ghost.getTimeAtDistance(200), 1e-9);
+        assertEquals(65 + 2.5, ghost.getTimeAtDistance(210), 1e-9);
+    }
+
+    @Test
+    public void getDistanceAtTime_interpolatesAndStopsAtFinish() throws Exception {
+        GhostRacer ghost = GhostRacer.of(DISTANCES, TIMES);
+        assertEquals(0, ghost.getDistanceAtTime(-5), 1e-9);
+        assertEquals(50, ghost.getDistanceAtTime(15), 1e-9);
+        assertEquals(200, ghost.getDistanceAtTime(60), 1e-9);
+        assertEquals(340, ghost.getDistanceAtTime(102), 1e-9);
+        assertEquals(400, ghost.getDistanceAtTime(500), 1e-9);
+    }
+
+    @Test
+    public void ahead_isPositiveWhenFasterThanGhost() throws Exception {
+        GhostRacer ghost = GhostRacer.of(DISTANCES, TIMES);
+
+        // 150 m in 40 s, where the ghost took 42.5 s and had covered 140 m
+        assertEquals(10, ghost.getMetresAhead(150, 40), 1e-9);
+        assertEquals(2.5, ghost.getSecondsAhead(150, 40), 1e-9);
+
+        // 100 m in 40 s
+        assertEquals(-40, ghost.getMetresAhead(100, 40), 1e-9);
+        assertEquals(-10, ghost.getSecondsAhead(100, 40), 1e-9);
+    }
+
+    @Test
+    public void of_keepsTimesFromDecreasing() throws Exception {
+        GhostRacer ghost = GhostRacer.of(new double[] { 0, 100, 200 }, new double[] { 0, 40, 30 });
+        assertEquals(40, ghost.getDurationSeconds(), 1e-9);
+        assertEquals(200, ghost.getTotalDistance(), 1e-9);
+        assertEquals(40, ghost.getTimeAtDistance(150), 1e-9);
+    }
+
+    @Test
+    public void getTimeAtDistance_matchesLinearSearchOnLongRoute() throws Exception {
+        int numberOfPoints = 10000;
+        double[] distances = new double[numberOfPoints];
+        double[] times = new double[numberOfPoints];
+        for(int i = 1; i < numberOfPoints; i++){
+            distances[i] = distances[i - 1] + (i % 7 == 0 ? 0 : 2 + i % 3);
+            times[i] = i;
+        }
+        GhostRacer ghost = GhostRacer.of(distances, times);
+
+        for(double distance = 0.5; distance < distances[numberOfPoints - 1]; distance += 97.3){
+            int point = 1;
+            while(distances[point] < distance){
+                point++;
+            }
+            double expected = times[point - 1] + (distance - distances[point - 1])
+                    / (distances[point] - distances[point - 1]) * (times[point] - times[point - 1]);
+            assertEquals(expected, ghost.getTimeAtDistance(distance), 1e-9);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.mdp.cw4.runningtracker;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+
+import static org.junit.Assert.*;
+
+public class GoalTypeTest {
+
+    @Test
+    public void getWeekStart_returnsMonday() throws Exception {
+        int monday = TrainingLoadCalculator.getDay(2017, Calendar.OCTOBER, 30);
+        for(int day = monday; day < monday + 7; day++){
+            assertEquals(monday, GoalType.getWeekStart(day));
+        }
+        assertEquals(monday - 7, GoalType.getWeekStart(monday - 1));
+
+        // Before 1970 as well
+        assertEquals(TrainingLoadCalculator.getDay(1969, Calendar.DECEMBER, 29),
+                GoalType.getWeekStart(TrainingLoadCalculator.getDay(1970, Calendar.JANUARY, 1)));
+        assertEquals(Calendar.MONDAY, TrainingLoadCalculator.getCalendar(GoalType.getWeekStart(-100))
+                .get(Calendar.DAY_OF_WEEK));
+    }
+
+    @Test
+    public void isStreakCurrent_untilEndOfNextDay() throws Exception {
+        assertTrue(GoalType.isStreakCurrent(100, 100));
+        assertTrue(GoalType.isStreakCurrent(100, 101));
+        assertFalse(GoalType.isStreakCurrent(100, 102));
+    }
+
+    @Test
+    public void getGoalType_byId() throws Exception {
+        for(GoalType goalType : GoalType.values()){
+            assertEquals(goalType, GoalType.getGoalType(goalType.getGoalTypeID()));
+        }
+        assertNull(GoalType.getGoalType(-1));
+    }
+}
@@ -0,0 +1,104 @@
+package com.mdp.cw4.runningtracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HeatmapDensityTest {
+
+    private static final double[] LATITUDES = { 52.9387, 52.9450, 52.9520, 52.9460, 52.9387 };
+    private static final double[] LONGITUDES = { -1.1955, -1.1800, -1.1900, -1.2050, -1.1955 };
+
+    @Test
+    public void addRoute_countsEachBinOnce() throws Exception {
+        HeatmapDensity outAndBack = new HeatmapDensity();
+        outAndBack.addRoute(new double[] { 52.9387, 52.9487, 52.9387 }, new double[] { -1.1955, -1.1955, -1.1955 }, 1);
+        HeatmapDensity out = new HeatmapDensity();
+        out.addRoute(new double[] { 52.9387, 52.9487 }, new double[] { -1.1955, -1.1955 }, 1);
+
+        assertEquals(out.getTileKeys(), outAndBack.getTileKeys());
+        for(long tileKey : outAndBack.getTileKeys()){
+            assertArrayEquals(out.getCounts(tileKey), outAndBack.getCounts(tileKey));
+            for(int count : outAndBack.getCounts(tileKey)){
+                assertTrue(count == 0 || count == 1);
+            }
+        }
+    }
+
+    @Test
+    public void addRoute_walksEveryBinAlongStep() throws Exception {
+        HeatmapDensity density = new HeatmapDensity();
+        // About 1.1 km due north, so one bin wide at the finest zoom level
+        density.addRoute(new double[] { 52.9387, 52.9487 }, new double[] { -1.1955, -1.1955 }, 1);
+
+        int zoom = HeatmapTiles.MAXIMUM_ZOOM;
+        int expectedBins = (int) Math.floor(HeatmapTiles.getBinY(52.9387, zoom))
+                - (int) Math.floor(HeatmapTiles.getBinY(52.9487, zoom)) + 1;
+        assertEquals(expectedBins, sum(density, zoom));
+        assertTrue(expectedBins > 20);
+    }
+
+    @Test
+    public void addRoute_leavesOutGaps() throws Exception {
+        HeatmapDensity density = new HeatmapDensity();
+        // 55 km between the points is a gap, so only the bins of the points themselves are counted
+        density.addRoute(new double[] { 52.9, 53.4 }, new double[] { -1.2, -1.2 }, 1);
+
+        for(int zoom = HeatmapTiles.MINIMUM_ZOOM; zoom <= HeatmapTiles.MAXIMUM_ZOOM; zoom++){
+            assertEquals(2, sum(density, zoom));
+        }
+    }
+
+    @Test
+    public void addRoute_takenAwayLeavesNothing() throws Exception {
+        HeatmapDensity density = new HeatmapDensity();
+        density.addRoute(LATITUDES, LONGITUDES, 1);
+        density.addRoute(LATITUDES, LONGITUDES, -1);
+
+        for(long tileKey : density.getTileKeys()){
+            for(int count : density.getCounts(tileKey)){
+                assertEquals(0, count);
+            }
+        }
+    }
+
+    @Test
+    public void add_matchesAddingRoutesTogether() throws Exception {
+        double[] otherLatitudes = { 52.9300, 52.9400, 52.9500 };
+        double[] otherLongitudes = { -1.2100, -1.1950, -1.1850 };
+
+        HeatmapDensity together = new HeatmapDensity();
+        together.addRoute(LATITUDES, LONGITUDES, 1);
+        together.addRoute(otherLatitudes, otherLongitudes, 1);
+
+        HeatmapDensity first = new HeatmapDensity();
+        first.addRoute(LATITUDES, LONGITUDES, 1);
+        HeatmapDensity second = new HeatmapDensity();
+        second.addRoute(otherLatitudes, otherLongitudes, 1);
+        first.add(second);
+
+        assertEquals(together.getTileKeys(), first.getTileKeys());
+        int shared = 0;
+        for(long tileKey : together.getTileKeys()){
+            assertArrayEquals(together.getCounts(tileKey), first.getCounts(tileKey));
+            for(int count : first.getCounts(tileKey)){
+                if(count == 2){
+                    shared++;
+                }
+            }
+        }
+        assertTrue(shared > 0);
+    }
+
+    private static int sum(HeatmapDensity density, int zoom){
+        int total = 0;
+        for(long tileKey : density.getTileKeys()){
+            if(HeatmapTiles.getZoom(tileKey) == zoom){
+                for(int count : density.getCounts(tileKey)){
+                    total += count;
+                }
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,62 @@
+package com.mdp.cw4.runningtracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HeatmapTilesTest {
+
+    @Test
+    public void getKey_roundTrips() throws Exception {
+        long key = HeatmapTiles.getKey(15, 16224, 10661);
+        assertEquals(15, HeatmapTiles.getZoom(key));
+        assertEquals(16224, HeatmapTiles.getX(key));
+        assertEquals(10661, HeatmapTiles.getY(key));
+    }
+
+    @Test
+    public void getBin_matchesMapTiles() throws Exception {
+        // The centre of the world is the corner of the four tiles of zoom level 1
+        assertEquals(HeatmapTiles.BINS_PER_SIDE, HeatmapTiles.getBinX(0, 1), 1e-9);
+        assertEquals(HeatmapTiles.BINS_PER_SIDE, HeatmapTiles.getBinY(0, 1), 1e-9);
+
+        // Nottingham is in tile 16275, 10683 of zoom level 15
+        assertEquals(16275, (int) (HeatmapTiles.getBinX(-1.1955, 15) / HeatmapTiles.BINS_PER_SIDE));
+        assertEquals(10683, (int) (HeatmapTiles.getBinY(52.9387, 15) / HeatmapTiles.BINS_PER_SIDE));
+
+        // Poles are clamped to the edge of the world
+        assertEquals(0, HeatmapTiles.getBinY(90, 10), 1e-6);
+        assertEquals(HeatmapTiles.getBinsAcrossWorld(10), HeatmapTiles.getBinY(-90, 10), 1e-6);
+    }
+
+    @Test
+    public void getColor_heatsUpWithSessions() throws Exception {
+        assertEquals(0, HeatmapTiles.getColor(0));
+
+        int previousAlpha = 0;
+        int previousGreen = -1;
+        for(int sessions = 1; sessions <= 64; sessions++){
+            int color = HeatmapTiles.getColor(sessions);
+            int alpha = color >>> 24;
+            int green = (color >> 8) & 0xff;
+            assertTrue(alpha >= previousAlpha);
+            assertTrue(green >= previousGreen);
+            previousAlpha = alpha;
+            previousGreen = green;
+        }
+        assertEquals(0xffffffff, HeatmapTiles.getColor(64));
+    }
+
+    @Test
+    public void encode_roundTrips() throws Exception {
+        int[] counts = new int[HeatmapTiles.BINS_PER_SIDE * HeatmapTiles.BINS_PER_SIDE];
+        counts[0] = 3;
+        counts[100] = 1;
+        counts[counts.length - 1] = 70000;
+
+        byte[] encoded = HeatmapTiles.encode(counts);
+
+        assertArrayEquals(counts, HeatmapTiles.decode(encoded));
+        assertTrue(encoded.length < 100);
+    }
+}
@@ -0,0 +1,48 @@
+package com.mdp.cw4.runningtracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketUpperBound_isWithinPrecisionOfEveryValue() throws Exception {
+        long[] values = { 0, 1, 15, 16, 17, 31, 32, 33, 1000, 123456, 999999999L, 1L << 40 };
+
+        for(long value : values){
+            long upperBound = LatencyHistogram.getBucketUpperBound(LatencyHistogram.getBucketIndex(value));
+            assertTrue(value + " above " + upperBound, upperBound >= value);
+            assertTrue(value + " too far below " + upperBound, upperBound - value <= value / 16);
+        }
+    }
+
+    @Test
+    public void bucketIndex_increasesWithValue() throws Exception {
+        int previousIndex = -1;
+        for(long value = 0; value < 100000; value++){
+            int index = LatencyHistogram.getBucketIndex(value);
+            assertTrue(index == previousIndex || index == previousIndex + 1);
+            previousIndex = index;
+        }
+    }
+
+    @Test
+    public void percentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for(int i = 1; i <= 1000; i++){
+            histogram.recordMicroseconds(i);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMaximumMicroseconds());
+        assertEquals(500.5, histogram.getMeanMicroseconds(), 1e-9);
+        assertEquals(500, histogram.getPercentileMicroseconds(50), 500 / 16);
+        assertEquals(990, histogram.getPercentileMicroseconds(99), 990 / 16);
+        assertEquals(1000, histogram.getPercentileMicroseconds(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMicroseconds(50));
+    }
+}
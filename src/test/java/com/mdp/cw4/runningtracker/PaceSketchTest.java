@@ -0,0 +1,138 @@
+package com.mdp.cw4.runningtracker;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PaceSketchTest {
+
+    // Relative error of a quantile documented by PaceSketch
+    private static final double RELATIVE_ERROR = 1.0 / 64;
+
+    @Test
+    public void quantiles_withinErrorBoundOfExactWeightedQuantiles() throws Exception {
+        Random random = new Random(42);
+        for(int trial = 0; trial < 200; trial++){
+            int numberOfSteps = 1 + random.nextInt(500);
+            double[] speeds = new double[numberOfSteps];
+            long[] durations = new long[numberOfSteps];
+            PaceSketch sketch = new PaceSketch();
+            for(int i = 0; i < numberOfSteps; i++){
+                // Whole millimetres per second, between walking and cycling speeds
+                speeds[i] = (500 + random.nextInt(15000)) / 1000.0;
+                durations[i] = 1 + random.nextInt(20000);
+                sketch.add(speeds[i], durations[i] / 1000.0);
+            }
+
+            for(double quantile : new double[] { 0.1, 0.5, 0.9, 1 }){
+                double exact = exactQuantile(speeds, durations, quantile);
+                assertEquals(exact, sketch.getQuantile(quantile), exact * RELATIVE_ERROR);
+            }
+        }
+    }
+
+    @Test
+    public void merge_equalsSketchOfEveryStep() throws Exception {
+        PaceSketch whole = new PaceSketch();
+        PaceSketch first = new PaceSketch();
+        PaceSketch second = new PaceSketch();
+        Random random = new Random(7);
+        for(int i = 0; i < 1000; i++){
+            double speed = random.nextDouble() * 12;
+            double duration = random.nextDouble() * 10;
+            whole.add(speed, duration);
+            (i % 3 == 0 ? first : second).add(speed, duration);
+        }
+
+        first.merge(second);
+
+        assertEquals(whole.encode(), first.encode());
+        assertEquals(whole.getTotalMilliseconds(), first.getTotalMilliseconds());
+    }
+
+    @Test
+    public void subtract_undoesMerge() throws Exception {
+        PaceSketch rollup = new PaceSketch();
+        rollup.add(3, 600);
+        PaceSketch session = new PaceSketch();
+        session.add(5, 300);
+        session.add(2, 60);
+
+        String before = rollup.encode();
+        rollup.merge(session);
+        rollup.subtract(session);
+
+        assertEquals(before, rollup.encode());
+        assertEquals(600000, rollup.getTotalMilliseconds());
+    }
+
+    @Test
+    public void encode_roundTrips() throws Exception {
+        PaceSketch sketch = PaceSketch.fromRoute(new double[] { 0, 100, 400, 400 }, new double[] { 0, 50, 150, 200 });
+
+        PaceSketch decoded = PaceSketch.decode(sketch.encode());
+
+        assertEquals(sketch.encode(), decoded.encode());
+        assertEquals(200000, decoded.getTotalMilliseconds());
+        assertEquals(3, decoded.getQuantile(1), 3 * RELATIVE_ERROR);
+        assertEquals(0, decoded.getQuantile(0.25), 0.001);
+        assertTrue(PaceSketch.decode(null).isEmpty());
+        assertTrue(PaceSketch.decode("").isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_rejectsUnknownBucket() throws Exception {
+        PaceSketch.decode(PaceSketch.NUMBER_OF_BUCKETS + ":100;");
+    }
+
+    @Test
+    public void add_ignoresImpossibleSpeeds() throws Exception {
+        PaceSketch sketch = new PaceSketch();
+        sketch.add(250, 10);
+        sketch.add(-1, 10);
+        sketch.add(Double.NaN, 10);
+
+        assertTrue(sketch.isEmpty());
+        assertEquals(0, sketch.getQuantile(0.5), 0);
+    }
+
+    @Test
+    public void bucketIndex_increasesWithSpeed() throws Exception {
+        int previous = PaceSketch.getBucketIndex(0);
+        for(long speed = 1; speed < 200000; speed++){
+            int index = PaceSketch.getBucketIndex(speed);
+            assertTrue(index == previous || index == previous + 1);
+            assertTrue(index < PaceSketch.NUMBER_OF_BUCKETS);
+            previous = index;
+        }
+    }
+
+    private static double exactQuantile(final double[] speeds, long[] durations, double quantile){
+        Integer[] order = new Integer[speeds.length];
+        long total = 0;
+        for(int i = 0; i < speeds.length; i++){
+            order[i] = i;
+            total += durations[i];
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(speeds[a], speeds[b]);
+            }
+        });
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for(int i : order){
+            seen += durations[i];
+            if(seen >= rank){
+                return speeds[i];
+            }
+        }
+        return speeds[order[order.length - 1]];
+    }
+}
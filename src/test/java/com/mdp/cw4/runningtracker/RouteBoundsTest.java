@@ -0,0 +1,37 @@
+package com.mdp.cw4.runningtracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RouteBoundsTest {
+
+    @Test
+    public void of_findsSmallestBox() throws Exception {
+        RouteBounds bounds = RouteBounds.of(new double[] { 52.94, 52.93, 52.95, 52.94 },
+                new double[] { -1.19, -1.21, -1.20, -1.18 });
+
+        assertEquals(52.93, bounds.getMinimumLatitude(), 0);
+        assertEquals(52.95, bounds.getMaximumLatitude(), 0);
+        assertEquals(-1.21, bounds.getMinimumLongitude(), 0);
+        assertEquals(-1.18, bounds.getMaximumLongitude(), 0);
+        assertNull(RouteBounds.of(new double[0], new double[0]));
+    }
+
+    @Test
+    public void contains_widensByMargin() throws Exception {
+        RouteBounds bounds = new RouteBounds(52.93, 52.95, -1.21, -1.18);
+        double latitudeOf100Metres = RouteBounds.getLatitudeMargin(100);
+        double longitudeOf100Metres = RouteBounds.getLongitudeMargin(52.95, 100);
+
+        assertTrue(bounds.contains(52.94, -1.20, 0));
+        assertFalse(bounds.contains(52.95 + latitudeOf100Metres / 2, -1.20, 0));
+        assertTrue(bounds.contains(52.95 + latitudeOf100Metres / 2, -1.20, 100));
+        assertFalse(bounds.contains(52.95 + latitudeOf100Metres * 2, -1.20, 100));
+        assertTrue(bounds.contains(52.95, -1.18 + longitudeOf100Metres / 2, 100));
+        assertFalse(bounds.contains(52.95, -1.18 + longitudeOf100Metres * 2, 100));
+
+        // A degree of longitude is shorter away from the equator
+        assertTrue(longitudeOf100Metres > latitudeOf100Metres);
+    }
+}
@@ -0,0 +1,125 @@
+package com.mdp.cw4.runningtracker;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class RouteFingerprintTest {
+
+    @Test
+    public void getCell_matchesGeohash() throws Exception {
+        assertEquals("u4pruyd", RouteFingerprint.toGeohash(RouteFingerprint.getCell(57.64911, 10.40744)));
+        assertEquals("gcrjhv1", RouteFingerprint.toGeohash(RouteFingerprint.getCell(52.9387, -1.1955)));
+    }
+
+    @Test
+    public void getCells_fillsGapsBetweenDistantPoints() throws Exception {
+        // 600 m due north in a single step crosses four or five cells
+        double[] latitudes = { 52.9387, 52.9387 + 600 / RouteDistance.METRES_PER_DEGREE };
+        double[] longitudes = { -1.1955, -1.1955 };
+
+        long[] cells = RouteFingerprint.getCells(latitudes, longitudes);
+
+        assertTrue(Arrays.toString(cells), cells.length >= 4);
+        assertTrue(RouteFingerprint.getCells(new double[0], new double[0]).length == 0);
+    }
+
+    @Test
+    public void signature_sameForRepeatedAndReversedRoute() throws Exception {
+        double[][] route = SyntheticRoutes.generate(2000, 5);
+        double[][] reversed = { reverse(route[0]), reverse(route[1]) };
+
+        int[] signature = RouteFingerprint.getSignature(route[0], route[1]);
+        int[] reversedSignature = RouteFingerprint.getSignature(reversed[0], reversed[1]);
+
+        assertEquals(1, RouteFingerprint.getSimilarity(signature, reversedSignature), 0);
+        assertArrayEquals(RouteFingerprint.getBandKeys(signature), RouteFingerprint.getBandKeys(reversedSignature));
+        assertNull(RouteFingerprint.getSignature(new double[0], new double[0]));
+    }
+
+    @Test
+    public void similarity_estimatesJaccardSimilarityOfCells() throws Exception {
+        double[][] route = SyntheticRoutes.generate(6000, 9);
+        int third = 2000;
+        double[][] first = { Arrays.copyOfRange(route[0], 0, 2 * third), Arrays.copyOfRange(route[1], 0, 2 * third) };
+        double[][] last = { Arrays.copyOfRange(route[0], third, 3 * third), Arrays.copyOfRange(route[1], third, 3 * third) };
+
+        double exact = jaccard(RouteFingerprint.getCells(first[0], first[1]),
+                RouteFingerprint.getCells(last[0], last[1]));
+        double estimate = RouteFingerprint.getSimilarity(RouteFingerprint.getSignature(first[0], first[1]),
+                RouteFingerprint.getSignature(last[0], last[1]));
+
+        // The standard error with 64 hashes is at most 1/16
+        assertTrue(exact > 0.2 && exact < 0.8);
+        assertEquals(exact, estimate, 0.2);
+    }
+
+    @Test
+    public void bandKeys_notSharedByDistantRoutes() throws Exception {
+        double[][] route = SyntheticRoutes.generate(2000, 1);
+        double[][] distant = SyntheticRoutes.generate(2000, 1);
+        for(int i = 0; i < distant[0].length; i++){
+            distant[0][i] += 0.05;
+        }
+
+        int[] signature = RouteFingerprint.getSignature(route[0], route[1]);
+        int[] distantSignature = RouteFingerprint.getSignature(distant[0], distant[1]);
+
+        assertEquals(0, RouteFingerprint.getSimilarity(signature, distantSignature), 0.1);
+        Set<Long> keys = new HashSet<>();
+        for(long key : RouteFingerprint.getBandKeys(signature)){
+            keys.add(key);
+        }
+        for(long key : RouteFingerprint.getBandKeys(distantSignature)){
+            assertFalse(keys.contains(key));
+        }
+    }
+
+    @Test
+    public void encode_roundTrips() throws Exception {
+        double[][] route = SyntheticRoutes.generate(500, 3);
+        int[] signature = RouteFingerprint.getSignature(route[0], route[1]);
+
+        assertArrayEquals(signature, RouteFingerprint.decode(RouteFingerprint.encode(signature)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_rejectsShortSignature() throws Exception {
+        RouteFingerprint.decode("1,2,3");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_rejectsLongSignature() throws Exception {
+        int[] signature = new int[RouteFingerprint.NUMBER_OF_HASHES];
+        RouteFingerprint.decode(RouteFingerprint.encode(signature) + ",4");
+    }
+
+    private static double jaccard(long[] cells, long[] otherCells){
+        Set<Long> union = new HashSet<>();
+        Set<Long> first = new HashSet<>();
+        for(long cell : cells){
+            union.add(cell);
+            first.add(cell);
+        }
+        int intersection = 0;
+        for(long cell : otherCells){
+            union.add(cell);
+            if(first.contains(cell)){
+                intersection++;
+            }
+        }
+        return (double) intersection / union.size();
+    }
+
+    private static double[] reverse(double[] values){
+        double[] reversed = new double[values.length];
+        for(int i = 0; i < values.length; i++){
+            reversed[i] = values[values.length - 1 - i];
+        }
+        return reversed;
+    }
+}
@@ -0,0 +1,201 @@
+package com.mdp.cw4.runningtracker;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class RouteGridTest {
+
+    @Test
+    public void getKey_roundTrips() throws Exception {
+        long key = RouteGrid.getKey(6, 4, 8);
+        assertEquals(6, RouteGrid.getLevel(key));
+        assertEquals(4, RouteGrid.getRow(key));
+        assertEquals(8, RouteGrid.getColumn(key));
+
+        key = RouteGrid.getKey(0, 14293, 17880);
+        assertEquals(0, RouteGrid.getLevel(key));
+        assertEquals(14293, RouteGrid.getRow(key));
+        assertEquals(17880, RouteGrid.getColumn(key));
+    }
+
+    @Test
+    public void getCells_includesEveryCellAlongEachStep() throws Exception {
+        // A single diagonal step of about 4 km, with no points in the cells it passes through
+        double[] latitudes = { 52.9001, 52.9273 };
+        double[] longitudes = { -1.2099, -1.1641 };
+
+        long[] cells = RouteGrid.getCells(latitudes, longitudes);
+        Set<Long> cellSet = new HashSet<>();
+        for(long cell : cells){
+            cellSet.add(cell);
+        }
+
+        for(int i = 0; i <= 1000; i++){
+            double latitude = latitudes[0] + (latitudes[1] - latitudes[0]) * i / 1000;
+            double longitude = longitudes[0] + (longitudes[1] - longitudes[0]) * i / 1000;
+            int row = (int) Math.floor((latitude + 90) / RouteGrid.FINEST_CELL_DEGREES);
+            int column = (int) Math.floor((longitude + 180) / RouteGrid.FINEST_CELL_DEGREES);
+            for(int level = 0; level < RouteGrid.NUMBER_OF_LEVELS; level++){
+                assertTrue(cellSet.contains(RouteGrid.getKey(level, row >> (2 * level), column >> (2 * level))));
+            }
+        }
+
+        // In order without repeats, and no more than the walk needs
+        for(int i = 1; i < cells.length; i++){
+            assertTrue(cells[i] > cells[i - 1]);
+        }
+        assertTrue(Arrays.toString(cells), cells.length < 20);
+    }
+
+    @Test
+    public void getCells_leavesOutGaps() throws Exception {
+        // 50 km between two points is a gap, so only their own cells are indexed
+        long[] cells = RouteGrid.getCells(new double[] { 52.9, 53.35 }, new double[] { -1.2, -1.2 });
+
+        int finestCells = 0;
+        for(long cell : cells){
+            if(RouteGrid.getLevel(cell) == 0){
+                finestCells++;
+            }
+        }
+        assertEquals(2, finestCells);
+    }
+
+    @Test
+    public void getOutline_keepsGapsAndLongStretches() throws Exception {
+        // 8 km due north in 10 m steps, a 20 km gap, then 100 m further
+        int numberOfPoints = 803;
+        double[] latitudes = new double[numberOfPoints];
+        double[] longitudes = new double[numberOfPoints];
+        for(int i = 0; i <= 800; i++){
+            latitudes[i] = 52.9 + RouteBounds.getLatitudeMargin(i * 10);
+            longitudes[i] = -1.2;
+        }
+        latitudes[801] = latitudes[800] + RouteBounds.getLatitudeMargin(20000);
+        latitudes[802] = latitudes[801] + RouteBounds.getLatitudeMargin(100);
+        longitudes[801] = -1.2;
+        longitudes[802] = -1.2;
+
+        int[] outline = RouteGrid.getOutline(latitudes, longitudes);
+
+        assertEquals(0, outline[0]);
+        assertEquals(802, outline[outline.length - 1]);
+        int gaps = 0;
+        for(int i = 1; i < outline.length; i++){
+            if(RouteGrid.isGap(latitudes[outline[i - 1]], longitudes[outline[i - 1]],
+                    latitudes[outline[i]], longitudes[outline[i]])){
+                gaps++;
+                assertEquals(800, outline[i - 1]);
+            }
+        }
+        assertEquals(1, gaps);
+        assertTrue(outline.length < 10);
+    }
+
+    @Test
+    public void cover_findsSameRoutesAsCheckingEveryRoute() throws Exception {
+        Random random = new Random(5);
+        double[][][] routes = new double[300][][];
+        long[][] routeCells = new long[routes.length][];
+        for(int i = 0; i < routes.length; i++){
+            routes[i] = generate(random);
+            routeCells[i] = RouteGrid.getCells(routes[i][0], routes[i][1]);
+        }
+
+        for(int query = 0; query < 60; query++){
+            // Regions from a few hundred metres to tens of kilometres across
+            double size = 0.002 * Math.pow(200, random.nextDouble());
+            double latitude = 52.8 + random.nextDouble() * 0.4;
+            double longitude = -1.4 + random.nextDouble() * 0.4;
+            RouteGrid.Region region = query % 2 == 0
+                    ? new RouteBounds(latitude, latitude + size, longitude, longitude + size * 1.6)
+                    : new RouteGrid.Circle(latitude, longitude, size * 50000);
+
+            RouteGrid.Cover cover = RouteGrid.cover(region);
+            Set<Long> inside = toSet(cover.getInsideCells());
+            Set<Long> edge = toSet(cover.getEdgeCells());
+            assertTrue(inside.size() + edge.size() < 1000);
+
+            for(int i = 0; i < routes.length; i++){
+                boolean underInside = false;
+                boolean underEdge = false;
+                for(long cell : routeCells[i]){
+                    underInside |= inside.contains(cell);
+                    underEdge |= edge.contains(cell);
+                }
+
+                boolean expected = region.intersectsRoute(routes[i][0], routes[i][1]);
+                boolean found = underInside || (underEdge && expected);
+                assertEquals("query " + query + " route " + i, expected, found);
+            }
+        }
+    }
+
+    @Test
+    public void cover_staysSmallForLargeRegions() throws Exception {
+        RouteGrid.Cover cover = RouteGrid.cover(new RouteBounds(49, 61, -8, 2));
+        assertTrue(cover.getInsideCells().length + cover.getEdgeCells().length < 1000);
+
+        cover = RouteGrid.cover(new RouteBounds(-90, 90, -180, 180));
+        assertTrue(cover.getInsideCells().length > 0);
+    }
+
+    @Test
+    public void circle_measuresClosestApproach() throws Exception {
+        // A straight line running east 1 km north of the centre
+        double north = 52.9 + RouteBounds.getLatitudeMargin(1000);
+        RouteGrid.Circle circle = new RouteGrid.Circle(52.9, -1.2, 1200);
+
+        double distance = circle.getDistanceMetres(new double[] { north, north }, new double[] { -1.23, -1.17 });
+
+        assertEquals(1000, distance, 1);
+        assertTrue(circle.intersectsRoute(new double[] { north, north }, new double[] { -1.23, -1.17 }));
+        assertFalse(new RouteGrid.Circle(52.9, -1.2, 900).intersectsRoute(
+                new double[] { north, north }, new double[] { -1.23, -1.17 }));
+        assertEquals(Double.POSITIVE_INFINITY, circle.getDistanceMetres(new double[0], new double[0]), 0);
+    }
+
+    @Test
+    public void bounds_intersectsStepsPassingThrough() throws Exception {
+        RouteBounds bounds = new RouteBounds(52.90, 52.91, -1.21, -1.20);
+
+        // Across the box with both points outside it
+        assertTrue(bounds.intersectsRoute(new double[] { 52.905, 52.905 }, new double[] { -1.22, -1.19 }));
+        // Past a corner without touching it
+        assertFalse(bounds.intersectsRoute(new double[] { 52.915, 52.905 }, new double[] { -1.215, -1.222 }));
+        assertTrue(bounds.intersectsRoute(new double[] { 52.905 }, new double[] { -1.205 }));
+    }
+
+    /**
+     * @return  Latitudes and longitudes of a random walk around Nottingham, with points every 50 to
+     *          300 m and the odd gap
+     */
+    private static double[][] generate(Random random){
+        int numberOfPoints = 2 + random.nextInt(200);
+        double[][] route = new double[2][numberOfPoints];
+        route[0][0] = 52.8 + random.nextDouble() * 0.4;
+        route[1][0] = -1.4 + random.nextDouble() * 0.4;
+        double heading = random.nextDouble() * 2 * Math.PI;
+        for(int i = 1; i < numberOfPoints; i++){
+            double metres = random.nextInt(50) == 0 ? 8000 : 50 + random.nextDouble() * 250;
+            heading += random.nextGaussian() * 0.5;
+            route[0][i] = route[0][i - 1] + RouteBounds.getLatitudeMargin(metres * Math.cos(heading));
+            route[1][i] = route[1][i - 1] + RouteBounds.getLongitudeMargin(route[0][i - 1], metres * Math.sin(heading));
+        }
+        return route;
+    }
+
+    private static Set<Long> toSet(long[] cells){
+        Set<Long> set = new HashSet<>();
+        for(long cell : cells){
+            set.add(cell);
+        }
+        return set;
+    }
+}
@@ -0,0 +1,57 @@
+package com.mdp.cw4.runningtracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RouteSimplifierTest {
+
+    @Test
+    public void straightLine_keepsOnlyEndPoints() throws Exception {
+        double[] latitudes = { 52.0, 52.001, 52.002, 52.003, 52.004 };
+        double[] longitudes = { -1.0, -1.0, -1.0, -1.0, -1.0 };
+
+        double[] significance = RouteSimplifier.calculateSignificance(latitudes, longitudes);
+
+        assertArrayEquals(new int[] { 0, 4 }, RouteSimplifier.simplify(significance, 0.01));
+    }
+
+    @Test
+    public void corner_isKeptBelowItsDeviation() throws Exception {
+        // Right angle with the corner roughly 78 metres from the line between the end points
+        double[] latitudes = { 52.0, 52.001, 52.001 };
+        double[] longitudes = { -1.0, -1.0, -0.9984 };
+
+        double[] significance = RouteSimplifier.calculateSignificance(latitudes, longitudes);
+
+        assertArrayEquals(new int[] { 0, 1, 2 }, RouteSimplifier.simplify(significance, 50));
+        assertArrayEquals(new int[] { 0, 2 }, RouteSimplifier.simplify(significance, 100));
+    }
+
+    @Test
+    public void simplifiedRoutes_areNested() throws Exception {
+        int numberOfPoints = 2000;
+        double[] latitudes = new double[numberOfPoints];
+        double[] longitudes = new double[numberOfPoints];
+        for(int i = 0; i < numberOfPoints; i++){
+            latitudes[i] = 52 + Math.sin(i / 50.0) * 200 / RouteDistance.METRES_PER_DEGREE;
+            longitudes[i] = -1 + i * 3 / RouteDistance.METRES_PER_DEGREE;
+        }
+
+        double[] significance = RouteSimplifier.calculateSignificance(latitudes, longitudes);
+        int[] coarse = RouteSimplifier.simplify(significance, 20);
+        int[] fine = RouteSimplifier.simplify(significance, 2);
+
+        assertTrue(coarse.length < fine.length);
+        for(int index : coarse){
+            assertTrue(java.util.Arrays.binarySearch(fine, index) >= 0);
+        }
+    }
+
+    @Test
+    public void shortRoutes_areUnchanged() throws Exception {
+        assertEquals(0, RouteSimplifier.calculateSignificance(new double[0], new double[0]).length);
+        assertArrayEquals(new int[] { 0, 1 }, RouteSimplifier.simplify(
+                RouteSimplifier.calculateSignificance(new double[] { 1, 2 }, new double[] { 1, 2 }), 1000));
+    }
+}
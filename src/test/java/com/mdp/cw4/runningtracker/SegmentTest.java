@@ -0,0 +1,135 @@
+package com.mdp.cw4.runningtracker;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SegmentTest {
+
+    private static final double START_LATITUDE = 52.9387;
+    private static final double START_LONGITUDE = -1.1955;
+
+    // 500 m due north with a 20 m corridor
+    private static final Segment SEGMENT = new Segment(
+            new double[] { START_LATITUDE, north(250), north(500) },
+            new double[] { START_LONGITUDE, START_LONGITUDE, START_LONGITUDE }, 20);
+
+    @Test
+    public void findEfforts_interpolatesGateCrossings() throws Exception {
+        // From 100 m south of the start to 300 m past the end at 4 metres per second, in 30 m steps
+        // which cross the gates part way between fixes
+        double[][] route = run(-100, 800, 30, 0, 4);
+
+        List<BestEffortCalculator.Effort> efforts = SEGMENT.findEfforts(route[0], route[1], route[2], route[3]);
+
+        assertEquals(1, efforts.size());
+        assertEquals(25, efforts.get(0).getStartSeconds(), 0.05);
+        assertEquals(125, efforts.get(0).getDurationSeconds(), 0.05);
+        assertEquals(500, efforts.get(0).getDistanceMetres(), 0.5);
+        assertEquals(4, efforts.get(0).getSpeed(), 0.01);
+        assertEquals(500, SEGMENT.getLengthMetres(), 0.01);
+    }
+
+    @Test
+    public void findEfforts_ignoresWrongDirection() throws Exception {
+        double[][] route = run(700, -200, -30, 0, 4);
+
+        assertTrue(SEGMENT.findEfforts(route[0], route[1], route[2], route[3]).isEmpty());
+        assertNull(SEGMENT.findBestEffort(route[0], route[1], route[2], route[3]));
+    }
+
+    @Test
+    public void findEfforts_requiresStayingInCorridor() throws Exception {
+        // Parallel to the path but 30 m to the east, so through neither gate
+        double[][] offset = run(-100, 800, 30, 30, 4);
+        assertTrue(SEGMENT.findEfforts(offset[0], offset[1], offset[2], offset[3]).isEmpty());
+
+        // Through the start gate, then away to the east and back before the end gate
+        double[][] route = run(-100, 800, 10, 0, 4);
+        for(int i = 0; i < route[1].length; i++){
+            double metresNorth = -100 + 10 * i;
+            if(metresNorth > 200 && metresNorth < 300){
+                route[1][i] = START_LONGITUDE + 100 / (RouteDistance.METRES_PER_DEGREE * Math.cos(Math.toRadians(START_LATITUDE)));
+            }
+        }
+        assertTrue(SEGMENT.findEfforts(route[0], route[1], route[2], route[3]).isEmpty());
+    }
+
+    @Test
+    public void findBestEffort_returnsFastestLap() throws Exception {
+        // Two passes north, the second faster, joined by a path back south well away to the west
+        double[][] first = run(-50, 550, 10, 0, 4);
+        double[][] back = run(550, -50, -10, -200, 4);
+        double[][] second = run(-50, 550, 10, 0, 5);
+        double[][] route = join(join(first, back), second);
+
+        List<BestEffortCalculator.Effort> efforts = SEGMENT.findEfforts(route[0], route[1], route[2], route[3]);
+        BestEffortCalculator.Effort best = SEGMENT.findBestEffort(route[0], route[1], route[2], route[3]);
+
+        assertEquals(2, efforts.size());
+        assertEquals(100, best.getDurationSeconds(), 0.05);
+        assertTrue(best.getStartSeconds() > efforts.get(0).getStartSeconds());
+    }
+
+    @Test
+    public void mayBeCoveredBy_needsBothEndsWithinCorridor() throws Exception {
+        double[][] route = run(-100, 800, 30, 0, 4);
+        assertTrue(SEGMENT.mayBeCoveredBy(RouteBounds.of(route[0], route[1])));
+
+        // Stopping 30 m short of the end gate
+        route = run(-100, 470, 10, 0, 4);
+        assertFalse(SEGMENT.mayBeCoveredBy(RouteBounds.of(route[0], route[1])));
+
+        // Passing 15 m to the side of both gates is within the corridor
+        route = run(-100, 800, 30, 15, 4);
+        assertTrue(SEGMENT.mayBeCoveredBy(RouteBounds.of(route[0], route[1])));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsPathWithoutLength() throws Exception {
+        new Segment(new double[] { START_LATITUDE, START_LATITUDE },
+                new double[] { START_LONGITUDE, START_LONGITUDE }, 20);
+    }
+
+    private static double north(double metres){
+        return START_LATITUDE + metres / RouteDistance.METRES_PER_DEGREE;
+    }
+
+    /**
+     * @return  Latitudes, longitudes, cumulative distances and times of a route running north or
+     *          south in a straight line at a steady speed
+     */
+    private static double[][] run(double fromMetres, double toMetres, double stepMetres, double eastMetres,
+                                  double speed){
+        int numberOfPoints = (int) Math.round((toMetres - fromMetres) / stepMetres) + 1;
+        double longitude = START_LONGITUDE
+                + eastMetres / (RouteDistance.METRES_PER_DEGREE * Math.cos(Math.toRadians(START_LATITUDE)));
+
+        double[][] route = new double[4][numberOfPoints];
+        for(int i = 0; i < numberOfPoints; i++){
+            route[0][i] = north(fromMetres + stepMetres * i);
+            route[1][i] = longitude;
+            route[2][i] = Math.abs(stepMetres) * i;
+            route[3][i] = Math.abs(stepMetres) * i / speed;
+        }
+        return route;
+    }
+
+    /**
+     * @return  The second route following on from the end of the first
+     */
+    private static double[][] join(double[][] first, double[][] second){
+        int firstLength = first[0].length;
+        double[][] route = new double[4][firstLength + second[0].length];
+        for(int column = 0; column < 4; column++){
+            System.arraycopy(first[column], 0, route[column], 0, firstLength);
+            for(int i = 0; i < second[0].length; i++){
+                double offset = column < 2 ? 0 : first[column][firstLength - 1];
+                route[column][firstLength + i] = second[column][i] + offset;
+            }
+        }
+        return route;
+    }
+}
@@ -0,0 +1,65 @@
+package com.mdp.cw4.runningtracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SessionQueriesTest {
+
+    @Test
+    public void sessionWhereClause_listsWorkoutTypesInMask() throws Exception {
+        assertEquals("", SessionQueries.parseSessionWhereClause(-1));
+        assertEquals("AND 0 ", SessionQueries.parseSessionWhereClause(WorkoutTypeFilter.NONE));
+        assertEquals("AND sessionMode IN (0) ", SessionQueries.parseSessionWhereClause(1));
+        assertEquals("AND sessionMode IN (0, 1, 2) ",
+                SessionQueries.parseSessionWhereClause(WorkoutTypeFilter.ALL));
+    }
+
+    @Test
+    public void maxTotalByMonth_withoutWorkoutTypes() throws Exception {
+        String query = SessionQueries.parseQueryMaxTotalByMonthWithSessionType("distance", -1);
+
+        assertEquals("SELECT SUM(distance) AS 'monthlyTotal', month FROM sessionTable"
+                + " WHERE year = ?  GROUP BY month;", query);
+    }
+
+    @Test
+    public void maxTotalForYear_withWorkoutTypes() throws Exception {
+        String query = SessionQueries.parseQueryMaxTotalForYearWithSessionType("time", 5);
+
+        assertEquals("SELECT MAX(monthlyTotal) AS monthlyTotal FROM (SELECT SUM(time) AS 'monthlyTotal'"
+                + " FROM sessionTable WHERE year = ? AND sessionMode IN (0, 2)  GROUP BY month, sessionMode);",
+                query);
+    }
+
+    @Test
+    public void aggregate_filtersByPeriodAndWorkoutTypes() throws Exception {
+        String dayQuery = SessionQueries.parseAggregateQuery(true, true, 3);
+        assertTrue(dayQuery.endsWith(" WHERE year = ? AND month = ? AND date = ? AND sessionMode IN (0, 1)"));
+        assertTrue(dayQuery.contains("IFNULL(SUM(time), 0) AS totalDuration"));
+
+        assertTrue(SessionQueries.parseAggregateQuery(true, false, -1).endsWith(" WHERE year = ? AND month = ?"));
+        assertTrue(SessionQueries.parseAggregateQuery(false, false, 0).endsWith(" WHERE year = ? AND 0"));
+    }
+
+    @Test
+    public void personalRecords_bestSpeedForEachWorkoutTypeAndEffort() throws Exception {
+        String query = SessionQueries.parsePersonalRecordsQuery(-1);
+        assertTrue(query.contains("MAX(speed) AS speed FROM personal_records"));
+        assertTrue(query.endsWith(" GROUP BY sessionMode, effort ORDER BY sessionMode, effort"));
+
+        assertTrue(SessionQueries.parsePersonalRecordsQuery(1).contains(
+                " FROM personal_records WHERE sessionMode IN (0) GROUP BY"));
+        assertEquals("effort = ? AND sessionMode IN (1, 2)", SessionQueries.parseBestEffortsSelection(6));
+    }
+
+    @Test
+    public void paceSketches_rollupsForMonthsAndSessionsForDays() throws Exception {
+        assertEquals("SELECT sketch FROM pace_rollups WHERE year = ? AND month = ? AND sessionMode IN (2)",
+                SessionQueries.parsePaceSketchesQuery(true, false, 4));
+        assertEquals("SELECT sketch FROM pace_rollups WHERE year = ?",
+                SessionQueries.parsePaceSketchesQuery(false, false, -1));
+        assertEquals("SELECT sketch FROM pace_sketches WHERE year = ? AND month = ? AND date = ?",
+                SessionQueries.parsePaceSketchesQuery(true, true, -1));
+    }
+}
@@ -0,0 +1,43 @@
+package com.mdp.cw4.runningtracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SqlCacheTest {
+
+    @Test
+    public void key_differsForEachShape() throws Exception {
+        assertNotEquals(SqlCache.getKey(3, 1, 0), SqlCache.getKey(4, 1, 0));
+        assertNotEquals(SqlCache.getKey(10, 1, 1), SqlCache.getKey(10, 1, 3));
+        assertNotEquals(SqlCache.getKey(10, -1, 0), SqlCache.getKey(10, 0, 0));
+        assertEquals(SqlCache.getKey(6, 7, 0), SqlCache.getKey(6, 7, 0));
+    }
+
+    @Test
+    public void get_countsHitsAndMisses() throws Exception {
+        SqlCache cache = new SqlCache(4);
+        long key = SqlCache.getKey(3, 1, 0);
+
+        assertNull(cache.get(key));
+        cache.put(key, "SELECT 1");
+        assertEquals("SELECT 1", cache.get(key));
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void put_dropsLeastRecentlyUsedWhenFull() throws Exception {
+        SqlCache cache = new SqlCache(2);
+        cache.put(1, "first");
+        cache.put(2, "second");
+        cache.get(1);
+        cache.put(3, "third");
+
+        assertEquals(2, cache.size());
+        assertEquals("first", cache.get(1));
+        assertNull(cache.get(2));
+        assertEquals("third", cache.get(3));
+    }
+}
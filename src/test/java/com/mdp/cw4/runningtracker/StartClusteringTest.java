@@ -0,0 +1,270 @@
+package com.mdp.cw4.runningtracker;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class StartClusteringTest {
+
+    // Starts kept in memory the way StartClusters keeps them in the database
+    private final List<StartClustering.Start> starts = new ArrayList<>();
+    private long nextClusterId = 1;
+
+    @Test
+    public void getCells_coversEveryPointWithinTheRadius() throws Exception {
+        Random random = new Random(7);
+        for(int i = 0; i < 1000; i++){
+            double latitude = random.nextDouble() * 140 - 70;
+            double longitude = random.nextDouble() * 360 - 180;
+            double bearing = random.nextDouble() * 2 * Math.PI;
+            double distance = random.nextDouble() * StartClustering.EPSILON_METRES;
+            double otherLatitude = latitude
+                    + Math.toDegrees(distance * Math.cos(bearing) / RouteDistance.EARTH_RADIUS_METRES);
+            double otherLongitude = longitude + Math.toDegrees(distance * Math.sin(bearing)
+                    / (RouteDistance.EARTH_RADIUS_METRES * Math.cos(Math.toRadians(latitude))));
+
+            long cell = StartClustering.getCell(otherLatitude, otherLongitude);
+            boolean covered = false;
+            for(long coveringCell : StartClustering.getCells(latitude, longitude, StartClustering.EPSILON_METRES)){
+                covered |= coveringCell == cell;
+            }
+            assertTrue(covered);
+        }
+    }
+
+    @Test
+    public void insert_formsClusterOnceThereAreEnoughStarts() throws Exception {
+        add(1, 52.9500, -1.1500);
+        add(2, 52.9505, -1.1500);
+        assertEquals(StartClustering.NOISE, get(1).getClusterId());
+        assertEquals(StartClustering.NOISE, get(2).getClusterId());
+
+        add(3, 52.9500, -1.1505);
+        long clusterId = get(1).getClusterId();
+        assertNotEquals(StartClustering.NOISE, clusterId);
+        assertEquals(clusterId, get(2).getClusterId());
+        assertEquals(clusterId, get(3).getClusterId());
+
+        // Far from the cluster
+        add(4, 52.9600, -1.1500);
+        assertEquals(StartClustering.NOISE, get(4).getClusterId());
+    }
+
+    @Test
+    public void insert_mergesClustersJoinedByNewStart() throws Exception {
+        // Two clusters about 250 m apart
+        add(1, 52.9500, -1.1500);
+        add(2, 52.9501, -1.1500);
+        add(3, 52.9502, -1.1500);
+        add(4, 52.9525, -1.1500);
+        add(5, 52.9526, -1.1500);
+        add(6, 52.9527, -1.1500);
+        assertNotEquals(get(1).getClusterId(), get(4).getClusterId());
+
+        add(7, 52.9514, -1.1500);
+        add(8, 52.9514, -1.1501);
+        long clusterId = get(1).getClusterId();
+        for(long sessionId = 2; sessionId <= 8; sessionId++){
+            assertEquals(clusterId, get(sessionId).getClusterId());
+        }
+    }
+
+    @Test
+    public void remove_splitsClusterWhenBridgeIsRemoved() throws Exception {
+        add(1, 52.9500, -1.1500);
+        add(2, 52.9501, -1.1500);
+        add(3, 52.9502, -1.1500);
+        add(4, 52.9525, -1.1500);
+        add(5, 52.9526, -1.1500);
+        add(6, 52.9527, -1.1500);
+        add(7, 52.9514, -1.1500);
+        add(8, 52.9514, -1.1501);
+        assertEquals(get(1).getClusterId(), get(4).getClusterId());
+
+        remove(7);
+        remove(8);
+        assertNotEquals(StartClustering.NOISE, get(1).getClusterId());
+        assertNotEquals(StartClustering.NOISE, get(4).getClusterId());
+        assertNotEquals(get(1).getClusterId(), get(4).getClusterId());
+    }
+
+    @Test
+    public void insertAndRemove_matchClustersFoundFromScratch() throws Exception {
+        Random random = new Random(11);
+        List<Long> sessionIds = new ArrayList<>();
+        for(long sessionId = 1; sessionId <= 400; sessionId++){
+            // Mostly around a few places, with some scattered further away
+            int place = random.nextInt(5);
+            double spread = place == 4 ? 0.02 : 0.002;
+            add(sessionId, 52.95 + place * 0.004 + random.nextGaussian() * spread,
+                    -1.15 + random.nextGaussian() * spread);
+            sessionIds.add(sessionId);
+
+            if(sessionId % 50 == 0){
+                assertMatchesClustersFromScratch();
+            }
+        }
+
+        for(int i = 0; i < 200; i++){
+            remove(sessionIds.remove(random.nextInt(sessionIds.size())));
+            if(i % 25 == 0){
+                assertMatchesClustersFromScratch();
+            }
+        }
+        assertMatchesClustersFromScratch();
+    }
+
+    /**
+     * Checks that the neighbour counts are right, that two cores are in the same cluster exactly
+     * when they are joined through other cores and that every other start is in the cluster of a
+     * core near it, if there is one
+     */
+    private void assertMatchesClustersFromScratch(){
+        int numberOfStarts = starts.size();
+        boolean[][] neighbours = new boolean[numberOfStarts][numberOfStarts];
+        for(int i = 0; i < numberOfStarts; i++){
+            int count = 0;
+            for(int j = 0; j < numberOfStarts; j++){
+                neighbours[i][j] = getDistance(starts.get(i), starts.get(j)) <= StartClustering.EPSILON_METRES;
+                count += neighbours[i][j] ? 1 : 0;
+            }
+            assertEquals(count, starts.get(i).getNeighbours());
+        }
+
+        int[] component = new int[numberOfStarts];
+        for(int i = 0; i < numberOfStarts; i++){
+            component[i] = -1;
+        }
+        int numberOfComponents = 0;
+        for(int i = 0; i < numberOfStarts; i++){
+            if(!starts.get(i).isCore() || component[i] != -1){
+                continue;
+            }
+            List<Integer> stack = new ArrayList<>();
+            stack.add(i);
+            component[i] = numberOfComponents;
+            while(!stack.isEmpty()){
+                int current = stack.remove(stack.size() - 1);
+                for(int j = 0; j < numberOfStarts; j++){
+                    if(neighbours[current][j] && starts.get(j).isCore() && component[j] == -1){
+                        component[j] = numberOfComponents;
+                        stack.add(j);
+                    }
+                }
+            }
+            numberOfComponents++;
+        }
+
+        Map<Integer, Long> clusterOfComponent = new HashMap<>();
+        Set<Long> clusterIds = new HashSet<>();
+        for(int i = 0; i < numberOfStarts; i++){
+            StartClustering.Start start = starts.get(i);
+            if(start.isCore()){
+                assertNotEquals(StartClustering.NOISE, start.getClusterId());
+                Long clusterId = clusterOfComponent.get(component[i]);
+                if(clusterId == null){
+                    assertTrue(clusterIds.add(start.getClusterId()));
+                    clusterOfComponent.put(component[i], start.getClusterId());
+                }else{
+                    assertEquals((long) clusterId, start.getClusterId());
+                }
+            }
+        }
+
+        for(int i = 0; i < numberOfStarts; i++){
+            StartClustering.Start start = starts.get(i);
+            if(start.isCore()){
+                continue;
+            }
+            Set<Long> nearbyClusterIds = new HashSet<>();
+            for(int j = 0; j < numberOfStarts; j++){
+                if(neighbours[i][j] && starts.get(j).isCore()){
+                    nearbyClusterIds.add(starts.get(j).getClusterId());
+                }
+            }
+            if(nearbyClusterIds.isEmpty()){
+                assertEquals(StartClustering.NOISE, start.getClusterId());
+            }else{
+                assertTrue(nearbyClusterIds.contains(start.getClusterId()));
+            }
+        }
+    }
+
+    private void add(long sessionId, double latitude, double longitude){
+        StartClustering.Start start = new StartClustering.Start(sessionId, latitude, longitude, 5000, 0,
+                StartClustering.NOISE);
+        Set<Long> mergedClusterIds = StartClustering.insert(start, new ArrayList<>(starts));
+        starts.add(start);
+
+        long clusterId = start.getClusterId();
+        if(clusterId < StartClustering.NOISE){
+            long newClusterId = nextClusterId++;
+            for(StartClustering.Start other : starts){
+                if(other.getClusterId() == clusterId){
+                    replace(other, other.getNeighbours(), newClusterId);
+                }
+            }
+        }
+        assertFalse(mergedClusterIds.contains(get(sessionId).getClusterId()));
+    }
+
+    private void remove(long sessionId){
+        StartClustering.Start start = get(sessionId);
+        starts.remove(start);
+        for(long clusterId : StartClustering.remove(start, new ArrayList<>(starts))){
+            List<StartClustering.Start> members = new ArrayList<>();
+            for(StartClustering.Start other : starts){
+                if(other.getClusterId() == clusterId){
+                    members.add(other);
+                }
+            }
+
+            List<StartClustering.Start> leftOver = StartClustering.recluster(members);
+            Map<Long, Long> newClusterIds = new HashMap<>();
+            for(StartClustering.Start member : members){
+                if(member.getClusterId() < StartClustering.NOISE && !newClusterIds.containsKey(member.getClusterId())){
+                    newClusterIds.put(member.getClusterId(), nextClusterId++);
+                }
+            }
+            for(StartClustering.Start member : new ArrayList<>(members)){
+                Long newClusterId = newClusterIds.get(member.getClusterId());
+                if(newClusterId != null){
+                    replace(member, member.getNeighbours(), newClusterId);
+                }
+            }
+            for(StartClustering.Start other : leftOver){
+                StartClustering.attach(other, starts);
+            }
+        }
+    }
+
+    /**
+     * Replaces a start with one in another cluster, as the database does when storing a start
+     */
+    private void replace(StartClustering.Start start, int neighbours, long clusterId){
+        starts.set(starts.indexOf(start), new StartClustering.Start(start.getSessionId(), start.getLatitude(),
+                start.getLongitude(), start.getDistance(), neighbours, clusterId));
+    }
+
+    private StartClustering.Start get(long sessionId){
+        for(StartClustering.Start start : starts){
+            if(start.getSessionId() == sessionId){
+                return start;
+            }
+        }
+        return null;
+    }
+
+    private static double getDistance(StartClustering.Start start, StartClustering.Start other){
+        return RouteDistance.between(start.getLatitude(), start.getLongitude(), other.getLatitude(),
+                other.getLongitude());
+    }
+}
@@ -0,0 +1,41 @@
+package com.mdp.cw4.runningtracker;
+
+import java.util.Random;
+
+/**
+ * <h1>Synthetic Routes</h1>
+ * Generates reproducible routes for the unit tests and the benchmarks, which are compiled against
+ * the test classes. Each route is a random walk with a slowly changing heading and a step of a few
+ * metres, which resembles the fixes recorded by WorkoutSessionService during a run
+ */
+public class SyntheticRoutes {
+
+    /**
+     * @param numberOfPoints    Number of points in the route
+     * @param seed              Seed for the random walk, the same seed always produces the same route
+     * @return                  Two arrays, the first holding the latitudes and the second the longitudes
+     */
+    public static double[][] generate(int numberOfPoints, long seed){
+        Random random = new Random(seed);
+        double[] latitudes = new double[numberOfPoints];
+        double[] longitudes = new double[numberOfPoints];
+
+        double latitude = 52.9387;
+        double longitude = -1.1955;
+        double heading = random.nextDouble() * 2 * Math.PI;
+        double metresPerDegreeLongitude = RouteDistance.METRES_PER_DEGREE
+                * Math.cos(Math.toRadians(latitude));
+
+        for(int i = 0; i < numberOfPoints; i++){
+            latitudes[i] = latitude;
+            longitudes[i] = longitude;
+
+            heading += random.nextGaussian() * 0.15;
+            double stepMetres = 2 + random.nextDouble() * 3;
+            latitude += Math.cos(heading) * stepMetres / RouteDistance.METRES_PER_DEGREE;
+            longitude += Math.sin(heading) * stepMetres / metresPerDegreeLongitude;
+        }
+
+        return new double[][] { latitudes, longitudes };
+    }
+}
@@ -0,0 +1,98 @@
+package com.mdp.cw4.runningtracker;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TrainingLoadCalculatorTest {
+
+    @Test
+    public void getDay_consecutiveAcrossMonthsAndYears() throws Exception {
+        assertEquals(0, TrainingLoadCalculator.getDay(1970, Calendar.JANUARY, 1));
+        assertEquals(-1, TrainingLoadCalculator.getDay(1969, Calendar.DECEMBER, 31));
+        assertEquals(TrainingLoadCalculator.getDay(2016, Calendar.FEBRUARY, 28) + 2,
+                TrainingLoadCalculator.getDay(2016, Calendar.MARCH, 1));
+        assertEquals(TrainingLoadCalculator.getDay(2017, Calendar.DECEMBER, 31) + 1,
+                TrainingLoadCalculator.getDay(2018, Calendar.JANUARY, 1));
+    }
+
+    @Test
+    public void getCalendar_returnsDateOfDay() throws Exception {
+        int day = TrainingLoadCalculator.getDay(2017, Calendar.OCTOBER, 29);
+        Calendar calendar = TrainingLoadCalculator.getCalendar(day);
+
+        assertEquals(2017, calendar.get(Calendar.YEAR));
+        assertEquals(Calendar.OCTOBER, calendar.get(Calendar.MONTH));
+        assertEquals(29, calendar.get(Calendar.DATE));
+
+        calendar.add(Calendar.DATE, 3);
+        assertEquals(Calendar.NOVEMBER, calendar.get(Calendar.MONTH));
+        assertEquals(1, calendar.get(Calendar.DATE));
+    }
+
+    @Test
+    public void calculate_fromChangedDayMatchesCalculatingEveryDay() throws Exception {
+        int numberOfDays = 3650;
+        double[] loads = new double[numberOfDays];
+        Random random = new Random(3);
+        for(int i = 0; i < numberOfDays; i++){
+            loads[i] = random.nextInt(3) == 0 ? 0 : 20 + random.nextInt(100);
+        }
+
+        double[] fatigues = new double[numberOfDays];
+        double[] fitnesses = new double[numberOfDays];
+        TrainingLoadCalculator.calculate(loads, fatigues, fitnesses, numberOfDays, 0, 0);
+
+        // Change one day and only work out the days from it onwards
+        int changedDay = 3000;
+        loads[changedDay] += 45;
+        int remainingDays = numberOfDays - changedDay;
+        double[] remainingLoads = new double[remainingDays];
+        System.arraycopy(loads, changedDay, remainingLoads, 0, remainingDays);
+        double[] remainingFatigues = new double[remainingDays];
+        double[] remainingFitnesses = new double[remainingDays];
+        TrainingLoadCalculator.calculate(remainingLoads, remainingFatigues, remainingFitnesses, remainingDays,
+                fatigues[changedDay - 1], fitnesses[changedDay - 1]);
+
+        TrainingLoadCalculator.calculate(loads, fatigues, fitnesses, numberOfDays, 0, 0);
+        for(int i = 0; i < remainingDays; i++){
+            assertEquals(fatigues[changedDay + i], remainingFatigues[i], 1e-9);
+            assertEquals(fitnesses[changedDay + i], remainingFitnesses[i], 1e-9);
+        }
+    }
+
+    @Test
+    public void calculate_constantLoadIsReached() throws Exception {
+        int numberOfDays = 1000;
+        double[] loads = new double[numberOfDays];
+        Arrays.fill(loads, 60);
+        double[] fatigues = new double[numberOfDays];
+        double[] fitnesses = new double[numberOfDays];
+
+        TrainingLoadCalculator.calculate(loads, fatigues, fitnesses, numberOfDays, 0, 0);
+
+        // Fatigue rises faster than fitness, so form is negative while building up
+        assertTrue(fitnesses[6] - fatigues[6] < 0);
+        assertEquals(60, fatigues[numberOfDays - 1], 1e-6);
+        assertEquals(60, fitnesses[numberOfDays - 1], 1e-6);
+    }
+
+    @Test
+    public void getFatigue_fallsByTimeConstantWhenResting() throws Exception {
+        double fatigue = 100;
+        for(int i = 0; i < TrainingLoadCalculator.FATIGUE_DAYS; i++){
+            fatigue = TrainingLoadCalculator.getFatigue(fatigue, 0);
+        }
+        assertEquals(100 / Math.E, fatigue, 1e-9);
+    }
+
+    @Test
+    public void getSessionLoad_isMinutes() throws Exception {
+        assertEquals(45, TrainingLoadCalculator.getSessionLoad(45 * 60000L), 1e-9);
+        assertEquals(0, TrainingLoadCalculator.getSessionLoad(-5), 0);
+    }
+}
@@ -0,0 +1,109 @@
+package com.mdp.cw4.runningtracker;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ValueFormatterTest {
+
+    @Test
+    public void formatDistance_matchesStringFormat() throws Exception {
+        for(int distanceMetres = -10; distanceMetres < 200000; distanceMetres++){
+            assertEquals(formatDistanceWithStringFormat(distanceMetres),
+                    ValueFormatter.formatDistance(distanceMetres));
+        }
+
+        Random random = new Random(3);
+        for(int i = 0; i < 100000; i++){
+            int distanceMetres = random.nextInt(Integer.MAX_VALUE);
+            assertEquals(formatDistanceWithStringFormat(distanceMetres),
+                    ValueFormatter.formatDistance(distanceMetres));
+        }
+    }
+
+    @Test
+    public void formatAverageSpeed_matchesStringFormat() throws Exception {
+        Random random = new Random(5);
+        for(int i = 0; i < 100000; i++){
+            // Realistic speeds, and values on or next to a rounding tie
+            double[] speeds = { random.nextDouble() * 20, random.nextInt(10000) / 200.0,
+                    random.nextInt(10000) / 100.0 + 0.005 };
+            for(double metresPerSecond : speeds){
+                assertEquals(formatAverageSpeedWithStringFormat(metresPerSecond),
+                        ValueFormatter.formatAverageSpeed(metresPerSecond));
+            }
+        }
+
+        double[] specialSpeeds = { 0, -0.0, -1, Double.NaN, Double.POSITIVE_INFINITY,
+                Double.MIN_VALUE, 1e12, 0.125, 1.005, 2.675 };
+        for(double metresPerSecond : specialSpeeds){
+            assertEquals(formatAverageSpeedWithStringFormat(metresPerSecond),
+                    ValueFormatter.formatAverageSpeed(metresPerSecond));
+        }
+    }
+
+    @Test
+    public void formatDuration_matchesStringFormat() throws Exception {
+        Random random = new Random(11);
+        for(int i = 0; i < 100000; i++){
+            long durationMilliseconds = i < 1000 ? i * 997 - 5000 : random.nextInt(400000000);
+            assertEquals(formatDurationWithStringFormat(durationMilliseconds),
+                    ValueFormatter.formatDuration(durationMilliseconds));
+        }
+
+        assertEquals("100:00:00", ValueFormatter.formatDuration(360000000));
+        assertEquals("-- sec", ValueFormatter.formatDuration(-1));
+    }
+
+    @Test
+    public void append_addsToExistingText() throws Exception {
+        StringBuilder builder = new StringBuilder("Distance ");
+        ValueFormatter.appendDistance(builder, 1234).append(", ");
+        ValueFormatter.appendAverageSpeed(builder, 2.5).append(", ");
+        ValueFormatter.appendDuration(builder, 3723000);
+
+        assertEquals("Distance 1.23 km, 2.50 m/s, 01:02:03", builder.toString());
+    }
+
+    @Test
+    public void appendGhostGap_showsAheadOrBehind() throws Exception {
+        assertEquals("12 m ahead (4 sec)",
+                ValueFormatter.appendGhostGap(new StringBuilder(), 12.4, 3.6).toString());
+        assertEquals("30 m behind (9 sec)",
+                ValueFormatter.appendGhostGap(new StringBuilder(), -30.2, -9.1).toString());
+        assertEquals("0 m ahead",
+                ValueFormatter.appendGhostGap(new StringBuilder(), 0.3, Double.NaN).toString());
+    }
+
+    /**
+     * The formats used before ValueFormatter wrote the digits itself
+     */
+    private static String formatDistanceWithStringFormat(int distanceMetres){
+        if(distanceMetres >= 0){
+            return String.format(Locale.ENGLISH, "%.2f", distanceMetres / 1000f) + " km";
+        }
+        return "-- km";
+    }
+
+    private static String formatAverageSpeedWithStringFormat(double metresPerSecond){
+        if(metresPerSecond >= 0){
+            return String.format(Locale.ENGLISH, "%.2f", metresPerSecond) + " m/s";
+        }
+        return "-- m/s";
+    }
+
+    private static String formatDurationWithStringFormat(long durationMilliseconds){
+        if(durationMilliseconds >= 0){
+            int hours = (int) (durationMilliseconds / 3600000);
+            int minutes = (int) (durationMilliseconds / 60000 % 60);
+            int seconds = (int) (durationMilliseconds / 1000 % 60);
+            return String.format(Locale.ENGLISH, "%02d", hours) + ":"
+                    + String.format(Locale.ENGLISH, "%02d", minutes) + ":"
+                    + String.format(Locale.ENGLISH, "%02d", seconds);
+        }
+        return "-- sec";
+    }
+}
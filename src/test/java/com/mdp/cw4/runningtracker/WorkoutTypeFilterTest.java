@@ -0,0 +1,62 @@
+package com.mdp.cw4.runningtracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WorkoutTypeFilterTest {
+
+    @Test
+    public void selection_listsEveryWorkoutTypeInMask() throws Exception {
+        for(int mask = WorkoutTypeFilter.NONE; mask <= WorkoutTypeFilter.ALL; mask++){
+            StringBuilder expected = new StringBuilder();
+            for(WorkoutType workoutType : WorkoutType.values()){
+                if((mask & WorkoutTypeFilter.getMask(workoutType)) != 0){
+                    expected.append(expected.length() == 0 ? "sessionMode IN (" : ", ")
+                            .append(workoutType.getworkoutTypeID());
+                }
+            }
+            String expectedSelection = expected.length() == 0 ? "0" : expected.append(")").toString();
+
+            assertEquals(expectedSelection, WorkoutTypeFilter.getSelection(mask));
+        }
+    }
+
+    @Test
+    public void selection_isSameInstanceForSameMask() throws Exception {
+        assertSame(WorkoutTypeFilter.getSelection(5), WorkoutTypeFilter.getSelection(5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void selection_rejectsUnknownWorkoutTypes() throws Exception {
+        WorkoutTypeFilter.getSelection(WorkoutTypeFilter.ALL + 1);
+    }
+
+    @Test
+    public void parseMask_fromSelectionArguments() throws Exception {
+        assertEquals(WorkoutTypeFilter.NONE, WorkoutTypeFilter.parseMask(new String[] { "2017" }, 1));
+        assertEquals(5, WorkoutTypeFilter.parseMask(new String[] { "2017", "0", "2" }, 1));
+        assertEquals(WorkoutTypeFilter.ALL, WorkoutTypeFilter.parseMask(new String[] { "2017", "2", "1", "0" }, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseMask_rejectsUnknownWorkoutTypeId() throws Exception {
+        WorkoutTypeFilter.parseMask(new String[] { "2017", "3" }, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseMask_rejectsNonNumericParameter() throws Exception {
+        WorkoutTypeFilter.parseMask("running");
+    }
+
+    @Test
+    public void includes_matchesMaskBits() throws Exception {
+        int mask = WorkoutTypeFilter.getMask(WorkoutType.RUNNING) | WorkoutTypeFilter.getMask(WorkoutType.CYCLING);
+
+        assertTrue(WorkoutTypeFilter.includes(mask, WorkoutType.RUNNING.getworkoutTypeID()));
+        assertFalse(WorkoutTypeFilter.includes(mask, WorkoutType.WALKING.getworkoutTypeID()));
+        assertTrue(WorkoutTypeFilter.includes(mask, WorkoutType.CYCLING.getworkoutTypeID()));
+        assertFalse(WorkoutTypeFilter.includes(WorkoutTypeFilter.ALL, -1));
+        assertFalse(WorkoutTypeFilter.includes(-1, WorkoutType.values().length));
+    }
+}